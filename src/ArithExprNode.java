@@ -25,8 +25,8 @@ public class ArithExprNode {
     // Member Variables //
     //==================//
 
-    private TermNode m_term;
-    private TermTailNode m_termTail;
+    private final TermNode m_term;
+    private final TermTailNode m_termTail;
 
 
     //=========//
@@ -67,6 +67,20 @@ public class ArithExprNode {
         return termVal;
     }
 
+    /**
+     * Accessor for the first term.
+     */
+    public TermNode term() {
+        return m_term;
+    }
+
+    /**
+     * Accessor for the term tail.
+     */
+    public TermTailNode termTail() {
+        return m_termTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -97,7 +111,7 @@ public class ArithExprNode {
         // Read the term and the term-tail.
         TermNode term = TermNode.parseTerm(tokenReader);
         TermTailNode termTail = TermTailNode.parseTermTail(tokenReader);
-        return new ArithExprNode(term, termTail);
+        return tokenReader.intern(new ArithExprNode(term, termTail));
     }
 
 }
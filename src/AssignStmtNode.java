@@ -21,8 +21,9 @@ public class AssignStmtNode extends StmtNode {
     // Member Variables //
     //==================//
 
-    private String m_id;
-    private ExprNode m_expr;
+    private final String m_id;
+    private final int m_symbol;
+    private final ExprNode m_expr;
 
 
     //=========//
@@ -35,11 +36,17 @@ public class AssignStmtNode extends StmtNode {
      * side).
      *
      * @param id The ID of the variable being assigned
+     * @param symbol The interned symbol of 'id'
      * @param expr The expression to evaluate and assign the value
      *             of
+     * @param start The offset in the source code where the
+     *              statement starts
      */
-    public AssignStmtNode(String id, ExprNode expr) {
+    public AssignStmtNode(String id, int symbol, ExprNode expr,
+                          int start) {
+        super(start);
         m_id = id;
+        m_symbol = symbol;
         m_expr = expr;
     }
 
@@ -53,7 +60,28 @@ public class AssignStmtNode extends StmtNode {
             throws DCRuntimeErrorException
     {
         // Assign the expression's value to the ID.
-        progState.symTab().put(m_id, m_expr.getVal(progState));
+        progState.symTab().set(m_symbol, m_expr.getVal(progState));
+    }
+
+    /**
+     * Accessor for the ID of the variable being assigned.
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the symbol of the variable being assigned.
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Accessor for the right-hand side expression.
+     */
+    public ExprNode expr() {
+        return m_expr;
     }
 
 
@@ -131,11 +159,14 @@ public class AssignStmtNode extends StmtNode {
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
+     * @param start The offset in the source code where the
+     *              statement starts
      *
      * @return The constructed AssignStmtNode that was parsed from
      *         the source code
      */
-    public static AssignStmtNode parseAssignStmt(TokenReader tokenReader)
+    public static AssignStmtNode parseAssignStmt(TokenReader tokenReader,
+                                                 int start)
             throws IOException, DCSyntaxErrorException
     {
         //
@@ -155,6 +186,7 @@ public class AssignStmtNode extends StmtNode {
         // Get the variable name in the assignment.
         assert(token.getCode() == TokenCode.T_ID);
         String id = token.getText();
+        int symbol = token.getSymbol();
 
         // Eat up spaces between the variable name and the ":=".
         do {
@@ -169,7 +201,7 @@ public class AssignStmtNode extends StmtNode {
         ExprNode expr = ExprNode.parseExpr(tokenReader);
 
 
-        return new AssignStmtNode(id, expr);
+        return new AssignStmtNode(id, symbol, expr, start);
     }
 
 }
@@ -19,8 +19,9 @@ public class AtomNode {
     // Member Variables //
     //==================//
 
-    private String m_id;
-    private double m_constVal;
+    private final String m_id;
+    private final int m_symbol;
+    private final double m_constVal;
 
 
     //=========//
@@ -34,9 +35,12 @@ public class AtomNode {
      *
      * @param id The ID of an already-created variable that is
      *           expected to appear in the symbol table
+     * @param symbol The interned symbol of 'id'
      */
-    public AtomNode(String id) {
+    public AtomNode(String id, int symbol) {
         m_id = id;
+        m_symbol = symbol;
+        m_constVal = 0.0;
     }
 
     /**
@@ -47,6 +51,8 @@ public class AtomNode {
      *                 appeared in the source code
      */
     public AtomNode(double constVal) {
+        m_id = null;
+        m_symbol = IDTable.NONE;
         m_constVal = constVal;
     }
 
@@ -62,15 +68,39 @@ public class AtomNode {
         if (m_id == null)
             return m_constVal;
         else {
-            if (!progState.symTab().containsKey(m_id)) {
+            SymbolTable symTab = progState.symTab();
+            if (!symTab.isDefined(m_symbol)) {
                 throw new DCRuntimeErrorException(
                         "Unrecognized variable name: " + m_id
                 );
             }
-            return progState.symTab().get(m_id);
+            return symTab.get(m_symbol);
         }
     }
 
+    /**
+     * Accessor for the variable ID (null if this atom is a
+     * constant).
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the variable symbol (IDTable.NONE if this atom
+     * is a constant).
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Accessor for the constant value.
+     */
+    public double constVal() {
+        return m_constVal;
+    }
+
 
     //================//
     // Static Methods //
@@ -110,7 +140,7 @@ public class AtomNode {
         //
 
         if (token.getCode() == TokenCode.T_ID) {
-            atom = new AtomNode(token.getText());
+            atom = new AtomNode(token.getText(), token.getSymbol());
         }
 
         //
@@ -120,7 +150,7 @@ public class AtomNode {
         //
 
         else if (token.getCode() == TokenCode.T_CONST) {
-            atom = new AtomNode(Double.parseDouble(token.getText()));
+            atom = new AtomNode(token.getValue());
         }
 
         // If we expected an atom but got neither a CONST nor an
@@ -132,7 +162,7 @@ public class AtomNode {
                     "Expected atom");
         }
 
-        return atom;
+        return tokenReader.intern(atom);
     }
 
 }
\ No newline at end of file
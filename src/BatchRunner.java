@@ -0,0 +1,470 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Runs one CompiledProgram over many rows of READ inputs, in
+ * parallel on a ForkJoinPool.
+ *
+ * A row is a line of input values, separated by spaces, tabs or
+ * commas; blank lines and lines starting with '#' are skipped. Rows
+ * are read a block at a time, and a block's rows are split among
+ * the pool's workers, which steal from one another as they finish.
+ * Each worker thread keeps one RunState, which it resets for each
+ * row it runs. A row's report is the values it printed and the
+ * variables' final values, or the error that stopped it, as the
+ * interpreter prints them; the reports are written in input order.
+ *
+ * Given a compact tree of the program too, each worker runs its
+ * rows a block at a time on a LaneEngine of its own, and runs again
+ * on its RunState only the rows the engine drops.
+ *
+ * <pre>
+ *     Row 1:
+ *     Value of SUM: 6.0
+ *     Symbol Table:
+ *     A = 1.0
+ *     ...
+ * </pre>
+ */
+public class BatchRunner {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * Runs a range of a block's rows, splitting it among workers
+     * until it's small enough to run as it is.
+     */
+    private class Slice extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] m_lines;
+        private final String[] m_reports;
+        private final long m_firstRow;
+        private final int m_start;
+        private final int m_end;
+        private final int m_grain;
+
+        Slice(String[] lines, String[] reports, long firstRow,
+              int start, int end, int grain) {
+            m_lines = lines;
+            m_reports = reports;
+            m_firstRow = firstRow;
+            m_start = start;
+            m_end = end;
+            m_grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (m_end - m_start <= m_grain && m_laneTree != null) {
+                runLanes(m_lines, m_reports, m_firstRow, m_start, m_end);
+                return;
+            } else if (m_end - m_start <= m_grain) {
+                for (int i = m_start; i < m_end; i++) {
+                    m_reports[i] = runRow(m_firstRow + i, m_lines[i]);
+                }
+                return;
+            }
+            int middle = (m_start + m_end) >>> 1;
+            invokeAll(new Slice(m_lines, m_reports, m_firstRow,
+                                m_start, middle, m_grain),
+                      new Slice(m_lines, m_reports, m_firstRow,
+                                middle, m_end, m_grain));
+        }
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // The rows read, run and written at a time.
+    private static final int BLOCK_ROWS = 8192;
+
+    // The fewest rows a worker runs without splitting them further.
+    private static final int MIN_GRAIN = 16;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final CompiledProgram m_program;
+    private final ForkJoinPool m_pool;
+
+    // The program's compact tree, or null to run rows one at a
+    // time, and the most rows a LaneEngine runs at once.
+    private final CompactTree m_laneTree;
+    private final int m_lanes;
+
+    // Each worker thread's own program state and lane engine.
+    private final ThreadLocal<RunState> m_states;
+    private final ThreadLocal<LaneEngine> m_engines;
+
+    // The rows run, those stopped by an error, and those the lane
+    // engines dropped, so far.
+    private long m_rowCount;
+    private final AtomicLong m_errorCount;
+    private final AtomicLong m_fallbackCount;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a runner for a program.
+     *
+     * @param program The program to run
+     * @param pool The pool whose workers run the rows
+     */
+    public BatchRunner(CompiledProgram program, ForkJoinPool pool) {
+        this(program, null, 0, pool);
+    }
+
+    /**
+     * Constructs a runner for a program that runs rows a block at a
+     * time on lane engines.
+     *
+     * @param program The program to run the rows the lane engines
+     *                drop
+     * @param laneTree The same program's compact tree, or null to
+     *                 run rows one at a time
+     * @param lanes The most rows a lane engine runs at once
+     * @param pool The pool whose workers run the rows
+     */
+    public BatchRunner(final CompiledProgram program,
+                       final CompactTree laneTree, final int lanes,
+                       ForkJoinPool pool) {
+        m_program = program;
+        m_pool = pool;
+        m_laneTree = laneTree;
+        m_lanes = lanes;
+        m_states = new ThreadLocal<RunState>() {
+            @Override
+            protected RunState initialValue() {
+                return new RunState(program.idTable());
+            }
+        };
+        m_engines = new ThreadLocal<LaneEngine>() {
+            @Override
+            protected LaneEngine initialValue() {
+                return new LaneEngine(laneTree, lanes);
+            }
+        };
+        m_rowCount = 0;
+        m_errorCount = new AtomicLong();
+        m_fallbackCount = new AtomicLong();
+    }
+
+    /**
+     * Runs the program over each row read, and writes the rows'
+     * reports in the order the rows were read.
+     *
+     * @param in Reads the rows of input values
+     * @param out Receives the reports
+     */
+    public void run(BufferedReader in, Writer out)
+            throws IOException
+    {
+        List<String> lines = new ArrayList<String>(BLOCK_ROWS);
+        String line;
+        while ((line = in.readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            lines.add(trimmed);
+            if (lines.size() == BLOCK_ROWS) {
+                writeReports(run(lines.toArray(new String[0])), out);
+                lines.clear();
+            }
+        }
+        writeReports(run(lines.toArray(new String[0])), out);
+        out.flush();
+    }
+
+    /**
+     * Runs the program over a block of rows in parallel, numbering
+     * them on from the rows run so far.
+     *
+     * @param lines The rows' lines of input values
+     *
+     * @return Each row's report, in the same order
+     */
+    public String[] run(String[] lines) {
+        return run(lines, m_rowCount);
+    }
+
+    /**
+     * Runs the program over a block of rows in parallel, as above,
+     * numbering them on from a given row.
+     *
+     * @param lines The rows' lines of input values
+     * @param firstRow The index of the first row, from 0
+     *
+     * @return Each row's report, in the same order
+     */
+    public String[] run(String[] lines, long firstRow) {
+        String[] reports = new String[lines.length];
+        if (lines.length > 0) {
+            // Enough slices for the workers to even out their loads
+            // by stealing.
+            int grain = Math.max(Math.max(MIN_GRAIN, m_lanes),
+                    lines.length / (m_pool.getParallelism() * 8));
+            m_pool.invoke(new Slice(lines, reports, firstRow, 0,
+                    lines.length, grain));
+        }
+        m_rowCount += lines.length;
+        return reports;
+    }
+
+    /**
+     * Accessor for the number of rows run so far.
+     */
+    public long rowCount() {
+        return m_rowCount;
+    }
+
+    /**
+     * Accessor for the number of rows that an error stopped,
+     * whether in the program or in the row's input values.
+     */
+    public long errorCount() {
+        return m_errorCount.get();
+    }
+
+    /**
+     * Accessor for the number of rows that the lane engines dropped
+     * and that were run again one at a time.
+     */
+    public long fallbackCount() {
+        return m_fallbackCount.get();
+    }
+
+    /**
+     * Runs the program over one row, on the current worker's state,
+     * and returns the row's report.
+     *
+     * @param row The row's index, from 0
+     * @param line The row's input values
+     */
+    private String runRow(long row, String line) {
+        double[] inputs;
+        try {
+            inputs = parseRow(line);
+        } catch (NumberFormatException e) {
+            m_errorCount.incrementAndGet();
+            return "Row " + (row + 1) + ":\nInvalid input value: " +
+                    e.getMessage() + "\n";
+        }
+        return runRow(row, inputs);
+    }
+
+    /**
+     * Runs the program over one row's input values, as above.
+     */
+    private String runRow(long row, double[] inputs) {
+        final StringBuilder report = new StringBuilder(128);
+        report.append("Row ").append(row + 1).append(":\n");
+        RunResult result = m_program.run(m_states.get(), inputs,
+                new CompiledProgram.OutputSink() {
+                    public void print(String id, double value) {
+                        report.append("Value of ").append(id).append(": ")
+                                .append(value).append('\n');
+                    }
+                });
+        if (!result.completed()) {
+            m_errorCount.incrementAndGet();
+        }
+        return report.append(result).toString();
+    }
+
+    /**
+     * Runs the program over a range of a block's rows, a lane
+     * engine's worth at a time, on the current worker's engine, and
+     * runs one at a time the rows it drops.
+     */
+    private void runLanes(String[] lines, String[] reports, long firstRow,
+                          int start, int end) {
+        LaneEngine engine = m_engines.get();
+        double[][] inputs = new double[m_lanes][];
+        int[] rows = new int[m_lanes];
+        int i = start;
+        while (i < end) {
+            int count = 0;
+            for (; i < end && count < m_lanes; i++) {
+                try {
+                    inputs[count] = parseRow(lines[i]);
+                    rows[count++] = i;
+                } catch (NumberFormatException e) {
+                    reports[i] = runRow(firstRow + i, lines[i]);
+                }
+            }
+
+            engine.run(inputs, count);
+            for (int lane = 0; lane < count; lane++) {
+                long row = firstRow + rows[lane];
+                if (engine.failed(lane)) {
+                    m_fallbackCount.incrementAndGet();
+                    reports[rows[lane]] = runRow(row, inputs[lane]);
+                } else {
+                    StringBuilder report = new StringBuilder(128);
+                    report.append("Row ").append(row + 1).append(":\n");
+                    engine.report(lane, report);
+                    reports[rows[lane]] = report.toString();
+                }
+            }
+        }
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Measures how the rows run per second scale with the number of
+     * worker threads, running every row on pools of 1, 2, 4 and so
+     * on up to maxThreads workers, and prints a table of the
+     * results; given a compact tree of the program, it measures lane
+     * engines too, against one row at a time. The rows are first
+     * run until the JIT compiler has warmed up and their rate has
+     * settled, and then each pool runs them as many times as fit in
+     * about two seconds; reports are built but not written.
+     *
+     * @param program The program to run
+     * @param laneTree The same program's compact tree, or null to
+     *                 measure only one row at a time
+     * @param lanes The most rows a lane engine runs at once
+     * @param lines The rows' lines of input values
+     * @param maxThreads The most workers to measure
+     * @param out Receives the table
+     */
+    public static void benchmark(CompiledProgram program,
+                                 CompactTree laneTree, int lanes,
+                                 String[] lines, int maxThreads,
+                                 PrintStream out) {
+        warmUp(program, null, 0, lines, maxThreads);
+        if (laneTree != null) {
+            warmUp(program, laneTree, lanes, lines, maxThreads);
+            out.println(String.format("%7s %14s %8s %14s %8s", "threads",
+                    "rows/s", "speedup", "lanes rows/s", "vs rows"));
+        } else {
+            out.println(String.format("%7s %14s %8s", "threads", "rows/s",
+                    "speedup"));
+        }
+
+        double baseline = 0.0;
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                BatchRunner runner = new BatchRunner(program, pool);
+                double rate = repeat(runner, lines, 2000000000L);
+                if (threads == 1) {
+                    baseline = rate;
+                }
+                if (laneTree != null) {
+                    BatchRunner laneRunner = new BatchRunner(program,
+                            laneTree, lanes, pool);
+                    double laneRate = repeat(laneRunner, lines, 2000000000L);
+                    out.println(String.format("%7d %14.0f %7.2fx %14.0f" +
+                            " %7.2fx", threads, rate, rate / baseline,
+                            laneRate, laneRate / rate));
+                } else {
+                    out.println(String.format("%7d %14.0f %7.2fx", threads,
+                            rate, rate / baseline));
+                }
+            } finally {
+                pool.shutdown();
+            }
+            if (threads == maxThreads) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Runs the rows, one at a time or on lane engines, until a
+     * second's runs are within 3% as fast as the last second's, or
+     * for at most 20 seconds.
+     */
+    private static void warmUp(CompiledProgram program, CompactTree laneTree,
+                               int lanes, String[] lines, int maxThreads) {
+        ForkJoinPool pool = new ForkJoinPool(maxThreads);
+        try {
+            double last = 0.0;
+            for (int second = 0; second < 20; second++) {
+                double rate = repeat(new BatchRunner(program, laneTree,
+                        lanes, pool), lines, 1000000000L);
+                if (second >= 2 && Math.abs(rate - last) < rate * 0.03) {
+                    break;
+                }
+                last = rate;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs the rows over and over for at least the given time, and
+     * returns the rows run per second.
+     */
+    private static double repeat(BatchRunner runner, String[] lines,
+                                 long nanos) {
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            runner.run(lines);
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        return runner.rowCount() * 1e9 / elapsed;
+    }
+
+    /**
+     * Parses a row's input values.
+     *
+     * @param line The values, separated by spaces, tabs or commas
+     *
+     * @throws NumberFormatException If a value isn't a number
+     */
+    public static double[] parseRow(String line) {
+        String[] fields = line.split("[\\s,]+");
+        double[] values = new double[fields.length];
+        int count = 0;
+        for (String field : fields) {
+            if (!field.isEmpty()) {
+                try {
+                    values[count++] = Double.parseDouble(field);
+                } catch (NumberFormatException e) {
+                    throw new NumberFormatException(field);
+                }
+            }
+        }
+        return (count == values.length) ?
+                values : Arrays.copyOf(values, count);
+    }
+
+    private static void writeReports(String[] reports, Writer out)
+            throws IOException
+    {
+        for (String report : reports) {
+            out.write(report);
+        }
+    }
+
+}
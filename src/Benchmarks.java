@@ -0,0 +1,487 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * The measurements behind the "--bench" commands that time one part
+ * of the interpreter in isolation, such as "java Descartes lex
+ * --bench".
+ *
+ * Those that measure work in this JVM run it as a Pass, over and
+ * over, until the JIT compiler has warmed up and the rate has
+ * settled, and then time it for a second or two; those that measure
+ * whole runs launch them with launch() and report the median. The
+ * classes measured keep no benchmark code of their own.
+ */
+public class Benchmarks {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * One pass over a benchmark's work.
+     */
+    private interface Pass {
+
+        /**
+         * Does the work once, and returns a number that depends on
+         * every step of it, so that none of it can be optimized
+         * away.
+         */
+        long run() throws IOException, DCSyntaxErrorException;
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // What benchmarkScans() measures, and on what.
+    private static final String[] SCANS = {
+        "letters, runs of 25-60",
+        "letters, runs of 4",
+        "blanks, runs of 8-40",
+        "newlines, counted",
+        "newlines, found",
+    };
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // Takes what rate()'s passes return, so that the JIT compiler
+    // can't drop them as unused.
+    private static volatile long m_sink;
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Measures how fast sources are tokenized, in nanoseconds per
+     * token and megabytes per second, and prints a table of the
+     * results; with no sources, it measures a generated program of
+     * about a million tokens of every kind. Each pass reads a source
+     * from memory with a new reader, and as many as fit in about two
+     * seconds are timed.
+     *
+     * @param sourceFileNames The sources, or none
+     * @param out Receives the table
+     *
+     * @throws DCSyntaxErrorException If a source can't be tokenized
+     */
+    public static void benchmarkLexer(String[] sourceFileNames,
+                                      PrintStream out)
+            throws IOException, DCSyntaxErrorException
+    {
+        List<String> names = new ArrayList<String>();
+        List<byte[]> sources = new ArrayList<byte[]>();
+        if (sourceFileNames.length == 0) {
+            names.add("<generated>");
+            sources.add(lexerProgram(18000));
+        }
+        for (String fileName : sourceFileNames) {
+            names.add(fileName);
+            sources.add(Files.readAllBytes(Paths.get(fileName)));
+        }
+
+        out.println(String.format("%-28s %10s %8s %10s %8s", "source",
+                "tokens", "MB", "ns/token", "MB/s"));
+        for (int i = 0; i < sources.size(); i++) {
+            final String name = names.get(i);
+            final byte[] source = sources.get(i);
+            Pass tokenize = new Pass() {
+                public long run() throws IOException, DCSyntaxErrorException {
+                    return tokenize(name, source);
+                }
+            };
+            long tokens = tokenize.run();
+
+            settle(tokenize);
+            double passes = rate(tokenize, 2000000000L);
+            double megabytes = source.length / 1e6;
+            out.println(String.format("%-28s %10d %8.2f %10.1f %8.1f",
+                    name, tokens, megabytes, 1e9 / passes / tokens,
+                    megabytes * passes));
+        }
+    }
+
+    /**
+     * Returns a program for benchmarkLexer() of the given number of
+     * IF statements, each about fifty tokens of keywords,
+     * identifiers, numbers, operators and spaces.
+     */
+    private static byte[] lexerProgram(int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < statements; i++) {
+            String x = "X" + (i % 1000);
+            String y = "TOTAL" + (i % 100);
+            sb.append("IF ").append(x).append(" <= 10 OR ").append(x)
+                    .append(" <> ").append(y).append(" THEN\n    ")
+                    .append(y).append(" := (").append(x)
+                    .append(" + 1.5) * RATE / 2;\n    PRINT ").append(y)
+                    .append("\nELSE\n    READ ").append(x)
+                    .append("\nFI;\n");
+        }
+        sb.append("PRINT RATE.\n");
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Tokenizes a source with a new reader, and returns the number
+     * of tokens.
+     */
+    private static long tokenize(String fileName, byte[] source)
+            throws IOException, DCSyntaxErrorException
+    {
+        TokenReader reader = new TokenReader(fileName, source, 0,
+                source.length, new IDTable());
+        long count = 0;
+        while (!reader.atEnd()) {
+            reader.getToken();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Measures each of ByteScanner's methods on several megabytes of
+     * generated source text, in nanoseconds per byte, and prints a
+     * table of the results, headed by whether the SWAR or the scalar
+     * loops are in use. Each method is timed over its text for about
+     * a second.
+     *
+     * @param megabytes The size of each text
+     * @param out Receives the table
+     */
+    public static void benchmarkScans(int megabytes, PrintStream out)
+            throws IOException, DCSyntaxErrorException
+    {
+        out.println(ByteScanner.swarEnabled() ?
+                "SWAR, eight bytes at a time" :
+                "Scalar loops (descartes.lexer.swar=false)");
+        out.println(String.format("%-28s %8s %8s", "scan", "MB",
+                "ns/byte"));
+        for (int s = 0; s < SCANS.length; s++) {
+            final int scan = s;
+            final byte[] text = scanText(scan, megabytes << 20);
+            final int[] offsets = new int[ByteScanner.countNewlines(text,
+                    0, text.length)];
+            Pass pass = new Pass() {
+                public long run() {
+                    return scan(scan, text, offsets);
+                }
+            };
+
+            settle(pass);
+            double passes = rate(pass, 1000000000L);
+            out.println(String.format("%-28s %8.1f %8.3f", SCANS[scan],
+                    text.length / 1e6, 1e9 / passes / text.length));
+        }
+    }
+
+    /**
+     * Returns benchmarkScans()'s text for one of its SCANS: runs of
+     * letters and digits separated by spaces, runs of blanks
+     * separated by letters, or indented lines of a program.
+     */
+    private static byte[] scanText(int scan, int length) {
+        Random random = new Random(scan);
+        byte[] text = new byte[length];
+        int pos = 0;
+        while (pos < length) {
+            int run;
+            byte fill;
+            switch (scan) {
+            case 0:
+                run = 25 + random.nextInt(36);
+                fill = 'A';
+                break;
+            case 1:
+                run = 4;
+                fill = 'A';
+                break;
+            case 2:
+                run = 8 + random.nextInt(33);
+                fill = ' ';
+                break;
+            default:
+                run = 4 + random.nextInt(60);
+                fill = ' ';
+                break;
+            }
+            for (int i = 0; i < run && pos < length; i++) {
+                text[pos++] = (fill == 'A') ?
+                        (byte) ('A' + random.nextInt(26)) :
+                        (random.nextInt(4) == 0) ? (byte) '\t' : fill;
+            }
+            if (pos < length) {
+                text[pos++] = (scan <= 1) ? (byte) ' ' :
+                        (scan == 2) ? (byte) 'X' : (byte) '\n';
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Scans the whole of benchmarkScans()'s text once, as the lexer
+     * or the line index would, and returns a number that depends on
+     * every step.
+     */
+    private static long scan(int scan, byte[] text, int[] offsets) {
+        long sum = 0;
+        int pos = 0;
+        switch (scan) {
+        case 0: case 1:
+            while (pos < text.length) {
+                pos = ByteScanner.skipAlphanumerics(text, pos,
+                        text.length) + 1;
+                sum += pos;
+            }
+            return sum;
+        case 2:
+            while (pos < text.length) {
+                pos = ByteScanner.skipBlanks(text, pos, text.length) + 1;
+                sum += pos;
+            }
+            return sum;
+        case 3:
+            return ByteScanner.countNewlines(text, 0, text.length);
+        default:
+            return ByteScanner.findNewlines(text, 0, text.length, offsets,
+                    0);
+        }
+    }
+
+    /**
+     * Measures how much lazy bodies save in starting a program with
+     * a large cold region, and prints a table of the medians: the
+     * time to parse it, from its source in memory to its parse tree,
+     * eagerly and lazily, after a few parses to warm up; and the
+     * time to run it, from launching "java Descartes" with and
+     * without --lazy to its exit, and whether the outputs matched.
+     *
+     * @param sourceFileName The program, or null to measure one
+     *                       generated by coldProgram()
+     * @param statements The statements in the generated program's
+     *                   cold region
+     * @param runs The parses and runs each way
+     * @param out Receives the table
+     *
+     * @throws DCSyntaxErrorException If the program has a syntax
+     *                                error
+     */
+    public static void benchmarkLazyBodies(String sourceFileName,
+                                           int statements, int runs,
+                                           PrintStream out)
+            throws IOException, DCSyntaxErrorException, InterruptedException
+    {
+        Path generated = null;
+        if (sourceFileName == null) {
+            generated = Files.createTempFile("descartes-cold", ".dc");
+            Files.write(generated, coldProgram(statements));
+            sourceFileName = generated.toString();
+        }
+
+        try {
+            byte[] source = Files.readAllBytes(Paths.get(sourceFileName));
+            for (int run = 0; run < 3; run++) {
+                parse(sourceFileName, source, false);
+                parse(sourceFileName, source, true);
+            }
+            long[] eagerParse = new long[runs];
+            long[] lazyParse = new long[runs];
+            for (int run = 0; run < runs; run++) {
+                long start = System.nanoTime();
+                parse(sourceFileName, source, false);
+                eagerParse[run] = System.nanoTime() - start;
+                start = System.nanoTime();
+                parse(sourceFileName, source, true);
+                lazyParse[run] = System.nanoTime() - start;
+            }
+
+            String java = Paths.get(System.getProperty("java.home"), "bin",
+                    "java").toString();
+            String classPath = System.getProperty("java.class.path");
+            List<String> eager = Arrays.asList(java, "-cp", classPath,
+                    "Descartes", sourceFileName);
+            List<String> lazy = Arrays.asList(java, "-cp", classPath,
+                    "Descartes", "--lazy", sourceFileName);
+            long[] eagerRun = new long[runs];
+            long[] lazyRun = new long[runs];
+            boolean same = true;
+            for (int run = 0; run < runs; run++) {
+                long start = System.nanoTime();
+                String eagerOutput = launch(eager);
+                eagerRun[run] = System.nanoTime() - start;
+                start = System.nanoTime();
+                String lazyOutput = launch(lazy);
+                lazyRun[run] = System.nanoTime() - start;
+                same &= eagerOutput.equals(lazyOutput);
+            }
+
+            out.println(String.format("%.1f MB, %d runs each way",
+                    source.length / 1e6, runs));
+            out.println(String.format("%-8s %10s %10s", "", "parse ms",
+                    "run ms"));
+            out.println(String.format("%-8s %10.0f %10.0f", "eager",
+                    median(eagerParse) / 1e6, median(eagerRun) / 1e6));
+            out.println(String.format("%-8s %10.0f %10.0f", "lazy",
+                    median(lazyParse) / 1e6, median(lazyRun) / 1e6));
+            out.println(String.format("%-8s %9.2fx %9.2fx", "speedup",
+                    median(eagerParse) / median(lazyParse),
+                    median(eagerRun) / median(lazyRun)));
+            if (!same) {
+                out.println("The output differed with --lazy.");
+            }
+        } finally {
+            if (generated != null) {
+                Files.deleteIfExists(generated);
+            }
+        }
+    }
+
+    /**
+     * Returns a program whose statements, but for a few, are in the
+     * body of an IF that never runs: assignments, with an IF and a
+     * LOOP nested every so often, about 36 bytes a statement.
+     *
+     * @param statements The statements in the cold region
+     */
+    private static byte[] coldProgram(int statements) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("N := 1;\nIF N < 0 THEN\n");
+        for (int i = 0; i < statements; i++) {
+            String x = "X" + (i % 500);
+            String y = "X" + ((i + 1) % 500);
+            if (i % 50 == 25) {
+                sb.append("    IF ").append(x).append(" > ").append(y)
+                        .append(" THEN PRINT ").append(x).append(" ELSE ")
+                        .append(y).append(" := 0 FI");
+            } else if (i % 50 == 49) {
+                sb.append("    LOOP L: ").append(x).append(" := ")
+                        .append(x).append(" - 1; IF ").append(x)
+                        .append(" < 0 THEN BREAK FI REPEAT");
+            } else {
+                sb.append("    ").append(x).append(" := (").append(y)
+                        .append(" + 3) * 2 - N / 7");
+            }
+            sb.append((i + 1 < statements) ? ";\n" : "\n");
+        }
+        sb.append("FI;\nPRINT N.\n");
+        return sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads a program's tokens and parses it, with lazy bodies or
+     * without, as "java Descartes" would.
+     */
+    private static ProgNode parse(String fileName, byte[] source,
+                                  boolean lazy)
+            throws IOException, DCSyntaxErrorException
+    {
+        TokenReader reader = new TokenReader(fileName, source, 0,
+                source.length, new IDTable());
+        if (lazy) {
+            reader.readAllTokens();
+            reader.setLazyBodies(true);
+        } else {
+            reader.readInParallel();
+        }
+        return ParallelParser.parseProg(reader, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Runs a pass over and over until a second's passes are within
+     * 3% as many as the last second's, or for at most 20 seconds.
+     */
+    private static void settle(Pass pass)
+            throws IOException, DCSyntaxErrorException
+    {
+        double last = 0.0;
+        for (int second = 0; second < 20; second++) {
+            double rate = rate(pass, 1000000000L);
+            if (second >= 2 && Math.abs(rate - last) < rate * 0.03) {
+                break;
+            }
+            last = rate;
+        }
+    }
+
+    /**
+     * Runs a pass over and over for at least the given time, and
+     * returns the passes per second.
+     */
+    private static double rate(Pass pass, long nanos)
+            throws IOException, DCSyntaxErrorException
+    {
+        long start = System.nanoTime();
+        long passes = 0;
+        long sum = 0;
+        long elapsed;
+        do {
+            sum += pass.run();
+            passes++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < nanos);
+        m_sink = sum;
+        return passes * 1e9 / elapsed;
+    }
+
+
+    /**
+     * Runs a command with no standard input, and returns its output
+     * and exit status, leaving out stack traces' frames, which
+     * differ from one engine or process to the next.
+     */
+    static String launch(List<String> command)
+            throws IOException, InterruptedException
+    {
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true).start();
+        process.getOutputStream().close();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        InputStream in = process.getInputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, count);
+        }
+        int status = process.waitFor();
+
+        StringBuilder output = new StringBuilder();
+        for (String line : bytes.toString().split("\n")) {
+            if (!line.startsWith("\tat ") && !line.startsWith("\t...")) {
+                output.append(line).append('\n');
+            }
+        }
+        return output.append("Exit status ").append(status).toString();
+    }
+
+    /**
+     * Returns the median of some times.
+     */
+    static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return (sorted.length % 2 == 1) ? sorted[middle] :
+                (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+
+}
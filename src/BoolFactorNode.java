@@ -22,8 +22,8 @@ public class BoolFactorNode {
     // Member Variables //
     //==================//
 
-    private ArithExprNode m_arithExpr;
-    private RelationOptionNode m_relationOption;
+    private final ArithExprNode m_arithExpr;
+    private final RelationOptionNode m_relationOption;
 
 
     //=========//
@@ -74,6 +74,20 @@ public class BoolFactorNode {
         return arithExprVal;
     }
 
+    /**
+     * Accessor for the arithmetic expression.
+     */
+    public ArithExprNode arithExpr() {
+        return m_arithExpr;
+    }
+
+    /**
+     * Accessor for the relation option.
+     */
+    public RelationOptionNode relationOption() {
+        return m_relationOption;
+    }
+
 
     //================//
     // Static Methods //
@@ -107,7 +121,8 @@ public class BoolFactorNode {
         ArithExprNode arithExpr = ArithExprNode.parseArithExpr(tokenReader);
         RelationOptionNode relationOption =
                 RelationOptionNode.parseRelationOption(tokenReader);
-        return new BoolFactorNode(arithExpr, relationOption);
+        return tokenReader.intern(
+                new BoolFactorNode(arithExpr, relationOption));
     }
 
 }
@@ -21,8 +21,8 @@ public class BoolFactorTailNode {
     // Member Variables //
     //==================//
 
-    private BoolFactorNode m_boolFactor;
-    private BoolFactorTailNode m_boolFactorTail;
+    private final BoolFactorNode m_boolFactor;
+    private final BoolFactorTailNode m_boolFactorTail;
 
 
     //=========//
@@ -87,6 +87,20 @@ public class BoolFactorTailNode {
         return assoc;
     }
 
+    /**
+     * Accessor for the bool-factor (null if the tail is empty).
+     */
+    public BoolFactorNode boolFactor() {
+        return m_boolFactor;
+    }
+
+    /**
+     * Accessor for the subsequent bool-factor-tail.
+     */
+    public BoolFactorTailNode boolFactorTail() {
+        return m_boolFactorTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -150,7 +164,7 @@ public class BoolFactorTailNode {
         }
 
 
-        return factorTail;
+        return tokenReader.intern(factorTail);
     }
 
 }
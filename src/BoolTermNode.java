@@ -21,8 +21,8 @@ public class BoolTermNode {
     // Member Variables //
     //==================//
 
-    private BoolFactorNode m_boolFactor;
-    private BoolFactorTailNode m_boolFactorTail;
+    private final BoolFactorNode m_boolFactor;
+    private final BoolFactorTailNode m_boolFactorTail;
 
 
     //=========//
@@ -69,6 +69,20 @@ public class BoolTermNode {
         return factorVal;
     }
 
+    /**
+     * Accessor for the bool-factor.
+     */
+    public BoolFactorNode boolFactor() {
+        return m_boolFactor;
+    }
+
+    /**
+     * Accessor for the bool-factor-tail.
+     */
+    public BoolFactorTailNode boolFactorTail() {
+        return m_boolFactorTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -104,7 +118,7 @@ public class BoolTermNode {
                 BoolFactorTailNode.parseBoolFactorTail(tokenReader);
 
 
-        return new BoolTermNode(factor, factorTail);
+        return tokenReader.intern(new BoolTermNode(factor, factorTail));
     }
 
 }
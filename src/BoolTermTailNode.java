@@ -21,8 +21,8 @@ public class BoolTermTailNode {
     // Member Variables //
     //==================//
 
-    private BoolTermNode m_boolTerm;
-    private BoolTermTailNode m_boolTermTail;
+    private final BoolTermNode m_boolTerm;
+    private final BoolTermTailNode m_boolTermTail;
 
 
     //=========//
@@ -86,6 +86,20 @@ public class BoolTermTailNode {
         return assoc;
     }
 
+    /**
+     * Accessor for the bool-term (null if the tail is empty).
+     */
+    public BoolTermNode boolTerm() {
+        return m_boolTerm;
+    }
+
+    /**
+     * Accessor for the subsequent bool-term-tail.
+     */
+    public BoolTermTailNode boolTermTail() {
+        return m_boolTermTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -147,7 +161,7 @@ public class BoolTermTailNode {
         }
 
 
-        return termTail;
+        return tokenReader.intern(termTail);
     }
 
 }
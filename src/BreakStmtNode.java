@@ -22,7 +22,7 @@ public class BreakStmtNode extends StmtNode {
     // Member Variables //
     //==================//
 
-    private IDOptionNode m_idOption;
+    private final IDOptionNode m_idOption;
 
 
     //=========//
@@ -34,8 +34,11 @@ public class BreakStmtNode extends StmtNode {
      * loop ID.
      *
      * @param idOption An IDOptionNode (which is possibly empty)
+     * @param start The offset in the source code where the
+     *              statement starts
      */
-    public BreakStmtNode(IDOptionNode idOption) {
+    public BreakStmtNode(IDOptionNode idOption, int start) {
+        super(start);
         m_idOption = idOption;
     }
 
@@ -46,12 +49,24 @@ public class BreakStmtNode extends StmtNode {
      * @param progState The current program state (symbol table,
      *                  etc.)
      *
+     * @throws DCRuntimeErrorException If there's no such loop to
+     *                                 stop
+     *
      * @see IDOptionNode#popLoopID(ProgState)
      */
-    public void execute(ProgState progState) {
+    public void execute(ProgState progState)
+            throws DCRuntimeErrorException
+    {
         m_idOption.popLoopID(progState);
     }
 
+    /**
+     * Accessor for the id-option naming the loop to break.
+     */
+    public IDOptionNode idOption() {
+        return m_idOption;
+    }
+
 
     //================//
     // Static Methods //
@@ -114,11 +129,14 @@ public class BreakStmtNode extends StmtNode {
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
+     * @param start The offset in the source code where the
+     *              statement starts
      *
      * @return The constructed BreakStmtNode that was parsed from
      *         the source code
      */
-    public static BreakStmtNode parseBreakStmt(TokenReader tokenReader)
+    public static BreakStmtNode parseBreakStmt(TokenReader tokenReader,
+                                               int start)
             throws IOException, DCSyntaxErrorException
     {
         TokenDescriptor token;
@@ -140,7 +158,7 @@ public class BreakStmtNode extends StmtNode {
         // Get the subsequent id-option.
         IDOptionNode idOption = IDOptionNode.parseIDOption(tokenReader);
 
-        return new BreakStmtNode(idOption);
+        return new BreakStmtNode(idOption, start);
     }
 
 }
@@ -0,0 +1,187 @@
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+
+/**
+ * Scans runs of source code bytes eight at a time.
+ *
+ * Each method loads a word of eight bytes and classifies all of
+ * them at once with carry-free arithmetic on the word ("SIMD
+ * within a register"), leaving the top bit of each byte set if the
+ * byte is in the class. The first byte out of the class is then
+ * found with numberOfTrailingZeros(), and bytes in the class are
+ * counted with bitCount(). A scalar loop finishes the last few
+ * bytes of the range.
+ *
+ * Setting the system property descartes.lexer.swar to false makes
+ * every method use its scalar loop alone, for comparison; "java
+ * Descartes scan --bench" measures whichever is in use.
+ */
+public class ByteScanner {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final boolean ENABLED =
+            !"false".equals(System.getProperty("descartes.lexer.swar"));
+
+    // Reads a little-endian long from any offset of a byte array,
+    // so the byte at the lowest offset is the word's lowest byte.
+    private static final VarHandle WORDS =
+            MethodHandles.byteArrayViewVarHandle(long[].class,
+                    ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns whether the methods scan eight bytes at a time, which
+     * they do unless descartes.lexer.swar is false.
+     */
+    static boolean swarEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Returns the offset of the first byte in [pos, end) that
+     * isn't a space or a tab, or end if there isn't one.
+     */
+    public static int skipBlanks(byte[] buf, int pos, int end) {
+        if (ENABLED) {
+            for (; pos + 8 <= end; pos += 8) {
+                long word = (long) WORDS.get(buf, pos);
+                long blanks = equal(word, ' ') | equal(word, '\t');
+                long others = ~blanks & HIGHS;
+                if (others != 0) {
+                    return pos + (Long.numberOfTrailingZeros(others) >>> 3);
+                }
+            }
+        }
+
+        while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the offset of the first byte in [pos, end) that
+     * isn't an ASCII letter or digit, or end if there isn't one.
+     */
+    public static int skipAlphanumerics(byte[] buf, int pos, int end) {
+        if (ENABLED) {
+            for (; pos + 8 <= end; pos += 8) {
+                long word = (long) WORDS.get(buf, pos);
+                long others = ~alphanumerics(word) & HIGHS;
+                if (others != 0) {
+                    return pos + (Long.numberOfTrailingZeros(others) >>> 3);
+                }
+            }
+        }
+
+        while (pos < end && isAlphanumeric(buf[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the number of newlines in [pos, end).
+     */
+    public static int countNewlines(byte[] buf, int pos, int end) {
+        int count = 0;
+        if (ENABLED) {
+            for (; pos + 8 <= end; pos += 8) {
+                long word = (long) WORDS.get(buf, pos);
+                count += Long.bitCount(equal(word, '\n'));
+            }
+        }
+
+        for (; pos < end; pos++) {
+            if (buf[pos] == '\n') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stores the offset following each newline in [pos, end) in
+     * 'offsets', starting at offsets[index], and returns the index
+     * following the last one stored.
+     */
+    public static int findNewlines(byte[] buf, int pos, int end,
+                                   int[] offsets, int index) {
+        if (ENABLED) {
+            for (; pos + 8 <= end; pos += 8) {
+                long word = (long) WORDS.get(buf, pos);
+                long newlines = equal(word, '\n');
+                while (newlines != 0) {
+                    int i = Long.numberOfTrailingZeros(newlines) >>> 3;
+                    offsets[index++] = pos + i + 1;
+                    newlines &= newlines - 1;
+                }
+            }
+        }
+
+        for (; pos < end; pos++) {
+            if (buf[pos] == '\n') {
+                offsets[index++] = pos + 1;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Sets the top bit of each byte of the word that equals ch,
+     * and clears every other bit.
+     */
+    private static long equal(long word, char ch) {
+        // A byte of x is zero exactly when adding 0x7F to its low
+        // seven bits doesn't carry into its top bit and that bit
+        // was clear too.
+        long x = word ^ (ONES * ch);
+        return ~(((x & LOWS) + LOWS) | x | LOWS);
+    }
+
+    /**
+     * Sets the top bit of each byte of the word that's an ASCII
+     * letter or digit, and clears every other bit.
+     */
+    private static long alphanumerics(long word) {
+        // Work on the low seven bits of each byte, so that adding
+        // less than 0x80 to a byte never carries into the next;
+        // bytes with their top bit set aren't ASCII and are
+        // excluded at the end. Setting 0x20 folds upper case into
+        // lower case without turning any other byte into a letter
+        // that wasn't one.
+        long ascii = word & LOWS;
+        long letters = inRange(ascii | (ONES * 0x20), 'a', 'z');
+        long digits = inRange(ascii, '0', '9');
+        return (letters | digits) & ~word & HIGHS;
+    }
+
+    /**
+     * Sets the top bit of each byte of the word, whose bytes must
+     * all be below 0x80, that's between lo and hi inclusive.
+     */
+    private static long inRange(long word, int lo, int hi) {
+        long atLeastLo = word + ONES * (0x80 - lo);
+        long aboveHi = word + ONES * (0x7F - hi);
+        return atLeastLo & ~aboveHi & HIGHS;
+    }
+
+    private static boolean isAlphanumeric(byte b) {
+        return (b >= '0' && b <= '9') ||
+                (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+}
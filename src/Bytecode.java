@@ -0,0 +1,636 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+
+/**
+ * A Descartes program compiled to code for a stack machine, as
+ * emitted by BytecodeCompiler and executed by BytecodeInterpreter.
+ *
+ * The code is an array of ints: each instruction is an opcode
+ * followed by its operands, if any. Operands are variable or loop
+ * symbols, indexes into the constant pool, or code addresses.
+ * Expressions leave their values on an operand stack of doubles;
+ * statements leave it as they found it.
+ *
+ * Each instruction is also mapped to the line of the source code
+ * it was compiled from.
+ *
+ * A program can be written out, conventionally to a .dcc file, and
+ * read back in, so that it can be run again without its source
+ * code. The written form is, in big-endian ints:
+ *
+ * <pre>
+ *     MAGIC
+ *     VERSION
+ *     the length of the rest, in bytes
+ *     the CRC-32 of the rest
+ *     the maximum stack depth
+ *     the code's length, and the code
+ *     the constant count, and each constant's bits as a long
+ *     the symbol count, and each symbol's name as a length and
+ *         that many Latin-1 bytes, in symbol order
+ *     the line map's length, and its pairs of an address and the
+ *         line of the code from that address on, in address order
+ * </pre>
+ *
+ * Reading a program checks all of it: the checksum first, so that
+ * a damaged file is rejected without being decoded, and then that
+ * the code is safe to execute.
+ */
+public class Bytecode {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /** Identifies a written program. */
+    public static final int MAGIC = 0x44434243;  // "DCBC"
+
+    /**
+     * The version of the instruction set, of what BytecodeCompiler
+     * emits and of the written form. It must be increased whenever
+     * any of them changes, so no program written before is read.
+     */
+    public static final int VERSION = 2;
+
+    // The bytes of MAGIC, VERSION, the length and the checksum.
+    private static final int HEADER_BYTES = 16;
+
+    /** Pushes constants[k]. Operand: k. */
+    public static final int PUSH = 0;
+    /** Pushes a variable's value. Operand: symbol. */
+    public static final int LOAD = 1;
+    /** Pops a value into a variable. Operand: symbol. */
+    public static final int STORE = 2;
+    /** Negates the top of the stack. */
+    public static final int NEG = 3;
+
+    // Binary operators pop their right operand, then their left,
+    // and push the result.
+    public static final int ADD = 4;
+    public static final int SUB = 5;
+    public static final int MUL = 6;
+    public static final int DIV = 7;
+    public static final int LT = 8;
+    public static final int LE = 9;
+    public static final int EQ = 10;
+    public static final int GE = 11;
+    public static final int GT = 12;
+    public static final int NE = 13;
+    public static final int AND = 14;
+    public static final int OR = 15;
+
+    /** Jumps. Operand: address. */
+    public static final int JUMP = 16;
+    /** Pops a value and jumps if it's zero. Operand: address. */
+    public static final int JFALSE = 17;
+    /** Jumps if the break ID is set. Operand: address. */
+    public static final int JBREAK = 18;
+
+    /** Prints a variable. Operand: symbol. */
+    public static final int PRINT = 19;
+    /** Reads a variable. Operand: symbol. */
+    public static final int READ = 20;
+
+    /** Pushes a loop ID onto the loop stack. Operand: symbol. */
+    public static final int PUSH_LOOP = 21;
+    /**
+     * Jumps if a loop ID is at the top of the loop stack. Operands:
+     * symbol, address.
+     */
+    public static final int REPEAT = 22;
+    /** Clears the break ID if it's a loop ID. Operand: symbol. */
+    public static final int END_LOOP = 23;
+    /**
+     * Pops the loop stack down to a loop ID, or once if the ID is
+     * IDTable.NONE, and sets the break ID. Operand: symbol.
+     */
+    public static final int BREAK = 24;
+
+    /** Ends the program. */
+    public static final int HALT = 25;
+
+    private static final String[] NAMES = {
+        "PUSH", "LOAD", "STORE", "NEG",
+        "ADD", "SUB", "MUL", "DIV",
+        "LT", "LE", "EQ", "GE", "GT", "NE", "AND", "OR",
+        "JUMP", "JFALSE", "JBREAK", "PRINT", "READ",
+        "PUSH_LOOP", "REPEAT", "END_LOOP", "BREAK", "HALT",
+    };
+
+    // The number of operands of each opcode.
+    private static final int[] OPERANDS = {
+        1, 1, 1, 0,
+        0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0,
+        1, 1, 1, 1, 1,
+        1, 2, 1, 1, 0,
+    };
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private int[] m_code;
+    private double[] m_constants;
+    private int m_maxStack;
+    private IDTable m_idTable;
+
+    // Pairs of an address and the source line of the code from
+    // there on, in address order.
+    private int[] m_lines;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a compiled program.
+     *
+     * @param code The instructions
+     * @param constants The constant pool
+     * @param maxStack The most values the operand stack holds
+     * @param idTable The table the code's symbols were interned in
+     * @param lines Pairs of an address and the source line of the
+     *              code from there on, in address order
+     */
+    public Bytecode(int[] code, double[] constants, int maxStack,
+                    IDTable idTable, int[] lines) {
+        m_code = code;
+        m_constants = constants;
+        m_maxStack = maxStack;
+        m_idTable = idTable;
+        m_lines = lines;
+    }
+
+    /**
+     * Accessor for the instructions.
+     */
+    public int[] code() {
+        return m_code;
+    }
+
+    /**
+     * Accessor for the constant pool.
+     */
+    public double[] constants() {
+        return m_constants;
+    }
+
+    /**
+     * Accessor for the most values the operand stack holds.
+     */
+    public int maxStack() {
+        return m_maxStack;
+    }
+
+    /**
+     * Accessor for the table the code's symbols were interned in.
+     */
+    public IDTable idTable() {
+        return m_idTable;
+    }
+
+    /**
+     * Returns the source line that the instruction at an address
+     * was compiled from, or 0 if it isn't known.
+     *
+     * @param pc The instruction's address
+     */
+    public int line(int pc) {
+        // The last pair that starts at or before pc.
+        int low = 0;
+        int high = m_lines.length / 2 - 1;
+        int line = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (m_lines[mid * 2] <= pc) {
+                line = m_lines[mid * 2 + 1];
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Writes the program to a stream, in the form read by read().
+     *
+     * @param stream The stream to write to
+     */
+    public void write(OutputStream stream)
+            throws IOException
+    {
+        // The header holds the length and checksum of what follows
+        // it, so that's put together first.
+        ByteArrayOutputStream body = new ByteArrayOutputStream(
+                m_code.length * 4 + m_constants.length * 8 + 64);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeInt(m_maxStack);
+
+        out.writeInt(m_code.length);
+        for (int word : m_code) {
+            out.writeInt(word);
+        }
+
+        out.writeInt(m_constants.length);
+        for (double constant : m_constants) {
+            out.writeLong(Double.doubleToRawLongBits(constant));
+        }
+
+        out.writeInt(m_idTable.size());
+        for (int symbol = 0; symbol < m_idTable.size(); symbol++) {
+            byte[] name = m_idTable.name(symbol)
+                    .getBytes(StandardCharsets.ISO_8859_1);
+            out.writeInt(name.length);
+            out.write(name);
+        }
+
+        out.writeInt(m_lines.length / 2);
+        for (int word : m_lines) {
+            out.writeInt(word);
+        }
+        out.flush();
+
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        DataOutputStream header = new DataOutputStream(stream);
+        header.writeInt(MAGIC);
+        header.writeInt(VERSION);
+        header.writeInt(bytes.length);
+        header.writeInt((int) crc.getValue());
+        header.write(bytes);
+        header.flush();
+    }
+
+    /**
+     * Returns a listing of the code, one instruction per line.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int pc = 0;
+        int line = 0;
+        while (pc < m_code.length) {
+            if (line(pc) != line) {
+                line = line(pc);
+                sb.append("line ").append(line).append(":\n");
+            }
+            int op = m_code[pc];
+            sb.append(String.format("%5d  %s", pc, NAMES[op]));
+            switch (op) {
+            case PUSH:
+                sb.append(' ').append(m_constants[m_code[pc + 1]]);
+                break;
+            case JUMP:
+            case JFALSE:
+            case JBREAK:
+                sb.append(' ').append(m_code[pc + 1]);
+                break;
+            case REPEAT:
+                sb.append(' ').append(name(m_code[pc + 1]))
+                        .append(' ').append(m_code[pc + 2]);
+                break;
+            default:
+                if (OPERANDS[op] > 0) {
+                    sb.append(' ').append(name(m_code[pc + 1]));
+                }
+                break;
+            }
+            sb.append('\n');
+            pc += 1 + OPERANDS[op];
+        }
+        return sb.toString();
+    }
+
+    private String name(int symbol) {
+        return (symbol == IDTable.NONE) ? "-" : m_idTable.name(symbol);
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Reads a program from a file written by write(). The file is
+     * memory-mapped rather than read.
+     *
+     * @param path The file
+     *
+     * @return The program
+     *
+     * @throws IOException If the file can't be read, or doesn't
+     *                     hold a valid program of this VERSION
+     */
+    public static Bytecode load(Path path)
+            throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ))
+        {
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            return read(buf);
+        }
+    }
+
+    /**
+     * Reads a program written by write(). Its symbols are interned
+     * in a new IDTable in the same order, so they keep their
+     * values.
+     *
+     * @param buf The written program, from its current position
+     *
+     * @return The program
+     *
+     * @throws IOException If 'buf' doesn't hold a valid program of
+     *                     this VERSION
+     */
+    public static Bytecode read(ByteBuffer buf)
+            throws IOException
+    {
+        if (buf.remaining() < HEADER_BYTES || buf.getInt() != MAGIC) {
+            throw new IOException("Not a compiled Descartes program.");
+        }
+        int version = buf.getInt();
+        if (version != VERSION) {
+            throw new IOException("Compiled for bytecode version " +
+                    version + ", not " + VERSION + ".");
+        }
+        int length = buf.getInt();
+        int checksum = buf.getInt();
+        if (length != buf.remaining()) {
+            throw damaged("it has been truncated or extended");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buf.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw damaged("its checksum doesn't match");
+        }
+
+        try {
+            int maxStack = buf.getInt();
+
+            int[] code = new int[count(buf, 4)];
+            buf.asIntBuffer().get(code);
+            buf.position(buf.position() + code.length * 4);
+
+            double[] constants = new double[count(buf, 8)];
+            buf.asDoubleBuffer().get(constants);
+            buf.position(buf.position() + constants.length * 8);
+
+            IDTable idTable = new IDTable();
+            int symbolCount = count(buf, 4);
+            for (int i = 0; i < symbolCount; i++) {
+                byte[] name = new byte[count(buf, 1)];
+                buf.get(name);
+                String id = new String(name, StandardCharsets.ISO_8859_1);
+                if (idTable.intern(id) != i) {
+                    throw damaged("symbol " + id + " is repeated");
+                }
+            }
+
+            int[] lines = new int[count(buf, 8) * 2];
+            buf.asIntBuffer().get(lines);
+            buf.position(buf.position() + lines.length * 4);
+
+            if (buf.hasRemaining()) {
+                throw damaged("it has data past its end");
+            }
+            verify(code, constants.length, symbolCount, maxStack);
+            verifyLines(lines, code.length);
+
+            return new Bytecode(code, constants, maxStack, idTable, lines);
+        } catch (BufferUnderflowException e) {
+            throw damaged("it ends early");
+        }
+    }
+
+    /**
+     * Checks that code is safe to execute: that each instruction is
+     * whole, with its operands in range; that jumps land on
+     * instructions; that execution can't run off the end; and that
+     * every instruction is reached with the same operand stack
+     * depth, whichever way it's reached, with enough values on the
+     * stack for it and no more than maxStack after it.
+     */
+    private static void verify(int[] code, int constantCount,
+                               int symbolCount, int maxStack)
+            throws IOException
+    {
+        if (code.length == 0) {
+            throw damaged("it has no code");
+        }
+        if (maxStack < 0 || maxStack > code.length) {
+            throw damaged("its stack depth is " + maxStack);
+        }
+
+        // Find where the instructions start, and check their
+        // operands.
+        boolean[] starts = new boolean[code.length];
+        int pc = 0;
+        while (pc < code.length) {
+            int op = code[pc];
+            if (op < 0 || op > HALT) {
+                throw badCode(pc, "unknown opcode " + op);
+            }
+            if (pc + OPERANDS[op] >= code.length) {
+                throw badCode(pc, "missing operands");
+            }
+            starts[pc] = true;
+
+            switch (op) {
+            case PUSH:
+                checkOperand(pc, code[pc + 1], 0, constantCount);
+                break;
+            case LOAD:
+            case STORE:
+            case PRINT:
+            case READ:
+            case PUSH_LOOP:
+            case END_LOOP:
+                checkOperand(pc, code[pc + 1], 0, symbolCount);
+                break;
+            case JUMP:
+            case JFALSE:
+            case JBREAK:
+                checkOperand(pc, code[pc + 1], 0, code.length);
+                break;
+            case REPEAT:
+                checkOperand(pc, code[pc + 1], 0, symbolCount);
+                checkOperand(pc, code[pc + 2], 0, code.length);
+                break;
+            case BREAK:
+                checkOperand(pc, code[pc + 1], IDTable.NONE, symbolCount);
+                break;
+            default:
+                break;
+            }
+            pc += 1 + OPERANDS[op];
+        }
+
+        // Follow every path through the code, recording the stack
+        // depth before each instruction, plus one so that zero
+        // means it hasn't been reached. Jump targets must be the
+        // start of an instruction.
+        int[] depths = new int[code.length];
+        int[] work = new int[16];
+        int workCount = 0;
+        depths[0] = 1;
+        work[workCount++] = 0;
+        while (workCount > 0) {
+            pc = work[--workCount];
+            int op = code[pc];
+            int depth = depths[pc] - 1;
+
+            int pops;
+            int pushes;
+            switch (op) {
+            case PUSH:
+            case LOAD:
+                pops = 0;
+                pushes = 1;
+                break;
+            case STORE:
+            case JFALSE:
+                pops = 1;
+                pushes = 0;
+                break;
+            case NEG:
+                pops = 1;
+                pushes = 1;
+                break;
+            default:
+                if (op >= ADD && op <= OR) {
+                    pops = 2;
+                    pushes = 1;
+                } else {
+                    pops = 0;
+                    pushes = 0;
+                }
+                break;
+            }
+            if (depth < pops) {
+                throw badCode(pc, "operand stack underflow");
+            }
+            depth += pushes - pops;
+            if (depth > maxStack) {
+                throw badCode(pc, "operand stack overflow");
+            }
+
+            // The addresses execution can go on to.
+            int next = pc + 1 + OPERANDS[op];
+            int target = -1;
+            switch (op) {
+            case JUMP:
+                target = code[pc + 1];
+                next = -1;
+                break;
+            case JFALSE:
+            case JBREAK:
+                target = code[pc + 1];
+                break;
+            case REPEAT:
+                target = code[pc + 2];
+                break;
+            case HALT:
+                next = -1;
+                break;
+            default:
+                break;
+            }
+
+            for (int i = 0; i < 2; i++) {
+                int to = (i == 0) ? next : target;
+                if (to == -1) {
+                    continue;
+                }
+                if (to >= code.length || !starts[to]) {
+                    throw badCode(pc, (i == 0) ?
+                            "runs off the end" : "bad jump target " + to);
+                }
+                if (depths[to] == 0) {
+                    depths[to] = depth + 1;
+                    if (workCount == work.length) {
+                        work = Arrays.copyOf(work, workCount * 2);
+                    }
+                    work[workCount++] = to;
+                } else if (depths[to] != depth + 1) {
+                    throw badCode(to, "inconsistent stack depth");
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the addresses in a line map increase and are in
+     * the code, and that the lines are positive.
+     */
+    private static void verifyLines(int[] lines, int codeLength)
+            throws IOException
+    {
+        for (int i = 0; i < lines.length; i += 2) {
+            if (lines[i] < 0 || lines[i] >= codeLength ||
+                    (i > 0 && lines[i] <= lines[i - 2]) ||
+                    lines[i + 1] <= 0)
+            {
+                throw damaged("its line map is out of order");
+            }
+        }
+    }
+
+    private static void checkOperand(int pc, int operand, int min,
+                                     int limit)
+            throws IOException
+    {
+        if (operand < min || operand >= limit) {
+            throw badCode(pc, "operand " + operand + " out of range");
+        }
+    }
+
+    private static IOException damaged(String reason) {
+        return new IOException("Damaged compiled program: " + reason + ".");
+    }
+
+    private static IOException badCode(int pc, String reason) {
+        return damaged("at address " + pc + ", " + reason);
+    }
+
+    /**
+     * Reads the count of a run of items, each 'size' bytes long,
+     * that must fit in what's left of the buffer.
+     */
+    private static int count(ByteBuffer buf, int size)
+            throws IOException
+    {
+        int count = buf.getInt();
+        if (count < 0 || count > buf.remaining() / size) {
+            throw damaged("a count of " + count + " is out of range");
+        }
+        return count;
+    }
+    /**
+     * Returns the number of operands that follow an opcode.
+     */
+    public static int operandCount(int op) {
+        return OPERANDS[op];
+    }
+
+}
@@ -0,0 +1,387 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Compiles a Descartes program to Bytecode in a single pass, as
+ * LL1Parser recognizes it, without building a parse tree.
+ *
+ * Expressions are emitted in postfix order as their productions
+ * are reduced; an operator's tail is reduced after its operand, so
+ * tails group right to left exactly as the tree-walking interpreter
+ * evaluates them. Statements that transfer control emit their
+ * jumps when the parser matches the keyword at which the target
+ * becomes known, or leave a placeholder on the patch stack, to be
+ * filled in when it does:
+ *
+ * <pre>
+ *     IF e THEN s FI          e; JFALSE L1; s; L1:
+ *     IF e THEN s ELSE t FI   e; JFALSE L1; s; JUMP L2; L1: t; L2:
+ *     LOOP x: s REPEAT        PUSH_LOOP x; L1: s; REPEAT x L1;
+ *                             END_LOOP x
+ *     s1; s2                  s1; JBREAK L1; s2; L1:
+ * </pre>
+ *
+ * As in the tree-walking interpreter, a BREAK pops the loop stack
+ * and sets the break ID, and every statement after the first of a
+ * statement list runs only if no break ID is set, so breaks behave
+ * identically however they're nested.
+ *
+ * Each instruction is mapped to the line of the last token matched
+ * before it was emitted.
+ */
+public class BytecodeCompiler implements LL1Parser.Actions {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // The productions that emit code, numbered as in
+    // LL1Parser.GRAMMAR.
+    private static final int PROG = 0;
+    private static final int STMT_TAIL = 2;
+    private static final int IF_STMT = 11;
+    private static final int ELSE_PART = 12;
+    private static final int EMPTY_ELSE_PART = 13;
+    private static final int LOOP_STMT = 14;
+    private static final int BREAK_STMT = 15;
+    private static final int ID_OPTION = 16;
+    private static final int ASSIGN_STMT = 18;
+    private static final int PRINT_STMT = 19;
+    private static final int READ_STMT = 20;
+    private static final int ID_LIST_TAIL = 21;
+    private static final int OR = 24;
+    private static final int AND = 27;
+    private static final int LESS_THAN = 30;
+    private static final int NOT_EQUAL = 35;
+    private static final int ADD = 38;
+    private static final int SUBTRACT = 39;
+    private static final int MULTIPLY = 42;
+    private static final int DIVIDE = 43;
+    private static final int NEGATE = 45;
+    private static final int ID_ATOM = 48;
+    private static final int CONST_ATOM = 49;
+
+    // The opcodes of the relations, in production order.
+    private static final int[] RELATIONS = {
+        Bytecode.LT, Bytecode.LE, Bytecode.EQ,
+        Bytecode.GE, Bytecode.GT, Bytecode.NE,
+    };
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private int[] m_code;
+    private int m_size;
+
+    private double[] m_constants;
+    private int m_constantCount;
+
+    // Addresses of jump operands still to be filled in, and of
+    // loop bodies, innermost last.
+    private int[] m_patches;
+    private int m_patchCount;
+
+    // The operand stack depth after the code emitted so far, and
+    // its greatest value.
+    private int m_stack;
+    private int m_maxStack;
+
+    // The opcode for the identifiers of the PRINT or READ
+    // statement being compiled.
+    private int m_ioOp;
+
+    // The identifier of the LOOP statement whose colon is next.
+    private int m_loopSymbol;
+
+    // The offset of the last token matched, and pairs of an address
+    // and the offset matched before the code from there on.
+    private int m_offset;
+    private int[] m_offsets;
+    private int m_offsetCount;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a compiler with no code emitted.
+     */
+    public BytecodeCompiler() {
+        m_code = new int[256];
+        m_size = 0;
+        m_constants = new double[16];
+        m_constantCount = 0;
+        m_patches = new int[16];
+        m_patchCount = 0;
+        m_ioOp = Bytecode.PRINT;
+        m_loopSymbol = IDTable.NONE;
+        m_stack = 0;
+        m_maxStack = 0;
+        m_offset = 0;
+        m_offsets = new int[64];
+        m_offsetCount = 0;
+    }
+
+    /**
+     * Emits the code for a terminal where it fixes a jump target
+     * or gives an operand.
+     */
+    @Override
+    public void match(int production, int position, TokenDescriptor token) {
+        m_offset = token.getStart();
+
+        switch (production) {
+        case STMT_TAIL:
+            // SEMICOLON: skip the rest of the list after a break.
+            pushPatch(emitJump(Bytecode.JBREAK));
+            break;
+        case IF_STMT:
+            if (token.getCode() == TokenCode.T_THEN) {
+                pushPatch(emitJump(Bytecode.JFALSE));
+            }
+            break;
+        case ELSE_PART:
+            if (token.getCode() == TokenCode.T_ELSE) {
+                int jump = emitJump(Bytecode.JUMP);
+                patch(popPatch());
+                pushPatch(jump);
+            }
+            break;
+        case LOOP_STMT:
+            if (token.getCode() == TokenCode.T_COLON) {
+                // The loop's identifier is the token before.
+                emit(Bytecode.PUSH_LOOP, m_loopSymbol);
+                pushPatch(m_size);
+            } else if (token.getCode() == TokenCode.T_ID) {
+                m_loopSymbol = token.getSymbol();
+            }
+            break;
+        case PRINT_STMT:
+        case READ_STMT:
+            // The keyword sets the operation; the first identifier
+            // is emitted as the id-list-tail's are.
+            if (token.getCode() != TokenCode.T_ID) {
+                m_ioOp = (production == PRINT_STMT) ?
+                        Bytecode.PRINT : Bytecode.READ;
+            } else {
+                emit(m_ioOp, token.getSymbol());
+            }
+            break;
+        case ID_LIST_TAIL:
+            if (token.getCode() == TokenCode.T_ID) {
+                emit(m_ioOp, token.getSymbol());
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Emits the code for a production once it has been parsed, and
+     * returns the identifier token of an id-option.
+     */
+    @Override
+    public Object reduce(int production, Object[] values, int base,
+                         int start) {
+        switch (production) {
+        case PROG:
+            emit(Bytecode.HALT);
+            break;
+        case STMT_TAIL:
+        case ELSE_PART:
+        case EMPTY_ELSE_PART:
+            patch(popPatch());
+            break;
+        case LOOP_STMT: {
+            int symbol = ((TokenDescriptor) values[base + 1]).getSymbol();
+            emit(Bytecode.REPEAT, symbol);
+            emitOperand(popPatch());
+            emit(Bytecode.END_LOOP, symbol);
+            break;
+        }
+        case BREAK_STMT: {
+            TokenDescriptor id = (TokenDescriptor) values[base + 1];
+            emit(Bytecode.BREAK,
+                    (id == null) ? IDTable.NONE : id.getSymbol());
+            break;
+        }
+        case ID_OPTION:
+            return values[base];
+        case ASSIGN_STMT:
+            emit(Bytecode.STORE,
+                    ((TokenDescriptor) values[base]).getSymbol());
+            break;
+        case OR:
+            emitBinary(Bytecode.OR);
+            break;
+        case AND:
+            emitBinary(Bytecode.AND);
+            break;
+        case ADD:
+            emitBinary(Bytecode.ADD);
+            break;
+        case SUBTRACT:
+            emitBinary(Bytecode.SUB);
+            break;
+        case MULTIPLY:
+            emitBinary(Bytecode.MUL);
+            break;
+        case DIVIDE:
+            emitBinary(Bytecode.DIV);
+            break;
+        case NEGATE:
+            emit(Bytecode.NEG);
+            break;
+        case ID_ATOM:
+            emit(Bytecode.LOAD,
+                    ((TokenDescriptor) values[base]).getSymbol());
+            break;
+        case CONST_ATOM:
+            emit(Bytecode.PUSH,
+                    constant(((TokenDescriptor) values[base]).getValue()));
+            break;
+        default:
+            if (production >= LESS_THAN && production <= NOT_EQUAL) {
+                emitBinary(RELATIONS[production - LESS_THAN]);
+            }
+            break;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the code emitted so far, which is a whole program
+     * once the parser has finished.
+     *
+     * @param idTable The table the program's symbols were
+     *                interned in
+     * @param lineIndex Maps the offsets of the tokens matched to
+     *                  lines
+     */
+    public Bytecode bytecode(IDTable idTable, LineIndex lineIndex) {
+        // Keep only the addresses where the line changes.
+        int[] lines = new int[m_offsetCount];
+        int count = 0;
+        for (int i = 0; i < m_offsetCount; i += 2) {
+            int line = lineIndex.line(m_offsets[i + 1]);
+            if (count == 0 || lines[count - 1] != line) {
+                lines[count++] = m_offsets[i];
+                lines[count++] = line;
+            }
+        }
+
+        return new Bytecode(Arrays.copyOf(m_code, m_size),
+                Arrays.copyOf(m_constants, m_constantCount),
+                m_maxStack, idTable, Arrays.copyOf(lines, count));
+    }
+
+    private void emit(int op) {
+        if (m_offsetCount == 0 || m_offsets[m_offsetCount - 1] != m_offset) {
+            if (m_offsetCount == m_offsets.length) {
+                m_offsets = Arrays.copyOf(m_offsets, m_offsetCount * 2);
+            }
+            m_offsets[m_offsetCount++] = m_size;
+            m_offsets[m_offsetCount++] = m_offset;
+        }
+        emitOperand(op);
+
+        switch (op) {
+        case Bytecode.PUSH:
+        case Bytecode.LOAD:
+            m_stack++;
+            m_maxStack = Math.max(m_maxStack, m_stack);
+            break;
+        case Bytecode.STORE:
+        case Bytecode.JFALSE:
+            m_stack--;
+            break;
+        default:
+            break;
+        }
+    }
+
+    private void emit(int op, int operand) {
+        emit(op);
+        emitOperand(operand);
+    }
+
+    private void emitBinary(int op) {
+        emit(op);
+        m_stack--;
+    }
+
+    /**
+     * Emits a jump with a placeholder target, and returns the
+     * address of the placeholder.
+     */
+    private int emitJump(int op) {
+        emit(op, -1);
+        return m_size - 1;
+    }
+
+    private void emitOperand(int word) {
+        if (m_size == m_code.length) {
+            m_code = Arrays.copyOf(m_code, m_size * 2);
+        }
+        m_code[m_size++] = word;
+    }
+
+    /**
+     * Points the jump whose operand is at 'address' to the next
+     * instruction emitted.
+     */
+    private void patch(int address) {
+        m_code[address] = m_size;
+    }
+
+    private void pushPatch(int address) {
+        if (m_patchCount == m_patches.length) {
+            m_patches = Arrays.copyOf(m_patches, m_patchCount * 2);
+        }
+        m_patches[m_patchCount++] = address;
+    }
+
+    private int popPatch() {
+        return m_patches[--m_patchCount];
+    }
+
+    /**
+     * Adds a value to the constant pool and returns its index.
+     */
+    private int constant(double value) {
+        if (m_constantCount == m_constants.length) {
+            m_constants = Arrays.copyOf(m_constants, m_constantCount * 2);
+        }
+        m_constants[m_constantCount] = value;
+        return m_constantCount++;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Reads source code tokens from tokenReader and compiles them
+     * into, and returns, a program's bytecode.
+     *
+     * @param tokenReader The TokenReader from which source code
+     *                    tokens will be read
+     *
+     * @return The compiled program
+     */
+    public static Bytecode compile(TokenReader tokenReader)
+            throws IOException, DCSyntaxErrorException
+    {
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        new LL1Parser(tokenReader, compiler).parse();
+        return compiler.bytecode(tokenReader.idTable(),
+                tokenReader.lineIndex());
+    }
+
+}
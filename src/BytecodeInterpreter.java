@@ -0,0 +1,192 @@
+/**
+ * Executes Bytecode.
+ *
+ * Variables live in the program state's symbol table and loops on
+ * its loop stack, just as they do when the parse tree is walked, so
+ * the table holds the same values when the program ends or stops
+ * with a runtime error.
+ */
+public class BytecodeInterpreter {
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Executes a program.
+     *
+     * @param bytecode The program to execute
+     * @param progState The program state; I/O goes through it and
+     *                  its symbol table holds the variables
+     *
+     * @throws DCRuntimeErrorException If the program reads an
+     *                                 undefined variable, divides
+     *                                 by zero or breaks out of a
+     *                                 loop it isn't in
+     */
+    public static void execute(Bytecode bytecode, ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        int[] code = bytecode.code();
+        double[] constants = bytecode.constants();
+        double[] stack = new double[bytecode.maxStack()];
+        SymbolTable symTab = progState.symTab();
+
+        int sp = 0;
+        int pc = 0;
+        while (true) {
+            switch (code[pc]) {
+            case Bytecode.PUSH:
+                stack[sp++] = constants[code[pc + 1]];
+                pc += 2;
+                break;
+            case Bytecode.LOAD: {
+                int symbol = code[pc + 1];
+                if (!symTab.isDefined(symbol)) {
+                    throw new DCRuntimeErrorException(
+                            "Unrecognized variable name: " +
+                            symTab.idTable().name(symbol)
+                    );
+                }
+                stack[sp++] = symTab.get(symbol);
+                pc += 2;
+                break;
+            }
+            case Bytecode.STORE:
+                symTab.set(code[pc + 1], stack[--sp]);
+                pc += 2;
+                break;
+            case Bytecode.NEG:
+                stack[sp - 1] = -stack[sp - 1];
+                pc++;
+                break;
+            case Bytecode.ADD:
+                sp--;
+                stack[sp - 1] += stack[sp];
+                pc++;
+                break;
+            case Bytecode.SUB:
+                sp--;
+                stack[sp - 1] -= stack[sp];
+                pc++;
+                break;
+            case Bytecode.MUL:
+                sp--;
+                stack[sp - 1] *= stack[sp];
+                pc++;
+                break;
+            case Bytecode.DIV:
+                sp--;
+                if (stack[sp] == 0.0) {
+                    throw new DCRuntimeErrorException("Division by zero.");
+                }
+                stack[sp - 1] /= stack[sp];
+                pc++;
+                break;
+            case Bytecode.LT:
+                sp--;
+                stack[sp - 1] = (stack[sp - 1] < stack[sp]) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.LE:
+                sp--;
+                stack[sp - 1] = (stack[sp - 1] <= stack[sp]) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.EQ:
+                sp--;
+                stack[sp - 1] = (stack[sp - 1] == stack[sp]) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.GE:
+                sp--;
+                stack[sp - 1] = (stack[sp - 1] >= stack[sp]) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.GT:
+                sp--;
+                stack[sp - 1] = (stack[sp - 1] > stack[sp]) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.NE:
+                sp--;
+                stack[sp - 1] = (stack[sp - 1] != stack[sp]) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.AND:
+                sp--;
+                stack[sp - 1] =
+                        (stack[sp - 1] != 0.0 && stack[sp] != 0.0) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.OR:
+                sp--;
+                stack[sp - 1] =
+                        (stack[sp - 1] != 0.0 || stack[sp] != 0.0) ? 1 : 0;
+                pc++;
+                break;
+            case Bytecode.JUMP:
+                pc = code[pc + 1];
+                break;
+            case Bytecode.JFALSE:
+                pc = (stack[--sp] == 0.0) ? code[pc + 1] : pc + 2;
+                break;
+            case Bytecode.JBREAK:
+                pc = (progState.breakID() != IDTable.NONE) ?
+                        code[pc + 1] : pc + 2;
+                break;
+            case Bytecode.PRINT:
+                progState.printVar(code[pc + 1]);
+                pc += 2;
+                break;
+            case Bytecode.READ:
+                progState.readVar(code[pc + 1]);
+                pc += 2;
+                break;
+            case Bytecode.PUSH_LOOP:
+                progState.pushLoopID(code[pc + 1]);
+                pc += 2;
+                break;
+            case Bytecode.REPEAT:
+                progState.poll();
+                pc = (progState.topLoopID() == code[pc + 1]) ?
+                        code[pc + 2] : pc + 3;
+                break;
+            case Bytecode.END_LOOP:
+                if (progState.breakID() == code[pc + 1]) {
+                    progState.setBreakID(IDTable.NONE);
+                }
+                pc += 2;
+                break;
+            case Bytecode.BREAK:
+                breakLoop(code[pc + 1], progState);
+                pc += 2;
+                break;
+            default:
+                assert (code[pc] == Bytecode.HALT);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Pops the loop stack down to a loop, or once if symbol is
+     * IDTable.NONE, and sets the break ID to the last loop popped.
+     *
+     * @see IDOptionNode#popLoopID(ProgState)
+     */
+    private static void breakLoop(int symbol, ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        int id;
+        if (symbol == IDTable.NONE) {
+            id = progState.popLoopID();
+        } else {
+            do {
+                id = progState.popLoopID();
+            } while (id != symbol);
+        }
+        progState.setBreakID(id);
+    }
+
+}
@@ -0,0 +1,201 @@
+/**
+ * A Descartes program's syntax tree stored as parallel arrays,
+ * for programs too large to hold as a graph of node objects.
+ *
+ * A node is an index into the arrays: its kind, its first and
+ * second children, also indexes, and an operand, which is a
+ * variable or loop symbol, or an index into the constant pool.
+ * Nodes for empty tails, empty ELSE parts and the like aren't
+ * stored at all, and a missing child is NONE. Built by
+ * CompactTreeBuilder, a node costs 13 bytes.
+ *
+ * <pre>
+ *     kind      first       second          operand
+ *     LIST      statement   next LIST       -
+ *     ASSIGN    expression  -               variable
+ *     PRINT     -           next PRINT      variable
+ *     READ      -           next READ       variable
+ *     IF        condition   THEN list       ELSE list
+ *     LOOP      body list   -               loop
+ *     BREAK     -           -               loop, or IDTable.NONE
+ *     CONST     -           -               constant
+ *     VAR       -           -               variable
+ *     NEG       operand     -               -
+ *     ADD...OR  left        right           -
+ * </pre>
+ *
+ * A statement list is a chain of LIST nodes; an empty statement
+ * leaves its LIST node's statement NONE, but only the first of a
+ * list is kept. Binary operators group right to left, as the tails
+ * in the object tree do, and evaluate their left operand first.
+ *
+ * @see CompactTreeInterpreter
+ */
+public class CompactTree {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /** The index of no node. */
+    public static final int NONE = -1;
+
+    public static final byte LIST = 0;
+    public static final byte ASSIGN = 1;
+    public static final byte PRINT = 2;
+    public static final byte READ = 3;
+    public static final byte IF = 4;
+    public static final byte LOOP = 5;
+    public static final byte BREAK = 6;
+    public static final byte CONST = 7;
+    public static final byte VAR = 8;
+    public static final byte NEG = 9;
+
+    // Binary operators.
+    public static final byte ADD = 10;
+    public static final byte SUB = 11;
+    public static final byte MUL = 12;
+    public static final byte DIV = 13;
+    public static final byte LT = 14;
+    public static final byte LE = 15;
+    public static final byte EQ = 16;
+    public static final byte GE = 17;
+    public static final byte GT = 18;
+    public static final byte NE = 19;
+    public static final byte AND = 20;
+    public static final byte OR = 21;
+
+    // The bytes of an array's header, on a 64-bit JVM with
+    // compressed pointers.
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private byte[] m_kinds;
+    private int[] m_first;
+    private int[] m_second;
+    private int[] m_operands;
+    private double[] m_constants;
+
+    // The program's statement list.
+    private int m_root;
+
+    private IDTable m_idTable;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a tree from its arrays, which all hold one entry
+     * per node.
+     *
+     * @param kinds The kind of each node
+     * @param first The first child of each node
+     * @param second The second child of each node
+     * @param operands The operand of each node
+     * @param constants The constant pool
+     * @param root The program's statement list
+     * @param idTable The table the symbols were interned in
+     */
+    public CompactTree(byte[] kinds, int[] first, int[] second,
+                       int[] operands, double[] constants, int root,
+                       IDTable idTable) {
+        m_kinds = kinds;
+        m_first = first;
+        m_second = second;
+        m_operands = operands;
+        m_constants = constants;
+        m_root = root;
+        m_idTable = idTable;
+    }
+
+    /**
+     * Returns the kind of a node.
+     */
+    public byte kind(int node) {
+        return m_kinds[node];
+    }
+
+    /**
+     * Returns the first child of a node.
+     */
+    public int first(int node) {
+        return m_first[node];
+    }
+
+    /**
+     * Returns the second child of a node.
+     */
+    public int second(int node) {
+        return m_second[node];
+    }
+
+    /**
+     * Returns the operand of a node.
+     */
+    public int operand(int node) {
+        return m_operands[node];
+    }
+
+    /**
+     * Returns a constant from the pool.
+     */
+    public double constant(int index) {
+        return m_constants[index];
+    }
+
+    /**
+     * Accessor for the program's statement list.
+     */
+    public int root() {
+        return m_root;
+    }
+
+    /**
+     * Accessor for the table the symbols were interned in.
+     */
+    public IDTable idTable() {
+        return m_idTable;
+    }
+
+    /**
+     * Returns the number of nodes.
+     */
+    public int nodeCount() {
+        return m_kinds.length;
+    }
+
+    /**
+     * Returns the number of bytes the nodes and constant pool
+     * take up.
+     */
+    public long bytes() {
+        return arrayBytes(m_kinds.length, 1) +
+                arrayBytes(m_first.length, 4) +
+                arrayBytes(m_second.length, 4) +
+                arrayBytes(m_operands.length, 4) +
+                arrayBytes(m_constants.length, 8);
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns the number of bytes an array takes up, rounded up to
+     * the JVM's alignment of 8.
+     *
+     * @param length The array's length
+     * @param elementBytes The size of each element
+     */
+    public static long arrayBytes(int length, int elementBytes) {
+        return (ARRAY_HEADER_BYTES + (long) length * elementBytes + 7) & ~7L;
+    }
+
+}
@@ -0,0 +1,340 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Builds a Descartes program's CompactTree as LL1Parser recognizes
+ * it, without building the tree of node objects first.
+ *
+ * The parser's values are mirrored by a stack of ints: the node
+ * each nonterminal was reduced to, or for an id-option its symbol.
+ * A tail is reduced, after the tails that follow it, to a binary
+ * node whose left operand is still NONE, and the production that
+ * the tail follows fills that in; so a - b - c is built as
+ * a - (b - c), just as the object tree evaluates it.
+ */
+public class CompactTreeBuilder implements LL1Parser.Actions {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // The productions, numbered as in LL1Parser.GRAMMAR.
+    private static final int PROG = 0;
+    private static final int STMT_LIST = 1;
+    private static final int STMT_TAIL = 2;
+    private static final int EMPTY_STMT = 10;
+    private static final int IF_STMT = 11;
+    private static final int ELSE_PART = 12;
+    private static final int LOOP_STMT = 14;
+    private static final int BREAK_STMT = 15;
+    private static final int ID_OPTION = 16;
+    private static final int EMPTY_ID_OPTION = 17;
+    private static final int ASSIGN_STMT = 18;
+    private static final int PRINT_STMT = 19;
+    private static final int READ_STMT = 20;
+    private static final int ID_LIST_TAIL = 21;
+    private static final int EXPR = 23;
+    private static final int OR = 24;
+    private static final int BOOL_TERM = 26;
+    private static final int AND = 27;
+    private static final int BOOL_FACTOR = 29;
+    private static final int LESS_THAN = 30;
+    private static final int NOT_EQUAL = 35;
+    private static final int ARITH_EXPR = 37;
+    private static final int ADD = 38;
+    private static final int SUBTRACT = 39;
+    private static final int TERM = 41;
+    private static final int MULTIPLY = 42;
+    private static final int DIVIDE = 43;
+    private static final int NEGATE = 45;
+    private static final int ATOM_FACTOR = 46;
+    private static final int PAREN_FACTOR = 47;
+    private static final int ID_ATOM = 48;
+    private static final int CONST_ATOM = 49;
+
+    // The node kinds of the relations, in production order.
+    private static final byte[] RELATIONS = {
+        CompactTree.LT, CompactTree.LE, CompactTree.EQ,
+        CompactTree.GE, CompactTree.GT, CompactTree.NE,
+    };
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private byte[] m_kinds;
+    private int[] m_first;
+    private int[] m_second;
+    private int[] m_operands;
+    private int m_nodeCount;
+
+    private double[] m_constants;
+    private int m_constantCount;
+
+    // Mirrors the parser's value stack.
+    private int[] m_values;
+    private int m_valueCount;
+
+    // The node kind for the identifiers of the PRINT or READ
+    // statement being built.
+    private byte m_ioKind;
+
+    // The program's statement list, once it has been parsed.
+    private int m_root;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a builder with no nodes built.
+     */
+    public CompactTreeBuilder() {
+        m_kinds = new byte[256];
+        m_first = new int[256];
+        m_second = new int[256];
+        m_operands = new int[256];
+        m_nodeCount = 0;
+        m_constants = new double[16];
+        m_constantCount = 0;
+        m_values = new int[64];
+        m_valueCount = 0;
+        m_ioKind = CompactTree.PRINT;
+        m_root = CompactTree.NONE;
+    }
+
+    /**
+     * Notes which statement an identifier list belongs to, and
+     * gives the terminal a place on the value stack.
+     */
+    @Override
+    public void match(int production, int position, TokenDescriptor token) {
+        if (token.getCode() == TokenCode.T_PRINT) {
+            m_ioKind = CompactTree.PRINT;
+        } else if (token.getCode() == TokenCode.T_READ) {
+            m_ioKind = CompactTree.READ;
+        }
+        pushValue(CompactTree.NONE);
+    }
+
+    /**
+     * Builds the node for a production once it has been parsed.
+     */
+    @Override
+    public Object reduce(int production, Object[] values, int base,
+                         int start) {
+        int[] v = m_values;
+        int value;
+
+        switch (production) {
+        case PROG:
+            m_root = v[base];
+            value = m_root;
+            break;
+        case STMT_LIST:
+            // The first statement is kept even if it's empty.
+            value = node(CompactTree.LIST, v[base], v[base + 1],
+                    CompactTree.NONE);
+            break;
+        case STMT_TAIL:
+            value = (v[base + 1] == CompactTree.NONE) ? v[base + 2] :
+                    node(CompactTree.LIST, v[base + 1], v[base + 2],
+                            CompactTree.NONE);
+            break;
+        case EMPTY_STMT:
+            value = CompactTree.NONE;
+            break;
+        case IF_STMT:
+            value = node(CompactTree.IF, v[base + 1], v[base + 3],
+                    v[base + 4]);
+            break;
+        case ELSE_PART:
+            value = v[base + 1];
+            break;
+        case LOOP_STMT:
+            value = node(CompactTree.LOOP, v[base + 3], CompactTree.NONE,
+                    symbol(values[base + 1]));
+            break;
+        case BREAK_STMT:
+            value = node(CompactTree.BREAK, CompactTree.NONE,
+                    CompactTree.NONE, v[base + 1]);
+            break;
+        case ID_OPTION:
+            value = symbol(values[base]);
+            break;
+        case EMPTY_ID_OPTION:
+            value = IDTable.NONE;
+            break;
+        case ASSIGN_STMT:
+            value = node(CompactTree.ASSIGN, v[base + 2], CompactTree.NONE,
+                    symbol(values[base]));
+            break;
+        case PRINT_STMT:
+        case READ_STMT:
+        case ID_LIST_TAIL:
+            value = node(m_ioKind, CompactTree.NONE, v[base + 2],
+                    symbol(values[base + 1]));
+            break;
+        case EXPR:
+        case BOOL_TERM:
+        case BOOL_FACTOR:
+        case ARITH_EXPR:
+        case TERM:
+            value = applyTail(v[base + 1], v[base]);
+            break;
+        case OR:
+            value = tail(CompactTree.OR, v[base + 1], v[base + 2]);
+            break;
+        case AND:
+            value = tail(CompactTree.AND, v[base + 1], v[base + 2]);
+            break;
+        case ADD:
+            value = tail(CompactTree.ADD, v[base + 1], v[base + 2]);
+            break;
+        case SUBTRACT:
+            value = tail(CompactTree.SUB, v[base + 1], v[base + 2]);
+            break;
+        case MULTIPLY:
+            value = tail(CompactTree.MUL, v[base + 1], v[base + 2]);
+            break;
+        case DIVIDE:
+            value = tail(CompactTree.DIV, v[base + 1], v[base + 2]);
+            break;
+        case NEGATE:
+            value = node(CompactTree.NEG, v[base + 1], CompactTree.NONE,
+                    CompactTree.NONE);
+            break;
+        case ATOM_FACTOR:
+            value = v[base];
+            break;
+        case PAREN_FACTOR:
+            value = v[base + 1];
+            break;
+        case ID_ATOM:
+            value = node(CompactTree.VAR, CompactTree.NONE,
+                    CompactTree.NONE, symbol(values[base]));
+            break;
+        case CONST_ATOM:
+            value = node(CompactTree.CONST, CompactTree.NONE,
+                    CompactTree.NONE,
+                    constant(((TokenDescriptor) values[base]).getValue()));
+            break;
+        default:
+            if (production >= LESS_THAN && production <= NOT_EQUAL) {
+                value = node(RELATIONS[production - LESS_THAN],
+                        CompactTree.NONE, v[base + 1], CompactTree.NONE);
+            } else {
+                // An empty tail, ELSE part or identifier list, or a
+                // statement that is its one nonterminal.
+                value = (m_valueCount > base) ?
+                        v[base] : CompactTree.NONE;
+            }
+            break;
+        }
+
+        m_valueCount = base;
+        pushValue(value);
+        return null;
+    }
+
+    /**
+     * Returns the tree built, which is a whole program once the
+     * parser has finished.
+     *
+     * @param idTable The table the program's symbols were
+     *                interned in
+     */
+    public CompactTree tree(IDTable idTable) {
+        return new CompactTree(Arrays.copyOf(m_kinds, m_nodeCount),
+                Arrays.copyOf(m_first, m_nodeCount),
+                Arrays.copyOf(m_second, m_nodeCount),
+                Arrays.copyOf(m_operands, m_nodeCount),
+                Arrays.copyOf(m_constants, m_constantCount),
+                m_root, idTable);
+    }
+
+    /**
+     * Builds the node for an operator's tail: the operator applied
+     * to a missing left operand and to the operand that follows
+     * it, as modified by the tail after that.
+     */
+    private int tail(byte kind, int operand, int nextTail) {
+        return node(kind, CompactTree.NONE, applyTail(nextTail, operand),
+                CompactTree.NONE);
+    }
+
+    /**
+     * Returns the result of applying a tail, which may be NONE, to
+     * the operand before it.
+     */
+    private int applyTail(int tail, int operand) {
+        if (tail == CompactTree.NONE) {
+            return operand;
+        }
+        m_first[tail] = operand;
+        return tail;
+    }
+
+    private int node(byte kind, int first, int second, int operand) {
+        if (m_nodeCount == m_kinds.length) {
+            int capacity = m_nodeCount * 2;
+            m_kinds = Arrays.copyOf(m_kinds, capacity);
+            m_first = Arrays.copyOf(m_first, capacity);
+            m_second = Arrays.copyOf(m_second, capacity);
+            m_operands = Arrays.copyOf(m_operands, capacity);
+        }
+        m_kinds[m_nodeCount] = kind;
+        m_first[m_nodeCount] = first;
+        m_second[m_nodeCount] = second;
+        m_operands[m_nodeCount] = operand;
+        return m_nodeCount++;
+    }
+
+    /**
+     * Adds a value to the constant pool and returns its index.
+     */
+    private int constant(double value) {
+        if (m_constantCount == m_constants.length) {
+            m_constants = Arrays.copyOf(m_constants, m_constantCount * 2);
+        }
+        m_constants[m_constantCount] = value;
+        return m_constantCount++;
+    }
+
+    private void pushValue(int value) {
+        if (m_valueCount == m_values.length) {
+            m_values = Arrays.copyOf(m_values, m_valueCount * 2);
+        }
+        m_values[m_valueCount++] = value;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Reads source code tokens from tokenReader and builds them
+     * into, and returns, a program's compact tree.
+     *
+     * @param tokenReader The TokenReader from which source code
+     *                    tokens will be read
+     *
+     * @return The program's tree
+     */
+    public static CompactTree build(TokenReader tokenReader)
+            throws IOException, DCSyntaxErrorException
+    {
+        CompactTreeBuilder builder = new CompactTreeBuilder();
+        new LL1Parser(tokenReader, builder).parse();
+        return builder.tree(tokenReader.idTable());
+    }
+
+    private static int symbol(Object token) {
+        return ((TokenDescriptor) token).getSymbol();
+    }
+
+}
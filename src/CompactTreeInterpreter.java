@@ -0,0 +1,179 @@
+/**
+ * Executes a CompactTree by walking it, as the node classes walk
+ * the object tree: variables live in the program state's symbol
+ * table and loops on its loop stack, and statements after the
+ * first of a list run only while no break ID is set.
+ *
+ * A statement list is walked as a loop over its LIST nodes rather
+ * than by recursion, so only nesting, not length, deepens the
+ * Java stack.
+ */
+public class CompactTreeInterpreter {
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Executes a program.
+     *
+     * @param tree The program to execute
+     * @param progState The program state; I/O goes through it and
+     *                  its symbol table holds the variables
+     *
+     * @throws DCRuntimeErrorException If the program reads an
+     *                                 undefined variable, divides
+     *                                 by zero or breaks out of a
+     *                                 loop it isn't in
+     */
+    public static void execute(CompactTree tree, ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        executeList(tree, tree.root(), progState);
+    }
+
+    private static void executeList(CompactTree tree, int list,
+                                    ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        executeStmt(tree, tree.first(list), progState);
+        for (int next = tree.second(list); next != CompactTree.NONE;
+                next = tree.second(next))
+        {
+            if (progState.breakID() != IDTable.NONE) {
+                break;
+            }
+            executeStmt(tree, tree.first(next), progState);
+        }
+    }
+
+    private static void executeStmt(CompactTree tree, int stmt,
+                                    ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        if (stmt == CompactTree.NONE) {
+            return;
+        }
+
+        switch (tree.kind(stmt)) {
+        case CompactTree.ASSIGN:
+            progState.symTab().set(tree.operand(stmt),
+                    evaluate(tree, tree.first(stmt), progState));
+            break;
+        case CompactTree.PRINT:
+            for (int id = stmt; id != CompactTree.NONE; id = tree.second(id)) {
+                progState.printVar(tree.operand(id));
+            }
+            break;
+        case CompactTree.READ:
+            for (int id = stmt; id != CompactTree.NONE; id = tree.second(id)) {
+                progState.readVar(tree.operand(id));
+            }
+            break;
+        case CompactTree.IF:
+            if (evaluate(tree, tree.first(stmt), progState) != 0.0) {
+                executeList(tree, tree.second(stmt), progState);
+            } else if (tree.operand(stmt) != CompactTree.NONE) {
+                executeList(tree, tree.operand(stmt), progState);
+            }
+            break;
+        case CompactTree.LOOP: {
+            int symbol = tree.operand(stmt);
+            progState.pushLoopID(symbol);
+            do {
+                executeList(tree, tree.first(stmt), progState);
+                progState.poll();
+            } while (progState.topLoopID() == symbol);
+            if (progState.breakID() == symbol) {
+                progState.setBreakID(IDTable.NONE);
+            }
+            break;
+        }
+        default:
+            assert (tree.kind(stmt) == CompactTree.BREAK);
+            breakLoop(tree.operand(stmt), progState);
+            break;
+        }
+    }
+
+    private static double evaluate(CompactTree tree, int expr,
+                                   ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        byte kind = tree.kind(expr);
+        switch (kind) {
+        case CompactTree.CONST:
+            return tree.constant(tree.operand(expr));
+        case CompactTree.VAR: {
+            int symbol = tree.operand(expr);
+            SymbolTable symTab = progState.symTab();
+            if (!symTab.isDefined(symbol)) {
+                throw new DCRuntimeErrorException(
+                        "Unrecognized variable name: " +
+                        symTab.idTable().name(symbol)
+                );
+            }
+            return symTab.get(symbol);
+        }
+        case CompactTree.NEG:
+            return -evaluate(tree, tree.first(expr), progState);
+        default:
+            break;
+        }
+
+        // A binary operator; the left operand is evaluated first.
+        double left = evaluate(tree, tree.first(expr), progState);
+        double right = evaluate(tree, tree.second(expr), progState);
+        switch (kind) {
+        case CompactTree.ADD:
+            return left + right;
+        case CompactTree.SUB:
+            return left - right;
+        case CompactTree.MUL:
+            return left * right;
+        case CompactTree.DIV:
+            if (right == 0.0) {
+                throw new DCRuntimeErrorException("Division by zero.");
+            }
+            return left / right;
+        case CompactTree.LT:
+            return (left < right) ? 1 : 0;
+        case CompactTree.LE:
+            return (left <= right) ? 1 : 0;
+        case CompactTree.EQ:
+            return (left == right) ? 1 : 0;
+        case CompactTree.GE:
+            return (left >= right) ? 1 : 0;
+        case CompactTree.GT:
+            return (left > right) ? 1 : 0;
+        case CompactTree.NE:
+            return (left != right) ? 1 : 0;
+        case CompactTree.AND:
+            return (left != 0.0 && right != 0.0) ? 1 : 0;
+        default:
+            assert (kind == CompactTree.OR);
+            return (left != 0.0 || right != 0.0) ? 1 : 0;
+        }
+    }
+
+    /**
+     * Pops the loop stack down to a loop, or once if symbol is
+     * IDTable.NONE, and sets the break ID to the last loop popped.
+     *
+     * @see IDOptionNode#popLoopID(ProgState)
+     */
+    private static void breakLoop(int symbol, ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        int id;
+        if (symbol == IDTable.NONE) {
+            id = progState.popLoopID();
+        } else {
+            do {
+                id = progState.popLoopID();
+            } while (id != symbol);
+        }
+        progState.setBreakID(id);
+    }
+
+}
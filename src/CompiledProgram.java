@@ -0,0 +1,164 @@
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A Descartes program parsed, and optimized if asked, once, ready
+ * to be run any number of times from Java code, with no console
+ * I/O.
+ *
+ * Each run has a program state of its own: READ takes its values
+ * from an array given to the run, PRINT hands its values to a sink
+ * given to it, and the variables' final values come back in a
+ * RunResult. The program itself is never changed by running it,
+ * so it can be kept, and run by any number of threads at once.
+ *
+ * <pre>
+ *     CompiledProgram program = Descartes.compile(source);
+ *     RunResult result = program.run(new double[] { 3, 4 }, null);
+ *     double sum = result.get("SUM");
+ * </pre>
+ *
+ * @see Descartes#compile(String, int)
+ */
+public class CompiledProgram {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * Receives the values a program prints.
+     */
+    public interface OutputSink {
+
+        /**
+         * Called by each PRINT of a variable, in order.
+         *
+         * @param id The name of the variable printed
+         * @param value Its value
+         */
+        void print(String id, double value);
+
+    }
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final ProgNode m_progNode;
+
+    // The program's optimized SSA form, or null if it's executed by
+    // walking the parse tree.
+    private final IRProgram m_irProg;
+
+    // The table the program's symbols were interned in.
+    private final IDTable m_idTable;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a compiled program.
+     *
+     * @param progNode The program's parse tree
+     * @param irProg The program's optimized SSA form, numbered by
+     *               IRProgram.renumber(), or null to walk the parse
+     *               tree
+     * @param idTable The table the program's symbols were interned
+     *                in
+     */
+    public CompiledProgram(ProgNode progNode, IRProgram irProg,
+                           IDTable idTable) {
+        m_progNode = progNode;
+        m_irProg = irProg;
+        m_idTable = idTable;
+    }
+
+    /**
+     * Runs the program with a program state of its own.
+     *
+     * @param inputs The values READ reads, in order, or null if
+     *               the program reads none; reading past the last
+     *               one is a runtime error
+     * @param sink Receives the values PRINT prints, or null to
+     *             discard them
+     *
+     * @return The variables' final values, and the runtime error
+     *         that stopped the program, if one did
+     */
+    public RunResult run(double[] inputs, OutputSink sink) {
+        return run(new RunState(m_idTable), inputs, sink);
+    }
+
+    /**
+     * Runs the program, as above, with a program state that's
+     * reset first, so that one state can serve many runs.
+     *
+     * @param progState The state to run with, which no other run
+     *                  may be using
+     * @param inputs The values READ reads, in order, or null if
+     *               the program reads none
+     * @param sink Receives the values PRINT prints, or null to
+     *             discard them
+     *
+     * @return The variables' final values, and the runtime error
+     *         that stopped the program, if one did
+     */
+    public RunResult run(RunState progState, double[] inputs,
+                         OutputSink sink) {
+        progState.reset(inputs, sink);
+        String error = null;
+        try {
+            execute(progState);
+        } catch (DCRuntimeErrorException e) {
+            error = e.getMessage();
+        }
+
+        Map<String, Double> variables = new TreeMap<String, Double>();
+        SymbolTable symTab = progState.symTab();
+        for (String id : symTab.names()) {
+            variables.put(id, symTab.get(id));
+        }
+        return new RunResult(variables, error);
+    }
+
+    /**
+     * Executes the program with the given program state, through
+     * which its I/O goes.
+     *
+     * @param progState A program state of the run's own
+     *
+     * @throws DCRuntimeErrorException If the program reads an
+     *                                 undefined variable or
+     *                                 divides by zero
+     */
+    public void execute(ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        if (m_irProg != null) {
+            IRInterpreter.execute(m_irProg, progState);
+        } else {
+            m_progNode.execute(progState);
+        }
+    }
+
+    /**
+     * Accessor for the program's parse tree.
+     */
+    public ProgNode progNode() {
+        return m_progNode;
+    }
+
+    /**
+     * Accessor for the table the program's symbols were interned
+     * in.
+     */
+    public IDTable idTable() {
+        return m_idTable;
+    }
+
+}
@@ -0,0 +1,153 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A bounded cache of compiled programs, in memory, for a process
+ * that runs many programs many times: once it's full, keeping
+ * another evicts the least recently used.
+ *
+ * Each program is kept with the source it was compiled from, so a
+ * caller can tell whether it's still up to date. Compiled programs
+ * are never changed by running them, so one found here can be run
+ * by any number of threads at once. Any number of threads can use
+ * the cache itself.
+ */
+public class CompiledProgramCache {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * A compiled program, and the source it was compiled from.
+     */
+    private static class Entry {
+
+        private final byte[] m_source;
+        private final CompiledProgram m_program;
+
+        Entry(byte[] source, CompiledProgram program) {
+            m_source = source;
+            m_program = program;
+        }
+
+    }
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final int m_capacity;
+
+    // The programs, by key, the least recently used first.
+    private final Map<String, Entry> m_entries;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity The most programs it keeps
+     */
+    public CompiledProgramCache(final int capacity) {
+        m_capacity = capacity;
+        m_entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the program kept under a key, or null if there isn't
+     * one, and marks it as recently used.
+     */
+    public synchronized CompiledProgram get(String key) {
+        Entry entry = m_entries.get(key);
+        return (entry != null) ? entry.m_program : null;
+    }
+
+    /**
+     * Returns the program kept under a key, as above, but only if
+     * it was compiled from the given source.
+     */
+    public synchronized CompiledProgram get(String key, byte[] source) {
+        Entry entry = m_entries.get(key);
+        return (entry != null && Arrays.equals(entry.m_source, source)) ?
+                entry.m_program : null;
+    }
+
+    /**
+     * Keeps a program under a key, replacing any kept there before,
+     * and evicts the least recently used if the cache is full.
+     *
+     * @param key The program's key
+     * @param source The source it was compiled from, which mustn't
+     *               be changed afterwards
+     * @param program The program
+     */
+    public synchronized void put(String key, byte[] source,
+                                 CompiledProgram program) {
+        m_entries.put(key, new Entry(source, program));
+    }
+
+    /**
+     * Returns the number of programs kept.
+     */
+    public synchronized int size() {
+        return m_entries.size();
+    }
+
+    /**
+     * Accessor for the most programs kept.
+     */
+    public int capacity() {
+        return m_capacity;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns a key naming a program by what it's compiled from, so
+     * that the same source compiled the same way is kept once.
+     *
+     * @param source The program's source code
+     * @param optLevel The optimization level it's compiled at
+     *
+     * @return A SHA-256 hash of both, in hexadecimal
+     */
+    public static String key(byte[] source, int optLevel) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(("Descartes -O" + optLevel + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        digest.update(source);
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+}
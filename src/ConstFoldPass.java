@@ -0,0 +1,129 @@
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Constant folding: evaluates instructions whose operands are all
+ * constants, and replaces branches on constant conditions with
+ * jumps.
+ *
+ * A division by a constant zero is left alone so that it still
+ * raises its runtime error; a division by any other constant can
+ * no longer fail, so it loses its frame state and becomes an
+ * ordinary pure instruction. Blocks that become unreachable are
+ * removed.
+ */
+public class ConstFoldPass implements IRPass {
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Returns "const-fold".
+     */
+    public String name() {
+        return "const-fold";
+    }
+
+    /**
+     * Folds the program's constant instructions and branches.
+     */
+    public void run(IRProgram prog) {
+        Map<IRInstr, IRInstr> copies = new HashMap<IRInstr, IRInstr>();
+        boolean cfgChanged = false;
+
+        // Visiting the blocks in reverse postorder folds each
+        // instruction's operands before the instruction itself.
+        for (IRBlock block : prog.reversePostorder()) {
+            for (IRInstr instr : block.instrs()) {
+                fold(instr, copies);
+            }
+
+            IRInstr term = block.term();
+            if (term.op() == IRInstr.Op.BRANCH &&
+                    term.arg(0).op() == IRInstr.Op.CONST)
+            {
+                int taken = (term.arg(0).value() != 0.0) ? 0 : 1;
+                IRBlock notTaken = block.succs().remove(1 - taken);
+                notTaken.removePred(block);
+                term.makeJump();
+                cfgChanged = true;
+            }
+        }
+
+        prog.replaceUses(copies);
+        if (cfgChanged) {
+            prog.removeUnreachable();
+        }
+    }
+
+    private void fold(IRInstr instr, Map<IRInstr, IRInstr> copies) {
+        IRInstr.Op op = instr.op();
+
+        if (op == IRInstr.Op.CHECK) {
+            if (instr.arg(0).op() == IRInstr.Op.CONST) {
+                copies.put(instr, instr.arg(0));
+            }
+            return;
+        }
+        if (op == IRInstr.Op.NEG) {
+            if (instr.arg(0).op() == IRInstr.Op.CONST) {
+                instr.makeConst(-instr.arg(0).value());
+            }
+            return;
+        }
+        if (instr.args().length != 2 ||
+                instr.arg(1).op() != IRInstr.Op.CONST)
+        {
+            return;
+        }
+
+        double b = instr.arg(1).value();
+        if (op == IRInstr.Op.DIV) {
+            if (b == 0.0) {
+                return;
+            }
+            instr.setState(null);
+        }
+        if (instr.arg(0).op() == IRInstr.Op.CONST) {
+            instr.makeConst(evaluate(op, instr.arg(0).value(), b));
+        }
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Evaluates a binary operator the way the tree-walking
+     * interpreter does.
+     *
+     * @param op An arithmetic, relational or Boolean operator
+     * @param a The left operand
+     * @param b The right operand
+     *
+     * @return The result
+     */
+    public static double evaluate(IRInstr.Op op, double a, double b) {
+        switch (op) {
+            case ADD: return a + b;
+            case SUB: return a - b;
+            case MUL: return a * b;
+            case DIV: return a / b;
+            case LT:  return (a < b) ? 1.0 : 0.0;
+            case LE:  return (a <= b) ? 1.0 : 0.0;
+            case EQ:  return (a == b) ? 1.0 : 0.0;
+            case GE:  return (a >= b) ? 1.0 : 0.0;
+            case GT:  return (a > b) ? 1.0 : 0.0;
+            case NE:  return (a != b) ? 1.0 : 0.0;
+            case AND: return (a != 0.0 && b != 0.0) ? 1.0 : 0.0;
+            case OR:  return (a != 0.0 || b != 0.0) ? 1.0 : 0.0;
+            default:
+                throw new IllegalArgumentException(
+                        "Not a binary operator: " + op);
+        }
+    }
+
+}
@@ -0,0 +1,113 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Copy propagation: removes instructions that merely copy another
+ * value.
+ *
+ * A PHI is a copy if all of its operands, other than the PHI
+ * itself, are the same value. A CHECK is a copy if its operand can
+ * never be undefined, which is decided optimistically: a PHI may be
+ * undefined only if one of its operands is UNDEF or another PHI
+ * that may be undefined. Removing a copy can make further copies
+ * trivial, so the pass repeats until nothing changes.
+ */
+public class CopyPropPass implements IRPass {
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Returns "copy-prop".
+     */
+    public String name() {
+        return "copy-prop";
+    }
+
+    /**
+     * Removes copies until none remain.
+     */
+    public void run(IRProgram prog) {
+        boolean changed = true;
+        while (changed) {
+            Map<IRInstr, IRInstr> copies = new HashMap<IRInstr, IRInstr>();
+            findTrivialPhis(prog, copies);
+            findDefinedChecks(prog, copies);
+            prog.replaceUses(copies);
+            changed = !copies.isEmpty();
+        }
+    }
+
+    private void findTrivialPhis(IRProgram prog,
+                                 Map<IRInstr, IRInstr> copies)
+    {
+        for (IRBlock block : prog.blocks()) {
+            for (IRInstr phi : block.phis()) {
+                IRInstr unique = null;
+                boolean trivial = true;
+
+                for (IRInstr arg : phi.args()) {
+                    arg = IRProgram.resolve(arg, copies);
+                    if (arg == phi || arg == unique) {
+                        continue;
+                    }
+                    if (unique != null) {
+                        trivial = false;
+                        break;
+                    }
+                    unique = arg;
+                }
+
+                if (trivial && unique != null) {
+                    copies.put(phi, unique);
+                }
+            }
+        }
+    }
+
+    private void findDefinedChecks(IRProgram prog,
+                                   Map<IRInstr, IRInstr> copies)
+    {
+        // Find the PHIs that may be undefined.
+        Set<IRInstr> mayBeUndef = new HashSet<IRInstr>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (IRBlock block : prog.blocks()) {
+                for (IRInstr phi : block.phis()) {
+                    if (mayBeUndef.contains(phi)) {
+                        continue;
+                    }
+                    for (IRInstr arg : phi.args()) {
+                        if (arg.op() == IRInstr.Op.UNDEF ||
+                                mayBeUndef.contains(arg))
+                        {
+                            mayBeUndef.add(phi);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (IRBlock block : prog.blocks()) {
+            for (IRInstr instr : block.instrs()) {
+                if (instr.op() != IRInstr.Op.CHECK) {
+                    continue;
+                }
+                IRInstr arg = instr.arg(0);
+                if (arg.op() != IRInstr.Op.UNDEF &&
+                        !mayBeUndef.contains(arg))
+                {
+                    copies.put(instr, arg);
+                }
+            }
+        }
+    }
+
+}
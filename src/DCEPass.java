@@ -0,0 +1,84 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Dead code elimination: removes instructions whose values are
+ * never used.
+ *
+ * Instructions with side effects are live, as are the operands and
+ * frame states of live instructions. Everything else is removed;
+ * since the IR has no stores, this also removes dead assignments
+ * to source variables, whose values survive only in the frame
+ * states that need them.
+ */
+public class DCEPass implements IRPass {
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Returns "dce".
+     */
+    public String name() {
+        return "dce";
+    }
+
+    /**
+     * Removes the program's dead instructions.
+     */
+    public void run(IRProgram prog) {
+        Set<IRInstr> live = new HashSet<IRInstr>();
+        List<IRInstr> work = new ArrayList<IRInstr>();
+
+        // Frame states share chunks, which are each visited once.
+        Set<IRInstr[]> chunks = Collections.newSetFromMap(
+                new IdentityHashMap<IRInstr[], Boolean>());
+
+        for (IRBlock block : prog.blocks()) {
+            for (IRInstr instr : block.instrs()) {
+                if (instr.hasSideEffects()) {
+                    markLive(instr, live, work);
+                }
+            }
+            markLive(block.term(), live, work);
+        }
+
+        while (!work.isEmpty()) {
+            IRInstr instr = work.remove(work.size() - 1);
+            for (IRInstr arg : instr.args()) {
+                markLive(arg, live, work);
+            }
+            FrameState state = instr.state();
+            if (state != null) {
+                for (int c = 0; c < state.chunkCount(); c++) {
+                    IRInstr[] chunk = state.chunk(c);
+                    if (chunks.add(chunk)) {
+                        for (IRInstr value : chunk) {
+                            markLive(value, live, work);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (IRBlock block : prog.blocks()) {
+            block.phis().retainAll(live);
+            block.instrs().retainAll(live);
+        }
+    }
+
+    private void markLive(IRInstr instr, Set<IRInstr> live,
+                          List<IRInstr> work)
+    {
+        if (live.add(instr)) {
+            work.add(instr);
+        }
+    }
+
+}
@@ -4,11 +4,26 @@
  */
 public class DCSyntaxErrorException extends Exception {
 
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private int m_line;
+    private int m_column;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
     /**
-     * Construct a syntax error exception using file name and line
-     * number information collected from the given TokenReader,
-     * and with the given message explaining the reason for the
-     * exception.
+     * Construct a syntax error exception using file name, line
+     * and column information collected from the given
+     * TokenReader, and with the given message explaining the
+     * reason for the exception.
+     *
+     * The message ends with the offending line of source code and
+     * a caret marking the token being read.
      *
      * @param tokenReader The TokenReader instance that was being
      *                    used when the exception occurred
@@ -16,8 +31,31 @@ public class DCSyntaxErrorException extends Exception {
      *                exception to be thrown
      */
     public DCSyntaxErrorException(TokenReader tokenReader, String message) {
-        super(tokenReader.fileName() + ": line " + tokenReader.lineNum() +
-                ": " + message);
+        this(tokenReader.fileName(), tokenReader.lineIndex(),
+                tokenReader.tokenStart(), message);
+    }
+
+    private DCSyntaxErrorException(String fileName, LineIndex lineIndex,
+                                   int offset, String message) {
+        super(fileName + ": line " + lineIndex.line(offset) +
+                ", column " + lineIndex.column(offset) + ": " + message +
+                "\n" + lineIndex.excerpt(offset));
+        m_line = lineIndex.line(offset);
+        m_column = lineIndex.column(offset);
+    }
+
+    /**
+     * Accessor for the line number where the error occurred.
+     */
+    public int line() {
+        return m_line;
+    }
+
+    /**
+     * Accessor for the column number where the error occurred.
+     */
+    public int column() {
+        return m_column;
     }
 
 }
@@ -0,0 +1,162 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+
+/**
+ * Runs a program through an InterpreterDaemon: sends it the command
+ * line, the working directory and standard input, and copies back
+ * the program's output and exit status.
+ *
+ * It takes the same command line as Descartes, optionally preceded
+ * by "--socket" and the daemon's socket; a command line the daemon
+ * can't run, or one given when no daemon is listening, is run by
+ * Descartes in this JVM instead. So is one given when the socket's
+ * directory isn't the user's own, with a warning, since whoever
+ * owns it may be listening instead. Only this class and
+ * DaemonProtocol are loaded otherwise, so that the JVM starts
+ * quickly.
+ *
+ * <pre>
+ *     java DaemonClient -O1 script.dc
+ * </pre>
+ */
+public class DaemonClient {
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Program entry.
+     *
+     * @param args Optionally "--socket" and the daemon's socket,
+     *             then the command line to run
+     */
+    public static void main(String[] args) {
+        String socket = DaemonProtocol.defaultSocket();
+        int first = 0;
+        if (args.length > 1 && args[0].equals("--socket")) {
+            socket = args[1];
+            first = 2;
+        }
+        String[] command = Arrays.copyOfRange(args, first, args.length);
+        if (!DaemonProtocol.isSupported(command)) {
+            Descartes.main(command);
+            return;
+        }
+
+        Path directory = Paths.get(socket).toAbsolutePath().getParent();
+        try {
+            DaemonProtocol.checkPrivate(directory);
+        } catch (NoSuchFileException e) {
+            // No daemon has run here.
+            Descartes.main(command);
+            return;
+        } catch (IOException e) {
+            System.err.println("Not using the daemon: " + e.getMessage());
+            Descartes.main(command);
+            return;
+        }
+
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            Descartes.main(command);
+            return;
+        }
+
+        int status;
+        try {
+            status = run(channel, command);
+        } catch (IOException e) {
+            System.err.println("Lost the daemon: " + e.getMessage());
+            status = -1;
+        }
+        System.exit(status);
+    }
+
+    /**
+     * Runs a command line through the daemon at the other end of a
+     * connection.
+     *
+     * @return The program's exit status
+     */
+    private static int run(SocketChannel channel, String[] command)
+            throws IOException
+    {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                DaemonProtocol.inputStream(channel), 1 << 16));
+        final DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(DaemonProtocol.outputStream(channel),
+                                         1 << 16));
+
+        out.writeInt(DaemonProtocol.MAGIC);
+        out.writeInt(DaemonProtocol.VERSION);
+        DaemonProtocol.writeText(out, System.getProperty("user.dir"));
+        out.writeInt(command.length);
+        for (String arg : command) {
+            DaemonProtocol.writeText(out, arg);
+        }
+        out.flush();
+
+        // Standard input is sent as it arrives; the program may not
+        // read it all, or any, so nothing waits for it.
+        Thread input = new Thread(new Runnable() {
+            public void run() {
+                byte[] buffer = new byte[8192];
+                InputStream stdin = System.in;
+                try {
+                    int count;
+                    while ((count = stdin.read(buffer)) >= 0) {
+                        if (count > 0) {
+                            out.writeInt(count);
+                            out.write(buffer, 0, count);
+                            out.flush();
+                        }
+                    }
+                    out.writeInt(0);
+                    out.flush();
+                } catch (IOException e) {
+                    // The program has finished.
+                }
+            }
+        }, "daemon-input");
+        input.setDaemon(true);
+        input.start();
+
+        for (;;) {
+            byte type = in.readByte();
+            if (type == DaemonProtocol.EXIT) {
+                int status = in.readInt();
+                System.out.flush();
+                System.err.flush();
+                return status;
+            }
+            byte[] frame = DaemonProtocol.readFrame(in);
+            if (type == DaemonProtocol.STDOUT) {
+                System.out.write(frame, 0, frame.length);
+                System.out.flush();
+            } else if (type == DaemonProtocol.STDERR) {
+                System.out.flush();
+                System.err.write(frame, 0, frame.length);
+                System.err.flush();
+            } else {
+                throw new IOException("Invalid daemon message: " + type);
+            }
+        }
+    }
+
+}
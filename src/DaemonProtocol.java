@@ -0,0 +1,259 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+
+
+/**
+ * The messages between a DaemonClient and an InterpreterDaemon, over
+ * a Unix domain socket.
+ *
+ * Messages are written with DataOutputStream, big-endian, and text
+ * is sent as a length and that many UTF-8 bytes. A connection goes:
+ *
+ * <pre>
+ *     client: MAGIC, VERSION, the client's working directory, the
+ *             number of command-line arguments, and each argument
+ *     then, at once:
+ *     client: the client's standard input, as frames of a length
+ *             and that many bytes, ended by a frame of length 0
+ *     daemon: STDOUT or STDERR frames, each a length and that many
+ *             bytes of the program's output, then EXIT and the exit
+ *             status
+ * </pre>
+ *
+ * The daemon only reads as much of the client's input as the
+ * program does, and closes the connection after EXIT.
+ */
+public class DaemonProtocol {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /** Begins the client's first message. */
+    public static final int MAGIC = 0x4443444d;  // "DCDM"
+
+    /**
+     * The version of the messages, which both sides must agree on.
+     */
+    public static final int VERSION = 1;
+
+    /** A frame of the program's standard output. */
+    public static final byte STDOUT = 1;
+    /** A frame of its standard error. */
+    public static final byte STDERR = 2;
+    /** The exit status; the last message. */
+    public static final byte EXIT = 3;
+
+    // The longest text or frame either side accepts, in bytes.
+    private static final int MAX_FRAME_BYTES = 1 << 24;
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns the socket's default path: one per user, in a
+     * directory of the user's in the temporary directory.
+     */
+    public static String defaultSocket() {
+        return Paths.get(System.getProperty("java.io.tmpdir"),
+                "descartes-" + System.getProperty("user.name"),
+                "daemon.sock").toString();
+    }
+
+    /**
+     * Checks that the socket's directory is the current user's own:
+     * a directory, not a symbolic link, owned by the user, that no
+     * one else can read, write or search. Anyone who could replace
+     * the socket could run programs as the user, or see what the
+     * user's programs read and print.
+     *
+     * @param directory The directory the socket is in
+     *
+     * @throws NoSuchFileException If the directory doesn't exist
+     * @throws IOException If it isn't the user's own, or can't be
+     *                     checked
+     */
+    public static void checkPrivate(Path directory)
+            throws IOException
+    {
+        PosixFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(directory,
+                    PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("Can't check the permissions of " +
+                    directory);
+        }
+        if (!attrs.isDirectory()) {
+            throw new IOException(directory + " isn't a directory");
+        }
+
+        UserPrincipal user = directory.getFileSystem()
+                .getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+        if (!attrs.owner().equals(user)) {
+            throw new IOException(directory + " is owned by " +
+                    attrs.owner().getName() + ", not " + user.getName());
+        }
+        for (PosixFilePermission permission : attrs.permissions()) {
+            switch (permission) {
+                case OWNER_READ: case OWNER_WRITE: case OWNER_EXECUTE:
+                    break;
+                default:
+                    throw new IOException(directory +
+                            " is accessible to others; its permissions" +
+                            " are " + PosixFilePermissions.toString(
+                                    attrs.permissions()));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the daemon can run a command line: a source
+     * file, optionally preceded by an optimization level.
+     */
+    public static boolean isSupported(String[] args) {
+        if (args.length == 2 && !args[0].matches("-O[012]")) {
+            return false;
+        }
+        return (args.length == 1 || args.length == 2) &&
+                !args[args.length - 1].startsWith("-");
+    }
+
+    /**
+     * Writes text as its length and its UTF-8 bytes.
+     */
+    public static void writeText(DataOutputStream out, String text)
+            throws IOException
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads text written by writeText().
+     */
+    public static String readText(DataInputStream in)
+            throws IOException
+    {
+        return new String(readFrame(in), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads a frame's length and that many bytes.
+     *
+     * @throws IOException If the length is negative or too long
+     */
+    public static byte[] readFrame(DataInputStream in)
+            throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid daemon frame length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns a stream that reads from a connection.
+     *
+     * Unlike Channels.newInputStream()'s, it doesn't hold the
+     * channel's lock while it waits, so another thread can write to
+     * the connection meanwhile.
+     */
+    public static InputStream inputStream(final SocketChannel channel) {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len)
+                    throws IOException
+            {
+                return (len == 0) ? 0 :
+                        channel.read(ByteBuffer.wrap(b, off, len));
+            }
+        };
+    }
+
+    /**
+     * Returns a stream that writes to a connection, as above.
+     */
+    public static OutputStream outputStream(final SocketChannel channel) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                    throws IOException
+            {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a stream that writes what it's given as frames of a
+     * type, for STDOUT or STDERR. Frames go out as they're written,
+     * so it should be buffered.
+     *
+     * @param out The connection, which only the caller's thread may
+     *            write to
+     * @param type STDOUT or STDERR
+     */
+    public static OutputStream frameStream(final DataOutputStream out,
+                                           final byte type) {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                    throws IOException
+            {
+                if (len > 0) {
+                    out.writeByte(type);
+                    out.writeInt(len);
+                    out.write(b, off, len);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                out.flush();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,187 @@
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+
+
+/**
+ * Converts decimal numbers to the nearest double without building
+ * an intermediate String.
+ *
+ * A number is given as a 64-bit decimal significand w and a power
+ * of ten q, meaning w * 10^q. Two fast paths handle almost every
+ * such number:
+ *
+ * <ul>
+ *   <li>Clinger's: if w and 10^q are both exactly representable,
+ *       a single correctly rounded multiplication or division
+ *       gives the answer;</li>
+ *   <li>Eisel and Lemire's: w is multiplied by a 128-bit
+ *       approximation of 10^q, which decides the rounding unless
+ *       the product falls too close to a halfway point.</li>
+ * </ul>
+ *
+ * The rare numbers neither path can decide, and numbers with more
+ * than 19 significant digits, are converted by
+ * Double.parseDouble() from the source text.
+ *
+ * See Daniel Lemire, "Number Parsing at a Gigabyte per Second",
+ * Software: Practice and Experience 51(8), 2021.
+ */
+public class DecimalConversion {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final int MIN_EXP10 = -342;
+    private static final int MAX_EXP10 = 308;
+
+    // The largest exact powers of ten, for Clinger's fast path.
+    private static final double[] EXACT_POWERS = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+        1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20,
+        1e21, 1e22
+    };
+
+    // 128-bit significands of the powers of five from 5^MIN_EXP10
+    // to 5^MAX_EXP10, normalized so the top bit is set; these are
+    // also the significands of the powers of ten. The high and low
+    // halves are interleaved.
+    private static final long[] POWERS_OF_FIVE = powersOfFive();
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns w * 10^q rounded to the nearest double, or NaN if
+     * the fast paths can't decide the rounding.
+     *
+     * @param w The decimal significand, as an unsigned value
+     * @param q The power of ten
+     */
+    public static double toDouble(long w, int q) {
+        if (w == 0) {
+            return 0.0;
+        }
+
+        // Clinger's fast path.
+        if (w >= 0 && w <= (1L << 53) && q >= -22 && q <= 22) {
+            return (q >= 0) ?
+                    w * EXACT_POWERS[q] : w / EXACT_POWERS[-q];
+        }
+
+        if (q < MIN_EXP10 || q > MAX_EXP10) {
+            return Double.NaN;
+        }
+        return eiselLemire(w, q);
+    }
+
+    /**
+     * Parses a decimal number from Latin-1 text; this is the slow
+     * path for numbers toDouble() can't convert.
+     *
+     * @param text The buffer containing the number
+     * @param start The offset of the first character
+     * @param end The offset following the last character
+     */
+    public static double parse(byte[] text, int start, int end) {
+        return Double.parseDouble(new String(text, start, end - start,
+                StandardCharsets.ISO_8859_1));
+    }
+
+    private static double eiselLemire(long w, int q) {
+        int index = 2 * (q - MIN_EXP10);
+        long powerHi = POWERS_OF_FIVE[index];
+        long powerLo = POWERS_OF_FIVE[index + 1];
+
+        // Normalize the significand.
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+        long exp2 = ((217706L * q) >> 16) + 64 + 1023 - lz;
+
+        // Multiply by the high half of the power; if the low bits
+        // of the product might still change, widen it with the low
+        // half.
+        long hi = unsignedMultiplyHigh(w, powerHi);
+        long lo = w * powerHi;
+        if ((hi & 0x1FF) == 0x1FF && Long.compareUnsigned(lo + w, w) < 0) {
+            long hi2 = unsignedMultiplyHigh(w, powerLo);
+            long lo2 = w * powerLo;
+            long mergedLo = lo + hi2;
+            if (Long.compareUnsigned(mergedLo, lo) < 0) {
+                hi++;
+            }
+            if ((hi & 0x1FF) == 0x1FF && mergedLo + 1 == 0 &&
+                    Long.compareUnsigned(lo2 + w, w) < 0)
+            {
+                return Double.NaN;
+            }
+            lo = mergedLo;
+        }
+
+        // Keep 54 bits, then round to 53.
+        int upperBit = (int) (hi >>> 63);
+        long mantissa = hi >>> (upperBit + 9);
+        exp2 -= 1 ^ upperBit;
+
+        if (lo == 0 && (hi & 0x1FF) == 0 && (mantissa & 3) == 1) {
+            // Too close to halfway between two doubles.
+            return Double.NaN;
+        }
+
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if ((mantissa >>> 53) > 0) {
+            mantissa >>>= 1;
+            exp2++;
+        }
+
+        if (exp2 <= 0 || exp2 >= 0x7FF) {
+            // Subnormal or infinite; leave it to the slow path.
+            return Double.NaN;
+        }
+        return Double.longBitsToDouble(
+                (exp2 << 52) | (mantissa & 0x000FFFFFFFFFFFFFL));
+    }
+
+    private static long unsignedMultiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    /**
+     * Computes the POWERS_OF_FIVE table. Positive powers are
+     * truncated; negative powers are rounded up, except that the
+     * very small ones are first computed with extra precision and
+     * then truncated, as in the reference implementation.
+     */
+    private static long[] powersOfFive() {
+        long[] table = new long[2 * (MAX_EXP10 - MIN_EXP10 + 1)];
+        BigInteger five = BigInteger.valueOf(5);
+
+        for (int q = MIN_EXP10; q <= MAX_EXP10; q++) {
+            BigInteger c;
+            if (q >= 0) {
+                c = five.pow(q);
+                int shift = c.bitLength() - 128;
+                c = (shift < 0) ? c.shiftLeft(-shift) : c.shiftRight(shift);
+            } else {
+                BigInteger power = five.pow(-q);
+                int z = power.bitLength();
+                int b = (q >= -27) ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power)
+                        .add(BigInteger.ONE);
+                if (c.bitLength() > 128) {
+                    c = c.shiftRight(c.bitLength() - 128);
+                }
+            }
+
+            int i = 2 * (q - MIN_EXP10);
+            table[i] = c.shiftRight(64).longValue();
+            table[i + 1] = c.longValue();
+        }
+
+        return table;
+    }
+
+}
@@ -1,5 +1,20 @@
 import java.io.*;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
 
 
 /**
@@ -8,6 +23,63 @@ import java.util.TreeSet;
  */
 public class Descartes {
 
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * The input that every thread of a stress run reads. Its source
+     * is read to the end only when a READ first needs it, so that a
+     * program that reads nothing doesn't wait on standard input.
+     */
+    private static class SharedInput {
+
+        private InputStream m_source;
+        private byte[] m_bytes;
+
+        SharedInput(InputStream source) {
+            m_source = source;
+            m_bytes = null;
+        }
+
+        synchronized byte[] bytes() throws IOException {
+            if (m_bytes == null) {
+                m_bytes = m_source.readAllBytes();
+            }
+            return m_bytes;
+        }
+
+        /**
+         * Returns a stream of its own over the input.
+         */
+        InputStream open() {
+            return new InputStream() {
+                private InputStream m_in = null;
+
+                @Override
+                public int read() throws IOException {
+                    return in().read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len)
+                        throws IOException
+                {
+                    return in().read(b, off, len);
+                }
+
+                private InputStream in() throws IOException {
+                    if (m_in == null) {
+                        m_in = new ByteArrayInputStream(bytes());
+                    }
+                    return m_in;
+                }
+            };
+        }
+
+    }
+
+
     //==================//
     // Member Variables //
     //==================//
@@ -15,6 +87,41 @@ public class Descartes {
     // Contains the notorious "getToken()" method.
     private TokenReader m_tokenReader;
 
+    // If not null, the program, compiled ahead of time; there's
+    // then no source code to read.
+    private Bytecode m_bytecode;
+
+    // Optimization level; 0 walks the parse tree, higher levels
+    // compile the program to SSA form and optimize it first.
+    private int m_optLevel;
+    private boolean m_timePasses;
+    private boolean m_dumpIR;
+
+    // True to parse with the table-driven LL1Parser rather than
+    // the node classes' own parse methods.
+    private boolean m_tableParser;
+
+    // True to compile the program to bytecode as it's parsed,
+    // without building a parse tree, and execute that.
+    private boolean m_singlePass;
+
+    // True to parse the program into a CompactTree, without
+    // building a parse tree, and walk that.
+    private boolean m_compact;
+
+    // True to put off parsing LOOP, IF and ELSE bodies until they
+    // first execute.
+    private boolean m_lazyBodies;
+
+    // If not null, the program is run as bytecode, taken from this
+    // cache, under m_cacheKey, or compiled and stored there.
+    private ProgramCache m_cache;
+    private String m_cacheKey;
+
+    // True if the source code is read from standard input, so
+    // that READ statements read what follows it.
+    private boolean m_inputFollowsSource;
+
 
     // =========//
     // Methods //
@@ -29,20 +136,208 @@ public class Descartes {
      */
     public Descartes(TokenReader tokenReader) {
         m_tokenReader = tokenReader;
+        m_bytecode = null;
+        m_optLevel = 0;
+        m_timePasses = false;
+        m_dumpIR = false;
+        m_tableParser = false;
+        m_singlePass = false;
+        m_compact = false;
+        m_lazyBodies = false;
+        m_cache = null;
+        m_cacheKey = null;
+        m_inputFollowsSource = false;
+    }
+
+    /**
+     * Construct a new Descartes interpreter that runs a program
+     * compiled ahead of time.
+     *
+     * @param bytecode The compiled program
+     *
+     * @see Bytecode#load(java.nio.file.Path)
+     */
+    public Descartes(Bytecode bytecode) {
+        this((TokenReader) null);
+        m_bytecode = bytecode;
+    }
+
+    /**
+     * Sets the optimization level.
+     *
+     * @param optLevel 0 to walk the parse tree, or 1 or 2 to
+     *                 execute the program in optimized SSA form
+     *
+     * @see IRPassManager#forLevel(int)
+     */
+    public void setOptLevel(int optLevel) {
+        m_optLevel = optLevel;
+    }
+
+    /**
+     * Sets whether optimization pass timings are printed on the
+     * standard error stream.
+     */
+    public void setTimePasses(boolean timePasses) {
+        m_timePasses = timePasses;
+    }
+
+    /**
+     * Sets whether the optimized SSA form is printed on the
+     * standard error stream before execution.
+     */
+    public void setDumpIR(boolean dumpIR) {
+        m_dumpIR = dumpIR;
+    }
+
+    /**
+     * Sets whether the program is parsed by the table-driven
+     * LL1Parser, which needs no recursion, rather than by the
+     * node classes' recursive descent.
+     */
+    public void setTableParser(boolean tableParser) {
+        m_tableParser = tableParser;
+    }
+
+    /**
+     * Sets whether the program is compiled to bytecode in a single
+     * pass as it's parsed, and the bytecode executed, rather than
+     * a parse tree built first. This takes precedence over the
+     * optimization level.
+     */
+    public void setSinglePass(boolean singlePass) {
+        m_singlePass = singlePass;
+    }
+
+    /**
+     * Sets whether the program is parsed into a CompactTree, which
+     * takes far less memory than a parse tree of node objects, and
+     * executed by walking that. The bytecode options take
+     * precedence over this, and this over the optimization level.
+     */
+    public void setCompact(boolean compact) {
+        m_compact = compact;
+    }
+
+    /**
+     * Sets whether LOOP, IF and ELSE bodies are parsed only when
+     * they first execute. This applies only when the parse tree
+     * is walked, and needs all of the source's tokens to have been
+     * read first.
+     *
+     * @see TokenReader#readAllTokens()
+     * @see LazyStmtListNode
+     */
+    public void setLazyBodies(boolean lazyBodies) {
+        m_lazyBodies = lazyBodies;
+    }
+
+    /**
+     * Sets a cache of compiled programs to run the program from. If
+     * the program has been stored in it, it isn't parsed at all;
+     * if not, it's compiled to bytecode and stored for next time.
+     * Either way it's run as bytecode.
+     *
+     * @param cache The cache, or null to use none
+     * @param key The program's key in the cache
+     *
+     * @see ProgramCache#key(byte[])
+     */
+    public void setCache(ProgramCache cache, String key) {
+        m_cache = cache;
+        m_cacheKey = key;
+    }
+
+    /**
+     * Sets whether the program's input follows its source code in
+     * the same stream, as it does when both come through standard
+     * input. If so, READ statements read whatever follows the
+     * program's final period.
+     */
+    public void setInputFollowsSource(boolean inputFollowsSource) {
+        m_inputFollowsSource = inputFollowsSource;
+    }
+
+    /**
+     * Reads and parses the program.
+     *
+     * @return The program's parse tree
+     */
+    private ProgNode parse()
+            throws IOException, DCSyntaxErrorException
+    {
+        if (m_tableParser) {
+            return new LL1Parser(m_tokenReader).parseProg();
+        }
+
+        // A source read in parallel is parsed in parallel too.
+        return ParallelParser.parseProg(m_tokenReader,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads and parses the program, and translates it to SSA form
+     * and optimizes it if the optimization level says to.
+     *
+     * @return The program, ready to run
+     */
+    private CompiledProgram compileProgram()
+            throws IOException, DCSyntaxErrorException
+    {
+        ProgNode progNode = parse();
+        IRProgram irProg = (m_optLevel > 0) ? optimize(progNode) : null;
+        return new CompiledProgram(progNode, irProg,
+                m_tokenReader.idTable());
     }
 
     /**
      * Reads, parses and executes the program.
      */
     private void run() throws IOException {
-        ProgState progState = new ProgState();
+        ProgState progState = new ProgState((m_bytecode != null) ?
+                m_bytecode.idTable() : m_tokenReader.idTable());
 
         try {
-            // Parse the source code file: build the parse tree.
-            ProgNode progNode = ProgNode.parseProg(m_tokenReader);
+            // Parse the source code file: build the parse tree, and
+            // optimize it, or compile straight to bytecode.
+            CompiledProgram program = null;
+            Bytecode bytecode = null;
+            CompactTree compactTree = null;
+            if (m_lazyBodies && !m_singlePass && !m_tableParser &&
+                    !m_compact && m_optLevel == 0 &&
+                    m_tokenReader.packedTokens() != null)
+            {
+                m_tokenReader.setLazyBodies(true);
+            }
+            if (m_bytecode != null) {
+                bytecode = m_bytecode;
+            } else if (m_cache != null) {
+                bytecode = compileCached();
+                progState = new ProgState(bytecode.idTable());
+            } else if (m_singlePass) {
+                bytecode = BytecodeCompiler.compile(m_tokenReader);
+            } else if (m_compact) {
+                compactTree = CompactTreeBuilder.build(m_tokenReader);
+            } else {
+                program = compileProgram();
+            }
 
-            // Execute the program: walk the parse tree.
-            progNode.execute(progState);
+            // The lexer may have buffered input past the end of
+            // the program; give it back to READ.
+            if (m_inputFollowsSource) {
+                System.setIn(m_tokenReader.remainingInput());
+            }
+
+            // Execute the program: run its bytecode, walk the
+            // compact tree, or run its optimized SSA form or walk
+            // its parse tree.
+            if (bytecode != null) {
+                BytecodeInterpreter.execute(bytecode, progState);
+            } else if (compactTree != null) {
+                CompactTreeInterpreter.execute(compactTree, progState);
+            } else {
+                program.execute(progState);
+            }
             System.out.println("===================");
             System.out.println("Execution complete.");
 
@@ -59,42 +354,505 @@ public class Descartes {
         }
     }
 
+    /**
+     * Returns the program's bytecode from the cache, or compiles it
+     * and stores it there.
+     */
+    private Bytecode compileCached()
+            throws IOException, DCSyntaxErrorException
+    {
+        Bytecode bytecode = m_cache.load(m_cacheKey);
+        if (bytecode == null) {
+            bytecode = BytecodeCompiler.compile(m_tokenReader);
+            try {
+                m_cache.store(m_cacheKey, bytecode);
+            } catch (IOException e) {
+                // A cache that can't be written to only costs time.
+            }
+        }
+        return bytecode;
+    }
+
+    /**
+     * Translates a parsed program to SSA form and optimizes it.
+     *
+     * @param progNode The parsed program
+     *
+     * @return The optimized program, or null if the program uses
+     *         loop breaks that the SSA form can't express, in which
+     *         case it should be executed by walking the parse tree
+     */
+    private IRProgram optimize(ProgNode progNode) {
+        IRProgram irProg;
+        try {
+            irProg = new IRBuilder().build(progNode);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        IRPassManager passManager = IRPassManager.forLevel(m_optLevel);
+        passManager.setTimePasses(m_timePasses);
+        passManager.run(irProg);
+
+        // Number it here, once, so that executing it only reads it.
+        irProg.renumber();
+
+        if (m_dumpIR) {
+            System.err.print(irProg);
+        }
+        return irProg;
+    }
+
+    /**
+     * Reads and parses the whole program, without running it, and
+     * prints its first syntax error, if it has one.
+     */
+    private void check()
+            throws IOException
+    {
+        try {
+            parse();
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Reads the whole program and parses it three times, into a
+     * parse tree, into one whose identical expressions are shared,
+     * and into a CompactTree, and prints how much memory each takes
+     * up, without running it.
+     */
+    private void reportTreeSizes()
+            throws IOException
+    {
+        m_tokenReader.readAllTokens();
+        int start = m_tokenReader.packedTokenIndex();
+        int end = m_tokenReader.packedTokens().size();
+
+        try {
+            TokenReader tokenReader = new TokenReader(m_tokenReader,
+                    start, end);
+            tokenReader.setExprInterner(null);
+            ProgNode progNode = new LL1Parser(tokenReader).parseProg();
+            ObjectTreeSize objectSize = new ObjectTreeSize(progNode);
+            progNode = null;
+
+            tokenReader = new TokenReader(m_tokenReader, start, end);
+            ExprInterner interner = new ExprInterner();
+            tokenReader.setExprInterner(interner);
+            progNode = new LL1Parser(tokenReader).parseProg();
+            ObjectTreeSize sharedSize = new ObjectTreeSize(progNode);
+            progNode = null;
+
+            CompactTree compactTree = CompactTreeBuilder.build(
+                    new TokenReader(m_tokenReader, start, end));
+
+            System.out.println(sizeLine("Parse tree:  ",
+                    objectSize.nodeCount(), objectSize.bytes()));
+            System.out.println(sizeLine("Hash-consed: ",
+                    sharedSize.nodeCount(), sharedSize.bytes()));
+            System.out.println(sizeLine("Compact tree:",
+                    compactTree.nodeCount(), compactTree.bytes()));
+            System.out.println(String.format(
+                    "Hash-consing shared %d of %d expression nodes," +
+                    " deduplicating %d bytes (%.1f%%).",
+                    interner.sharedCount(), interner.internCount(),
+                    objectSize.bytes() - sharedSize.bytes(),
+                    100.0 * (objectSize.bytes() - sharedSize.bytes()) /
+                            objectSize.bytes()));
+            System.out.println(String.format(
+                    "The compact tree takes %.1f%% of the parse tree's" +
+                    " memory, %.1f bytes per parse tree node.",
+                    100.0 * compactTree.bytes() / objectSize.bytes(),
+                    (double) compactTree.bytes() / objectSize.nodeCount()));
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Reads and parses the program once, then executes that one
+     * parse tree, or its optimized SSA form, on several threads at
+     * once, each with a program state of its own and the same
+     * input, and checks that they all print the same thing. The
+     * first thread's output is printed, followed by the verdict. A
+     * thread that throws anything unexpected fails the run, rather
+     * than having its output compared.
+     *
+     * @param threads The number of threads to execute on
+     */
+    private void stress(int threads)
+            throws IOException, InterruptedException
+    {
+        final CompiledProgram program;
+        try {
+            if (m_lazyBodies && !m_tableParser && m_optLevel == 0 &&
+                    m_tokenReader.packedTokens() != null)
+            {
+                m_tokenReader.setLazyBodies(true);
+            }
+            program = compileProgram();
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        // Every thread reads the same input.
+        final SharedInput input = new SharedInput(m_inputFollowsSource ?
+                m_tokenReader.remainingInput() : System.in);
+        final IDTable idTable = m_tokenReader.idTable();
+
+        // The threads are held at the gate until all have started,
+        // so that their executions overlap.
+        final CountDownLatch gate = new CountDownLatch(1);
+        final String[] outputs = new String[threads];
+        final Throwable[] failures = new Throwable[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int worker = i;
+            workers[i] = new Thread(new Runnable() {
+                public void run() {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    PrintStream out = new PrintStream(bytes, true);
+                    ProgState progState = new ProgState(idTable,
+                            input.open(), out);
+                    try {
+                        gate.await();
+                        program.execute(progState);
+                        out.println("===================");
+                        out.println("Execution complete.");
+                    } catch (DCRuntimeErrorException e) {
+                        out.println(e.getMessage());
+                        out.println("================================");
+                        out.println("Execution completed with errors.");
+                    } catch (InterruptedException e) {
+                        return;
+                    } catch (Throwable e) {
+                        failures[worker] = e;
+                        return;
+                    }
+                    progState.dumpSymTab();
+                    outputs[worker] = bytes.toString();
+                }
+            }, "stress-" + i);
+            workers[i].start();
+        }
+        gate.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // Only the outputs of the threads that finished are compared.
+        int failed = 0;
+        int differing = 0;
+        String first = null;
+        for (int i = 0; i < threads; i++) {
+            if (failures[i] != null) {
+                failed++;
+            } else if (first == null) {
+                first = outputs[i];
+            } else if (!outputs[i].equals(first)) {
+                differing++;
+            }
+        }
+        if (first != null) {
+            System.out.print(first);
+        }
+        System.out.println("===================");
+        for (int i = 0; i < threads; i++) {
+            if (failures[i] != null) {
+                System.out.println("An unexpected exception occurred" +
+                        " on thread " + i + ":");
+                failures[i].printStackTrace(System.out);
+            }
+        }
+        if (failed == 0 && differing == 0) {
+            System.out.println("Executed on " + threads +
+                    " threads at once; every output was the same.");
+        } else {
+            System.out.println("Executed on " + threads +
+                    " threads at once; " + failed + " failed and " +
+                    differing + " outputs differed from the first.");
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Reads and parses the program, then prints the residual
+     * program that results from specializing it against the given
+     * READ input bindings.
+     *
+     * @param bindings Maps bound input variable names to values
+     *
+     * @see PartialEvaluator
+     */
+    private void specialize(Map<String, Double> bindings)
+            throws IOException
+    {
+        try {
+            ProgNode progNode = parse();
+            PartialEvaluator evaluator = new PartialEvaluator(bindings);
+            System.out.print(evaluator.specialize(progNode));
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+        }
+    }
+
 
     //================//
     // Static Methods //
     //================//
 
+    /**
+     * Parses a program, to be run from Java code as many times as
+     * need be.
+     *
+     * @param source The program's source code
+     *
+     * @return The program, ready to run
+     *
+     * @throws DCSyntaxErrorException If the program has a syntax
+     *                                error
+     *
+     * @see CompiledProgram#run(double[], CompiledProgram.OutputSink)
+     */
+    public static CompiledProgram compile(String source)
+            throws DCSyntaxErrorException
+    {
+        return compile(source, 0);
+    }
+
+    /**
+     * Parses a program and, at a nonzero optimization level,
+     * translates it to SSA form and optimizes it, to be run from
+     * Java code as many times as need be.
+     *
+     * @param source The program's source code
+     * @param optLevel 0 to walk the parse tree, or 1 or 2 to run
+     *                 the program in optimized SSA form
+     *
+     * @return The program, ready to run
+     *
+     * @throws DCSyntaxErrorException If the program has a syntax
+     *                                error
+     */
+    public static CompiledProgram compile(String source, int optLevel)
+            throws DCSyntaxErrorException
+    {
+        if (optLevel < 0 || optLevel > 2) {
+            throw new IllegalArgumentException(
+                    "Invalid optimization level: " + optLevel);
+        }
+        return compile("<source>",
+                source.getBytes(StandardCharsets.ISO_8859_1), optLevel);
+    }
+
+    /**
+     * Parses and optimizes a program, as above, whose syntax errors
+     * are reported against the given file name.
+     */
+    static CompiledProgram compile(String fileName, byte[] source,
+                                   int optLevel)
+            throws DCSyntaxErrorException
+    {
+        Descartes compiler = new Descartes(new TokenReader(fileName,
+                source, 0, source.length, new IDTable()));
+        compiler.setOptLevel(optLevel);
+        try {
+            return compiler.compileProgram();
+        } catch (IOException e) {
+            // The source is already in memory.
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Program entry.
      *
      * Sets up to read the program source code, parse it and run
      * it.
      *
-     * @param args The first (and only) argument is the name of a
-     *             Descartes source code file.
+     * @param args The name of a Descartes source code file,
+     *             optionally preceded by command-line options
      */
     public static void main(String[] args) {
+        // Or compile a program to a file, or run one compiled so.
+        if (args.length > 1 && args[0].equals("compile")) {
+            compileCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("run")) {
+            runCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("batch")) {
+            batchCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("sweep")) {
+            sweepCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("worker")) {
+            workerCommand(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("daemon")) {
+            daemonCommand(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("serve")) {
+            serveCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("lex")) {
+            lexCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("scan")) {
+            scanCommand(args);
+            return;
+        }
+        if (args.length > 1 && args[0].equals("lazy")) {
+            lazyCommand(args);
+            return;
+        }
+
+        String sourceFileName = null;
+        Map<String, Double> bindings = null;
+        int optLevel = 0;
+        boolean timePasses = false;
+        boolean dumpIR = false;
+        boolean tableParser = false;
+        boolean singlePass = false;
+        boolean compact = false;
+        boolean hashCons = false;
+        boolean lazyBodies = false;
+        boolean check = false;
+        boolean treeSizes = false;
+        int stressThreads = 0;
+        String cacheDir = null;
+
         try {
-            // Get the source file name and create an InputStream
-            // to read from.
-            if (args.length != 1) {
-                System.err.println("Usage:\n\tjava Descartes source_file");
-                System.exit(-1);
+            // Parse the command-line options; the source file name
+            // comes last.
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--specialize") && i + 1 < args.length) {
+                    bindings = parseBindings(args[++i]);
+                } else if (args[i].matches("-O[012]")) {
+                    optLevel = args[i].charAt(2) - '0';
+                } else if (args[i].equals("--time-passes")) {
+                    timePasses = true;
+                } else if (args[i].equals("--dump-ir")) {
+                    dumpIR = true;
+                } else if (args[i].equals("--ll1")) {
+                    tableParser = true;
+                } else if (args[i].equals("--bytecode")) {
+                    singlePass = true;
+                } else if (args[i].equals("--compact")) {
+                    compact = true;
+                } else if (args[i].equals("--hash-cons")) {
+                    hashCons = true;
+                } else if (args[i].equals("--tree-sizes")) {
+                    treeSizes = true;
+                } else if (args[i].equals("--lazy")) {
+                    lazyBodies = true;
+                } else if (args[i].equals("--check")) {
+                    check = true;
+                } else if (args[i].equals("--stress") && i + 1 < args.length &&
+                        args[i + 1].matches("[1-9][0-9]{0,3}"))
+                {
+                    stressThreads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--cache") && i + 1 < args.length) {
+                    cacheDir = args[++i];
+                } else if (sourceFileName == null && i == args.length - 1) {
+                    sourceFileName = args[i];
+                } else {
+                    usage();
+                    return;
+                }
+            }
+            if (sourceFileName == null) {
+                usage();
                 return;
             }
-            String sourceFileName = args[0];
-            InputStream inStream = new FileInputStream(sourceFileName);
+
+            // Create an InputStream to read the source file from;
+            // "-" streams the program through standard input.
+            boolean fromStdin = sourceFileName.equals("-");
+            InputStream inStream = fromStdin ?
+                    System.in : new FileInputStream(sourceFileName);
 
             // Create a TokenReader that will read source code
             // tokens from the InputStream.
             TokenReader tokenReader = new TokenReader(
                     sourceFileName, inStream);
 
-            // Construct the interpreter and run the program.
+            // A cached program is looked up by its source code, so
+            // that's read in whole first; it's only tokenized if it
+            // has to be compiled.
+            boolean cached = !fromStdin && cacheDir != null &&
+                    !check && !treeSizes && bindings == null &&
+                    stressThreads == 0;
+            ProgramCache cache = null;
+            String cacheKey = null;
+            if (cached) {
+                byte[] source = inStream.readAllBytes();
+                cache = new ProgramCache(Paths.get(cacheDir));
+                cacheKey = ProgramCache.key(source);
+                tokenReader = new TokenReader(sourceFileName, source,
+                        0, source.length, tokenReader.idTable());
+            }
+
+            if (hashCons) {
+                tokenReader.setExprInterner(new ExprInterner());
+            }
+
+            // Otherwise a source file can be read up front, and if
+            // it's large, its tokens read in parallel; standard input
+            // is read as it arrives. Lazy bodies need all of the
+            // tokens.
+            if (!fromStdin && !cached) {
+                if (lazyBodies && !check) {
+                    tokenReader.readAllTokens();
+                } else {
+                    tokenReader.readInParallel();
+                }
+            }
+
+            // Construct the interpreter and run (or specialize) the
+            // program.
             Descartes interpreter = new Descartes(tokenReader);
-            interpreter.run();
+            interpreter.setOptLevel(optLevel);
+            interpreter.setTimePasses(timePasses);
+            interpreter.setDumpIR(dumpIR);
+            interpreter.setTableParser(tableParser);
+            interpreter.setSinglePass(singlePass);
+            interpreter.setCompact(compact);
+            interpreter.setLazyBodies(lazyBodies);
+            interpreter.setCache(cache, cacheKey);
+            interpreter.setInputFollowsSource(fromStdin);
+            if (check) {
+                interpreter.check();
+            } else if (treeSizes) {
+                interpreter.reportTreeSizes();
+            } else if (bindings != null) {
+                interpreter.specialize(bindings);
+            } else if (stressThreads > 0) {
+                interpreter.stress(stressThreads);
+            } else {
+                interpreter.run();
+            }
         } catch (FileNotFoundException e) {
-            System.err.println("Source file not found: \"" + args[0] + "\"");
+            System.err.println("Source file not found: \"" +
+                    sourceFileName + "\"");
+            System.exit(-1);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid input binding: " + e.getMessage());
             System.exit(-1);
         } catch (Exception e) {
             System.err.println("An unexpected exception occurred:");
@@ -104,4 +862,771 @@ public class Descartes {
         }
     }
 
+    /**
+     * Compiles a program to bytecode and writes it to a file, for
+     * the "compile" command.
+     *
+     * @param args "compile", optionally "--list" to print the
+     *             bytecode too, the name of a Descartes source code
+     *             file and optionally that of the file to write,
+     *             which otherwise is the source file's with a .dcc
+     *             extension
+     */
+    private static void compileCommand(String[] args) {
+        int i = 1;
+        boolean list = args[i].equals("--list");
+        if (list) {
+            i++;
+        }
+        if (i >= args.length || args.length - i > 2) {
+            usage();
+            return;
+        }
+        String sourceFileName = args[i];
+        String outputFileName = (i + 1 < args.length) ? args[i + 1] :
+                sourceFileName.replaceFirst("\\.dc$", "") + ".dcc";
+
+        try {
+            TokenReader tokenReader = new TokenReader(sourceFileName,
+                    new FileInputStream(sourceFileName));
+            tokenReader.readInParallel();
+            Bytecode bytecode = BytecodeCompiler.compile(tokenReader);
+
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(Paths.get(outputFileName))))
+            {
+                bytecode.write(out);
+            } catch (IOException e) {
+                System.err.println("Couldn't write \"" + outputFileName +
+                        "\": " + e.getMessage());
+                System.exit(-1);
+            }
+            if (list) {
+                System.out.print(bytecode);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Source file not found: \"" +
+                    sourceFileName + "\"");
+            System.exit(-1);
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs a program from a file written by the "compile" command,
+     * for the "run" command. Its source code isn't needed.
+     *
+     * @param args "run" and the name of the compiled program's file
+     */
+    private static void runCommand(String[] args) {
+        if (args.length != 2) {
+            usage();
+            return;
+        }
+        String fileName = args[1];
+
+        Bytecode bytecode;
+        try {
+            bytecode = Bytecode.load(Paths.get(fileName));
+        } catch (NoSuchFileException e) {
+            System.err.println("Compiled program not found: \"" +
+                    fileName + "\"");
+            System.exit(-1);
+            return;
+        } catch (IOException e) {
+            System.err.println(fileName + ": " + e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        try {
+            new Descartes(bytecode).run();
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs a program over every row of READ inputs in a file, in
+     * parallel, for the "batch" command, and writes each row's
+     * output in the order of the rows; or with "--bench", measures
+     * how that scales with the number of threads. With "--lanes",
+     * rows run a block at a time on lane engines.
+     *
+     * @param args "batch", optionally an optimization level,
+     *             "--threads" and a number of threads, "--lanes"
+     *             and "--bench", then the names of the source code file,
+     *             the input file and optionally the output file,
+     *             which otherwise is standard output
+     *
+     * @see BatchRunner
+     */
+    private static void batchCommand(String[] args) {
+        int optLevel = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean lanes = false;
+        boolean bench = false;
+        int i = 1;
+        for (; i < args.length && args[i].startsWith("-"); i++) {
+            if (args[i].matches("-O[012]")) {
+                optLevel = args[i].charAt(2) - '0';
+            } else if (args[i].equals("--threads") && i + 1 < args.length &&
+                    args[i + 1].matches("[1-9][0-9]{0,3}"))
+            {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--lanes")) {
+                lanes = true;
+            } else if (args[i].equals("--bench")) {
+                bench = true;
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (args.length - i < 2 || args.length - i > 3) {
+            usage();
+            return;
+        }
+        String sourceFileName = args[i];
+        String inputFileName = args[i + 1];
+        String outputFileName = (i + 2 < args.length) ? args[i + 2] : null;
+
+        CompiledProgram program;
+        CompactTree laneTree = null;
+        try {
+            byte[] source = Files.readAllBytes(Paths.get(sourceFileName));
+            program = compile(sourceFileName, source, optLevel);
+            if (lanes) {
+                laneTree = CompactTreeBuilder.build(new TokenReader(
+                        sourceFileName, source, 0, source.length,
+                        new IDTable()));
+            }
+        } catch (NoSuchFileException e) {
+            System.err.println("Source file not found: \"" +
+                    sourceFileName + "\"");
+            System.exit(-1);
+            return;
+        } catch (IOException e) {
+            System.err.println(sourceFileName + ": " + e.getMessage());
+            System.exit(-1);
+            return;
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(inputFileName),
+                    StandardCharsets.ISO_8859_1));
+            try {
+                if (bench) {
+                    List<String> lines = new ArrayList<String>();
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        line = line.trim();
+                        if (!line.isEmpty() && !line.startsWith("#")) {
+                            lines.add(line);
+                        }
+                    }
+                    BatchRunner.benchmark(program, laneTree,
+                            LaneEngine.LANES, lines.toArray(new String[0]),
+                            threads, System.out);
+                    return;
+                }
+
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        (outputFileName != null) ?
+                                new FileOutputStream(outputFileName) :
+                                System.out,
+                        StandardCharsets.ISO_8859_1), 1 << 16);
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                BatchRunner runner = new BatchRunner(program, laneTree,
+                        LaneEngine.LANES, pool);
+                long start = System.nanoTime();
+                try {
+                    runner.run(in, out);
+                } finally {
+                    pool.shutdown();
+                    if (outputFileName != null) {
+                        out.close();
+                    }
+                }
+                System.err.println(String.format(
+                        "Ran %d rows on %d threads in %.3f s;" +
+                        " %d stopped with errors.", runner.rowCount(),
+                        threads, (System.nanoTime() - start) / 1e9,
+                        runner.errorCount()));
+                if (lanes) {
+                    System.err.println(String.format(
+                            "%d rows ran again one at a time, dropped by" +
+                            " the lane engines.", runner.fallbackCount()));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Couldn't open file: " + e.getMessage());
+            System.exit(-1);
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs a program over every row of READ inputs in a file, split
+     * into shards among worker processes, for the "sweep" command,
+     * and writes each row's output to a file in the order of the
+     * rows.
+     *
+     * @param args "sweep", optionally an optimization level,
+     *             "--lanes", "--workers" and a number of local
+     *             workers, "--shard" and a number of rows per shard,
+     *             and "--listen" and a port for workers on other
+     *             machines to connect to, then the names of the
+     *             source code file, the input file and the output
+     *             file
+     *
+     * @see SweepCoordinator
+     */
+    private static void sweepCommand(String[] args) {
+        int optLevel = 0;
+        boolean lanes = false;
+        int workers = Runtime.getRuntime().availableProcessors();
+        int shardRows = 16384;
+        int port = -1;
+        int i = 1;
+        for (; i < args.length && args[i].startsWith("-"); i++) {
+            if (args[i].matches("-O[012]")) {
+                optLevel = args[i].charAt(2) - '0';
+            } else if (args[i].equals("--lanes")) {
+                lanes = true;
+            } else if (args[i].equals("--workers") && i + 1 < args.length &&
+                    args[i + 1].matches("[0-9]{1,4}"))
+            {
+                workers = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--shard") && i + 1 < args.length &&
+                    args[i + 1].matches("[1-9][0-9]{0,7}"))
+            {
+                shardRows = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--listen") && i + 1 < args.length &&
+                    args[i + 1].matches("[0-9]{1,5}") &&
+                    Integer.parseInt(args[i + 1]) <= 65535)
+            {
+                port = Integer.parseInt(args[++i]);
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (args.length - i != 3 || (workers == 0 && port < 0)) {
+            usage();
+            return;
+        }
+        String sourceFileName = args[i];
+        String inputFileName = args[i + 1];
+        String outputFileName = args[i + 2];
+
+        // Compile the program here first, so that a syntax error is
+        // reported once, before any worker is launched.
+        byte[] source;
+        try {
+            source = Files.readAllBytes(Paths.get(sourceFileName));
+            compile(sourceFileName, source, optLevel);
+        } catch (NoSuchFileException e) {
+            System.err.println("Source file not found: \"" +
+                    sourceFileName + "\"");
+            System.exit(-1);
+            return;
+        } catch (IOException e) {
+            System.err.println(sourceFileName + ": " + e.getMessage());
+            System.exit(-1);
+            return;
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+            return;
+        }
+
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(inputFileName),
+                    StandardCharsets.ISO_8859_1));
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        new FileOutputStream(outputFileName),
+                        StandardCharsets.ISO_8859_1), 1 << 16);
+                ServerSocket server = (port >= 0) ? new ServerSocket(port) :
+                        new ServerSocket(0, 50,
+                                InetAddress.getLoopbackAddress());
+                if (port >= 0) {
+                    System.err.println("Listening for workers on port " +
+                            server.getLocalPort() + ".");
+                }
+
+                SweepCoordinator coordinator = new SweepCoordinator(
+                        sourceFileName, source, optLevel, lanes, shardRows);
+                int workerThreads = Math.max(1,
+                        Runtime.getRuntime().availableProcessors() /
+                                Math.max(workers, 1));
+                long start = System.nanoTime();
+                try {
+                    coordinator.run(in, out, server, workers, workerThreads,
+                            System.err);
+                } finally {
+                    out.close();
+                }
+                System.err.println(String.format(
+                        "Swept %d rows in %d shards in %.3f s;" +
+                        " %d stopped with errors.", coordinator.rowCount(),
+                        coordinator.shardCount(),
+                        (System.nanoTime() - start) / 1e9,
+                        coordinator.errorCount()));
+                if (lanes) {
+                    System.err.println(String.format(
+                            "%d rows ran again one at a time, dropped by" +
+                            " the lane engines.",
+                            coordinator.fallbackCount()));
+                }
+                if (coordinator.restartCount() > 0) {
+                    System.err.println(String.format(
+                            "Local workers were launched again %d times.",
+                            coordinator.restartCount()));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("Couldn't open file: " + e.getMessage());
+            System.exit(-1);
+        } catch (IOException e) {
+            System.err.println("Sweep failed: " + e.getMessage());
+            System.exit(-1);
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs shards of a sweep for a coordinator, for the "worker"
+     * command, until it has no more.
+     *
+     * @param args "worker", optionally "--threads" and a number of
+     *             threads, then the coordinator's host and port, as
+     *             HOST:PORT
+     *
+     * @see SweepWorker
+     */
+    private static void workerCommand(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int i = 1;
+        if (i + 1 < args.length && args[i].equals("--threads") &&
+                args[i + 1].matches("[1-9][0-9]{0,3}"))
+        {
+            threads = Integer.parseInt(args[i + 1]);
+            i += 2;
+        }
+        int colon = (i < args.length) ? args[i].lastIndexOf(':') : -1;
+        if (args.length - i != 1 || colon <= 0 ||
+                !args[i].substring(colon + 1).matches("[0-9]{1,5}"))
+        {
+            usage();
+            return;
+        }
+        String host = args[i].substring(0, colon);
+        int port = Integer.parseInt(args[i].substring(colon + 1));
+
+        try {
+            new SweepWorker(host, port, threads).run();
+        } catch (ConnectException e) {
+            System.err.println("Couldn't connect to the coordinator at " +
+                    args[i] + ": " + e.getMessage());
+            System.exit(-1);
+        } catch (IOException e) {
+            System.err.println("Lost the coordinator: " + e.getMessage());
+            System.exit(-1);
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Runs the interpreter as a daemon that DaemonClients run
+     * programs through, for the "daemon" command, until it's
+     * killed; or with "--bench", measures scripts' latency with and
+     * without one.
+     *
+     * @param args "daemon", optionally "--socket" and the socket's
+     *             path; or "daemon", "--bench", optionally "--runs"
+     *             and the runs of each script, and the scripts'
+     *             source code files
+     *
+     * @see InterpreterDaemon
+     */
+    private static void daemonCommand(String[] args) {
+        try {
+            if (args.length > 1 && args[1].equals("--bench")) {
+                int runs = 10;
+                int i = 2;
+                if (i + 1 < args.length && args[i].equals("--runs") &&
+                        args[i + 1].matches("[1-9][0-9]{0,3}"))
+                {
+                    runs = Integer.parseInt(args[i + 1]);
+                    i += 2;
+                }
+                if (i == args.length) {
+                    usage();
+                    return;
+                }
+                InterpreterDaemon.benchmark(
+                        Arrays.copyOfRange(args, i, args.length), runs,
+                        System.out);
+                return;
+            }
+
+            String socket = DaemonProtocol.defaultSocket();
+            if (args.length == 3 && args[1].equals("--socket")) {
+                socket = args[2];
+            } else if (args.length != 1) {
+                usage();
+                return;
+            }
+            final InterpreterDaemon daemon = new InterpreterDaemon(
+                    Paths.get(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        daemon.close();
+                    } catch (IOException e) {
+                        // The socket file is left behind, and
+                        // replaced by the next daemon.
+                    }
+                }
+            });
+            System.err.println("Listening on " + daemon.socket() + ".");
+            daemon.serve();
+        } catch (IOException e) {
+            System.err.println("Daemon failed: " + e.getMessage());
+            System.exit(-1);
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Serves runs of programs over HTTP, on the loopback interface,
+     * until the JVM is stopped.
+     *
+     * @param args "serve", then optionally "--port" and a port,
+     *             "--max-runs" and the most runs at once,
+     *             "--tenant-runs" and the most for any one tenant,
+     *             "--deadline" and the longest a run may take in
+     *             milliseconds, and "--programs" and the most
+     *             compiled programs kept
+     */
+    private static void serveCommand(String[] args) {
+        int port = ExecutionServer.DEFAULT_PORT;
+        int maxRuns = 4 * Runtime.getRuntime().availableProcessors();
+        int maxTenantRuns = -1;
+        long deadlineMillis = 10000;
+        int maxPrograms = 256;
+        for (int i = 1; i < args.length; i += 2) {
+            String value = (i + 1 < args.length) ? args[i + 1] : "";
+            if (args[i].equals("--port") && value.matches("[0-9]{1,5}") &&
+                    Integer.parseInt(value) <= 65535)
+            {
+                port = Integer.parseInt(value);
+            } else if (args[i].equals("--max-runs") &&
+                    value.matches("[1-9][0-9]{0,5}"))
+            {
+                maxRuns = Integer.parseInt(value);
+            } else if (args[i].equals("--tenant-runs") &&
+                    value.matches("[1-9][0-9]{0,5}"))
+            {
+                maxTenantRuns = Integer.parseInt(value);
+            } else if (args[i].equals("--deadline") &&
+                    value.matches("[1-9][0-9]{0,8}"))
+            {
+                deadlineMillis = Long.parseLong(value);
+            } else if (args[i].equals("--programs") &&
+                    value.matches("[1-9][0-9]{0,5}"))
+            {
+                maxPrograms = Integer.parseInt(value);
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (maxTenantRuns < 0 || maxTenantRuns > maxRuns) {
+            maxTenantRuns = maxRuns;
+        }
+
+        try {
+            final ExecutionServer server = new ExecutionServer(
+                    new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                                          port),
+                    maxRuns, maxTenantRuns, deadlineMillis, maxPrograms);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override
+                public void run() {
+                    server.stop();
+                }
+            });
+            server.start();
+            System.err.println("Serving on http://" +
+                    server.address().getHostString() + ":" +
+                    server.address().getPort() + "/ with " +
+                    (server.usesVirtualThreads() ? "virtual" : "platform") +
+                    " threads.");
+        } catch (IOException e) {
+            System.err.println("Couldn't serve on port " + port + ": " +
+                    e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Measures how fast the lexer reads sources, for the "lex"
+     * command.
+     *
+     * @param args "lex", "--bench" and optionally the names of
+     *             source code files, without which a program is
+     *             generated to measure
+     *
+     * @see Benchmarks#benchmarkLexer(String[], PrintStream)
+     */
+    private static void lexCommand(String[] args) {
+        if (!args[1].equals("--bench")) {
+            usage();
+            return;
+        }
+        try {
+            Benchmarks.benchmarkLexer(Arrays.copyOfRange(args, 2,
+                    args.length), System.out);
+        } catch (NoSuchFileException e) {
+            System.err.println("Source file not found: \"" +
+                    e.getFile() + "\"");
+            System.exit(-1);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(-1);
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Measures the lexer's scans of runs of bytes, for the "scan"
+     * command. Run with -Ddescartes.lexer.swar=false, it measures
+     * their scalar loops instead.
+     *
+     * @param args "scan", "--bench", and optionally "--mb" and the
+     *             megabytes of text to scan
+     *
+     * @see Benchmarks#benchmarkScans(int, PrintStream)
+     */
+    private static void scanCommand(String[] args) {
+        int megabytes = 8;
+        if (args.length == 4 && args[2].equals("--mb") &&
+                args[3].matches("[1-9][0-9]{0,2}"))
+        {
+            megabytes = Integer.parseInt(args[3]);
+        } else if (args.length != 2) {
+            usage();
+            return;
+        }
+        if (!args[1].equals("--bench")) {
+            usage();
+            return;
+        }
+        try {
+            Benchmarks.benchmarkScans(megabytes, System.out);
+        } catch (Exception e) {
+            // The scans neither read files nor parse.
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Measures how much --lazy saves in starting a program with a
+     * large cold region, for the "lazy" command.
+     *
+     * @param args "lazy", "--bench", optionally "--statements" and
+     *             the statements in the cold region of the program
+     *             generated to measure, and "--runs" and the runs
+     *             each way, then optionally the name of a source
+     *             code file to measure instead
+     *
+     * @see Benchmarks#benchmarkLazyBodies(String, int, int, PrintStream)
+     */
+    private static void lazyCommand(String[] args) {
+        if (!args[1].equals("--bench")) {
+            usage();
+            return;
+        }
+        int statements = 100000;
+        int runs = 5;
+        int i = 2;
+        for (; i + 1 < args.length && args[i].startsWith("--"); i += 2) {
+            if (args[i].equals("--statements") &&
+                    args[i + 1].matches("[1-9][0-9]{0,7}"))
+            {
+                statements = Integer.parseInt(args[i + 1]);
+            } else if (args[i].equals("--runs") &&
+                    args[i + 1].matches("[1-9][0-9]{0,3}"))
+            {
+                runs = Integer.parseInt(args[i + 1]);
+            } else {
+                usage();
+                return;
+            }
+        }
+        if (args.length - i > 1) {
+            usage();
+            return;
+        }
+        String sourceFileName = (i < args.length) ? args[i] : null;
+
+        try {
+            Benchmarks.benchmarkLazyBodies(sourceFileName, statements,
+                    runs, System.out);
+        } catch (NoSuchFileException e) {
+            System.err.println("Source file not found: \"" +
+                    e.getFile() + "\"");
+            System.exit(-1);
+        } catch (DCSyntaxErrorException e) {
+            System.out.println(e.getMessage());
+            System.exit(-1);
+        } catch (Exception e) {
+            System.err.println("An unexpected exception occurred:");
+            System.err.println(e.getMessage());
+            e.printStackTrace();
+            System.exit(-1);
+        }
+    }
+
+    /**
+     * Returns a line of the tree size report.
+     */
+    private static String sizeLine(String name, long nodeCount,
+                                   long bytes) {
+        return String.format("%s %10d nodes, %12d bytes, %5.1f bytes" +
+                " per node", name, nodeCount, bytes,
+                (double) bytes / Math.max(nodeCount, 1));
+    }
+
+    /**
+     * Prints the command-line usage and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage:\n\tjava Descartes [options] source_file\n" +
+                "\tjava Descartes compile [--list] source_file" +
+                " [output_file]\n" +
+                "\tjava Descartes run compiled_file\n" +
+                "\tjava Descartes batch [-O1|-O2] [--threads N] [--lanes]" +
+                " [--bench] source_file input_file [output_file]\n" +
+                "\tjava Descartes sweep [-O1|-O2] [--lanes] [--workers N]" +
+                " [--shard ROWS] [--listen PORT] source_file input_file" +
+                " output_file\n" +
+                "\tjava Descartes worker [--threads N] host:port\n" +
+                "\tjava Descartes daemon [--socket path]\n" +
+                "\tjava Descartes daemon --bench [--runs N] source_file..." +
+                "\n" +
+                "\tjava Descartes serve [--port N] [--max-runs N]" +
+                " [--tenant-runs N] [--deadline MS] [--programs N]\n" +
+                "\tjava Descartes lex --bench [source_file...]\n" +
+                "\tjava Descartes scan --bench [--mb N]\n" +
+                "\tjava Descartes lazy --bench [--statements N] [--runs N]" +
+                " [source_file]\n" +
+                "\tjava DaemonClient [--socket path] [options]" +
+                " source_file\n" +
+                "\tsource_file may be - to read the program from" +
+                " standard input\n" +
+                "Options:\n" +
+                "\t--specialize ID=VALUE[,ID=VALUE...]\n" +
+                "\t\tprint the program specialized against the given" +
+                " READ inputs\n" +
+                "\t-O0, -O1, -O2\n" +
+                "\t\toptimization level (default -O0: walk the parse" +
+                " tree)\n" +
+                "\t--time-passes\n" +
+                "\t\tprint the time taken by each optimization pass\n" +
+                "\t--dump-ir\n" +
+                "\t\tprint the optimized intermediate representation\n" +
+                "\t--ll1\n" +
+                "\t\tparse with the table-driven LL(1) parser\n" +
+                "\t--bytecode\n" +
+                "\t\tcompile to bytecode while parsing and run that\n" +
+                "\t--compact\n" +
+                "\t\tparse into a compact array-based tree and walk that\n" +
+                "\t--hash-cons\n" +
+                "\t\tshare identical expressions in the parse tree\n" +
+                "\t--tree-sizes\n" +
+                "\t\tprint the memory taken by the parse tree, shared" +
+                " or not, and the compact tree\n" +
+                "\t--lazy\n" +
+                "\t\tparse LOOP, IF and ELSE bodies when they first run\n" +
+                "\t--check\n" +
+                "\t\tparse the whole program without running it\n" +
+                "\t--stress THREADS\n" +
+                "\t\trun the parsed program on THREADS threads at once" +
+                " and compare their output\n" +
+                "\t--cache DIR\n" +
+                "\t\trun as bytecode, compiled once and kept in DIR");
+        System.exit(-1);
+    }
+
+    /**
+     * Parses READ input bindings of the form "ID=VALUE,ID=VALUE".
+     *
+     * @param text The comma-separated bindings
+     *
+     * @return A map from variable names to their bound values
+     */
+    private static Map<String, Double> parseBindings(String text) {
+        Map<String, Double> bindings = new HashMap<String, Double>();
+
+        for (String binding : text.split(",")) {
+            int eq = binding.indexOf('=');
+            if (eq <= 0) {
+                throw new NumberFormatException(binding);
+            }
+            bindings.put(binding.substring(0, eq).trim(),
+                    Double.parseDouble(binding.substring(eq + 1).trim()));
+        }
+
+        return bindings;
+    }
+
 }
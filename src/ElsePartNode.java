@@ -25,7 +25,7 @@ public class ElsePartNode {
     // Member Variable //
     //==================//
 
-    private StmtListNode m_stmtList;
+    private final StmtListNode m_stmtList;
 
 
     //=========//
@@ -54,6 +54,14 @@ public class ElsePartNode {
         }
     }
 
+    /**
+     * Accessor for the ELSE statement list (null if there is no
+     * ELSE clause).
+     */
+    public StmtListNode stmtList() {
+        return m_stmtList;
+    }
+
 
     //================//
     // Static Methods //
@@ -98,7 +106,9 @@ public class ElsePartNode {
 
         if (token.getCode() == TokenCode.T_ELSE) {
             // Read the statement list for this ELSE clause.
-            StmtListNode stmtList = StmtListNode.parseStmtList(tokenReader);
+            StmtListNode stmtList = LazyStmtListNode.parseBody(
+                    tokenReader,
+                    "Expected 'FI' after IF-THEN(-ELSE) clause.");
 
             // Create the populated ElsePartNode.
             elsePart = new ElsePartNode(stmtList);
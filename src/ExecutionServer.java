@@ -0,0 +1,716 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A local HTTP service that runs programs for any number of clients
+ * at once, in one JVM.
+ *
+ * A client first posts a program's source to /programs, and is
+ * given its ID; the program is compiled once and kept in a bounded
+ * cache, least recently used out first, under an ID derived from
+ * its source and optimization level. The client then posts each
+ * run's input to /run, naming the program; READ reads values from
+ * the request's body as they arrive, and the run's output streams
+ * back as the response's body, as it's printed, in the same format
+ * as "java Descartes" but without READ's prompts.
+ *
+ * <pre>
+ *     POST /programs[?opt=0|1|2]          body: the source
+ *         201 and the program's ID, or 400 and the syntax error
+ *     POST /run?program=ID[&amp;deadline=MS]  body: the input values
+ *         200 and the output, or 404 if the program isn't kept
+ * </pre>
+ *
+ * Each request runs on a virtual thread of its own where the JVM
+ * has them, so a run waiting on its client holds no carrier thread,
+ * and on a platform thread otherwise. Each run has a program state
+ * of its own. Every run has a deadline, by default and at most the
+ * server's: past it, the run stops at its next loop iteration with
+ * a runtime error, and one stuck waiting on its client is cut off.
+ * At most a given number of runs go at once, and at most a given
+ * number for any one tenant, named by a request's X-Tenant header:
+ * a tenant over its limit is turned away with 429, and a request
+ * that can't start before its deadline with 503.
+ */
+public class ExecutionServer {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * The program state of one run: READ reads the request's body,
+     * PRINT and the symbol table write the response's, and poll()
+     * stops the run once its deadline has passed or its client has
+     * gone.
+     *
+     * The response's status and headers are sent with the first of
+     * the output, which is buffered until there's enough of it, the
+     * run waits for input, or it ends.
+     */
+    private static class ServiceState extends ProgState {
+
+        private final HttpExchange m_exchange;
+        private final InputStream m_in;
+        private final byte[] m_inBuffer;
+        private int m_inPosition;
+        private int m_inLimit;
+
+        private final StringBuilder m_pending;
+        private boolean m_started;
+        private volatile boolean m_lost;
+
+        // The thread running the program, until it has finished.
+        private Thread m_thread;
+
+        // When the run must end, by System.nanoTime(), and the
+        // deadline it was given.
+        private final long m_deadline;
+        private final long m_deadlineMillis;
+        private int m_polls;
+
+        ServiceState(IDTable idTable, HttpExchange exchange, long deadline,
+                     long deadlineMillis) {
+            super(idTable, null, null);
+            m_exchange = exchange;
+            m_in = exchange.getRequestBody();
+            m_inBuffer = new byte[4096];
+            m_inPosition = 0;
+            m_inLimit = 0;
+            m_pending = new StringBuilder();
+            m_started = false;
+            m_lost = false;
+            m_thread = Thread.currentThread();
+            m_deadline = deadline;
+            m_deadlineMillis = deadlineMillis;
+            m_polls = 0;
+        }
+
+        /**
+         * Stops the run if its client has gone, or, every so often,
+         * if its deadline has passed.
+         */
+        @Override
+        public void poll()
+                throws DCRuntimeErrorException
+        {
+            if (m_lost) {
+                throw new DCRuntimeErrorException("The client has gone.");
+            }
+            if ((++m_polls & (POLL_INTERVAL - 1)) == 0) {
+                checkDeadline();
+            }
+        }
+
+        /**
+         * Reads the next value of the request's body into the
+         * identified variable, first sending the output so far, so
+         * that a client can see it before it answers.
+         *
+         * @throws DCRuntimeErrorException If there's no value left,
+         *                                 it isn't a number, or the
+         *                                 deadline has passed
+         */
+        @Override
+        public void readVar(int symbol)
+                throws DCRuntimeErrorException
+        {
+            checkDeadline();
+            flush();
+            String name = symTab().idTable().name(symbol);
+            String token;
+            try {
+                token = nextToken();
+            } catch (IOException e) {
+                checkDeadline();
+                throw new DCRuntimeErrorException(
+                        "Couldn't read a value for variable: " + name);
+            }
+            if (token == null) {
+                throw new DCRuntimeErrorException(
+                        "No input left to read into variable: " + name);
+            }
+            try {
+                symTab().set(symbol, Double.parseDouble(token));
+            } catch (NumberFormatException e) {
+                throw new DCRuntimeErrorException("Invalid value for" +
+                        " variable " + name + ": " + token);
+            }
+        }
+
+        @Override
+        public void printValue(String id, double value) {
+            write("Value of " + id + ": " + value + "\n");
+        }
+
+        @Override
+        public void dumpSymTab() {
+            write("Symbol Table:\n");
+            for (String key : symTab().names()) {
+                write(key + " = " + symTab().get(key) + "\n");
+            }
+        }
+
+        /**
+         * Adds to the response's body, sending it if there's enough.
+         */
+        void write(String text) {
+            m_pending.append(text);
+            if (m_pending.length() >= 8192) {
+                flush();
+            }
+        }
+
+        /**
+         * Sends what has been written; if the client has gone, it's
+         * dropped, and the run is stopped at its next poll().
+         */
+        void flush() {
+            if (m_lost || m_pending.length() == 0) {
+                return;
+            }
+            byte[] bytes = m_pending.toString().getBytes(
+                    StandardCharsets.UTF_8);
+            m_pending.setLength(0);
+            try {
+                if (!m_started) {
+                    m_exchange.getResponseHeaders().set("Content-Type",
+                            "text/plain; charset=utf-8");
+                    m_exchange.sendResponseHeaders(200, 0);
+                    m_started = true;
+                }
+                OutputStream body = m_exchange.getResponseBody();
+                body.write(bytes);
+                body.flush();
+            } catch (IOException e) {
+                m_lost = true;
+            }
+        }
+
+        /**
+         * Cuts off a run stuck waiting on its client, by interrupting
+         * its thread, which closes the connection; the run then fails
+         * to read or write.
+         */
+        synchronized void abort() {
+            m_lost = true;
+            if (m_thread != null) {
+                m_thread.interrupt();
+            }
+        }
+
+        /**
+         * Called by the run's thread once it's done with the
+         * exchange, after which it isn't interrupted.
+         */
+        void finish() {
+            synchronized (this) {
+                m_thread = null;
+            }
+            Thread.interrupted();
+        }
+
+        private void checkDeadline()
+                throws DCRuntimeErrorException
+        {
+            if (System.nanoTime() - m_deadline > 0) {
+                throw new DCRuntimeErrorException("The run's deadline of " +
+                        m_deadlineMillis + " ms has passed.");
+            }
+        }
+
+        /**
+         * Returns the next run of non-blank characters in the
+         * request's body, or null at its end.
+         */
+        private String nextToken()
+                throws IOException
+        {
+            StringBuilder token = new StringBuilder();
+            for (;;) {
+                if (m_inPosition == m_inLimit) {
+                    int count = m_in.read(m_inBuffer);
+                    if (count < 0) {
+                        break;
+                    }
+                    m_inPosition = 0;
+                    m_inLimit = count;
+                    continue;
+                }
+                char c = (char) (m_inBuffer[m_inPosition] & 0xff);
+                if (Character.isWhitespace(c)) {
+                    if (token.length() > 0) {
+                        break;
+                    }
+                } else if (token.length() == MAX_TOKEN_LENGTH) {
+                    break;
+                } else {
+                    token.append(c);
+                }
+                m_inPosition++;
+            }
+            return (token.length() > 0) ? token.toString() : null;
+        }
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /** The port the server listens on unless it's told otherwise. */
+    public static final int DEFAULT_PORT = 8420;
+
+    // The longest program source accepted, in bytes.
+    private static final int MAX_SOURCE_BYTES = 1 << 20;
+
+    // The longest input value read; a longer one is split, and
+    // fails to parse.
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    // How many loop iterations go between checks of the deadline;
+    // a power of two.
+    private static final int POLL_INTERVAL = 1024;
+
+    // How long past its deadline a run waiting on its client is
+    // cut off.
+    private static final long ABORT_GRACE_MILLIS = 1000;
+
+    private static final String DEFAULT_TENANT = "default";
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final HttpServer m_server;
+
+    // Runs each request on a thread of its own, and whether those
+    // are virtual threads.
+    private final ExecutorService m_executor;
+    private final boolean m_virtual;
+
+    // Cuts off runs stuck past their deadlines.
+    private final ScheduledThreadPoolExecutor m_watchdog;
+
+    private final CompiledProgramCache m_programs;
+
+    // The permits for runs, and the runs in progress by tenant,
+    // with the most each may have.
+    private final Semaphore m_runs;
+    private final Map<String, Integer> m_tenantRuns;
+    private final int m_maxTenantRuns;
+
+    // Runs' default and longest deadline.
+    private final long m_deadlineMillis;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a server, which starts to listen on an address
+     * when it's started.
+     *
+     * @param address The address to listen on
+     * @param maxRuns The most runs that may go at once
+     * @param maxTenantRuns The most that any one tenant's may
+     * @param deadlineMillis The longest a run may take, in
+     *                       milliseconds, from its request's
+     *                       arrival
+     * @param maxPrograms The most compiled programs kept
+     */
+    public ExecutionServer(InetSocketAddress address, int maxRuns,
+                           int maxTenantRuns, long deadlineMillis,
+                           int maxPrograms)
+            throws IOException
+    {
+        m_server = HttpServer.create(address, 0);
+        ExecutorService executor = newVirtualThreadExecutor();
+        m_virtual = executor != null;
+        if (executor == null) {
+            executor = Executors.newCachedThreadPool(
+                    threadFactory("execution-request"));
+        }
+        m_executor = executor;
+        m_watchdog = new ScheduledThreadPoolExecutor(1,
+                threadFactory("execution-watchdog"));
+        m_watchdog.setRemoveOnCancelPolicy(true);
+
+        m_programs = new CompiledProgramCache(maxPrograms);
+        m_runs = new Semaphore(maxRuns, true);
+        m_tenantRuns = new HashMap<String, Integer>();
+        m_maxTenantRuns = maxTenantRuns;
+        m_deadlineMillis = deadlineMillis;
+
+        m_server.setExecutor(m_executor);
+        m_server.createContext("/programs", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleCompile(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        m_server.createContext("/run", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    handleRun(exchange);
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts listening, and returns; requests are served on other
+     * threads until the server is stopped.
+     */
+    public void start() {
+        m_server.start();
+    }
+
+    /**
+     * Stops listening, gives the runs in progress up to a deadline
+     * to finish, then cuts off the rest.
+     */
+    public void stop() {
+        m_server.stop((int) ((m_deadlineMillis + 999) / 1000));
+        m_executor.shutdownNow();
+        m_watchdog.shutdownNow();
+    }
+
+    /**
+     * Accessor for the address the server listens on.
+     */
+    public InetSocketAddress address() {
+        return m_server.getAddress();
+    }
+
+    /**
+     * Returns true if requests run on virtual threads, or false if
+     * the JVM has none and they run on platform threads.
+     */
+    public boolean usesVirtualThreads() {
+        return m_virtual;
+    }
+
+    /**
+     * Compiles a posted program, unless it's kept already, and
+     * responds with its ID.
+     */
+    private void handleCompile(HttpExchange exchange)
+            throws IOException
+    {
+        if (!checkRequest(exchange, "/programs")) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange);
+        String opt = query.containsKey("opt") ? query.get("opt") : "0";
+        if (!opt.matches("[012]")) {
+            respond(exchange, 400, "The optimization level, opt, must be" +
+                    " 0, 1 or 2.\n");
+            return;
+        }
+        int optLevel = opt.charAt(0) - '0';
+
+        byte[] source = readBody(exchange.getRequestBody());
+        if (source == null) {
+            respond(exchange, 413, "The program is longer than " +
+                    MAX_SOURCE_BYTES + " bytes.\n");
+            return;
+        }
+
+        String key = CompiledProgramCache.key(source, optLevel);
+        if (m_programs.get(key) == null) {
+            CompiledProgram program;
+            try {
+                program = Descartes.compile("program", source, optLevel);
+            } catch (DCSyntaxErrorException e) {
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            } catch (StackOverflowError e) {
+                respond(exchange, 400, "The program nests too deeply to" +
+                        " compile.\n");
+                return;
+            }
+            m_programs.put(key, source, program);
+        }
+        respond(exchange, 201, key + "\n");
+    }
+
+    /**
+     * Runs a kept program, once it's admitted, streaming its output
+     * as the response.
+     */
+    private void handleRun(HttpExchange exchange)
+            throws IOException
+    {
+        long arrival = System.nanoTime();
+        if (!checkRequest(exchange, "/run")) {
+            return;
+        }
+        Map<String, String> query = parseQuery(exchange);
+        String id = query.get("program");
+        if (id == null) {
+            respond(exchange, 400, "Name the program to run, by its ID.\n");
+            return;
+        }
+        long deadlineMillis = m_deadlineMillis;
+        String deadlineText = query.get("deadline");
+        if (deadlineText != null) {
+            deadlineMillis = deadlineText.matches("[1-9][0-9]{0,9}") ?
+                    Long.parseLong(deadlineText) : -1;
+            if (deadlineMillis < 0 || deadlineMillis > m_deadlineMillis) {
+                respond(exchange, 400, "The deadline must be from 1 to " +
+                        m_deadlineMillis + " ms.\n");
+                return;
+            }
+        }
+        String tenant = exchange.getRequestHeaders().getFirst("X-Tenant");
+        if (tenant == null) {
+            tenant = DEFAULT_TENANT;
+        } else if (!tenant.matches("[A-Za-z0-9._-]{1,64}")) {
+            respond(exchange, 400, "A tenant's name may have up to 64" +
+                    " letters, digits, '.', '_' and '-'.\n");
+            return;
+        }
+
+        CompiledProgram program = m_programs.get(id);
+        if (program == null) {
+            respond(exchange, 404, "Unknown program: " + id + "\n");
+            return;
+        }
+
+        if (!startTenantRun(tenant)) {
+            respond(exchange, 429, "Tenant " + tenant + " already has " +
+                    m_maxTenantRuns + " runs in progress.\n");
+            return;
+        }
+        try {
+            long deadline = arrival + deadlineMillis * 1000000L;
+            if (!m_runs.tryAcquire(deadline - System.nanoTime(),
+                                   TimeUnit.NANOSECONDS)) {
+                respond(exchange, 503, "The server is too busy to start" +
+                        " the run before its deadline.\n");
+                return;
+            }
+            try {
+                run(exchange, program, deadline, deadlineMillis);
+            } finally {
+                m_runs.release();
+            }
+        } catch (InterruptedException e) {
+            // The server is stopping.
+            Thread.currentThread().interrupt();
+        } finally {
+            endTenantRun(tenant);
+        }
+    }
+
+    /**
+     * Runs a program with a state of its own, through which its I/O
+     * goes, and writes what "java Descartes" would after it.
+     */
+    private void run(HttpExchange exchange, CompiledProgram program,
+                     long deadline, long deadlineMillis) {
+        final ServiceState progState = new ServiceState(program.idTable(),
+                exchange, deadline, deadlineMillis);
+        ScheduledFuture<?> abort = m_watchdog.schedule(new Runnable() {
+            public void run() {
+                progState.abort();
+            }
+        }, deadline - System.nanoTime() + ABORT_GRACE_MILLIS * 1000000L,
+           TimeUnit.NANOSECONDS);
+        try {
+            try {
+                program.execute(progState);
+                progState.write("===================\n");
+                progState.write("Execution complete.\n");
+            } catch (DCRuntimeErrorException e) {
+                progState.write(e.getMessage() + "\n");
+                progState.write("================================\n");
+                progState.write("Execution completed with errors.\n");
+            } catch (StackOverflowError e) {
+                progState.write("The program nests too deeply to run.\n");
+                progState.write("================================\n");
+                progState.write("Execution completed with errors.\n");
+            }
+            progState.dumpSymTab();
+        } catch (RuntimeException e) {
+            progState.write("An unexpected exception occurred:\n");
+            progState.write(e + "\n");
+        } finally {
+            // Closing the exchange may wait on the client, to drain
+            // the input the program didn't read, so it's done while
+            // the watchdog can still cut it off.
+            progState.flush();
+            exchange.close();
+            abort.cancel(false);
+            progState.finish();
+        }
+    }
+
+    /**
+     * Counts a run in for a tenant, unless it has as many as it may.
+     */
+    private synchronized boolean startTenantRun(String tenant) {
+        Integer count = m_tenantRuns.get(tenant);
+        int runs = (count != null) ? count : 0;
+        if (runs == m_maxTenantRuns) {
+            return false;
+        }
+        m_tenantRuns.put(tenant, runs + 1);
+        return true;
+    }
+
+    /**
+     * Counts a tenant's run out, forgetting a tenant with none.
+     */
+    private synchronized void endTenantRun(String tenant) {
+        int runs = m_tenantRuns.get(tenant) - 1;
+        if (runs == 0) {
+            m_tenantRuns.remove(tenant);
+        } else {
+            m_tenantRuns.put(tenant, runs);
+        }
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns an executor that runs each task on a new virtual
+     * thread, or null if this JVM has none.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod(
+                    "newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // A preview feature that isn't enabled.
+            return null;
+        }
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger m_count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        name + "-" + m_count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * Returns true if a request is a POST to exactly a handler's
+     * path; otherwise responds that it isn't, and returns false.
+     */
+    private static boolean checkRequest(HttpExchange exchange, String path)
+            throws IOException
+    {
+        if (!exchange.getRequestURI().getPath().equals(path)) {
+            respond(exchange, 404, "Not found.\n");
+            return false;
+        }
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, "Only POST is allowed.\n");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the parameters of a request's query.
+     */
+    private static Map<String, String> parseQuery(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            int equals = param.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(param.substring(0, equals),
+                                             StandardCharsets.UTF_8),
+                           URLDecoder.decode(param.substring(equals + 1),
+                                             StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Reads a request's body, or returns null if it's longer than
+     * a program may be.
+     */
+    private static byte[] readBody(InputStream in)
+            throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            if (bytes.size() + count > MAX_SOURCE_BYTES) {
+                return null;
+            }
+            bytes.write(buffer, 0, count);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Sends a whole response of plain text.
+     */
+    private static void respond(HttpExchange exchange, int status,
+                                String text)
+            throws IOException
+    {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream body = exchange.getResponseBody();
+        body.write(bytes);
+        body.flush();
+    }
+
+}
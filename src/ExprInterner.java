@@ -0,0 +1,301 @@
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Hash-conses expression nodes: makes structurally identical
+ * expression subtrees one shared node.
+ *
+ * The parser interns each expression node as it builds it, after
+ * its children, so by the time a node is interned its children
+ * already are; two nodes are then identical if they're of the same
+ * class and have the same operator and the very same children, or
+ * for atoms, the same symbol or constant. An identical node that
+ * was interned before is returned in place of the new one, which
+ * is dropped. Expressions have no side effects and their nodes
+ * never change once built, so a shared node evaluates, in every
+ * place it's used, exactly as its own copy would; and since
+ * identical expressions are the same object, nodes can be compared
+ * and hashed by identity wherever expressions are to be matched.
+ *
+ * Nodes of other kinds, such as statements, aren't interned.
+ *
+ * The table holds its nodes weakly, so a node lives only as long
+ * as a parse tree uses it, and several parses can share one table.
+ * It's split into segments, each locked separately, so that the
+ * threads of a parallel parse seldom wait for one another.
+ */
+public class ExprInterner {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * An interned node, held weakly, in a segment's hash chain.
+     */
+    private static class Entry extends WeakReference<Object> {
+
+        private int m_hash;
+        private Entry m_next;
+
+        Entry(Object node, int hash, Entry next,
+              ReferenceQueue<Object> queue) {
+            super(node, queue);
+            m_hash = hash;
+            m_next = next;
+        }
+
+    }
+
+    /**
+     * A hash table of interned nodes, one of several a node's hash
+     * chooses among.
+     */
+    private static class Segment {
+
+        private Entry[] m_table;
+        private int m_count;
+
+        // Entries whose nodes have been collected.
+        private ReferenceQueue<Object> m_queue;
+
+        Segment() {
+            m_table = new Entry[64];
+            m_count = 0;
+            m_queue = new ReferenceQueue<Object>();
+        }
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final int SEGMENT_COUNT = 16;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private Segment[] m_segments;
+
+    // The expression nodes interned, and how many of them were
+    // already in the table.
+    private AtomicLong m_internCount;
+    private AtomicLong m_sharedCount;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs an empty table.
+     */
+    public ExprInterner() {
+        m_segments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            m_segments[i] = new Segment();
+        }
+        m_internCount = new AtomicLong();
+        m_sharedCount = new AtomicLong();
+    }
+
+    /**
+     * Returns the node identical to an expression node that's in
+     * the table, adding the node if there isn't one, or returns any
+     * other node as it is.
+     *
+     * @param node A node whose children have been interned
+     *
+     * @return The shared node
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T intern(T node) {
+        Object[] parts = parts(node);
+        if (parts == null) {
+            return node;
+        }
+        m_internCount.incrementAndGet();
+
+        int hash = node.getClass().hashCode();
+        for (Object part : parts) {
+            hash = hash * 31 + partHash(part);
+        }
+        hash ^= hash >>> 16;
+
+        Segment segment = m_segments[(hash >>> 24) & (SEGMENT_COUNT - 1)];
+        synchronized (segment) {
+            expunge(segment);
+
+            Entry[] table = segment.m_table;
+            int index = hash & (table.length - 1);
+            for (Entry e = table[index]; e != null; e = e.m_next) {
+                if (e.m_hash != hash) {
+                    continue;
+                }
+                Object other = e.get();
+                if (other != null && other.getClass() == node.getClass() &&
+                        sameParts(parts, parts(other)))
+                {
+                    m_sharedCount.incrementAndGet();
+                    return (T) other;
+                }
+            }
+
+            table[index] = new Entry(node, hash, table[index],
+                    segment.m_queue);
+            if (++segment.m_count > table.length * 3 / 4) {
+                resize(segment);
+            }
+        }
+        return node;
+    }
+
+    /**
+     * Returns the number of expression nodes interned.
+     */
+    public long internCount() {
+        return m_internCount.get();
+    }
+
+    /**
+     * Returns the number of expression nodes interned that were
+     * replaced by an identical node already in the table.
+     */
+    public long sharedCount() {
+        return m_sharedCount.get();
+    }
+
+    /**
+     * Removes the entries whose nodes have been collected.
+     */
+    private void expunge(Segment segment) {
+        Object collected;
+        while ((collected = segment.m_queue.poll()) != null) {
+            Entry entry = (Entry) collected;
+            Entry[] table = segment.m_table;
+            int index = entry.m_hash & (table.length - 1);
+
+            Entry prev = null;
+            for (Entry e = table[index]; e != null; e = e.m_next) {
+                if (e == entry) {
+                    if (prev == null) {
+                        table[index] = e.m_next;
+                    } else {
+                        prev.m_next = e.m_next;
+                    }
+                    segment.m_count--;
+                    break;
+                }
+                prev = e;
+            }
+        }
+    }
+
+    private void resize(Segment segment) {
+        Entry[] old = segment.m_table;
+        Entry[] table = new Entry[old.length * 2];
+        for (Entry chain : old) {
+            Entry e = chain;
+            while (e != null) {
+                Entry next = e.m_next;
+                int index = e.m_hash & (table.length - 1);
+                e.m_next = table[index];
+                table[index] = e;
+                e = next;
+            }
+        }
+        segment.m_table = table;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns what makes an expression node what it is: its
+     * operator, if it has one, and its children, or for an atom
+     * its symbol or constant; or null if the node isn't an
+     * expression node.
+     */
+    private static Object[] parts(Object node) {
+        if (node instanceof AtomNode) {
+            AtomNode atom = (AtomNode) node;
+            // A Long and an Integer are never equal.
+            return (atom.id() == null) ?
+                    new Object[] { Double.doubleToLongBits(atom.constVal()) } :
+                    new Object[] { atom.symbol() };
+        } else if (node instanceof FactorNode) {
+            FactorNode factor = (FactorNode) node;
+            return new Object[] {
+                factor.atom(), factor.negFactor(), factor.parenExpr()
+            };
+        } else if (node instanceof FactorTailNode) {
+            FactorTailNode tail = (FactorTailNode) node;
+            return new Object[] { tail.oper(), tail.factor(), tail.factorTail() };
+        } else if (node instanceof TermNode) {
+            TermNode term = (TermNode) node;
+            return new Object[] { term.factor(), term.factorTail() };
+        } else if (node instanceof TermTailNode) {
+            TermTailNode tail = (TermTailNode) node;
+            return new Object[] { tail.oper(), tail.term(), tail.termTail() };
+        } else if (node instanceof ArithExprNode) {
+            ArithExprNode arithExpr = (ArithExprNode) node;
+            return new Object[] { arithExpr.term(), arithExpr.termTail() };
+        } else if (node instanceof RelationOptionNode) {
+            RelationOptionNode option = (RelationOptionNode) node;
+            return new Object[] { option.oper(), option.arithExpr() };
+        } else if (node instanceof BoolFactorNode) {
+            BoolFactorNode factor = (BoolFactorNode) node;
+            return new Object[] { factor.arithExpr(), factor.relationOption() };
+        } else if (node instanceof BoolFactorTailNode) {
+            BoolFactorTailNode tail = (BoolFactorTailNode) node;
+            return new Object[] { tail.boolFactor(), tail.boolFactorTail() };
+        } else if (node instanceof BoolTermNode) {
+            BoolTermNode term = (BoolTermNode) node;
+            return new Object[] { term.boolFactor(), term.boolFactorTail() };
+        } else if (node instanceof BoolTermTailNode) {
+            BoolTermTailNode tail = (BoolTermTailNode) node;
+            return new Object[] { tail.boolTerm(), tail.boolTermTail() };
+        } else if (node instanceof ExprNode) {
+            ExprNode expr = (ExprNode) node;
+            return new Object[] { expr.boolTerm(), expr.boolTermTail() };
+        }
+        return null;
+    }
+
+    /**
+     * Returns true if two nodes' parts are the same: children and
+     * operators by identity, and symbols and constants by value.
+     */
+    private static boolean sameParts(Object[] parts, Object[] otherParts) {
+        if (parts.length != otherParts.length) {
+            return false;
+        }
+        for (int i = 0; i < parts.length; i++) {
+            Object part = parts[i];
+            Object other = otherParts[i];
+            boolean same = (part instanceof Number) ?
+                    part.equals(other) : part == other;
+            if (!same) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int partHash(Object part) {
+        if (part == null) {
+            return 0;
+        }
+        return (part instanceof Number) ?
+                part.hashCode() : System.identityHashCode(part);
+    }
+
+}
@@ -24,8 +24,8 @@ public class ExprNode {
     // Member Variables //
     //==================//
 
-    private BoolTermNode m_boolTerm;
-    private BoolTermTailNode m_boolTermTail;
+    private final BoolTermNode m_boolTerm;
+    private final BoolTermTailNode m_boolTermTail;
 
 
     //=========//
@@ -65,6 +65,20 @@ public class ExprNode {
         return termVal;
     }
 
+    /**
+     * Accessor for the bool-term.
+     */
+    public BoolTermNode boolTerm() {
+        return m_boolTerm;
+    }
+
+    /**
+     * Accessor for the bool-term-tail.
+     */
+    public BoolTermTailNode boolTermTail() {
+        return m_boolTermTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -98,7 +112,7 @@ public class ExprNode {
                 BoolTermTailNode.parseBoolTermTail(tokenReader);
 
 
-        return new ExprNode(boolTerm, boolTermTail);
+        return tokenReader.intern(new ExprNode(boolTerm, boolTermTail));
     }
 
 }
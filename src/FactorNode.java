@@ -28,9 +28,9 @@ public class FactorNode {
     // Member Variables //
     //==================//
 
-    private AtomNode m_atom;
-    private FactorNode m_negFactor;
-    private ExprNode m_parenExpr;
+    private final AtomNode m_atom;
+    private final FactorNode m_negFactor;
+    private final ExprNode m_parenExpr;
 
 
     //=========//
@@ -108,6 +108,29 @@ public class FactorNode {
         return value;
     }
 
+    /**
+     * Accessor for the atom (null unless this factor is an atom).
+     */
+    public AtomNode atom() {
+        return m_atom;
+    }
+
+    /**
+     * Accessor for the negated factor (null unless this factor is
+     * a negation).
+     */
+    public FactorNode negFactor() {
+        return m_negFactor;
+    }
+
+    /**
+     * Accessor for the parenthetical expression (null unless this
+     * factor is one).
+     */
+    public ExprNode parenExpr() {
+        return m_parenExpr;
+    }
+
 
     //================//
     // Static Methods //
@@ -200,7 +223,7 @@ public class FactorNode {
         }
 
 
-        return factor;
+        return tokenReader.intern(factor);
     }
 
 }
@@ -37,10 +37,10 @@ public class FactorTailNode {
     // Member Variables //
     //==================//
 
-    private FactorNode m_factor;
-    private FactorTailNode m_factorTail;
+    private final FactorNode m_factor;
+    private final FactorTailNode m_factorTail;
 
-    public Operator m_oper;
+    private final Operator m_oper;
 
 
     //=========//
@@ -108,6 +108,27 @@ public class FactorTailNode {
         return factorVal;
     }
 
+    /**
+     * Accessor for the operator (null if the tail is empty).
+     */
+    public Operator oper() {
+        return m_oper;
+    }
+
+    /**
+     * Accessor for the factor.
+     */
+    public FactorNode factor() {
+        return m_factor;
+    }
+
+    /**
+     * Accessor for the subsequent factor tail.
+     */
+    public FactorTailNode factorTail() {
+        return m_factorTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -175,7 +196,7 @@ public class FactorTailNode {
             factorTail = new FactorTailNode(null, null, null);
         }
 
-        return factorTail;
+        return tokenReader.intern(factorTail);
     }
 
 }
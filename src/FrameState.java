@@ -0,0 +1,114 @@
+import java.util.Arrays;
+
+
+/**
+ * The value of every source variable at an instruction that can
+ * fault, from which the symbol table is rebuilt if it does.
+ *
+ * A program with many variables has many such instructions, and
+ * neighbouring ones differ in only a few variables, so the values
+ * are kept in fixed-size chunks that are shared with the state a
+ * state was made after wherever they're the same. A program's
+ * frame states then take memory in proportion to the changes
+ * between them rather than to the number of variables each time.
+ *
+ * A state never changes once made, except by
+ * IRProgram.replaceUses(), which replaces a value in every state
+ * at once, shared chunks included.
+ */
+public class FrameState {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // The variables per chunk; a power of two.
+    private static final int CHUNK_BITS = 5;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final IRInstr[][] m_chunks;
+    private final int m_length;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Makes a state holding the given values, sharing the chunks of
+     * another state that hold the same values.
+     *
+     * @param values The value of every source variable, by
+     *               variable number; they're copied
+     * @param previous The state to share chunks with, usually the
+     *                 one made last, or null
+     */
+    public FrameState(IRInstr[] values, FrameState previous) {
+        m_length = values.length;
+        m_chunks = new IRInstr[(m_length + CHUNK_SIZE - 1) >> CHUNK_BITS][];
+        boolean share = previous != null && previous.m_length == m_length;
+        for (int c = 0; c < m_chunks.length; c++) {
+            int from = c << CHUNK_BITS;
+            int to = Math.min(from + CHUNK_SIZE, m_length);
+            if (share && sameValues(previous.m_chunks[c], values, from)) {
+                m_chunks[c] = previous.m_chunks[c];
+            } else {
+                m_chunks[c] = Arrays.copyOfRange(values, from, to);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of source variables.
+     */
+    public int length() {
+        return m_length;
+    }
+
+    /**
+     * Returns the value of a source variable.
+     *
+     * @param var The variable's number
+     */
+    public IRInstr get(int var) {
+        return m_chunks[var >> CHUNK_BITS][var & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Returns the number of chunks the values are kept in.
+     */
+    public int chunkCount() {
+        return m_chunks.length;
+    }
+
+    /**
+     * Returns a chunk of the values: those of the variables from
+     * c * 32 on. It may be shared with other states, so a caller
+     * visiting many states' values can visit each chunk once, by
+     * identity; and only IRProgram.replaceUses() may change it.
+     */
+    IRInstr[] chunk(int c) {
+        return m_chunks[c];
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    private static boolean sameValues(IRInstr[] chunk, IRInstr[] values,
+                                      int from) {
+        for (int i = 0; i < chunk.length; i++) {
+            if (chunk[i] != values[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,163 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Global value numbering: replaces an instruction with an
+ * equivalent one that dominates it.
+ *
+ * Two instructions are equivalent if they have the same operator
+ * and operands (in either order, for commutative operators), and
+ * CONSTs are equivalent if they have the same value. PHIs are
+ * equivalent only within a block. CHECK and faulting DIV
+ * instructions take part too: once one has succeeded, an
+ * equivalent one that it dominates can't fail.
+ *
+ * The pass walks the dominator tree with a scoped table of the
+ * instructions available at each block, so only dominating
+ * instructions are ever found. A long program's tree is deep, so
+ * the walk keeps its own stack rather than recursing.
+ */
+public class GVNPass implements IRPass {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * A block on the walk's stack: the children visited so far,
+     * and the keys it made available, which its children see.
+     */
+    private static class Visit {
+
+        private final IRBlock m_block;
+        private final List<String> m_added = new ArrayList<String>();
+        private int m_childCount;
+
+        Visit(IRBlock block) {
+            m_block = block;
+        }
+
+    }
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private IRDominators m_doms;
+    private Map<String, IRInstr> m_available;
+    private Map<IRInstr, IRInstr> m_copies;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Returns "gvn".
+     */
+    public String name() {
+        return "gvn";
+    }
+
+    /**
+     * Replaces the program's redundant instructions.
+     */
+    public void run(IRProgram prog) {
+        prog.renumber();
+        m_doms = new IRDominators(prog);
+        m_available = new HashMap<String, IRInstr>();
+        m_copies = new HashMap<IRInstr, IRInstr>();
+
+        List<Visit> stack = new ArrayList<Visit>();
+        stack.add(enter(prog.entry()));
+        while (!stack.isEmpty()) {
+            Visit visit = stack.get(stack.size() - 1);
+            List<IRBlock> children = m_doms.children(visit.m_block);
+            if (visit.m_childCount < children.size()) {
+                stack.add(enter(children.get(visit.m_childCount++)));
+            } else {
+                for (String key : visit.m_added) {
+                    m_available.remove(key);
+                }
+                stack.remove(stack.size() - 1);
+            }
+        }
+        prog.replaceUses(m_copies);
+
+        m_doms = null;
+        m_available = null;
+        m_copies = null;
+    }
+
+    /**
+     * Numbers a block's instructions, on entering it from its
+     * immediate dominator.
+     */
+    private Visit enter(IRBlock block) {
+        Visit visit = new Visit(block);
+        for (IRInstr phi : block.phis()) {
+            number(phi, "b" + block.id() + " " + key(phi), visit.m_added);
+        }
+        for (IRInstr instr : block.instrs()) {
+            switch (instr.op()) {
+                case READ: case PRINT:
+                    break;
+                default:
+                    number(instr, key(instr), visit.m_added);
+            }
+        }
+        return visit;
+    }
+
+    private void number(IRInstr instr, String key, List<String> added) {
+        IRInstr existing = m_available.get(key);
+        if (existing != null) {
+            m_copies.put(instr, existing);
+        } else {
+            m_available.put(key, instr);
+            added.add(key);
+        }
+    }
+
+    private String key(IRInstr instr) {
+        StringBuilder key = new StringBuilder(instr.op().toString());
+        if (instr.op() == IRInstr.Op.CONST) {
+            key.append(" ").append(
+                    Double.doubleToRawLongBits(instr.value()));
+        }
+
+        int[] ids = new int[instr.args().length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = IRProgram.resolve(instr.arg(i), m_copies).id();
+        }
+        if (isCommutative(instr.op()) && ids[0] > ids[1]) {
+            int swap = ids[0];
+            ids[0] = ids[1];
+            ids[1] = swap;
+        }
+        for (int id : ids) {
+            key.append(" v").append(id);
+        }
+
+        return key.toString();
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    private static boolean isCommutative(IRInstr.Op op) {
+        switch (op) {
+            case ADD: case MUL: case EQ: case NE: case AND: case OR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+}
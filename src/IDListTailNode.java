@@ -22,8 +22,9 @@ public class IDListTailNode {
     // Member Variables //
     //==================//
 
-    private String m_id;
-    private IDListTailNode m_idListTail;
+    private final String m_id;
+    private final int m_symbol;
+    private final IDListTailNode m_idListTail;
 
 
     //=========//
@@ -34,14 +35,17 @@ public class IDListTailNode {
      * Constructs a new id-list-tail with the provided id and
      * subsequent id-list-tail.
      *
-     * If both parameters are null, an empty id-list-tail is
+     * If 'id' and 'idListTail' are null, an empty id-list-tail is
      * constructed, terminating a list of IDs.
      *
      * @param id A String identifier
+     * @param symbol The interned symbol of 'id'
      * @param idListTail A subsequent id-list-tail
      */
-    public IDListTailNode(String id, IDListTailNode idListTail) {
+    public IDListTailNode(String id, int symbol,
+                          IDListTailNode idListTail) {
         m_id = id;
+        m_symbol = symbol;
         m_idListTail = idListTail;
     }
 
@@ -55,12 +59,14 @@ public class IDListTailNode {
      *
      * @param progState The current program state
      */
-    public void read(ProgState progState) {
+    public void read(ProgState progState)
+            throws DCRuntimeErrorException
+    {
         // If m_id is null, it means this IDListTailNode is empty
         // and thus its own, subsequent m_idListTail is empty.
         if (m_id != null) {
             // Read the value from the user.
-            progState.readVar(m_id);
+            progState.readVar(m_symbol);
 
             // Read this id-list-tail's subsequent id-list-tail.
             m_idListTail.read(progState);
@@ -83,13 +89,35 @@ public class IDListTailNode {
         // and thus its own, subsequent m_idListTail is empty.
         if (m_id != null) {
             // Print this id-list's variable to the console.
-            progState.printVar(m_id);
+            progState.printVar(m_symbol);
 
             // Print this id-list-tail's subsequent id-list-tail.
             m_idListTail.print(progState);
         }
     }
 
+    /**
+     * Accessor for the variable ID (null if the tail is empty).
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the variable symbol (IDTable.NONE if the tail
+     * is empty).
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Accessor for the subsequent id-list-tail.
+     */
+    public IDListTailNode idListTail() {
+        return m_idListTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -140,13 +168,14 @@ public class IDListTailNode {
                         "Expected identifier after ','.");
             }
             id = token.getText();
+            int symbol = token.getSymbol();
 
             // Read the id-list-tail.
             IDListTailNode nextIDListTail;
             nextIDListTail = IDListTailNode.parseIDListTail(tokenReader);
 
             // Build the IDListTailNode we just parsed.
-            idListTail = new IDListTailNode(id, nextIDListTail);
+            idListTail = new IDListTailNode(id, symbol, nextIDListTail);
         }
 
         //
@@ -158,7 +187,7 @@ public class IDListTailNode {
         else {
             // The IDListTailNode is empty.
             tokenReader.unread(token);
-            idListTail = new IDListTailNode(null, null);
+            idListTail = new IDListTailNode(null, IDTable.NONE, null);
         }
 
         return idListTail;
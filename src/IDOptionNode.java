@@ -20,7 +20,8 @@ public class IDOptionNode {
     // Member Variables //
     //==================//
 
-    private String m_id;
+    private final String m_id;
+    private final int m_symbol;
 
 
     //=========//
@@ -31,45 +32,65 @@ public class IDOptionNode {
      * Constructs a new id-option using the specified loop ID.
      *
      * @param id A String that identifies an active loop statement
+     * @param symbol The interned symbol of 'id'
      */
-    public IDOptionNode(String id) {
+    public IDOptionNode(String id, int symbol) {
         m_id = id;
+        m_symbol = symbol;
     }
 
     /**
      * Effectively executes a break statement by popping the loop
      * with this node's ID off the loop stack in the program
-     * state and setting the current break name to that id.
+     * state and setting the current break ID to that id.
      *
      * @param progState The current program state
+     *
+     * @throws DCRuntimeErrorException If the loop isn't on the
+     *                                 stack
      */
-    public void popLoopID(ProgState progState) {
-        String id;
+    public void popLoopID(ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        int id;
 
 
         // If the ID is null, only pop the most recent loop id off
         // the stack.
         if (m_id == null) {
-            assert(!progState.loopIDStack().isEmpty());
-            id = progState.loopIDStack().pop();
+            id = progState.popLoopID();
         }
 
         // If the ID isn't null, keep popping until we pop the ID
         // off the stack.
         else {
             do {
-                assert(!progState.loopIDStack().isEmpty());
-                id = progState.loopIDStack().pop();
-            } while (!id.equals(m_id));
+                id = progState.popLoopID();
+            } while (id != m_symbol);
         }
 
-        // Set the break name to ensure stmt-tails don't continue
+        // Set the break ID to ensure stmt-tails don't continue
         // to execute. This causes any execute() methods to return
-        // back up to the loop with the break name; it will clear
-        // the break name and return to its parent stmt-tail,
+        // back up to the loop with the break ID; it will clear
+        // the break ID and return to its parent stmt-tail,
         // which will proceed to execute statements following the
         // loop.
-        progState.setBreakName(id);
+        progState.setBreakID(id);
+    }
+
+    /**
+     * Accessor for the loop ID (null if none was given).
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the loop symbol (IDTable.NONE if no ID was
+     * given).
+     */
+    public int symbol() {
+        return m_symbol;
     }
 
 
@@ -109,7 +130,7 @@ public class IDOptionNode {
         //
 
         if (token.getCode() == TokenCode.T_ID) {
-            idOption = new IDOptionNode(token.getText());
+            idOption = new IDOptionNode(token.getText(), token.getSymbol());
         }
 
         //
@@ -123,7 +144,7 @@ public class IDOptionNode {
             tokenReader.unread(token);
 
             // Create an empty id-option.
-            idOption = new IDOptionNode(null);
+            idOption = new IDOptionNode(null, IDTable.NONE);
         }
 
 
@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+
+/**
+ * Interns identifiers: maps each distinct identifier to a small,
+ * dense integer symbol.
+ *
+ * A TokenReader interns every identifier it reads, so the parse
+ * tree and the runtime refer to variables and loops by symbol.
+ * Symbols are compared with == and index arrays directly, and an
+ * identifier is hashed only when it's read from the source code.
+ *
+ * The table is an open-addressing hash map. Identifiers are
+ * stored densely in the order they were first seen, so the
+ * symbol of an identifier is its position in that order.
+ */
+public class IDTable {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /**
+     * A symbol value that doesn't name any identifier.
+     */
+    public static final int NONE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // Identifiers, indexed by symbol.
+    private String[] m_names;
+    private int[] m_hashes;
+    private int m_size;
+
+    // Open-addressing index: each slot holds a symbol plus one, or
+    // zero if it's empty. Its length is a power of two.
+    private int[] m_index;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a new, empty table.
+     */
+    public IDTable() {
+        m_names = new String[INITIAL_CAPACITY];
+        m_hashes = new int[INITIAL_CAPACITY];
+        m_size = 0;
+        m_index = new int[INITIAL_CAPACITY * 2];
+    }
+
+    /**
+     * Returns the number of distinct identifiers interned so far;
+     * every symbol is less than this.
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Returns the identifier a symbol stands for.
+     */
+    public String name(int symbol) {
+        return m_names[symbol];
+    }
+
+    /**
+     * Returns the symbol for an identifier, or NONE if it hasn't
+     * been interned.
+     */
+    public int lookup(String id) {
+        return find(id, hash(id));
+    }
+
+    /**
+     * Returns the symbol for an identifier, assigning the next
+     * unused symbol if it hasn't been interned yet.
+     */
+    public int intern(String id) {
+        int hash = hash(id);
+        int symbol = find(id, hash);
+        if (symbol != NONE) {
+            return symbol;
+        }
+
+        if (m_size == m_names.length) {
+            int capacity = m_size * 2;
+            m_names = Arrays.copyOf(m_names, capacity);
+            m_hashes = Arrays.copyOf(m_hashes, capacity);
+            m_index = new int[capacity * 2];
+            for (int i = 0; i < m_size; i++) {
+                insert(i);
+            }
+        }
+
+        symbol = m_size++;
+        m_names[symbol] = id;
+        m_hashes[symbol] = hash;
+        insert(symbol);
+        return symbol;
+    }
+
+    private int find(String id, int hash) {
+        int mask = m_index.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int symbol = m_index[slot] - 1;
+            if (symbol < 0) {
+                return NONE;
+            }
+            if (m_hashes[symbol] == hash && m_names[symbol].equals(id)) {
+                return symbol;
+            }
+        }
+    }
+
+    private void insert(int symbol) {
+        int mask = m_index.length - 1;
+        int slot = m_hashes[symbol] & mask;
+        while (m_index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        m_index[slot] = symbol + 1;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Spreads the bits of a string's hash code so that the low
+     * bits used by the index are well distributed.
+     */
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -0,0 +1,145 @@
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A basic block of the SSA intermediate representation: a list of
+ * PHI instructions, a list of ordinary instructions and a single
+ * terminator.
+ *
+ * The operands of each PHI instruction correspond, in order, to
+ * the block's predecessors.
+ */
+public class IRBlock {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private List<IRInstr> m_phis;
+    private List<IRInstr> m_instrs;
+    private IRInstr m_term;
+    private List<IRBlock> m_preds;
+    private List<IRBlock> m_succs;
+    private int m_id;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a new, empty block with no terminator.
+     */
+    public IRBlock() {
+        m_phis = new ArrayList<IRInstr>();
+        m_instrs = new ArrayList<IRInstr>();
+        m_preds = new ArrayList<IRBlock>();
+        m_succs = new ArrayList<IRBlock>();
+    }
+
+    /**
+     * Accessor for the PHI instructions.
+     */
+    public List<IRInstr> phis() {
+        return m_phis;
+    }
+
+    /**
+     * Accessor for the ordinary instructions.
+     */
+    public List<IRInstr> instrs() {
+        return m_instrs;
+    }
+
+    /**
+     * Accessor for the terminator.
+     */
+    public IRInstr term() {
+        return m_term;
+    }
+
+    /**
+     * Accessor for the predecessor blocks.
+     */
+    public List<IRBlock> preds() {
+        return m_preds;
+    }
+
+    /**
+     * Accessor for the successor blocks.
+     */
+    public List<IRBlock> succs() {
+        return m_succs;
+    }
+
+    /**
+     * Accessor for the block number, which is assigned by
+     * IRProgram.renumber().
+     */
+    public int id() {
+        return m_id;
+    }
+
+    /**
+     * Sets the block number.
+     */
+    public void setId(int id) {
+        m_id = id;
+    }
+
+    /**
+     * Appends an ordinary instruction and returns it.
+     */
+    public IRInstr add(IRInstr instr) {
+        m_instrs.add(instr);
+        return instr;
+    }
+
+    /**
+     * Ends the block with a JUMP to 'target'.
+     */
+    public void jump(IRBlock target) {
+        m_term = new IRInstr(IRInstr.Op.JUMP);
+        m_succs.add(target);
+        target.m_preds.add(this);
+    }
+
+    /**
+     * Ends the block with a BRANCH on 'cond'.
+     *
+     * @param cond The branch condition
+     * @param ifTrue The successor taken if cond is non-zero
+     * @param ifFalse The successor taken otherwise
+     */
+    public void branch(IRInstr cond, IRBlock ifTrue, IRBlock ifFalse) {
+        m_term = new IRInstr(IRInstr.Op.BRANCH, cond);
+        m_succs.add(ifTrue);
+        m_succs.add(ifFalse);
+        ifTrue.m_preds.add(this);
+        ifFalse.m_preds.add(this);
+    }
+
+    /**
+     * Ends the block, and the program, with an EXIT.
+     *
+     * @param state The final value of every source variable
+     */
+    public void exit(FrameState state) {
+        m_term = new IRInstr(IRInstr.Op.EXIT);
+        m_term.setState(state);
+    }
+
+    /**
+     * Removes the edge from 'pred' to this block, along with the
+     * corresponding PHI operands.
+     */
+    public void removePred(IRBlock pred) {
+        int i = m_preds.indexOf(pred);
+        m_preds.remove(i);
+        for (IRInstr phi : m_phis) {
+            phi.removeArg(i);
+        }
+    }
+
+}
@@ -0,0 +1,632 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Stack;
+import java.util.TreeMap;
+
+
+/**
+ * Builds the SSA intermediate representation of a parsed program.
+ *
+ * The builder walks the parse tree while tracking the current SSA
+ * value of every source variable. IF statements become BRANCHes
+ * whose arms join in a block with PHI instructions for the
+ * variables the arms assigned differently. LOOP headers get a PHI
+ * for every variable the loop's body assigns, and BREAK statements
+ * become JUMPs to the exit block of the loop they leave; the exit
+ * block merges the variables of all the BREAKs that reach it.
+ *
+ * Reading a variable that may not have been assigned yet is
+ * guarded by a CHECK instruction, which raises the same runtime
+ * error as the tree-walking interpreter.
+ */
+public class IRBuilder {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * A loop enclosing the statement being built.
+     */
+    private static class LoopCtx {
+        final String id;
+        final IRBlock exit;
+        final List<IRInstr[]> exitStates = new ArrayList<IRInstr[]>();
+
+        LoopCtx(String id, IRBlock exit) {
+            this.id = id;
+            this.exit = exit;
+        }
+    }
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private IRProgram m_prog;
+    private HashMap<String, Integer> m_varIndex;
+    private int[] m_varSymbols;
+    private Stack<LoopCtx> m_loops;
+
+    // The block instructions are being appended to; null after a
+    // BREAK, until control flow joins again.
+    private IRBlock m_block;
+
+    // The current value of each source variable.
+    private IRInstr[] m_cur;
+
+    // The frame state made last, whose chunks the next one shares
+    // where it can.
+    private FrameState m_lastState;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Builds the SSA form of a program.
+     *
+     * @param progNode The parsed program
+     *
+     * @return The program's SSA form
+     *
+     * @throws IllegalArgumentException If the program breaks loops
+     *         in ways that have no SSA form, i.e. a BREAK outside
+     *         of the named loop, or nested loops sharing a name
+     */
+    public IRProgram build(ProgNode progNode) {
+        // Number the variables alphabetically, and keep the symbols
+        // the parser interned them as, so the interpreter never has
+        // to look a name up.
+        TreeMap<String, Integer> names = new TreeMap<String, Integer>();
+        collectNames(progNode.stmtList(), names);
+        String[] varNames = names.keySet().toArray(new String[names.size()]);
+        m_varSymbols = new int[varNames.length];
+        m_varIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < varNames.length; i++) {
+            m_varSymbols[i] = names.get(varNames[i]);
+            m_varIndex.put(varNames[i], i);
+        }
+
+        m_prog = new IRProgram(varNames, m_varSymbols);
+        m_loops = new Stack<LoopCtx>();
+
+        // Every variable starts out undefined.
+        m_block = newBlock();
+        IRInstr undef = m_block.add(new IRInstr(IRInstr.Op.UNDEF));
+        m_cur = new IRInstr[varNames.length];
+        for (int i = 0; i < m_cur.length; i++) {
+            m_cur[i] = undef;
+        }
+        m_lastState = null;
+
+        buildStmtList(progNode.stmtList());
+
+        if (m_block != null) {
+            m_block.exit(frameState());
+        }
+
+        m_prog.renumber();
+        return m_prog;
+    }
+
+    private IRBlock newBlock() {
+        IRBlock block = new IRBlock();
+        m_prog.blocks().add(block);
+        return block;
+    }
+
+    /**
+     * Returns a frame state holding the current value of every
+     * source variable.
+     */
+    private FrameState frameState() {
+        m_lastState = new FrameState(m_cur, m_lastState);
+        return m_lastState;
+    }
+
+
+    //============//
+    // Statements //
+    //============//
+
+    private void buildStmtList(StmtListNode stmtList) {
+        buildStmt(stmtList.stmt());
+
+        // Statements that follow a BREAK are never executed.
+        StmtTailNode tail = stmtList.stmtTail();
+        while (m_block != null && tail.stmt() != null) {
+            buildStmt(tail.stmt());
+            tail = tail.stmtTail();
+        }
+    }
+
+    private void buildStmt(StmtNode stmt) {
+        if (stmt instanceof AssignStmtNode) {
+            AssignStmtNode assign = (AssignStmtNode) stmt;
+            IRInstr value = buildExpr(assign.expr());
+            m_cur[m_varIndex.get(assign.id())] = value;
+        } else if (stmt instanceof ReadStmtNode) {
+            ReadStmtNode read = (ReadStmtNode) stmt;
+            buildRead(read.id());
+            for (IDListTailNode tail = read.idListTail();
+                 tail.id() != null;
+                 tail = tail.idListTail())
+            {
+                buildRead(tail.id());
+            }
+        } else if (stmt instanceof PrintStmtNode) {
+            PrintStmtNode print = (PrintStmtNode) stmt;
+            buildPrint(print.id());
+            for (IDListTailNode tail = print.idListTail();
+                 tail.id() != null;
+                 tail = tail.idListTail())
+            {
+                buildPrint(tail.id());
+            }
+        } else if (stmt instanceof IfStmtNode) {
+            buildIf((IfStmtNode) stmt);
+        } else if (stmt instanceof LoopStmtNode) {
+            buildLoop((LoopStmtNode) stmt);
+        } else if (stmt instanceof BreakStmtNode) {
+            buildBreak((BreakStmtNode) stmt);
+        }
+    }
+
+    private void buildRead(String id) {
+        IRInstr read = new IRInstr(IRInstr.Op.READ);
+        int var = m_varIndex.get(id);
+        read.setName(id);
+        read.setSymbol(m_varSymbols[var]);
+        read.setState(frameState());
+        m_block.add(read);
+        m_cur[var] = read;
+    }
+
+    private void buildPrint(String id) {
+        IRInstr print = new IRInstr(IRInstr.Op.PRINT, checkedVar(id));
+        print.setName(id);
+        print.setSymbol(m_varSymbols[m_varIndex.get(id)]);
+        m_block.add(print);
+    }
+
+    private void buildIf(IfStmtNode ifStmt) {
+        IRInstr cond = buildExpr(ifStmt.expr());
+        IRBlock thenBlock = newBlock();
+        IRBlock elseBlock = newBlock();
+        m_block.branch(cond, thenBlock, elseBlock);
+        IRInstr[] before = m_cur.clone();
+
+        // Build the THEN arm.
+        m_block = thenBlock;
+        buildStmtList(ifStmt.stmtList());
+        IRBlock thenEnd = m_block;
+        IRInstr[] thenState = m_cur;
+
+        // Build the ELSE arm (which may be empty).
+        m_block = elseBlock;
+        m_cur = before;
+        if (ifStmt.elsePart().stmtList() != null) {
+            buildStmtList(ifStmt.elsePart().stmtList());
+        }
+        IRBlock elseEnd = m_block;
+        IRInstr[] elseState = m_cur;
+
+        // Join the arms that fall through.
+        if (thenEnd == null) {
+            m_block = elseEnd;
+            m_cur = elseState;
+        } else if (elseEnd == null) {
+            m_block = thenEnd;
+            m_cur = thenState;
+        } else {
+            m_block = newBlock();
+            thenEnd.jump(m_block);
+            elseEnd.jump(m_block);
+
+            m_cur = new IRInstr[thenState.length];
+            for (int i = 0; i < m_cur.length; i++) {
+                if (thenState[i] == elseState[i]) {
+                    m_cur[i] = thenState[i];
+                } else {
+                    m_cur[i] = new IRInstr(IRInstr.Op.PHI,
+                            thenState[i], elseState[i]);
+                    m_block.phis().add(m_cur[i]);
+                }
+            }
+        }
+    }
+
+    private void buildLoop(LoopStmtNode loop) {
+        for (LoopCtx ctx : m_loops) {
+            if (ctx.id.equals(loop.id())) {
+                throw new IllegalArgumentException(
+                        "Nested loops named " + loop.id());
+            }
+        }
+
+        // The loop header has a PHI for every variable the body
+        // assigns; the others keep their values from before the
+        // loop. The back edge operands are added once the body is
+        // built.
+        boolean[] assigned = new boolean[m_cur.length];
+        collectAssigned(loop.stmtList(), assigned);
+        IRBlock header = newBlock();
+        m_block.jump(header);
+        IRInstr[] phis = new IRInstr[m_cur.length];
+        for (int i = 0; i < m_cur.length; i++) {
+            if (assigned[i]) {
+                phis[i] = new IRInstr(IRInstr.Op.PHI, m_cur[i]);
+                header.phis().add(phis[i]);
+                m_cur[i] = phis[i];
+            }
+        }
+
+        // Build the body.
+        LoopCtx ctx = new LoopCtx(loop.id(), newBlock());
+        m_loops.push(ctx);
+        m_block = header;
+        buildStmtList(loop.stmtList());
+        m_loops.pop();
+
+        // Close the back edge.
+        if (m_block != null) {
+            m_block.jump(header);
+            for (int i = 0; i < phis.length; i++) {
+                if (phis[i] != null) {
+                    phis[i].addArg(m_cur[i]);
+                }
+            }
+        }
+
+        // Continue in the exit block, if any BREAK reaches it.
+        if (ctx.exitStates.isEmpty()) {
+            m_prog.blocks().remove(ctx.exit);
+            m_block = null;
+            return;
+        }
+
+        m_block = ctx.exit;
+        m_cur = new IRInstr[phis.length];
+        for (int i = 0; i < m_cur.length; i++) {
+            IRInstr first = ctx.exitStates.get(0)[i];
+            boolean same = true;
+            for (IRInstr[] state : ctx.exitStates) {
+                same &= state[i] == first;
+            }
+
+            if (same) {
+                m_cur[i] = first;
+            } else {
+                m_cur[i] = new IRInstr(IRInstr.Op.PHI);
+                for (IRInstr[] state : ctx.exitStates) {
+                    m_cur[i].addArg(state[i]);
+                }
+                m_block.phis().add(m_cur[i]);
+            }
+        }
+    }
+
+    /**
+     * Marks the variables that a statement list assigns, or reads
+     * into, including in the statements nested in it.
+     */
+    private void collectAssigned(StmtListNode stmtList, boolean[] assigned) {
+        collectAssigned(stmtList.stmt(), assigned);
+        for (StmtTailNode tail = stmtList.stmtTail();
+             tail.stmt() != null;
+             tail = tail.stmtTail())
+        {
+            collectAssigned(tail.stmt(), assigned);
+        }
+    }
+
+    private void collectAssigned(StmtNode stmt, boolean[] assigned) {
+        if (stmt instanceof AssignStmtNode) {
+            assigned[m_varIndex.get(((AssignStmtNode) stmt).id())] = true;
+        } else if (stmt instanceof ReadStmtNode) {
+            ReadStmtNode read = (ReadStmtNode) stmt;
+            assigned[m_varIndex.get(read.id())] = true;
+            for (IDListTailNode tail = read.idListTail();
+                 tail.id() != null;
+                 tail = tail.idListTail())
+            {
+                assigned[m_varIndex.get(tail.id())] = true;
+            }
+        } else if (stmt instanceof IfStmtNode) {
+            IfStmtNode ifStmt = (IfStmtNode) stmt;
+            collectAssigned(ifStmt.stmtList(), assigned);
+            if (ifStmt.elsePart().stmtList() != null) {
+                collectAssigned(ifStmt.elsePart().stmtList(), assigned);
+            }
+        } else if (stmt instanceof LoopStmtNode) {
+            collectAssigned(((LoopStmtNode) stmt).stmtList(), assigned);
+        }
+    }
+
+    private void buildBreak(BreakStmtNode breakStmt) {
+        String id = breakStmt.idOption().id();
+
+        // Find the innermost loop with the given name (or the
+        // innermost loop if no name was given).
+        LoopCtx target = null;
+        for (int i = m_loops.size() - 1; i >= 0 && target == null; i--) {
+            if (id == null || m_loops.get(i).id.equals(id)) {
+                target = m_loops.get(i);
+            }
+        }
+        if (target == null) {
+            throw new IllegalArgumentException(
+                    "BREAK outside of loop " + id);
+        }
+
+        target.exitStates.add(m_cur.clone());
+        m_block.jump(target.exit);
+        m_block = null;
+    }
+
+
+    //=============//
+    // Expressions //
+    //=============//
+
+    //
+    // Each method mirrors the getVal() method of the corresponding
+    // node, including the order in which operands are evaluated
+    // and the right-to-left grouping of tails.
+    //
+
+    private IRInstr buildExpr(ExprNode expr) {
+        IRInstr value = buildBoolTerm(expr.boolTerm());
+        return buildBoolTermTail(value, expr.boolTermTail());
+    }
+
+    private IRInstr buildBoolTermTail(IRInstr assoc, BoolTermTailNode tail) {
+        if (tail.boolTerm() == null) {
+            return assoc;
+        }
+        IRInstr value = buildBoolTerm(tail.boolTerm());
+        value = buildBoolTermTail(value, tail.boolTermTail());
+        return binary(IRInstr.Op.OR, assoc, value);
+    }
+
+    private IRInstr buildBoolTerm(BoolTermNode term) {
+        IRInstr value = buildBoolFactor(term.boolFactor());
+        return buildBoolFactorTail(value, term.boolFactorTail());
+    }
+
+    private IRInstr buildBoolFactorTail(IRInstr assoc,
+                                        BoolFactorTailNode tail)
+    {
+        if (tail.boolFactor() == null) {
+            return assoc;
+        }
+        IRInstr value = buildBoolFactor(tail.boolFactor());
+        value = buildBoolFactorTail(value, tail.boolFactorTail());
+        return binary(IRInstr.Op.AND, assoc, value);
+    }
+
+    private IRInstr buildBoolFactor(BoolFactorNode factor) {
+        IRInstr value = buildArithExpr(factor.arithExpr());
+        RelationOptionNode relation = factor.relationOption();
+        if (relation.oper() == null) {
+            return value;
+        }
+
+        IRInstr.Op op;
+        switch (relation.oper()) {
+            case LESS_THAN:     op = IRInstr.Op.LT; break;
+            case LESS_EQUAL:    op = IRInstr.Op.LE; break;
+            case EQUAL_TO:      op = IRInstr.Op.EQ; break;
+            case GREATER_EQUAL: op = IRInstr.Op.GE; break;
+            case GREATER_THAN:  op = IRInstr.Op.GT; break;
+            default:            op = IRInstr.Op.NE; break;
+        }
+        return binary(op, value, buildArithExpr(relation.arithExpr()));
+    }
+
+    private IRInstr buildArithExpr(ArithExprNode arithExpr) {
+        IRInstr value = buildTerm(arithExpr.term());
+        return buildTermTail(value, arithExpr.termTail());
+    }
+
+    private IRInstr buildTermTail(IRInstr assoc, TermTailNode tail) {
+        if (tail.term() == null) {
+            return assoc;
+        }
+        IRInstr value = buildTerm(tail.term());
+        value = buildTermTail(value, tail.termTail());
+        return binary(tail.oper() == TermTailNode.Operator.ADD ?
+                IRInstr.Op.ADD : IRInstr.Op.SUB, assoc, value);
+    }
+
+    private IRInstr buildTerm(TermNode term) {
+        IRInstr value = buildFactor(term.factor());
+        return buildFactorTail(value, term.factorTail());
+    }
+
+    private IRInstr buildFactorTail(IRInstr assoc, FactorTailNode tail) {
+        if (tail.factor() == null) {
+            return assoc;
+        }
+        IRInstr value = buildFactor(tail.factor());
+        value = buildFactorTail(value, tail.factorTail());
+        return binary(tail.oper() == FactorTailNode.Operator.MULTIPLY ?
+                IRInstr.Op.MUL : IRInstr.Op.DIV, assoc, value);
+    }
+
+    private IRInstr buildFactor(FactorNode factor) {
+        if (factor.atom() != null) {
+            AtomNode atom = factor.atom();
+            if (atom.id() != null) {
+                return checkedVar(atom.id());
+            }
+            IRInstr value = new IRInstr(IRInstr.Op.CONST);
+            value.makeConst(atom.constVal());
+            return m_block.add(value);
+        } else if (factor.negFactor() != null) {
+            IRInstr value = buildFactor(factor.negFactor());
+            return m_block.add(new IRInstr(IRInstr.Op.NEG, value));
+        } else {
+            return buildExpr(factor.parenExpr());
+        }
+    }
+
+    private IRInstr binary(IRInstr.Op op, IRInstr a, IRInstr b) {
+        IRInstr instr = new IRInstr(op, a, b);
+        if (op == IRInstr.Op.DIV) {
+            instr.setState(frameState());
+        }
+        return m_block.add(instr);
+    }
+
+    /**
+     * Returns the current value of a variable, guarded by a CHECK
+     * unless it's certainly defined.
+     */
+    private IRInstr checkedVar(String id) {
+        int var = m_varIndex.get(id);
+        IRInstr value = m_cur[var];
+
+        if (value.op() == IRInstr.Op.UNDEF || value.op() == IRInstr.Op.PHI) {
+            IRInstr check = new IRInstr(IRInstr.Op.CHECK, value);
+            check.setName(id);
+            check.setSymbol(m_varSymbols[var]);
+            check.setState(frameState());
+            m_block.add(check);
+
+            // Once checked, the variable is known to be defined.
+            m_cur[var] = check;
+            value = check;
+        }
+
+        return value;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    private static void collectNames(StmtListNode stmtList,
+                                     TreeMap<String, Integer> names)
+    {
+        collectNames(stmtList.stmt(), names);
+        for (StmtTailNode tail = stmtList.stmtTail();
+             tail.stmt() != null;
+             tail = tail.stmtTail())
+        {
+            collectNames(tail.stmt(), names);
+        }
+    }
+
+    private static void collectNames(StmtNode stmt,
+                                     TreeMap<String, Integer> names)
+    {
+        if (stmt instanceof AssignStmtNode) {
+            AssignStmtNode assign = (AssignStmtNode) stmt;
+            names.put(assign.id(), assign.symbol());
+            collectNames(assign.expr(), names);
+        } else if (stmt instanceof ReadStmtNode) {
+            ReadStmtNode read = (ReadStmtNode) stmt;
+            names.put(read.id(), read.symbol());
+            collectNames(read.idListTail(), names);
+        } else if (stmt instanceof PrintStmtNode) {
+            PrintStmtNode print = (PrintStmtNode) stmt;
+            names.put(print.id(), print.symbol());
+            collectNames(print.idListTail(), names);
+        } else if (stmt instanceof IfStmtNode) {
+            IfStmtNode ifStmt = (IfStmtNode) stmt;
+            collectNames(ifStmt.expr(), names);
+            collectNames(ifStmt.stmtList(), names);
+            if (ifStmt.elsePart().stmtList() != null) {
+                collectNames(ifStmt.elsePart().stmtList(), names);
+            }
+        } else if (stmt instanceof LoopStmtNode) {
+            collectNames(((LoopStmtNode) stmt).stmtList(), names);
+        }
+    }
+
+    private static void collectNames(IDListTailNode tail,
+                                     TreeMap<String, Integer> names)
+    {
+        for (; tail.id() != null; tail = tail.idListTail()) {
+            names.put(tail.id(), tail.symbol());
+        }
+    }
+
+    private static void collectNames(ExprNode expr,
+                                     TreeMap<String, Integer> names)
+    {
+        collectNames(expr.boolTerm(), names);
+        for (BoolTermTailNode tail = expr.boolTermTail();
+             tail.boolTerm() != null;
+             tail = tail.boolTermTail())
+        {
+            collectNames(tail.boolTerm(), names);
+        }
+    }
+
+    private static void collectNames(BoolTermNode term,
+                                     TreeMap<String, Integer> names)
+    {
+        collectNames(term.boolFactor(), names);
+        for (BoolFactorTailNode tail = term.boolFactorTail();
+             tail.boolFactor() != null;
+             tail = tail.boolFactorTail())
+        {
+            collectNames(tail.boolFactor(), names);
+        }
+    }
+
+    private static void collectNames(BoolFactorNode factor,
+                                     TreeMap<String, Integer> names)
+    {
+        collectNames(factor.arithExpr(), names);
+        if (factor.relationOption().oper() != null) {
+            collectNames(factor.relationOption().arithExpr(), names);
+        }
+    }
+
+    private static void collectNames(ArithExprNode arithExpr,
+                                     TreeMap<String, Integer> names)
+    {
+        collectNames(arithExpr.term(), names);
+        for (TermTailNode tail = arithExpr.termTail();
+             tail.term() != null;
+             tail = tail.termTail())
+        {
+            collectNames(tail.term(), names);
+        }
+    }
+
+    private static void collectNames(TermNode term,
+                                     TreeMap<String, Integer> names)
+    {
+        collectNames(term.factor(), names);
+        for (FactorTailNode tail = term.factorTail();
+             tail.factor() != null;
+             tail = tail.factorTail())
+        {
+            collectNames(tail.factor(), names);
+        }
+    }
+
+    private static void collectNames(FactorNode factor,
+                                     TreeMap<String, Integer> names)
+    {
+        if (factor.atom() != null) {
+            if (factor.atom().id() != null) {
+                names.put(factor.atom().id(), factor.atom().symbol());
+            }
+        } else if (factor.negFactor() != null) {
+            collectNames(factor.negFactor(), names);
+        } else {
+            collectNames(factor.parenExpr(), names);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The dominator tree of an IRProgram's control flow graph.
+ *
+ * Block A dominates block B if every path from the entry block to
+ * B passes through A. The tree is computed with the iterative
+ * algorithm of Cooper, Harvey and Kennedy, which is simple and
+ * fast for the small, reducible graphs that Descartes programs
+ * produce.
+ */
+public class IRDominators {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private List<IRBlock> m_order;
+    private Map<IRBlock, Integer> m_index;
+    private int[] m_idom;
+    private Map<IRBlock, List<IRBlock>> m_children;
+
+    // Each block's number in a preorder walk of the tree, and the
+    // size of its subtree: the blocks it dominates are numbered
+    // from its own number on, for that many.
+    private int[] m_preorder;
+    private int[] m_size;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Computes the dominator tree of a program.
+     *
+     * @param prog The program; its blocks must all be reachable
+     */
+    public IRDominators(IRProgram prog) {
+        m_order = prog.reversePostorder();
+        m_index = new HashMap<IRBlock, Integer>();
+        for (int i = 0; i < m_order.size(); i++) {
+            m_index.put(m_order.get(i), i);
+        }
+
+        m_idom = new int[m_order.size()];
+        for (int i = 0; i < m_idom.length; i++) {
+            m_idom[i] = -1;
+        }
+        m_idom[0] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int b = 1; b < m_order.size(); b++) {
+                int idom = -1;
+                for (IRBlock pred : m_order.get(b).preds()) {
+                    Integer p = m_index.get(pred);
+                    if (p == null || m_idom[p] == -1) {
+                        continue;
+                    }
+                    idom = (idom == -1) ? p : intersect(p, idom);
+                }
+                if (m_idom[b] != idom) {
+                    m_idom[b] = idom;
+                    changed = true;
+                }
+            }
+        }
+
+        m_children = new HashMap<IRBlock, List<IRBlock>>();
+        for (IRBlock block : m_order) {
+            m_children.put(block, new ArrayList<IRBlock>());
+        }
+        for (int b = 1; b < m_order.size(); b++) {
+            m_children.get(m_order.get(m_idom[b])).add(m_order.get(b));
+        }
+
+        // A block's immediate dominator precedes it in reverse
+        // postorder, so subtrees can be sized from the last block
+        // back, and numbered from the first on.
+        int count = m_order.size();
+        m_size = new int[count];
+        for (int b = count - 1; b >= 0; b--) {
+            m_size[b]++;
+            if (b > 0) {
+                m_size[m_idom[b]] += m_size[b];
+            }
+        }
+        m_preorder = new int[count];
+        int[] next = new int[count];
+        next[0] = 1;
+        for (int b = 1; b < count; b++) {
+            m_preorder[b] = next[m_idom[b]];
+            next[m_idom[b]] += m_size[b];
+            next[b] = m_preorder[b] + 1;
+        }
+    }
+
+    private int intersect(int a, int b) {
+        while (a != b) {
+            while (a > b) {
+                a = m_idom[a];
+            }
+            while (b > a) {
+                b = m_idom[b];
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Returns true if block 'a' dominates block 'b'. Every block
+     * dominates itself.
+     */
+    public boolean dominates(IRBlock a, IRBlock b) {
+        Integer ai = m_index.get(a);
+        Integer bi = m_index.get(b);
+        if (ai == null || bi == null) {
+            return false;
+        }
+
+        return m_preorder[ai] <= m_preorder[bi] &&
+                m_preorder[bi] < m_preorder[ai] + m_size[ai];
+    }
+
+    /**
+     * Returns the blocks immediately dominated by 'block', i.e.
+     * its children in the dominator tree.
+     */
+    public List<IRBlock> children(IRBlock block) {
+        return m_children.get(block);
+    }
+
+}
@@ -0,0 +1,263 @@
+/**
+ * A single instruction of the SSA intermediate representation.
+ *
+ * An instruction that produces a value IS that value: operands
+ * refer directly to the instructions that define them. Every value
+ * is assigned exactly once; variables of the source program are
+ * mapped to different values at different points of the program,
+ * and PHI instructions merge them where control flow joins.
+ *
+ * Instructions that can raise a runtime error (CHECK, READ, and
+ * DIV with a divisor that may be zero) carry a frame state: the
+ * value of every source variable at that point, so that the symbol
+ * table can be rebuilt when the error is reported.
+ *
+ * @see IRBuilder
+ */
+public class IRInstr {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * The instruction opcodes.
+     */
+    public enum Op {
+        // Values.
+        CONST,      // a numeric constant
+        UNDEF,      // the value of a variable that was never assigned
+        PHI,        // one operand per predecessor of the block
+
+        // Arithmetic, comparison and boolean operators.
+        ADD, SUB, MUL, DIV, NEG,
+        LT, LE, EQ, GE, GT, NE,
+        AND, OR,
+
+        // Side effects.
+        CHECK,      // faults if its operand is UNDEF, else copies it
+        READ,       // reads a variable's value from the user
+        PRINT,      // prints its operand as the named variable
+
+        // Block terminators.
+        JUMP,       // to the single successor
+        BRANCH,     // to successor 0 if operand is non-zero, else 1
+        EXIT        // ends the program; frame state holds the result
+    }
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private Op m_op;
+    private IRInstr[] m_args;
+    private double m_value;
+    private String m_name;
+    private int m_symbol;
+    private FrameState m_state;
+    private int m_id;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a new instruction.
+     *
+     * @param op The instruction's opcode
+     * @param args The operands of the instruction
+     */
+    public IRInstr(Op op, IRInstr... args) {
+        m_op = op;
+        m_args = args;
+    }
+
+    /**
+     * Accessor for the opcode.
+     */
+    public Op op() {
+        return m_op;
+    }
+
+    /**
+     * Accessor for the operands.
+     */
+    public IRInstr[] args() {
+        return m_args;
+    }
+
+    /**
+     * Accessor for a single operand.
+     */
+    public IRInstr arg(int i) {
+        return m_args[i];
+    }
+
+    /**
+     * Replaces a single operand.
+     */
+    public void setArg(int i, IRInstr arg) {
+        m_args[i] = arg;
+    }
+
+    /**
+     * Appends an operand; used for the operands of PHI
+     * instructions as predecessors are added.
+     */
+    public void addArg(IRInstr arg) {
+        IRInstr[] args = new IRInstr[m_args.length + 1];
+        System.arraycopy(m_args, 0, args, 0, m_args.length);
+        args[m_args.length] = arg;
+        m_args = args;
+    }
+
+    /**
+     * Removes a single operand; used for the operands of PHI
+     * instructions as predecessors are removed.
+     */
+    public void removeArg(int i) {
+        IRInstr[] args = new IRInstr[m_args.length - 1];
+        System.arraycopy(m_args, 0, args, 0, i);
+        System.arraycopy(m_args, i + 1, args, i, args.length - i);
+        m_args = args;
+    }
+
+    /**
+     * Accessor for the value of a CONST instruction.
+     */
+    public double value() {
+        return m_value;
+    }
+
+    /**
+     * Turns this instruction into a CONST with the given value.
+     */
+    public void makeConst(double value) {
+        m_op = Op.CONST;
+        m_args = new IRInstr[0];
+        m_value = value;
+        m_name = null;
+        m_state = null;
+    }
+
+    /**
+     * Turns this instruction into an unconditional JUMP.
+     */
+    public void makeJump() {
+        m_op = Op.JUMP;
+        m_args = new IRInstr[0];
+    }
+
+    /**
+     * Accessor for the source variable name of a CHECK, READ or
+     * PRINT instruction.
+     */
+    public String name() {
+        return m_name;
+    }
+
+    /**
+     * Sets the source variable name.
+     */
+    public void setName(String name) {
+        m_name = name;
+    }
+
+    /**
+     * Accessor for the interned symbol of the source variable of a
+     * CHECK, READ or PRINT instruction.
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Sets the source variable symbol.
+     */
+    public void setSymbol(int symbol) {
+        m_symbol = symbol;
+    }
+
+    /**
+     * Accessor for the frame state (null if the instruction can't
+     * fault).
+     */
+    public FrameState state() {
+        return m_state;
+    }
+
+    /**
+     * Sets the frame state.
+     */
+    public void setState(FrameState state) {
+        m_state = state;
+    }
+
+    /**
+     * Accessor for the instruction number, which is assigned by
+     * IRProgram.renumber().
+     */
+    public int id() {
+        return m_id;
+    }
+
+    /**
+     * Sets the instruction number.
+     */
+    public void setId(int id) {
+        m_id = id;
+    }
+
+    /**
+     * Returns true if this instruction has an effect besides
+     * producing its value: it can fault, perform I/O or end a
+     * block.
+     */
+    public boolean hasSideEffects() {
+        switch (m_op) {
+            case CHECK: case READ: case PRINT:
+            case JUMP: case BRANCH: case EXIT:
+                return true;
+            case DIV:
+                return m_state != null;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns true if this instruction is a block terminator.
+     */
+    public boolean isTerminator() {
+        return m_op == Op.JUMP || m_op == Op.BRANCH || m_op == Op.EXIT;
+    }
+
+    /**
+     * Returns a readable representation of the instruction, such
+     * as "v12 = ADD v3, v7".
+     */
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (!isTerminator() && m_op != Op.PRINT) {
+            text.append("v").append(m_id).append(" = ");
+        }
+        text.append(m_op);
+        if (m_op == Op.CONST) {
+            text.append(" ").append(m_value);
+        }
+        if (m_name != null) {
+            text.append(" ").append(m_name);
+        }
+        for (int i = 0; i < m_args.length; i++) {
+            text.append(i == 0 ? " " : ", ");
+            text.append(m_args[i] == null ? "?" : "v" + m_args[i].m_id);
+        }
+        if (m_state != null && m_op != Op.EXIT) {
+            text.append("  [state]");
+        }
+        return text.toString();
+    }
+
+}
@@ -0,0 +1,150 @@
+/**
+ * Executes an IRProgram.
+ *
+ * Every instruction's value lives in a register indexed by the
+ * instruction number, so the program must not be modified while
+ * it runs. Undefined variables hold a NaN with a reserved bit
+ * pattern that no arithmetic can produce; CHECK instructions test
+ * for it. Runtime errors and the end of the program write the
+ * defined variables of the current frame state to the symbol
+ * table, exactly as the tree-walking interpreter leaves it.
+ */
+public class IRInterpreter {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final long UNDEF_BITS = 0x7ff8deadbeef0001L;
+    private static final double UNDEF = Double.longBitsToDouble(UNDEF_BITS);
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Executes a program. The program is only read, so any number
+     * of threads can execute it at once.
+     *
+     * @param prog The program to execute, numbered by
+     *             IRProgram.renumber() since it last changed
+     * @param progState The program state; I/O goes through it and
+     *                  its symbol table receives the final values
+     *
+     * @throws DCRuntimeErrorException If the program reads an
+     *                                 undefined variable, divides
+     *                                 by zero or can't READ a value
+     */
+    public static void execute(IRProgram prog, ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        double[] regs = new double[prog.instrCount()];
+        double[] phiValues = new double[0];
+
+        IRBlock pred = null;
+        IRBlock block = prog.entry();
+        while (true) {
+            // PHIs read their operands in parallel.
+            int phiCount = block.phis().size();
+            if (phiCount > 0) {
+                int p = block.preds().indexOf(pred);
+                if (phiValues.length < phiCount) {
+                    phiValues = new double[phiCount];
+                }
+                for (int i = 0; i < phiCount; i++) {
+                    phiValues[i] = regs[block.phis().get(i).arg(p).id()];
+                }
+                for (int i = 0; i < phiCount; i++) {
+                    regs[block.phis().get(i).id()] = phiValues[i];
+                }
+            }
+
+            for (IRInstr instr : block.instrs()) {
+                regs[instr.id()] = evaluate(instr, regs, prog, progState);
+            }
+
+            IRInstr term = block.term();
+            pred = block;
+            if (term.op() == IRInstr.Op.JUMP) {
+                // Every loop's back edge is a JUMP.
+                progState.poll();
+                block = block.succs().get(0);
+            } else if (term.op() == IRInstr.Op.BRANCH) {
+                boolean cond = regs[term.arg(0).id()] != 0.0;
+                block = block.succs().get(cond ? 0 : 1);
+            } else {
+                writeState(term, regs, prog, progState);
+                return;
+            }
+        }
+    }
+
+    private static double evaluate(IRInstr instr, double[] regs,
+                                   IRProgram prog, ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        switch (instr.op()) {
+            case CONST:
+                return instr.value();
+            case UNDEF:
+                return UNDEF;
+            case NEG:
+                return -regs[instr.arg(0).id()];
+            case DIV:
+                if (regs[instr.arg(1).id()] == 0.0) {
+                    writeState(instr, regs, prog, progState);
+                    throw new DCRuntimeErrorException("Division by zero.");
+                }
+                return regs[instr.arg(0).id()] / regs[instr.arg(1).id()];
+            case CHECK: {
+                double value = regs[instr.arg(0).id()];
+                if (Double.doubleToRawLongBits(value) == UNDEF_BITS) {
+                    writeState(instr, regs, prog, progState);
+                    throw new DCRuntimeErrorException(
+                            "Unrecognized variable name: " + instr.name()
+                    );
+                }
+                return value;
+            }
+            case READ: {
+                try {
+                    progState.readVar(instr.symbol());
+                } catch (DCRuntimeErrorException e) {
+                    writeState(instr, regs, prog, progState);
+                    throw e;
+                }
+                return progState.symTab().get(instr.symbol());
+            }
+            case PRINT:
+                progState.printValue(instr.name(),
+                        regs[instr.arg(0).id()]);
+                return 0.0;
+            default:
+                return ConstFoldPass.evaluate(instr.op(),
+                        regs[instr.arg(0).id()], regs[instr.arg(1).id()]);
+        }
+    }
+
+    /**
+     * Writes the defined variables of an instruction's frame state
+     * to the symbol table.
+     */
+    private static void writeState(IRInstr instr, double[] regs,
+                                   IRProgram prog, ProgState progState)
+    {
+        FrameState state = instr.state();
+        if (state == null) {
+            return;
+        }
+
+        int[] varSymbols = prog.varSymbols();
+        for (int i = 0; i < state.length(); i++) {
+            double value = regs[state.get(i).id()];
+            if (Double.doubleToRawLongBits(value) != UNDEF_BITS) {
+                progState.symTab().set(varSymbols[i], value);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,24 @@
+/**
+ * An optimization pass over the SSA intermediate representation.
+ *
+ * Passes transform an IRProgram in place and must leave it
+ * satisfying the invariants checked by IRVerifier.
+ *
+ * @see IRPassManager
+ */
+public interface IRPass {
+
+    /**
+     * Returns the name of the pass, as shown in pass timings and
+     * verification errors.
+     */
+    String name();
+
+    /**
+     * Runs the pass over a program.
+     *
+     * @param prog The program to transform
+     */
+    void run(IRProgram prog);
+
+}
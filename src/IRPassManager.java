@@ -0,0 +1,116 @@
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Runs a pipeline of IRPasses over an IRProgram, verifying the
+ * program before the first pass and after every pass.
+ *
+ * @see IRVerifier
+ */
+public class IRPassManager {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private List<IRPass> m_passes;
+    private boolean m_timePasses;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a new pass manager with an empty pipeline.
+     */
+    public IRPassManager() {
+        m_passes = new ArrayList<IRPass>();
+        m_timePasses = false;
+    }
+
+    /**
+     * Appends a pass to the pipeline.
+     */
+    public void add(IRPass pass) {
+        m_passes.add(pass);
+    }
+
+    /**
+     * Sets whether the time taken by each pass is printed on the
+     * standard error stream.
+     */
+    public void setTimePasses(boolean timePasses) {
+        m_timePasses = timePasses;
+    }
+
+    /**
+     * Runs the pipeline over a program.
+     *
+     * @param prog The program to optimize
+     *
+     * @throws IllegalStateException If a pass leaves the program
+     *                               in an invalid state
+     */
+    public void run(IRProgram prog) {
+        IRVerifier.verify(prog, "IR construction");
+
+        long total = 0;
+        for (IRPass pass : m_passes) {
+            long start = System.nanoTime();
+            pass.run(prog);
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+
+            IRVerifier.verify(prog, pass.name());
+            if (m_timePasses) {
+                printTime(pass.name(), elapsed);
+            }
+        }
+
+        if (m_timePasses) {
+            printTime("total", total);
+        }
+    }
+
+    private void printTime(String name, long nanos) {
+        System.err.printf("%-12s %10.3f ms%n", name, nanos / 1e6);
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns a pass manager holding the standard pipeline for an
+     * optimization level.
+     *
+     * @param level 0 for no optimization, 1 for copy propagation,
+     *              constant folding and dead code elimination, or
+     *              2 to also number values globally
+     */
+    public static IRPassManager forLevel(int level) {
+        IRPassManager manager = new IRPassManager();
+
+        if (level >= 1) {
+            manager.add(new CopyPropPass());
+            manager.add(new ConstFoldPass());
+            manager.add(new CopyPropPass());
+        }
+        if (level >= 2) {
+            // Numbering values exposes new constants and copies,
+            // so run the O1 passes again afterwards.
+            manager.add(new GVNPass());
+            manager.add(new ConstFoldPass());
+            manager.add(new CopyPropPass());
+        }
+        if (level >= 1) {
+            manager.add(new DCEPass());
+        }
+
+        return manager;
+    }
+
+}
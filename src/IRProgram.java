@@ -0,0 +1,265 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * A Descartes program in SSA form: a control flow graph of basic
+ * blocks, the first of which is the entry block.
+ *
+ * @see IRBuilder
+ * @see IRPassManager
+ * @see IRInterpreter
+ */
+public class IRProgram {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private List<IRBlock> m_blocks;
+    private String[] m_varNames;
+    private int[] m_varSymbols;
+    private int m_instrCount;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a new program with no blocks.
+     *
+     * @param varNames The names of the program's variables; frame
+     *                 states list variable values in this order
+     * @param varSymbols The interned symbols of the same variables
+     */
+    public IRProgram(String[] varNames, int[] varSymbols) {
+        m_blocks = new ArrayList<IRBlock>();
+        m_varNames = varNames;
+        m_varSymbols = varSymbols;
+    }
+
+    /**
+     * Accessor for the blocks; the first is the entry block.
+     */
+    public List<IRBlock> blocks() {
+        return m_blocks;
+    }
+
+    /**
+     * Accessor for the entry block.
+     */
+    public IRBlock entry() {
+        return m_blocks.get(0);
+    }
+
+    /**
+     * Accessor for the variable names.
+     */
+    public String[] varNames() {
+        return m_varNames;
+    }
+
+    /**
+     * Accessor for the variable symbols, in the order of their
+     * names.
+     */
+    public int[] varSymbols() {
+        return m_varSymbols;
+    }
+
+    /**
+     * Returns the number of instructions, as of the last call to
+     * renumber().
+     */
+    public int instrCount() {
+        return m_instrCount;
+    }
+
+    /**
+     * Numbers the blocks and instructions consecutively in reverse
+     * postorder.
+     */
+    public void renumber() {
+        int blockID = 0;
+        int instrID = 0;
+
+        for (IRBlock block : reversePostorder()) {
+            block.setId(blockID++);
+            for (IRInstr phi : block.phis()) {
+                phi.setId(instrID++);
+            }
+            for (IRInstr instr : block.instrs()) {
+                instr.setId(instrID++);
+            }
+            block.term().setId(instrID++);
+        }
+
+        m_instrCount = instrID;
+    }
+
+    /**
+     * Returns the blocks reachable from the entry block, in reverse
+     * postorder: every block appears before its successors, except
+     * along loop back edges.
+     */
+    public List<IRBlock> reversePostorder() {
+        List<IRBlock> order = new ArrayList<IRBlock>();
+        Set<IRBlock> visited = new HashSet<IRBlock>();
+
+        // Iterative depth-first search; each stack entry is a
+        // block and the index of the next successor to visit.
+        List<IRBlock> stack = new ArrayList<IRBlock>();
+        List<Integer> next = new ArrayList<Integer>();
+        stack.add(entry());
+        next.add(0);
+        visited.add(entry());
+
+        while (!stack.isEmpty()) {
+            int top = stack.size() - 1;
+            IRBlock block = stack.get(top);
+            int i = next.get(top);
+
+            if (i < block.succs().size()) {
+                next.set(top, i + 1);
+                IRBlock succ = block.succs().get(i);
+                if (visited.add(succ)) {
+                    stack.add(succ);
+                    next.add(0);
+                }
+            } else {
+                order.add(block);
+                stack.remove(top);
+                next.remove(top);
+            }
+        }
+
+        Collections.reverse(order);
+        return order;
+    }
+
+    /**
+     * Removes the blocks that can't be reached from the entry
+     * block.
+     */
+    public void removeUnreachable() {
+        Set<IRBlock> reachable = new HashSet<IRBlock>(reversePostorder());
+
+        for (IRBlock block : m_blocks) {
+            if (!reachable.contains(block)) {
+                for (IRBlock succ : block.succs()) {
+                    if (reachable.contains(succ)) {
+                        succ.removePred(block);
+                    }
+                }
+            }
+        }
+        m_blocks.retainAll(reachable);
+    }
+
+    /**
+     * Replaces every use of the keys of 'replacements' with the
+     * corresponding values, then removes the replaced
+     * instructions.
+     *
+     * @param replacements Maps replaced instructions to their
+     *                     replacements
+     */
+    public void replaceUses(Map<IRInstr, IRInstr> replacements) {
+        if (replacements.isEmpty()) {
+            return;
+        }
+
+        // Frame states share chunks, which are each visited once.
+        Set<IRInstr[]> chunks = Collections.newSetFromMap(
+                new IdentityHashMap<IRInstr[], Boolean>());
+        for (IRBlock block : m_blocks) {
+            for (IRInstr phi : block.phis()) {
+                replaceIn(phi, replacements, chunks);
+            }
+            for (IRInstr instr : block.instrs()) {
+                replaceIn(instr, replacements, chunks);
+            }
+            replaceIn(block.term(), replacements, chunks);
+
+            block.phis().removeAll(replacements.keySet());
+            block.instrs().removeAll(replacements.keySet());
+        }
+    }
+
+    private static void replaceIn(IRInstr instr,
+                                  Map<IRInstr, IRInstr> replacements,
+                                  Set<IRInstr[]> chunks)
+    {
+        IRInstr[] args = instr.args();
+        for (int i = 0; i < args.length; i++) {
+            args[i] = resolve(args[i], replacements);
+        }
+
+        FrameState state = instr.state();
+        if (state != null) {
+            for (int c = 0; c < state.chunkCount(); c++) {
+                IRInstr[] chunk = state.chunk(c);
+                if (chunks.add(chunk)) {
+                    for (int i = 0; i < chunk.length; i++) {
+                        chunk[i] = resolve(chunk[i], replacements);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Follows a chain of replacements to its end.
+     */
+    public static IRInstr resolve(IRInstr instr,
+                                  Map<IRInstr, IRInstr> replacements)
+    {
+        IRInstr replacement = replacements.get(instr);
+        while (replacement != null) {
+            instr = replacement;
+            replacement = replacements.get(instr);
+        }
+        return instr;
+    }
+
+    /**
+     * Returns a readable listing of the program.
+     */
+    public String toString() {
+        renumber();
+
+        StringBuilder text = new StringBuilder();
+        for (IRBlock block : reversePostorder()) {
+            text.append("b").append(block.id()).append(":");
+            if (!block.preds().isEmpty()) {
+                text.append("    ; preds");
+                for (IRBlock pred : block.preds()) {
+                    text.append(" b").append(pred.id());
+                }
+            }
+            text.append("\n");
+
+            for (IRInstr phi : block.phis()) {
+                text.append("    ").append(phi).append("\n");
+            }
+            for (IRInstr instr : block.instrs()) {
+                text.append("    ").append(instr).append("\n");
+            }
+
+            text.append("    ").append(block.term());
+            for (IRBlock succ : block.succs()) {
+                text.append(" b").append(succ.id());
+            }
+            text.append("\n");
+        }
+
+        return text.toString();
+    }
+
+}
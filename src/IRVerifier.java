@@ -0,0 +1,203 @@
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Checks the structural invariants of an IRProgram. The pass
+ * manager runs it after every pass, so a broken pass is caught
+ * right where it broke the program instead of producing wrong
+ * results later on.
+ *
+ * The invariants are:
+ *
+ * <ul>
+ *   <li>every block is reachable and ends with a terminator whose
+ *       successors list it as a predecessor, and vice versa;</li>
+ *   <li>every PHI has one operand per predecessor;</li>
+ *   <li>every operand and frame state value is an instruction of
+ *       the program whose definition dominates the use (for a PHI
+ *       operand, the end of the corresponding predecessor);</li>
+ *   <li>frame states list a value for every source variable.</li>
+ * </ul>
+ */
+public class IRVerifier {
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Verifies a program.
+     *
+     * @param prog The program to verify
+     * @param after The name of the pass that produced the program;
+     *              used in the error message
+     *
+     * @throws IllegalStateException If an invariant is violated
+     */
+    public static void verify(IRProgram prog, String after) {
+        List<IRBlock> order = prog.reversePostorder();
+        if (order.size() != prog.blocks().size() ||
+                !new HashSet<IRBlock>(order).containsAll(prog.blocks()))
+        {
+            fail(after, "program contains unreachable blocks");
+        }
+        if (!prog.entry().preds().isEmpty()) {
+            fail(after, "entry block has predecessors");
+        }
+
+        prog.renumber();
+        IRDominators doms = new IRDominators(prog);
+
+        // Record where each instruction is defined.
+        Map<IRInstr, IRBlock> defBlock = new HashMap<IRInstr, IRBlock>();
+        Map<IRInstr, Integer> defIndex = new HashMap<IRInstr, Integer>();
+        for (IRBlock block : order) {
+            for (IRInstr phi : block.phis()) {
+                define(phi, block, -1, defBlock, defIndex, after);
+            }
+            for (int i = 0; i < block.instrs().size(); i++) {
+                define(block.instrs().get(i), block, i,
+                        defBlock, defIndex, after);
+            }
+        }
+
+        // Where each chunk of frame state values was last checked;
+        // the blocks are visited in reverse postorder, so a block's
+        // dominators are visited before it.
+        Map<IRInstr[], IRBlock> checked =
+                new IdentityHashMap<IRInstr[], IRBlock>();
+
+        for (IRBlock block : order) {
+            String where = "b" + block.id();
+
+            // Control flow edges.
+            if (block.term() == null || !block.term().isTerminator()) {
+                fail(after, where + " has no terminator");
+            }
+            int succCount = block.term().op() == IRInstr.Op.BRANCH ? 2 :
+                    block.term().op() == IRInstr.Op.JUMP ? 1 : 0;
+            if (block.succs().size() != succCount) {
+                fail(after, where + " has the wrong number of successors");
+            }
+            for (IRBlock succ : block.succs()) {
+                if (!succ.preds().contains(block)) {
+                    fail(after, where + " is missing from its " +
+                            "successor's predecessors");
+                }
+            }
+            for (IRBlock pred : block.preds()) {
+                if (!pred.succs().contains(block)) {
+                    fail(after, where + " is missing from its " +
+                            "predecessor's successors");
+                }
+            }
+
+            // Operands.
+            for (IRInstr phi : block.phis()) {
+                if (phi.op() != IRInstr.Op.PHI) {
+                    fail(after, where + " has a non-PHI among its PHIs");
+                }
+                if (phi.args().length != block.preds().size()) {
+                    fail(after, "v" + phi.id() + " has " +
+                            phi.args().length + " operands for " +
+                            block.preds().size() + " predecessors");
+                }
+                for (int i = 0; i < phi.args().length; i++) {
+                    IRBlock pred = block.preds().get(i);
+                    checkUse(phi, phi.args()[i], pred, Integer.MAX_VALUE,
+                            doms, defBlock, defIndex, after);
+                }
+            }
+            for (int i = 0; i < block.instrs().size(); i++) {
+                IRInstr instr = block.instrs().get(i);
+                if (instr.op() == IRInstr.Op.PHI || instr.isTerminator()) {
+                    fail(after, "v" + instr.id() + " is misplaced");
+                }
+                checkUses(instr, block, i, doms, defBlock, defIndex,
+                        checked, prog, after);
+            }
+            checkUses(block.term(), block, Integer.MAX_VALUE, doms,
+                    defBlock, defIndex, checked, prog, after);
+        }
+    }
+
+    private static void define(IRInstr instr, IRBlock block, int index,
+                               Map<IRInstr, IRBlock> defBlock,
+                               Map<IRInstr, Integer> defIndex,
+                               String after)
+    {
+        if (defBlock.put(instr, block) != null) {
+            fail(after, "v" + instr.id() + " appears twice");
+        }
+        defIndex.put(instr, index);
+    }
+
+    private static void checkUses(IRInstr instr, IRBlock block, int index,
+                                  IRDominators doms,
+                                  Map<IRInstr, IRBlock> defBlock,
+                                  Map<IRInstr, Integer> defIndex,
+                                  Map<IRInstr[], IRBlock> checked,
+                                  IRProgram prog, String after)
+    {
+        for (IRInstr arg : instr.args()) {
+            checkUse(instr, arg, block, index, doms, defBlock, defIndex,
+                    after);
+        }
+
+        if (instr.state() != null) {
+            FrameState state = instr.state();
+            if (state.length() != prog.varNames().length) {
+                fail(after, "v" + instr.id() + " has an incomplete " +
+                        "frame state");
+            }
+
+            // A chunk of values shared with a state checked earlier
+            // in this block, or in one that dominates it, needn't
+            // be checked again.
+            for (int c = 0; c < state.chunkCount(); c++) {
+                IRInstr[] chunk = state.chunk(c);
+                IRBlock checkedIn = checked.get(chunk);
+                if (checkedIn != null && doms.dominates(checkedIn, block)) {
+                    continue;
+                }
+                for (IRInstr value : chunk) {
+                    checkUse(instr, value, block, index, doms, defBlock,
+                            defIndex, after);
+                }
+                checked.put(chunk, block);
+            }
+        }
+    }
+
+    private static void checkUse(IRInstr user, IRInstr value,
+                                 IRBlock block, int index,
+                                 IRDominators doms,
+                                 Map<IRInstr, IRBlock> defBlock,
+                                 Map<IRInstr, Integer> defIndex,
+                                 String after)
+    {
+        IRBlock def = (value == null) ? null : defBlock.get(value);
+        if (def == null) {
+            fail(after, user + " uses a value that isn't defined " +
+                    "in the program");
+        }
+
+        boolean dominated = (def == block) ?
+                defIndex.get(value) < index :
+                doms.dominates(def, block);
+        if (!dominated) {
+            fail(after, user + " uses v" + value.id() +
+                    " where its definition doesn't dominate the use");
+        }
+    }
+
+    private static void fail(String after, String message) {
+        throw new IllegalStateException(
+                "IR verification failed after " + after + ": " + message);
+    }
+
+}
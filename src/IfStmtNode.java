@@ -21,9 +21,9 @@ public class IfStmtNode extends StmtNode {
     // Member Variables //
     //==================//
 
-    private ExprNode m_expr;
-    private StmtListNode m_stmtList;
-    private ElsePartNode m_else;
+    private final ExprNode m_expr;
+    private final StmtListNode m_stmtList;
+    private final ElsePartNode m_else;
 
 
     //=========//
@@ -40,11 +40,15 @@ public class IfStmtNode extends StmtNode {
      *                 statement's condition is non-zero
      * @param elsePart The else-part clause attached to this if
      *                 statement
+     * @param start The offset in the source code where the
+     *              statement starts
      */
     public IfStmtNode(ExprNode exp,
                       StmtListNode stmtList,
-                      ElsePartNode elsePart)
+                      ElsePartNode elsePart,
+                      int start)
     {
+        super(start);
         m_expr = exp;
         m_stmtList = stmtList;
         m_else = elsePart;
@@ -67,6 +71,27 @@ public class IfStmtNode extends StmtNode {
         }
     }
 
+    /**
+     * Accessor for the conditional expression.
+     */
+    public ExprNode expr() {
+        return m_expr;
+    }
+
+    /**
+     * Accessor for the THEN statement list.
+     */
+    public StmtListNode stmtList() {
+        return m_stmtList;
+    }
+
+    /**
+     * Accessor for the else-part.
+     */
+    public ElsePartNode elsePart() {
+        return m_else;
+    }
+
 
     //================//
     // Static Methods //
@@ -136,11 +161,14 @@ public class IfStmtNode extends StmtNode {
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
+     * @param start The offset in the source code where the
+     *              statement starts
      *
      * @return The constructed IfStmtNode that was parsed from the
      *         source code
      */
-    public static IfStmtNode parseIfStmt(TokenReader tokenReader)
+    public static IfStmtNode parseIfStmt(TokenReader tokenReader,
+                                         int start)
             throws IOException, DCSyntaxErrorException
 
     {
@@ -179,14 +207,15 @@ public class IfStmtNode extends StmtNode {
         }
 
         // Sets the stmtList to the next stmtList after "THEN".
-        StmtListNode stmtList = StmtListNode.parseStmtList(tokenReader);
+        StmtListNode stmtList = LazyStmtListNode.parseBody(tokenReader,
+                "Expected 'FI' after IF-THEN(-ELSE) clause.");
 
         // Sets the elsePart to the next elsePart after the
         // stmt-list.
         ElsePartNode elsePart = ElsePartNode.parseElse(tokenReader);
 
 
-        return new IfStmtNode(exp, stmtList, elsePart);
+        return new IfStmtNode(exp, stmtList, elsePart, start);
     }
 
 }
@@ -0,0 +1,473 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A long-lived interpreter that runs programs for DaemonClients over
+ * a Unix domain socket, so that a short script pays for neither
+ * starting a JVM nor warming up its JIT compiler.
+ *
+ * Each connection runs one command line, as "java Descartes" would,
+ * on a thread of its own: the program's output goes back to the
+ * client as it's printed, READ reads the client's standard input,
+ * and the client exits with the program's exit status. Compiled
+ * programs are kept, the most recently used first, and reused as
+ * long as their source files haven't changed; they're never changed
+ * by running them, so any number of clients can run one at once.
+ *
+ * The socket is made accessible to its owner only, in a directory
+ * that is too, since the daemon reads whatever files its clients
+ * name. A daemon won't start in a directory that already exists
+ * but isn't its user's own.
+ *
+ * @see DaemonProtocol
+ */
+public class InterpreterDaemon {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * Reads the client's standard input from the frames it sends,
+     * flushing the program's output before waiting for each, so
+     * that a prompt is seen before it's answered.
+     */
+    private static class FrameInputStream extends InputStream {
+
+        private final DataInputStream m_in;
+        private final PrintStream m_out;
+        private byte[] m_frame;
+        private int m_position;
+        private boolean m_ended;
+
+        FrameInputStream(DataInputStream in, PrintStream out) {
+            m_in = in;
+            m_out = out;
+            m_frame = new byte[0];
+            m_position = 0;
+            m_ended = false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : (b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (m_position == m_frame.length) {
+                if (m_ended) {
+                    return -1;
+                }
+                m_out.flush();
+                m_frame = DaemonProtocol.readFrame(m_in);
+                m_position = 0;
+                if (m_frame.length == 0) {
+                    m_ended = true;
+                    return -1;
+                }
+            }
+            int count = Math.min(len, m_frame.length - m_position);
+            System.arraycopy(m_frame, m_position, b, off, count);
+            m_position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return m_frame.length - m_position;
+        }
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // The most compiled programs kept.
+    private static final int MAX_PROGRAMS = 256;
+
+    // The most command-line arguments a client may send.
+    private static final int MAX_ARGS = 64;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final Path m_socket;
+    private final ServerSocketChannel m_server;
+
+    // Runs each connection on a thread of its own.
+    private final ExecutorService m_executor;
+
+    // Compiled programs, by source file path and optimization
+    // level.
+    private final CompiledProgramCache m_programs;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a daemon listening on a socket, replacing the
+     * socket file if it's left over from a daemon no longer
+     * running.
+     *
+     * @param socket The socket's path
+     *
+     * @throws IOException If another daemon is listening on the
+     *                     socket, its directory isn't the user's
+     *                     own, or it can't be created
+     */
+    public InterpreterDaemon(Path socket)
+            throws IOException
+    {
+        m_socket = socket.toAbsolutePath();
+        Path directory = m_socket.getParent();
+        if (!Files.exists(directory, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(directory,
+                    PosixFilePermissions.asFileAttribute(EnumSet.of(
+                            PosixFilePermission.OWNER_READ,
+                            PosixFilePermission.OWNER_WRITE,
+                            PosixFilePermission.OWNER_EXECUTE)));
+        }
+        // Whether it was made just now or not, someone else may have
+        // made it first.
+        DaemonProtocol.checkPrivate(directory);
+        if (Files.exists(m_socket)) {
+            boolean listening;
+            try {
+                SocketChannel.open(UnixDomainSocketAddress.of(m_socket))
+                        .close();
+                listening = true;
+            } catch (IOException e) {
+                listening = false;
+            }
+            if (listening) {
+                throw new IOException("A daemon is already listening on " +
+                        m_socket);
+            }
+            Files.delete(m_socket);
+        }
+
+        m_server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        m_server.bind(UnixDomainSocketAddress.of(m_socket));
+        Files.setPosixFilePermissions(m_socket, EnumSet.of(
+                PosixFilePermission.OWNER_READ,
+                PosixFilePermission.OWNER_WRITE));
+
+        m_executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger m_count = new AtomicInteger();
+
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "daemon-connection-" + m_count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        m_programs = new CompiledProgramCache(MAX_PROGRAMS);
+    }
+
+    /**
+     * Accessor for the socket's path.
+     */
+    public Path socket() {
+        return m_socket;
+    }
+
+    /**
+     * Accepts clients' connections, running each on a thread of its
+     * own, until the daemon is closed.
+     */
+    public void serve()
+            throws IOException
+    {
+        for (;;) {
+            final SocketChannel channel;
+            try {
+                channel = m_server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            m_executor.execute(new Runnable() {
+                public void run() {
+                    handle(channel);
+                }
+            });
+        }
+    }
+
+    /**
+     * Stops accepting connections and removes the socket file;
+     * programs being run are left to finish.
+     */
+    public void close()
+            throws IOException
+    {
+        m_server.close();
+        m_executor.shutdown();
+        Files.deleteIfExists(m_socket);
+    }
+
+    /**
+     * Runs a client's command line, and sends it the program's
+     * output and exit status.
+     */
+    private void handle(SocketChannel channel) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    DaemonProtocol.inputStream(channel), 1 << 16));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(
+                            DaemonProtocol.outputStream(channel), 1 << 16));
+            PrintStream stdout = new PrintStream(new BufferedOutputStream(
+                    DaemonProtocol.frameStream(out, DaemonProtocol.STDOUT),
+                    8192), false);
+            PrintStream stderr = new PrintStream(new BufferedOutputStream(
+                    DaemonProtocol.frameStream(out, DaemonProtocol.STDERR),
+                    8192), false);
+
+            int status;
+            if (in.readInt() != DaemonProtocol.MAGIC) {
+                return;
+            } else if (in.readInt() != DaemonProtocol.VERSION) {
+                stderr.println("The daemon speaks another protocol" +
+                        " version; restart it.");
+                status = -1;
+            } else {
+                String directory = DaemonProtocol.readText(in);
+                int argCount = in.readInt();
+                if (argCount < 0 || argCount > MAX_ARGS) {
+                    return;
+                }
+                String[] args = new String[argCount];
+                for (int i = 0; i < argCount; i++) {
+                    args[i] = DaemonProtocol.readText(in);
+                }
+
+                if (DaemonProtocol.isSupported(args)) {
+                    status = execute(directory, args,
+                            new FrameInputStream(in, stdout), stdout, stderr);
+                } else {
+                    stderr.println("The daemon only runs" +
+                            " [-O0|-O1|-O2] SOURCEFILE.");
+                    status = -1;
+                }
+            }
+
+            stdout.flush();
+            stderr.flush();
+            out.writeByte(DaemonProtocol.EXIT);
+            out.writeInt(status);
+            out.flush();
+        } catch (IOException e) {
+            // The client is gone.
+        } finally {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // It's closed either way.
+            }
+        }
+    }
+
+    /**
+     * Compiles, or finds compiled, and executes a program, printing
+     * what "java Descartes" would.
+     *
+     * @param directory The client's working directory, against
+     *                  which the source file's name is resolved
+     * @param args The command line, which isSupported() accepts
+     *
+     * @return The exit status
+     */
+    private int execute(String directory, String[] args, InputStream in,
+                        PrintStream out, PrintStream err) {
+        int optLevel = (args.length == 2) ? args[0].charAt(2) - '0' : 0;
+        String fileName = args[args.length - 1];
+        Path path = Paths.get(directory).resolve(fileName).normalize();
+
+        CompiledProgram program;
+        try {
+            program = compile(path, fileName, optLevel);
+        } catch (NoSuchFileException e) {
+            err.println("Source file not found: \"" + fileName + "\"");
+            return -1;
+        } catch (IOException e) {
+            err.println("An unexpected exception occurred:");
+            err.println(e.getMessage());
+            return -1;
+        } catch (DCSyntaxErrorException e) {
+            out.println(e.getMessage());
+            return 0;
+        }
+
+        ProgState progState = new ProgState(program.idTable(), in, out);
+        try {
+            program.execute(progState);
+            out.println("===================");
+            out.println("Execution complete.");
+            progState.dumpSymTab();
+            return 0;
+        } catch (DCRuntimeErrorException e) {
+            out.println(e.getMessage());
+            out.println("================================");
+            out.println("Execution completed with errors.");
+            progState.dumpSymTab();
+            return -1;
+        } catch (RuntimeException e) {
+            out.flush();
+            err.println("An unexpected exception occurred:");
+            err.println(e.getMessage());
+            e.printStackTrace(err);
+            return -1;
+        } catch (StackOverflowError e) {
+            out.flush();
+            err.println("Exception in thread \"main\" " + e);
+            return 1;
+        }
+    }
+
+    /**
+     * Returns the program compiled from a source file, from the
+     * cache if its source is unchanged, or compiling it and keeping
+     * it there.
+     *
+     * @param path The source file's path
+     * @param fileName The name syntax errors are reported against
+     * @param optLevel The optimization level
+     */
+    private CompiledProgram compile(Path path, String fileName, int optLevel)
+            throws IOException, DCSyntaxErrorException
+    {
+        byte[] source = Files.readAllBytes(path);
+        String key = optLevel + ":" + path;
+        CompiledProgram program = m_programs.get(key, source);
+        if (program == null) {
+            program = Descartes.compile(fileName, source, optLevel);
+            m_programs.put(key, source, program);
+        }
+        return program;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Measures each script's end-to-end latency, from launching a
+     * JVM to its exit, run by "java Descartes" and by DaemonClient
+     * through a daemon started for the purpose, and prints a table
+     * of the medians. Each script is first run once each way, so
+     * the daemon has compiled it; the runs then alternate, with no
+     * standard input, and their outputs are compared.
+     *
+     * @param sourceFileNames The scripts
+     * @param runs The runs of each script each way
+     * @param out Receives the table
+     */
+    public static void benchmark(String[] sourceFileNames, int runs,
+                                 PrintStream out)
+            throws IOException, InterruptedException
+    {
+        Path directory = Files.createTempDirectory("descartes-bench");
+        final InterpreterDaemon daemon = new InterpreterDaemon(
+                directory.resolve("daemon.sock"));
+        Thread server = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    daemon.serve();
+                } catch (IOException e) {
+                    // The benchmark's clients fail and say so.
+                }
+            }
+        }, "daemon-server");
+        server.setDaemon(true);
+        server.start();
+
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                "java").toString();
+        String classPath = System.getProperty("java.class.path");
+        try {
+            out.println(String.format("%-28s %10s %10s %8s", "script",
+                    "java ms", "daemon ms", "speedup"));
+            double directTotal = 0.0;
+            double daemonTotal = 0.0;
+            boolean differed = false;
+            for (String fileName : sourceFileNames) {
+                List<String> direct = Arrays.asList(java, "-cp", classPath,
+                        "Descartes", fileName);
+                List<String> client = Arrays.asList(java, "-cp", classPath,
+                        "DaemonClient", "--socket", daemon.socket().toString(),
+                        fileName);
+                Benchmarks.launch(direct);
+                Benchmarks.launch(client);
+
+                long[] directNanos = new long[runs];
+                long[] daemonNanos = new long[runs];
+                boolean same = true;
+                for (int run = 0; run < runs; run++) {
+                    long start = System.nanoTime();
+                    String directOutput = Benchmarks.launch(direct);
+                    directNanos[run] = System.nanoTime() - start;
+                    start = System.nanoTime();
+                    String daemonOutput = Benchmarks.launch(client);
+                    daemonNanos[run] = System.nanoTime() - start;
+                    same &= directOutput.equals(daemonOutput);
+                }
+
+                double directMillis = Benchmarks.median(directNanos) / 1e6;
+                double daemonMillis = Benchmarks.median(daemonNanos) / 1e6;
+                directTotal += directMillis;
+                daemonTotal += daemonMillis;
+                differed |= !same;
+                out.println(String.format("%-28s %10.1f %10.1f %7.2fx%s",
+                        fileName, directMillis, daemonMillis,
+                        directMillis / daemonMillis, same ? "" : " *"));
+            }
+            out.println(String.format("%-28s %10.1f %10.1f %7.2fx", "total",
+                    directTotal, daemonTotal, directTotal / daemonTotal));
+            if (differed) {
+                out.println("* The output differed through the daemon.");
+            }
+        } finally {
+            daemon.close();
+            Files.deleteIfExists(directory);
+        }
+    }
+
+}
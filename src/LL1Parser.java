@@ -0,0 +1,789 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A table-driven LL(1) parser for Descartes 2 programs.
+ *
+ * The parser is generated from GRAMMAR, the context-free grammar
+ * given in the README, with terminals named after their token
+ * codes. The FIRST and FOLLOW sets and the prediction table are
+ * computed from it once, when the class is loaded. Parsing then
+ * runs an explicit stack rather than recursing, so no program is
+ * nested too deeply to parse, and builds the same parse tree, out
+ * of the same node classes, as ProgNode.parseProg().
+ *
+ * Productions are numbered in the order they're listed, which is
+ * the GR numbering used in the node classes; build() makes the
+ * node for each. Adding a production to the language means adding
+ * a line to GRAMMAR and a case to build(), and to any Actions that
+ * translate it.
+ *
+ * To report the errors the hand-written parser does, where it
+ * does, the table is used as that parser uses its lookahead:
+ *
+ * <ul>
+ *   <li>A nonterminal whose lookahead has no table entry takes its
+ *       empty production if it has one, or its only production;
+ *       a mismatch is then reported by the next terminal. Other
+ *       nonterminals report an error from NONTERMINAL_ERRORS.</li>
+ *   <li>A terminal that doesn't match reports its error from
+ *       TERMINAL_ERRORS.</li>
+ *   <li>The hand-written parser looks two tokens ahead to tell an
+ *       assignment from an empty statement followed by a stray
+ *       identifier, so the table entry for assignments is guarded
+ *       by the token that must follow the identifier.</li>
+ * </ul>
+ */
+public class LL1Parser {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * What a parser does with the productions it recognizes, if
+     * not build a parse tree: BytecodeCompiler, for one, emits code
+     * as it goes instead.
+     */
+    public interface Actions {
+
+        /**
+         * Called when a terminal of a production has been matched.
+         *
+         * @param production The production
+         * @param position The position of the terminal in the
+         *                 production's right-hand side
+         * @param token The matched token
+         */
+        void match(int production, int position, TokenDescriptor token);
+
+        /**
+         * Called when all of a production's right-hand side has been
+         * parsed, and returns the production's value.
+         *
+         * @param production The production
+         * @param values The values of the right-hand side's symbols,
+         *               starting at values[base]: tokens for
+         *               terminals, and what this method returned
+         *               for nonterminals
+         * @param base The index of the first value
+         * @param start The offset in the source code where the
+         *              production begins
+         */
+        Object reduce(int production, Object[] values, int base, int start);
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /**
+     * The grammar, one production per line. Upper case symbols are
+     * terminals, named after their TokenCode without the "T_";
+     * lower case symbols are nonterminals. The first production's
+     * left-hand side is the start symbol.
+     */
+    public static final String[] GRAMMAR = {
+        /*  0 */ "prog             -> stmt-list PERIOD",
+        /*  1 */ "stmt-list        -> stmt stmt-tail",
+        /*  2 */ "stmt-tail        -> SEMICOLON stmt stmt-tail",
+        /*  3 */ "stmt-tail        ->",
+        /*  4 */ "stmt             -> if-stmt",
+        /*  5 */ "stmt             -> loop-stmt",
+        /*  6 */ "stmt             -> break-stmt",
+        /*  7 */ "stmt             -> assign-stmt",
+        /*  8 */ "stmt             -> read-stmt",
+        /*  9 */ "stmt             -> print-stmt",
+        /* 10 */ "stmt             ->",
+        /* 11 */ "if-stmt          -> IF expr THEN stmt-list else-part",
+        /* 12 */ "else-part        -> ELSE stmt-list FI",
+        /* 13 */ "else-part        -> FI",
+        /* 14 */ "loop-stmt        -> LOOP ID COLON stmt-list REPEAT",
+        /* 15 */ "break-stmt       -> BREAK id-option",
+        /* 16 */ "id-option        -> ID",
+        /* 17 */ "id-option        ->",
+        /* 18 */ "assign-stmt      -> ID BECOMES expr",
+        /* 19 */ "print-stmt       -> PRINT ID id-list-tail",
+        /* 20 */ "read-stmt        -> READ ID id-list-tail",
+        /* 21 */ "id-list-tail     -> COMMA ID id-list-tail",
+        /* 22 */ "id-list-tail     ->",
+        /* 23 */ "expr             -> bool-term bool-term-tail",
+        /* 24 */ "bool-term-tail   -> OR bool-term bool-term-tail",
+        /* 25 */ "bool-term-tail   ->",
+        /* 26 */ "bool-term        -> bool-factor bool-factor-tail",
+        /* 27 */ "bool-factor-tail -> AND bool-factor bool-factor-tail",
+        /* 28 */ "bool-factor-tail ->",
+        /* 29 */ "bool-factor      -> arith-expr relation-option",
+        /* 30 */ "relation-option  -> LESS_THAN arith-expr",
+        /* 31 */ "relation-option  -> LESS_OR_EQUAL arith-expr",
+        /* 32 */ "relation-option  -> EQUAL arith-expr",
+        /* 33 */ "relation-option  -> GREATER_OR_EQUAL arith-expr",
+        /* 34 */ "relation-option  -> GREATER_THAN arith-expr",
+        /* 35 */ "relation-option  -> NOT_EQUAL arith-expr",
+        /* 36 */ "relation-option  ->",
+        /* 37 */ "arith-expr       -> term term-tail",
+        /* 38 */ "term-tail        -> ADD term term-tail",
+        /* 39 */ "term-tail        -> SUBTRACT term term-tail",
+        /* 40 */ "term-tail        ->",
+        /* 41 */ "term             -> factor factor-tail",
+        /* 42 */ "factor-tail      -> MULTIPLY factor factor-tail",
+        /* 43 */ "factor-tail      -> DIVIDE factor factor-tail",
+        /* 44 */ "factor-tail      ->",
+        /* 45 */ "factor           -> SUBTRACT factor",
+        /* 46 */ "factor           -> atom",
+        /* 47 */ "factor           -> OPEN_PAREN expr CLOSE_PAREN",
+        /* 48 */ "atom             -> ID",
+        /* 49 */ "atom             -> CONST",
+    };
+
+    // The assignment production, and the token that must follow
+    // its identifier for it to be predicted.
+    private static final int ASSIGN_STMT = 7;
+    private static final TokenCode ASSIGN_GUARD = TokenCode.T_BECOMES;
+
+    // Errors reported by terminals that don't match, keyed by
+    // "nonterminal TERMINAL".
+    private static final Map<String, String> TERMINAL_ERRORS =
+            new HashMap<String, String>();
+
+    // Errors reported by nonterminals that can't be predicted.
+    private static final Map<String, String> NONTERMINAL_ERRORS =
+            new HashMap<String, String>();
+
+    static {
+        TERMINAL_ERRORS.put("prog PERIOD", "Expected ';' after statement.");
+        TERMINAL_ERRORS.put("if-stmt THEN",
+                "Expected 'THEN' after IF conditional expression.");
+        TERMINAL_ERRORS.put("else-part FI",
+                "Expected 'FI' after IF-THEN(-ELSE) clause.");
+        TERMINAL_ERRORS.put("loop-stmt ID",
+                "Expected identifier after 'LOOP'.");
+        TERMINAL_ERRORS.put("loop-stmt COLON",
+                "Expected ':' after loop identifier.");
+        TERMINAL_ERRORS.put("loop-stmt REPEAT",
+                "Expected 'REPEAT' after loop body.");
+        TERMINAL_ERRORS.put("print-stmt ID",
+                "Expected identifier after 'PRINT'.");
+        TERMINAL_ERRORS.put("read-stmt ID",
+                "Expected identifier after 'READ'.");
+        TERMINAL_ERRORS.put("id-list-tail ID",
+                "Expected identifier after ','.");
+        TERMINAL_ERRORS.put("factor CLOSE_PAREN", "Expected ')'.");
+
+        NONTERMINAL_ERRORS.put("else-part",
+                "Expected 'FI' after IF-THEN(-ELSE) clause.");
+        NONTERMINAL_ERRORS.put("factor", "Expected atom");
+        NONTERMINAL_ERRORS.put("atom", "Expected atom");
+    }
+
+    private static final TokenCode[] TERMINALS = TokenCode.values();
+
+    // The grammar in numeric form. Symbols below TERMINALS.length
+    // are terminals, numbered by TokenCode ordinal; the rest are
+    // nonterminals.
+    private static final List<String> NONTERMINALS = new ArrayList<String>();
+    private static final int[] LHS = new int[GRAMMAR.length];
+    private static final int[][] RHS = new int[GRAMMAR.length][];
+
+    // Error messages by production and position, or by nonterminal.
+    private static final String[][] MATCH_ERRORS =
+            new String[GRAMMAR.length][];
+    private static final String[] PREDICT_ERRORS;
+
+    // TABLE[nonterminal][terminal] is the production to predict, or
+    // -1; DEFAULTS[nonterminal] is the production to fall back on,
+    // or -1.
+    private static final int[][] TABLE;
+    private static final int[] DEFAULTS;
+
+    static {
+        for (int p = 0; p < GRAMMAR.length; p++) {
+            String[] sides = GRAMMAR[p].split("->");
+            LHS[p] = symbol(sides[0].trim());
+        }
+        for (int p = 0; p < GRAMMAR.length; p++) {
+            String[] sides = GRAMMAR[p].split("->");
+            String[] names = (sides.length > 1) ?
+                    sides[1].trim().split("\\s+") : new String[0];
+            if (names.length == 1 && names[0].isEmpty()) {
+                names = new String[0];
+            }
+
+            RHS[p] = new int[names.length];
+            MATCH_ERRORS[p] = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                RHS[p][i] = symbol(names[i]);
+                if (RHS[p][i] < TERMINALS.length) {
+                    String key = name(LHS[p]) + " " + names[i];
+                    MATCH_ERRORS[p][i] = TERMINAL_ERRORS.containsKey(key) ?
+                            TERMINAL_ERRORS.get(key) :
+                            "Expected " + names[i] + ".";
+                }
+            }
+        }
+
+        int count = NONTERMINALS.size();
+        PREDICT_ERRORS = new String[count];
+        for (int n = 0; n < count; n++) {
+            PREDICT_ERRORS[n] = NONTERMINAL_ERRORS.get(NONTERMINALS.get(n));
+        }
+
+        TABLE = new int[count][TERMINALS.length];
+        DEFAULTS = new int[count];
+        buildTable();
+    }
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private TokenReader m_tokenReader;
+
+    // What to do with the productions recognized, or null to build
+    // a parse tree.
+    private Actions m_actions;
+
+    // The lookahead token, or null if it hasn't been read yet, and
+    // the token after it, if the assignment guard has read it.
+    private TokenDescriptor m_lookahead;
+    private TokenDescriptor m_lookahead2;
+
+    // The parse stack: symbols to match or expand, and markers for
+    // productions to build once their right-hand sides have been
+    // parsed. A marker is -(production + 1), and m_starts holds the
+    // source offset where the production begins.
+    private int[] m_symbols;
+    private int[] m_starts;
+    private int m_depth;
+
+    // The values of the symbols parsed: tokens for terminals, nodes
+    // for nonterminals.
+    private Object[] m_values;
+    private int m_valueCount;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a parser that reads tokens from tokenReader.
+     *
+     * @param tokenReader The TokenReader from which source code
+     *                    tokens will be read
+     */
+    public LL1Parser(TokenReader tokenReader) {
+        this(tokenReader, null);
+    }
+
+    /**
+     * Constructs a parser that reads tokens from tokenReader and
+     * hands the productions it recognizes to 'actions'.
+     *
+     * @param tokenReader The TokenReader from which source code
+     *                    tokens will be read
+     * @param actions What to do with each production, or null to
+     *                build a parse tree
+     */
+    public LL1Parser(TokenReader tokenReader, Actions actions) {
+        m_tokenReader = tokenReader;
+        m_actions = actions;
+        m_symbols = new int[64];
+        m_starts = new int[64];
+        m_values = new Object[64];
+    }
+
+    /**
+     * Parses a program into a parse tree; the parser must not have
+     * been given any actions.
+     *
+     * @return The constructed ProgNode that was parsed from the
+     *         source code
+     */
+    public ProgNode parseProg()
+            throws IOException, DCSyntaxErrorException
+    {
+        assert (m_actions == null);
+        return (ProgNode) parse();
+    }
+
+    /**
+     * Parses a program.
+     *
+     * @return The value of the start symbol: the ProgNode, if no
+     *         actions were given
+     */
+    public Object parse()
+            throws IOException, DCSyntaxErrorException
+    {
+        m_depth = 0;
+        m_valueCount = 0;
+        push(LHS[0], 0);
+
+        while (m_depth > 0) {
+            m_depth--;
+            int symbol = m_symbols[m_depth];
+            int start = m_starts[m_depth];
+
+            if (symbol < 0) {
+                // All of a production's right-hand side has been
+                // parsed; build its node from their values, shared
+                // if it's an expression that's been built before.
+                int p = -symbol - 1;
+                m_valueCount -= RHS[p].length;
+                Object value = (m_actions == null) ?
+                        m_tokenReader.intern(build(p, m_valueCount, start)) :
+                        m_actions.reduce(p, m_values, m_valueCount, start);
+                pushValue(value);
+            } else if (symbol < TERMINALS.length) {
+                TokenDescriptor token = lookahead();
+                if (token.getCode().ordinal() != symbol) {
+                    throw new DCSyntaxErrorException(m_tokenReader,
+                            matchError());
+                }
+                consume();
+                pushValue(token);
+
+                if (m_actions != null) {
+                    int marker = enclosingMarker();
+                    int p = -m_symbols[marker] - 1;
+                    m_actions.match(p, position(marker), token);
+                }
+            } else {
+                int p = predict(symbol - TERMINALS.length);
+                push(-(p + 1), lookahead().getStart());
+                for (int i = RHS[p].length - 1; i >= 0; i--) {
+                    push(RHS[p][i], 0);
+                }
+            }
+        }
+
+        return m_values[0];
+    }
+
+    /**
+     * Returns the production to expand a nonterminal by, given the
+     * lookahead.
+     */
+    private int predict(int nonterminal)
+            throws IOException, DCSyntaxErrorException
+    {
+        TokenDescriptor token = lookahead();
+        int p = TABLE[nonterminal][token.getCode().ordinal()];
+
+        if (p == ASSIGN_STMT && lookahead2().getCode() != ASSIGN_GUARD) {
+            // Not an assignment after all. Put the second token
+            // back and read the first again, so that errors are
+            // reported at the first.
+            m_tokenReader.unread(m_lookahead2);
+            m_tokenReader.unread(m_lookahead);
+            m_lookahead = null;
+            m_lookahead2 = null;
+            lookahead();
+            p = -1;
+        }
+
+        if (p == -1) {
+            p = DEFAULTS[nonterminal];
+        }
+        if (p == -1) {
+            throw new DCSyntaxErrorException(m_tokenReader,
+                    PREDICT_ERRORS[nonterminal]);
+        }
+        return p;
+    }
+
+    /**
+     * Returns the error to report when the terminal just popped
+     * doesn't match.
+     */
+    private String matchError() {
+        int marker = enclosingMarker();
+        return MATCH_ERRORS[-m_symbols[marker] - 1][position(marker)];
+    }
+
+    /**
+     * Returns the stack index of the marker of the production that
+     * the symbol just popped belongs to: the nearest marker below
+     * it, since the production's symbols still to be parsed are all
+     * that lie between.
+     */
+    private int enclosingMarker() {
+        int marker = m_depth - 1;
+        while (m_symbols[marker] >= 0) {
+            marker--;
+        }
+        return marker;
+    }
+
+    /**
+     * Returns the position in its production of the symbol just
+     * popped, given the production's marker.
+     */
+    private int position(int marker) {
+        int p = -m_symbols[marker] - 1;
+        int pending = m_depth - marker - 1;
+        return RHS[p].length - pending - 1;
+    }
+
+    /**
+     * Returns the lookahead token, reading it if necessary.
+     */
+    private TokenDescriptor lookahead()
+            throws IOException, DCSyntaxErrorException
+    {
+        if (m_lookahead == null) {
+            m_lookahead = nextToken();
+        }
+        return m_lookahead;
+    }
+
+    /**
+     * Returns the token after the lookahead token.
+     */
+    private TokenDescriptor lookahead2()
+            throws IOException, DCSyntaxErrorException
+    {
+        if (m_lookahead2 == null) {
+            m_lookahead2 = nextToken();
+        }
+        return m_lookahead2;
+    }
+
+    private void consume() {
+        m_lookahead = m_lookahead2;
+        m_lookahead2 = null;
+    }
+
+    /**
+     * Reads the next token that isn't a space.
+     */
+    private TokenDescriptor nextToken()
+            throws IOException, DCSyntaxErrorException
+    {
+        TokenDescriptor token;
+        do {
+            token = m_tokenReader.getToken();
+        } while (token.getCode() == TokenCode.T_SPACE);
+        return token;
+    }
+
+    private void push(int symbol, int start) {
+        if (m_depth == m_symbols.length) {
+            m_symbols = Arrays.copyOf(m_symbols, m_depth * 2);
+            m_starts = Arrays.copyOf(m_starts, m_depth * 2);
+        }
+        m_symbols[m_depth] = symbol;
+        m_starts[m_depth] = start;
+        m_depth++;
+    }
+
+    private void pushValue(Object value) {
+        if (m_valueCount == m_values.length) {
+            m_values = Arrays.copyOf(m_values, m_valueCount * 2);
+        }
+        m_values[m_valueCount++] = value;
+    }
+
+    /**
+     * Builds the node for a production from the values of its
+     * right-hand side, which start at m_values[base].
+     *
+     * @param p The production
+     * @param base The index of the first value
+     * @param start The offset in the source code where the
+     *              production begins
+     */
+    private Object build(int p, int base, int start) {
+        Object[] v = m_values;
+        int b = base;
+
+        switch (p) {
+            case 0:
+                return new ProgNode((StmtListNode) v[b],
+                        m_tokenReader.lineIndex());
+            case 1:
+                return new StmtListNode((StmtNode) v[b],
+                        (StmtTailNode) v[b + 1]);
+            case 2:
+                return new StmtTailNode((StmtNode) v[b + 1],
+                        (StmtTailNode) v[b + 2]);
+            case 3:
+                return new StmtTailNode(null, null);
+            case 4: case 5: case 6: case 7: case 8: case 9:
+                // The statement starts where its own production does.
+                return v[b];
+            case 10:
+                return new StmtNode(start);
+            case 11:
+                return new IfStmtNode((ExprNode) v[b + 1],
+                        (StmtListNode) v[b + 3], (ElsePartNode) v[b + 4],
+                        start);
+            case 12:
+                return new ElsePartNode((StmtListNode) v[b + 1]);
+            case 13:
+                return new ElsePartNode(null);
+            case 14: {
+                TokenDescriptor id = (TokenDescriptor) v[b + 1];
+                return new LoopStmtNode(id.getText(), id.getSymbol(),
+                        (StmtListNode) v[b + 3], start);
+            }
+            case 15:
+                return new BreakStmtNode((IDOptionNode) v[b + 1], start);
+            case 16: {
+                TokenDescriptor id = (TokenDescriptor) v[b];
+                return new IDOptionNode(id.getText(), id.getSymbol());
+            }
+            case 17:
+                return new IDOptionNode(null, IDTable.NONE);
+            case 18: {
+                TokenDescriptor id = (TokenDescriptor) v[b];
+                return new AssignStmtNode(id.getText(), id.getSymbol(),
+                        (ExprNode) v[b + 2], start);
+            }
+            case 19: {
+                TokenDescriptor id = (TokenDescriptor) v[b + 1];
+                return new PrintStmtNode(id.getText(), id.getSymbol(),
+                        (IDListTailNode) v[b + 2], start);
+            }
+            case 20: {
+                TokenDescriptor id = (TokenDescriptor) v[b + 1];
+                return new ReadStmtNode(id.getText(), id.getSymbol(),
+                        (IDListTailNode) v[b + 2], start);
+            }
+            case 21: {
+                TokenDescriptor id = (TokenDescriptor) v[b + 1];
+                return new IDListTailNode(id.getText(), id.getSymbol(),
+                        (IDListTailNode) v[b + 2]);
+            }
+            case 22:
+                return new IDListTailNode(null, IDTable.NONE, null);
+            case 23:
+                return new ExprNode((BoolTermNode) v[b],
+                        (BoolTermTailNode) v[b + 1]);
+            case 24:
+                return new BoolTermTailNode((BoolTermNode) v[b + 1],
+                        (BoolTermTailNode) v[b + 2]);
+            case 25:
+                return new BoolTermTailNode(null, null);
+            case 26:
+                return new BoolTermNode((BoolFactorNode) v[b],
+                        (BoolFactorTailNode) v[b + 1]);
+            case 27:
+                return new BoolFactorTailNode((BoolFactorNode) v[b + 1],
+                        (BoolFactorTailNode) v[b + 2]);
+            case 28:
+                return new BoolFactorTailNode(null, null);
+            case 29:
+                return new BoolFactorNode((ArithExprNode) v[b],
+                        (RelationOptionNode) v[b + 1]);
+            case 30: case 31: case 32: case 33: case 34: case 35:
+                return new RelationOptionNode(
+                        RelationOptionNode.Operator.values()[p - 30],
+                        (ArithExprNode) v[b + 1]);
+            case 36:
+                return new RelationOptionNode(null, null);
+            case 37:
+                return new ArithExprNode((TermNode) v[b],
+                        (TermTailNode) v[b + 1]);
+            case 38: case 39:
+                return new TermTailNode(
+                        (p == 38) ? TermTailNode.Operator.ADD :
+                                TermTailNode.Operator.SUBTRACT,
+                        (TermNode) v[b + 1], (TermTailNode) v[b + 2]);
+            case 40:
+                return new TermTailNode(null, null, null);
+            case 41:
+                return new TermNode((FactorNode) v[b],
+                        (FactorTailNode) v[b + 1]);
+            case 42: case 43:
+                return new FactorTailNode(
+                        (p == 42) ? FactorTailNode.Operator.MULTIPLY :
+                                FactorTailNode.Operator.DIVIDE,
+                        (FactorNode) v[b + 1], (FactorTailNode) v[b + 2]);
+            case 44:
+                return new FactorTailNode(null, null, null);
+            case 45:
+                return new FactorNode((FactorNode) v[b + 1]);
+            case 46:
+                return new FactorNode((AtomNode) v[b]);
+            case 47:
+                return new FactorNode((ExprNode) v[b + 1]);
+            case 48: {
+                TokenDescriptor id = (TokenDescriptor) v[b];
+                return new AtomNode(id.getText(), id.getSymbol());
+            }
+            case 49:
+                return new AtomNode(((TokenDescriptor) v[b]).getValue());
+            default:
+                throw new IllegalStateException("No node for production " + p);
+        }
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns the number of a grammar symbol, adding it to the
+     * nonterminals if it's new.
+     */
+    private static int symbol(String name) {
+        if (Character.isUpperCase(name.charAt(0))) {
+            return TokenCode.valueOf("T_" + name).ordinal();
+        }
+        int n = NONTERMINALS.indexOf(name);
+        if (n == -1) {
+            n = NONTERMINALS.size();
+            NONTERMINALS.add(name);
+        }
+        return TERMINALS.length + n;
+    }
+
+    private static String name(int symbol) {
+        return (symbol < TERMINALS.length) ?
+                TERMINALS[symbol].name().substring(2) :
+                NONTERMINALS.get(symbol - TERMINALS.length);
+    }
+
+    /**
+     * Computes the nullable nonterminals and the FIRST and FOLLOW
+     * sets, and from them the prediction table and the default
+     * productions.
+     */
+    private static void buildTable() {
+        int count = NONTERMINALS.size();
+        int t = TERMINALS.length;
+        boolean[] nullable = new boolean[count];
+        boolean[][] first = new boolean[count][t];
+        boolean[][] follow = new boolean[count][t];
+
+        // Iterate to a fixed point: nullable and FIRST first, since
+        // FOLLOW depends on them.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < GRAMMAR.length; p++) {
+                int a = LHS[p] - t;
+                boolean[] rhsFirst = new boolean[t];
+                boolean rhsNullable = firstOf(RHS[p], 0, nullable, first,
+                        rhsFirst);
+                changed |= union(first[a], rhsFirst);
+                if (rhsNullable && !nullable[a]) {
+                    nullable[a] = true;
+                    changed = true;
+                }
+            }
+        }
+
+        changed = true;
+        while (changed) {
+            changed = false;
+            for (int p = 0; p < GRAMMAR.length; p++) {
+                int a = LHS[p] - t;
+                for (int i = 0; i < RHS[p].length; i++) {
+                    if (RHS[p][i] < t) {
+                        continue;
+                    }
+                    int b = RHS[p][i] - t;
+                    boolean[] rest = new boolean[t];
+                    boolean restNullable = firstOf(RHS[p], i + 1, nullable,
+                            first, rest);
+                    changed |= union(follow[b], rest);
+                    if (restNullable) {
+                        changed |= union(follow[b], follow[a]);
+                    }
+                }
+            }
+        }
+
+        // Predict a production on each terminal in FIRST of its
+        // right-hand side, and, if that's nullable, in FOLLOW of its
+        // left-hand side. Any conflict means the grammar isn't
+        // LL(1).
+        for (int[] row : TABLE) {
+            Arrays.fill(row, -1);
+        }
+        Arrays.fill(DEFAULTS, -1);
+        int[] productions = new int[count];
+
+        for (int p = 0; p < GRAMMAR.length; p++) {
+            int a = LHS[p] - t;
+            productions[a]++;
+            boolean[] predict = new boolean[t];
+            boolean rhsNullable = firstOf(RHS[p], 0, nullable, first,
+                    predict);
+            if (rhsNullable) {
+                union(predict, follow[a]);
+                DEFAULTS[a] = p;
+            }
+
+            for (int x = 0; x < t; x++) {
+                if (!predict[x]) {
+                    continue;
+                }
+                if (TABLE[a][x] != -1) {
+                    throw new IllegalStateException(
+                            "Grammar isn't LL(1): productions " +
+                                    TABLE[a][x] + " and " + p + " of " +
+                                    NONTERMINALS.get(a) + " conflict on " +
+                                    name(x));
+                }
+                TABLE[a][x] = p;
+            }
+        }
+
+        for (int p = 0; p < GRAMMAR.length; p++) {
+            int a = LHS[p] - t;
+            if (productions[a] == 1) {
+                DEFAULTS[a] = p;
+            }
+        }
+    }
+
+    /**
+     * Adds FIRST of symbols[from...] to 'result', and returns true if
+     * that sequence of symbols is nullable.
+     */
+    private static boolean firstOf(int[] symbols, int from,
+                                   boolean[] nullable, boolean[][] first,
+                                   boolean[] result) {
+        int t = TERMINALS.length;
+        for (int i = from; i < symbols.length; i++) {
+            if (symbols[i] < t) {
+                result[symbols[i]] = true;
+                return false;
+            }
+            union(result, first[symbols[i] - t]);
+            if (!nullable[symbols[i] - t]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the members of 'from' to 'to', returning true if that
+     * changed 'to'.
+     */
+    private static boolean union(boolean[] to, boolean[] from) {
+        boolean changed = false;
+        for (int i = 0; i < to.length; i++) {
+            if (from[i] && !to[i]) {
+                to[i] = true;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+}
@@ -0,0 +1,519 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Executes a CompactTree over a block of rows of READ inputs at
+ * once, one lane per row, for batches of rows whose control flow
+ * mostly agrees.
+ *
+ * Each variable is an array of its values in every lane, and an
+ * expression is evaluated for all lanes at a time, in loops over
+ * plain arrays that the JIT compiler can turn into vector
+ * instructions. Statements run under a mask of the lanes that
+ * execute them: IF runs its THEN list for the lanes whose
+ * condition holds and its ELSE list for the rest, and LOOP repeats
+ * its body until no lane is left in it, every lane keeping its own
+ * loop stack and break ID just as CompactTreeInterpreter does.
+ *
+ * A lane that hits a runtime error, or that's left looping on its
+ * own after most of the others have finished, is dropped: it
+ * stops, and failed() tells the caller to run that row again from
+ * the start on the scalar interpreter. Other lanes are unaffected,
+ * since nothing but the rows' output is shared, and that only
+ * after the block has run.
+ */
+public class LaneEngine {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /**
+     * The rows run at once by default.
+     */
+    public static final int LANES = 64;
+
+    // A loop with fewer than this fraction of the block's lanes
+    // still in it drops them, rather than run them all alone.
+    private static final int DIVERGENCE = 8;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final CompactTree m_tree;
+    private final int m_lanes;
+
+    // The lanes in use in the current block.
+    private int m_count;
+
+    // Each variable's value, and whether it has one, by lane.
+    private final double[][] m_values;
+    private final boolean[][] m_defined;
+
+    // Each lane's loop stack, break ID, and whether it was dropped.
+    private final int[][] m_loopStack;
+    private final int[] m_loopDepth;
+    private final int[] m_breakID;
+    private final boolean[] m_failed;
+
+    // Each lane's input values, how many it has read, and what it
+    // has printed.
+    private double[][] m_inputs;
+    private final int[] m_inputCount;
+    private final StringBuilder[] m_output;
+
+    // Scratch arrays: expression values, by depth in the
+    // expression, and masks, as a stack.
+    private final List<double[]> m_temps;
+    private final List<boolean[]> m_masks;
+    private int m_maskDepth;
+
+    // The variables, in the order their names sort in.
+    private final int[] m_sortedSymbols;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs an engine for a program.
+     *
+     * @param tree The program
+     * @param lanes The most rows run at once
+     */
+    public LaneEngine(CompactTree tree, int lanes) {
+        m_tree = tree;
+        m_lanes = lanes;
+        m_count = 0;
+
+        final IDTable idTable = tree.idTable();
+        int symbolCount = idTable.size();
+        m_values = new double[symbolCount][lanes];
+        m_defined = new boolean[symbolCount][lanes];
+
+        m_loopStack = new int[lanes][8];
+        m_loopDepth = new int[lanes];
+        m_breakID = new int[lanes];
+        m_failed = new boolean[lanes];
+
+        m_inputs = null;
+        m_inputCount = new int[lanes];
+        m_output = new StringBuilder[lanes];
+        for (int l = 0; l < lanes; l++) {
+            m_output[l] = new StringBuilder();
+        }
+
+        m_temps = new ArrayList<double[]>();
+        m_masks = new ArrayList<boolean[]>();
+        m_maskDepth = 0;
+
+        Integer[] symbols = new Integer[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            symbols[i] = i;
+        }
+        Arrays.sort(symbols, new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return idTable.name(a).compareTo(idTable.name(b));
+            }
+        });
+        m_sortedSymbols = new int[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            m_sortedSymbols[i] = symbols[i];
+        }
+    }
+
+    /**
+     * Accessor for the most rows run at once.
+     */
+    public int lanes() {
+        return m_lanes;
+    }
+
+    /**
+     * Runs the program over a block of rows, one per lane.
+     *
+     * @param inputs Each row's input values, which READ reads in
+     *               order
+     * @param count The number of rows, at most lanes()
+     */
+    public void run(double[][] inputs, int count) {
+        assert (count <= m_lanes);
+        m_count = count;
+        m_inputs = inputs;
+        for (boolean[] defined : m_defined) {
+            Arrays.fill(defined, false);
+        }
+        Arrays.fill(m_loopDepth, 0);
+        Arrays.fill(m_breakID, IDTable.NONE);
+        Arrays.fill(m_inputCount, 0);
+        for (int l = 0; l < m_lanes; l++) {
+            m_failed[l] = (l >= count);
+            m_output[l].setLength(0);
+        }
+
+        boolean[] all = pushMask();
+        for (int l = 0; l < m_lanes; l++) {
+            all[l] = (l < count);
+        }
+        executeList(m_tree.root(), all);
+        popMask();
+    }
+
+    /**
+     * Returns true if a row was dropped, and must be run again on
+     * the scalar interpreter.
+     */
+    public boolean failed(int lane) {
+        return m_failed[lane];
+    }
+
+    /**
+     * Appends what a row that wasn't dropped printed, and its
+     * symbol table, as the interpreter prints them.
+     *
+     * @param lane The row's lane
+     * @param report Receives the report
+     */
+    public void report(int lane, StringBuilder report) {
+        assert (!m_failed[lane]);
+        report.append(m_output[lane]);
+        report.append("Symbol Table:\n");
+        for (int symbol : m_sortedSymbols) {
+            if (m_defined[symbol][lane]) {
+                report.append(m_tree.idTable().name(symbol)).append(" = ")
+                        .append(m_values[symbol][lane]).append('\n');
+            }
+        }
+    }
+
+    private void executeList(int list, boolean[] mask) {
+        boolean[] active = pushMask();
+        for (int l = 0; l < m_lanes; l++) {
+            active[l] = mask[l] && !m_failed[l];
+        }
+
+        // The first statement runs whatever the break IDs.
+        executeStmt(m_tree.first(list), active);
+        for (int next = m_tree.second(list); next != CompactTree.NONE;
+                next = m_tree.second(next))
+        {
+            int count = 0;
+            for (int l = 0; l < m_lanes; l++) {
+                active[l] = active[l] && !m_failed[l] &&
+                        m_breakID[l] == IDTable.NONE;
+                count += active[l] ? 1 : 0;
+            }
+            if (count == 0) {
+                break;
+            }
+            executeStmt(m_tree.first(next), active);
+        }
+        popMask();
+    }
+
+    private void executeStmt(int stmt, boolean[] mask) {
+        if (stmt == CompactTree.NONE) {
+            return;
+        }
+
+        switch (m_tree.kind(stmt)) {
+        case CompactTree.ASSIGN: {
+            double[] value = evaluate(m_tree.first(stmt), mask, 0);
+            double[] values = m_values[m_tree.operand(stmt)];
+            boolean[] defined = m_defined[m_tree.operand(stmt)];
+            for (int l = 0; l < m_lanes; l++) {
+                if (mask[l] && !m_failed[l]) {
+                    values[l] = value[l];
+                    defined[l] = true;
+                }
+            }
+            break;
+        }
+        case CompactTree.PRINT:
+            for (int id = stmt; id != CompactTree.NONE;
+                    id = m_tree.second(id)) {
+                print(m_tree.operand(id), mask);
+            }
+            break;
+        case CompactTree.READ:
+            for (int id = stmt; id != CompactTree.NONE;
+                    id = m_tree.second(id)) {
+                read(m_tree.operand(id), mask);
+            }
+            break;
+        case CompactTree.IF: {
+            double[] condition = evaluate(m_tree.first(stmt), mask, 0);
+            boolean[] thenMask = pushMask();
+            boolean[] elseMask = pushMask();
+            int thenCount = 0;
+            int elseCount = 0;
+            for (int l = 0; l < m_lanes; l++) {
+                boolean active = mask[l] && !m_failed[l];
+                thenMask[l] = active && condition[l] != 0.0;
+                elseMask[l] = active && condition[l] == 0.0;
+                thenCount += thenMask[l] ? 1 : 0;
+                elseCount += elseMask[l] ? 1 : 0;
+            }
+            if (thenCount > 0) {
+                executeList(m_tree.second(stmt), thenMask);
+            }
+            if (elseCount > 0 && m_tree.operand(stmt) != CompactTree.NONE) {
+                executeList(m_tree.operand(stmt), elseMask);
+            }
+            popMask();
+            popMask();
+            break;
+        }
+        case CompactTree.LOOP:
+            executeLoop(stmt, mask);
+            break;
+        default:
+            assert (m_tree.kind(stmt) == CompactTree.BREAK);
+            for (int l = 0; l < m_lanes; l++) {
+                if (mask[l] && !m_failed[l]) {
+                    breakLoop(m_tree.operand(stmt), l);
+                }
+            }
+            break;
+        }
+    }
+
+    /**
+     * Repeats a loop's body for each lane until that lane leaves
+     * the loop, dropping the last few lanes if most have left.
+     */
+    private void executeLoop(int stmt, boolean[] mask) {
+        int symbol = m_tree.operand(stmt);
+        boolean[] looping = pushMask();
+        for (int l = 0; l < m_lanes; l++) {
+            looping[l] = mask[l] && !m_failed[l];
+            if (looping[l]) {
+                pushLoopID(l, symbol);
+            }
+        }
+
+        int count;
+        do {
+            executeList(m_tree.first(stmt), looping);
+            count = 0;
+            for (int l = 0; l < m_lanes; l++) {
+                looping[l] = looping[l] && !m_failed[l] &&
+                        m_loopDepth[l] > 0 &&
+                        m_loopStack[l][m_loopDepth[l] - 1] == symbol;
+                count += looping[l] ? 1 : 0;
+            }
+            if (count > 0 && count * DIVERGENCE < m_count) {
+                for (int l = 0; l < m_lanes; l++) {
+                    if (looping[l]) {
+                        m_failed[l] = true;
+                    }
+                }
+                count = 0;
+            }
+        } while (count > 0);
+
+        for (int l = 0; l < m_lanes; l++) {
+            if (mask[l] && !m_failed[l] && m_breakID[l] == symbol) {
+                m_breakID[l] = IDTable.NONE;
+            }
+        }
+        popMask();
+    }
+
+    /**
+     * Evaluates an expression in every lane, and drops the lanes in
+     * the mask for which it's a runtime error.
+     *
+     * @param depth The depth of the expression in its statement's,
+     *              which picks the scratch array the value goes in
+     *
+     * @return The value in each lane; only the mask's are valid
+     */
+    private double[] evaluate(int expr, boolean[] mask, int depth) {
+        byte kind = m_tree.kind(expr);
+        switch (kind) {
+        case CompactTree.CONST: {
+            double[] result = temp(depth);
+            Arrays.fill(result, m_tree.constant(m_tree.operand(expr)));
+            return result;
+        }
+        case CompactTree.VAR: {
+            int symbol = m_tree.operand(expr);
+            boolean[] defined = m_defined[symbol];
+            for (int l = 0; l < m_lanes; l++) {
+                if (mask[l] && !defined[l]) {
+                    m_failed[l] = true;
+                }
+            }
+            // Expressions only read it.
+            return m_values[symbol];
+        }
+        case CompactTree.NEG: {
+            double[] operand = evaluate(m_tree.first(expr), mask, depth + 1);
+            double[] result = temp(depth);
+            for (int l = 0; l < m_lanes; l++) {
+                result[l] = -operand[l];
+            }
+            return result;
+        }
+        default:
+            break;
+        }
+
+        // A binary operator; each operand gets scratch arrays deeper
+        // than the other's value.
+        double[] a = evaluate(m_tree.first(expr), mask, depth + 1);
+        double[] b = evaluate(m_tree.second(expr), mask, depth + 2);
+        double[] r = temp(depth);
+        int n = m_lanes;
+        switch (kind) {
+        case CompactTree.ADD:
+            for (int l = 0; l < n; l++) {
+                r[l] = a[l] + b[l];
+            }
+            break;
+        case CompactTree.SUB:
+            for (int l = 0; l < n; l++) {
+                r[l] = a[l] - b[l];
+            }
+            break;
+        case CompactTree.MUL:
+            for (int l = 0; l < n; l++) {
+                r[l] = a[l] * b[l];
+            }
+            break;
+        case CompactTree.DIV:
+            for (int l = 0; l < n; l++) {
+                r[l] = a[l] / b[l];
+            }
+            for (int l = 0; l < n; l++) {
+                if (mask[l] && b[l] == 0.0) {
+                    m_failed[l] = true;
+                }
+            }
+            break;
+        case CompactTree.LT:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] < b[l]) ? 1 : 0;
+            }
+            break;
+        case CompactTree.LE:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] <= b[l]) ? 1 : 0;
+            }
+            break;
+        case CompactTree.EQ:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] == b[l]) ? 1 : 0;
+            }
+            break;
+        case CompactTree.GE:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] >= b[l]) ? 1 : 0;
+            }
+            break;
+        case CompactTree.GT:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] > b[l]) ? 1 : 0;
+            }
+            break;
+        case CompactTree.NE:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] != b[l]) ? 1 : 0;
+            }
+            break;
+        case CompactTree.AND:
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] != 0.0 && b[l] != 0.0) ? 1 : 0;
+            }
+            break;
+        default:
+            assert (kind == CompactTree.OR);
+            for (int l = 0; l < n; l++) {
+                r[l] = (a[l] != 0.0 || b[l] != 0.0) ? 1 : 0;
+            }
+            break;
+        }
+        return r;
+    }
+
+    private void print(int symbol, boolean[] mask) {
+        String name = m_tree.idTable().name(symbol);
+        for (int l = 0; l < m_lanes; l++) {
+            if (mask[l] && !m_failed[l]) {
+                if (!m_defined[symbol][l]) {
+                    m_failed[l] = true;
+                } else {
+                    m_output[l].append("Value of ").append(name)
+                            .append(": ").append(m_values[symbol][l])
+                            .append('\n');
+                }
+            }
+        }
+    }
+
+    private void read(int symbol, boolean[] mask) {
+        for (int l = 0; l < m_lanes; l++) {
+            if (mask[l] && !m_failed[l]) {
+                if (m_inputCount[l] == m_inputs[l].length) {
+                    m_failed[l] = true;
+                } else {
+                    m_values[symbol][l] = m_inputs[l][m_inputCount[l]++];
+                    m_defined[symbol][l] = true;
+                }
+            }
+        }
+    }
+
+    private void pushLoopID(int lane, int symbol) {
+        if (m_loopDepth[lane] == m_loopStack[lane].length) {
+            m_loopStack[lane] = Arrays.copyOf(m_loopStack[lane],
+                    m_loopDepth[lane] * 2);
+        }
+        m_loopStack[lane][m_loopDepth[lane]++] = symbol;
+    }
+
+    /**
+     * Pops a lane's loop stack down to a loop, or once if symbol is
+     * IDTable.NONE, and sets its break ID to the last loop popped;
+     * or drops the lane if the loop isn't on its stack.
+     *
+     * @see CompactTreeInterpreter
+     */
+    private void breakLoop(int symbol, int lane) {
+        int id;
+        do {
+            if (m_loopDepth[lane] == 0) {
+                m_failed[lane] = true;
+                return;
+            }
+            id = m_loopStack[lane][--m_loopDepth[lane]];
+        } while (symbol != IDTable.NONE && id != symbol);
+        m_breakID[lane] = id;
+    }
+
+    private double[] temp(int depth) {
+        while (m_temps.size() <= depth) {
+            m_temps.add(new double[m_lanes]);
+        }
+        return m_temps.get(depth);
+    }
+
+    private boolean[] pushMask() {
+        if (m_maskDepth == m_masks.size()) {
+            m_masks.add(new boolean[m_lanes]);
+        }
+        return m_masks.get(m_maskDepth++);
+    }
+
+    private void popMask() {
+        m_maskDepth--;
+    }
+
+}
@@ -0,0 +1,242 @@
+import java.io.IOException;
+
+
+/**
+ * The statement list of a LOOP, IF or ELSE body whose parsing has
+ * been put off until it first executes.
+ *
+ * When its TokenReader has lazy bodies, a body's tokens are only
+ * skipped over at first, by matching LOOP with REPEAT and IF with
+ * FI; the body is read from them, by a reader limited to them, the
+ * first time it's needed. A program's cold regions then cost no
+ * more than a scan of their tokens, but a syntax error in one isn't
+ * found until it runs, when it's reported as a runtime error.
+ *
+ * The body is parsed once, under the node's lock, however many
+ * threads execute the program; after that it's read without
+ * locking, like any other node.
+ *
+ * <pre>
+ *     1.  stmt-list : stmt stmt-tail
+ *         ...
+ *     11. if-stmt : IF expr THEN stmt-list else-part
+ *     12. else-part : ELSE stmt-list FI
+ *         ...
+ *     14. loop-stmt : LOOP ID COLON stmt-list REPEAT
+ * </pre>
+ *
+ * @see TokenReader#setLazyBodies(boolean)
+ */
+public class LazyStmtListNode extends StmtListNode {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // Reads the body's tokens and the token that ends it.
+    private TokenReader m_bodyReader;
+    private final int m_endStart;
+    private final String m_error;
+
+    // The body, once it has been parsed, or the syntax error found
+    // in it.
+    private volatile StmtListNode m_stmtList;
+    private DCSyntaxErrorException m_syntaxError;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a statement list to be parsed later.
+     *
+     * @param bodyReader Reads the statement list's tokens, and the
+     *                   token that must follow them
+     * @param endStart The offset of the token that must follow
+     * @param error The syntax error to report if another token
+     *              follows the statement list
+     */
+    public LazyStmtListNode(TokenReader bodyReader, int endStart,
+                            String error) {
+        super(null, null);
+        m_bodyReader = bodyReader;
+        m_endStart = endStart;
+        m_error = error;
+        m_stmtList = null;
+        m_syntaxError = null;
+    }
+
+    /**
+     * Parses the statement list, if it hasn't been yet, and
+     * executes it.
+     *
+     * @param progState The current program state
+     */
+    @Override
+    public void execute(ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        StmtListNode stmtList = m_stmtList;
+        if (stmtList == null) {
+            try {
+                stmtList = parse();
+            } catch (IOException e) {
+                throw new DCRuntimeErrorException(e.getMessage());
+            } catch (DCSyntaxErrorException e) {
+                throw new DCRuntimeErrorException(e.getMessage());
+            }
+        }
+        stmtList.execute(progState);
+    }
+
+    /**
+     * Accessor for the first statement in the list, which parses
+     * the list if it hasn't been yet.
+     */
+    @Override
+    public StmtNode stmt() {
+        return stmtList().stmt();
+    }
+
+    /**
+     * Accessor for the statement tail, which parses the list if it
+     * hasn't been yet.
+     */
+    @Override
+    public StmtTailNode stmtTail() {
+        return stmtList().stmtTail();
+    }
+
+    /**
+     * Returns the parsed statement list, parsing it first if need
+     * be.
+     *
+     * @throws IllegalStateException If the statement list has a
+     *                               syntax error
+     */
+    private StmtListNode stmtList() {
+        StmtListNode stmtList = m_stmtList;
+        if (stmtList == null) {
+            try {
+                stmtList = parse();
+            } catch (IOException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            } catch (DCSyntaxErrorException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }
+        return stmtList;
+    }
+
+    /**
+     * Parses the statement list, unless another thread got to it
+     * first, and returns it.
+     *
+     * @throws DCSyntaxErrorException If the statement list has a
+     *                                syntax error, every time
+     */
+    private synchronized StmtListNode parse()
+            throws IOException, DCSyntaxErrorException
+    {
+        if (m_stmtList != null) {
+            return m_stmtList;
+        }
+        // The reader has moved on; parsing again would report a
+        // different error.
+        if (m_syntaxError != null) {
+            throw m_syntaxError;
+        }
+
+        try {
+            StmtListNode stmtList =
+                    StmtListNode.parseStmtList(m_bodyReader);
+
+            // The list must end where the skipped tokens did.
+            TokenDescriptor token;
+            do {
+                token = m_bodyReader.getToken();
+            } while (token.getCode() == TokenCode.T_SPACE);
+            if (token.getStart() != m_endStart) {
+                throw new DCSyntaxErrorException(m_bodyReader, m_error);
+            }
+
+            m_bodyReader = null;
+            m_stmtList = stmtList;
+            return stmtList;
+        } catch (DCSyntaxErrorException e) {
+            m_syntaxError = e;
+            throw e;
+        }
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Reads source code tokens from tokenReader and parses them
+     * into, and returns, the statement list of a LOOP, IF or ELSE
+     * body: lazily if tokenReader has lazy bodies.
+     *
+     * @param tokenReader The TokenReader from which source code
+     *                    tokens will be read
+     * @param error The syntax error to report if the statement list
+     *              isn't followed by the token that ends the body
+     *
+     * @return The statement list
+     */
+    public static StmtListNode parseBody(TokenReader tokenReader,
+                                         String error)
+            throws IOException, DCSyntaxErrorException
+    {
+        if (!tokenReader.lazyBodies()) {
+            return StmtListNode.parseStmtList(tokenReader);
+        }
+
+        // Skip to the body's end, and leave it to be read next.
+        PackedTokens tokens = tokenReader.packedTokens();
+        int start = tokenReader.packedTokenIndex();
+        int end = bodyEnd(tokens, start);
+        TokenReader bodyReader = new TokenReader(tokenReader, start,
+                Math.min(end + 1, tokens.size()));
+        tokenReader.seekPackedToken(end);
+
+        int endStart = (end < tokens.size()) ? tokens.start(end) : -1;
+        return new LazyStmtListNode(bodyReader, endStart, error);
+    }
+
+    /**
+     * Returns the index of the ELSE, FI, REPEAT or period that ends
+     * the body starting at tokens[start], skipping any nested IF
+     * and LOOP statements, or tokens.size() if there isn't one.
+     */
+    private static int bodyEnd(PackedTokens tokens, int start) {
+        int depth = 0;
+        for (int i = start; i < tokens.size(); i++) {
+            switch (tokens.code(i)) {
+            case T_IF:
+            case T_LOOP:
+                depth++;
+                break;
+            case T_ELSE:
+            case T_FI:
+            case T_REPEAT:
+            case T_PERIOD:
+                if (depth == 0) {
+                    return i;
+                }
+                if (tokens.code(i) == TokenCode.T_FI ||
+                        tokens.code(i) == TokenCode.T_REPEAT) {
+                    depth--;
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return tokens.size();
+    }
+
+}
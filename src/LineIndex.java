@@ -0,0 +1,123 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+
+/**
+ * Maps offsets in a source code buffer to line and column
+ * numbers.
+ *
+ * Tokens and parse tree nodes record only their start offset; the
+ * index of line starts needed to turn an offset into a line is
+ * built the first time it's asked for, and each lookup is a
+ * binary search over it. Reading and parsing a program thus do no
+ * line bookkeeping at all.
+ *
+ * Line and column numbers start at 1; columns count characters,
+ * with a tab counting as one.
+ */
+public class LineIndex {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private byte[] m_source;
+    private int m_length;
+
+    // The offset at which each line starts; null until needed.
+    private int[] m_lineStarts;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs an index over the first 'length' bytes of a
+     * source code buffer, which must not change afterwards.
+     *
+     * @param source The source code buffer
+     * @param length The length of the source code
+     */
+    public LineIndex(byte[] source, int length) {
+        m_source = source;
+        m_length = length;
+    }
+
+    /**
+     * Returns the line number at an offset.
+     *
+     * @param offset An offset into the source, which may be its
+     *               length
+     */
+    public int line(int offset) {
+        int[] starts = lineStarts();
+        int i = Arrays.binarySearch(starts, offset);
+
+        // On a miss, binarySearch() returns -(insertion point) - 1;
+        // the line is the one starting before the insertion point.
+        return (i >= 0) ? i + 1 : -i - 1;
+    }
+
+    /**
+     * Returns the column number at an offset.
+     *
+     * @param offset An offset into the source, which may be its
+     *               length
+     */
+    public int column(int offset) {
+        return offset - lineStarts()[line(offset) - 1] + 1;
+    }
+
+    /**
+     * Returns the text of a line, without its line terminator.
+     *
+     * @param line A line number
+     */
+    public String lineText(int line) {
+        int[] starts = lineStarts();
+        int start = starts[line - 1];
+        int end = (line < starts.length) ? starts[line] : m_length;
+        while (end > start &&
+                (m_source[end - 1] == '\n' || m_source[end - 1] == '\r'))
+        {
+            end--;
+        }
+        return new String(m_source, start, end - start,
+                StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Returns the line containing an offset followed by a line
+     * with a caret under the offset's column, for showing where
+     * an error occurred.
+     *
+     * @param offset An offset into the source
+     */
+    public String excerpt(int offset) {
+        int line = line(offset);
+        String text = lineText(line);
+
+        // Copy the tabs preceding the column so the caret lines up
+        // however wide a tab is shown.
+        StringBuilder caret = new StringBuilder();
+        int column = column(offset);
+        for (int i = 0; i < column - 1 && i < text.length(); i++) {
+            caret.append(text.charAt(i) == '\t' ? '\t' : ' ');
+        }
+        caret.append('^');
+
+        return text + "\n" + caret;
+    }
+
+    private int[] lineStarts() {
+        if (m_lineStarts == null) {
+            int count = ByteScanner.countNewlines(m_source, 0, m_length);
+            int[] starts = new int[count + 1];
+            ByteScanner.findNewlines(m_source, 0, m_length, starts, 1);
+            m_lineStarts = starts;
+        }
+        return m_lineStarts;
+    }
+
+}
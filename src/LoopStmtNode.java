@@ -26,8 +26,9 @@ public class LoopStmtNode extends StmtNode {
     // Member Variables //
     //==================//
 
-    private String m_id;
-    private StmtListNode m_stmtList;
+    private final String m_id;
+    private final int m_symbol;
+    private final StmtListNode m_stmtList;
 
 
     //=========//
@@ -39,11 +40,17 @@ public class LoopStmtNode extends StmtNode {
      * statement list.
      *
      * @param id A String that will name the loop
+     * @param symbol The interned symbol of 'id'
      * @param stmtList A statement list that will be repeated by
      *                 the loop
+     * @param start The offset in the source code where the
+     *              statement starts
      */
-    public LoopStmtNode(String id, StmtListNode stmtList) {
+    public LoopStmtNode(String id, int symbol, StmtListNode stmtList,
+                        int start) {
+        super(start);
         m_id = id;
+        m_symbol = symbol;
         m_stmtList = stmtList;
     }
 
@@ -62,29 +69,50 @@ public class LoopStmtNode extends StmtNode {
             throws DCRuntimeErrorException
     {
         // Push this loop's ID to the stack.
-        progState.loopIDStack().push(m_id);
+        progState.pushLoopID(m_symbol);
 
         // Repeatedly execute the loop's stmt-list until this
         // loop's ID is no longer at the top of the loop stack.
         do {
             m_stmtList.execute(progState);
-        } while (!progState.loopIDStack().isEmpty() &&
-                  progState.loopIDStack().peek().equals(m_id));
+            progState.poll();
+        } while (progState.topLoopID() == m_symbol);
 
         //
-        // When a break statement is executed, the "break name" is
+        // When a break statement is executed, the "break ID" is
         // provided after the BREAK keyword. If no name is given,
         // the inner-most loop's name (found at the top of the
         // loop stack) is used.
         //
         // A stmt-list will only continue to execute if no break
-        // name is set. At this point we've broken out of the
-        // loop - but we only clear the break name if we're
+        // ID is set. At this point we've broken out of the
+        // loop - but we only clear the break ID if we're
         // breaking *this* loop, and not a higher one.
         //
 
-        if (progState.breakName().equals(m_id))
-            progState.setBreakName(null);
+        if (progState.breakID() == m_symbol)
+            progState.setBreakID(IDTable.NONE);
+    }
+
+    /**
+     * Accessor for the loop ID.
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the loop symbol.
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Accessor for the loop body.
+     */
+    public StmtListNode stmtList() {
+        return m_stmtList;
     }
 
 
@@ -152,11 +180,14 @@ public class LoopStmtNode extends StmtNode {
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
+     * @param start The offset in the source code where the
+     *              statement starts
      *
      * @return The constructed LoopStmtNode that was parsed from
      *         the source code
      */
-    public static LoopStmtNode parseLoopStmt(TokenReader tokenReader)
+    public static LoopStmtNode parseLoopStmt(TokenReader tokenReader,
+                                             int start)
             throws IOException, DCSyntaxErrorException
     {
         TokenDescriptor token;
@@ -192,6 +223,7 @@ public class LoopStmtNode extends StmtNode {
                     "Expected identifier after 'LOOP'.");
         }
         String id = token.getText();
+        int symbol = token.getSymbol();
 
         // Eat any spaces between the ID string and the colon.
         do {
@@ -206,7 +238,8 @@ public class LoopStmtNode extends StmtNode {
         }
 
         // Parse the statement list.
-        StmtListNode stmtList = StmtListNode.parseStmtList(tokenReader);
+        StmtListNode stmtList = LazyStmtListNode.parseBody(tokenReader,
+                "Expected 'REPEAT' after loop body.");
 
         // Eat up spaces between the statement list and the
         // "REPEAT" keyword.
@@ -222,7 +255,7 @@ public class LoopStmtNode extends StmtNode {
         }
 
 
-        return new LoopStmtNode(id, stmtList);
+        return new LoopStmtNode(id, symbol, stmtList, start);
     }
 
 }
@@ -0,0 +1,189 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Measures the memory taken up by a parse tree of node objects,
+ * for comparison with its CompactTree.
+ *
+ * The tree is walked by reflection, counting each node object and
+ * each String it holds, such as an identifier's name. Sizes are
+ * worked out from the fields' types as a 64-bit JVM with compressed
+ * pointers lays objects out: a 12-byte header, 4-byte references,
+ * and a total rounded up to a multiple of 8. Objects the tree only
+ * shares, such as its LineIndex and the Operator constants, aren't
+ * counted.
+ */
+public class ObjectTreeSize {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final int HEADER_BYTES = 12;
+    private static final int REFERENCE_BYTES = 4;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private long m_nodeCount;
+    private long m_bytes;
+
+    // The fields that hold references, and the shallow size, of each
+    // class met.
+    private Map<Class<?>, List<Field>> m_references;
+    private Map<Class<?>, Long> m_sizes;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Measures a parse tree.
+     *
+     * @param progNode The root of the tree
+     */
+    public ObjectTreeSize(ProgNode progNode) {
+        m_nodeCount = 0;
+        m_bytes = 0;
+        m_references = new HashMap<Class<?>, List<Field>>();
+        m_sizes = new HashMap<Class<?>, Long>();
+
+        // Tails nest as deeply as statement lists are long, so the
+        // tree is walked with a stack of its own.
+        Set<Object> seen = Collections.newSetFromMap(
+                new IdentityHashMap<Object, Boolean>());
+        Deque<Object> pending = new ArrayDeque<Object>();
+        pending.push(progNode);
+        seen.add(progNode);
+
+        while (!pending.isEmpty()) {
+            Object object = pending.pop();
+            m_bytes += size(object);
+            if (object instanceof String) {
+                continue;
+            }
+            m_nodeCount++;
+
+            for (Field field : references(object.getClass())) {
+                Object child;
+                try {
+                    child = field.get(object);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (child != null && isCounted(child) && seen.add(child)) {
+                    pending.push(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Accessor for the number of node objects in the tree.
+     */
+    public long nodeCount() {
+        return m_nodeCount;
+    }
+
+    /**
+     * Accessor for the number of bytes the node objects, and the
+     * Strings they hold, take up.
+     */
+    public long bytes() {
+        return m_bytes;
+    }
+
+    /**
+     * Returns the number of bytes an object takes up; for a String,
+     * with its Latin-1 characters.
+     */
+    private long size(Object object) {
+        long size = shallowSize(object.getClass());
+        if (object instanceof String) {
+            size += CompactTree.arrayBytes(((String) object).length(), 1);
+        }
+        return size;
+    }
+
+    private long shallowSize(Class<?> cls) {
+        Long size = m_sizes.get(cls);
+        if (size == null) {
+            long bytes = HEADER_BYTES;
+            for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        bytes += fieldBytes(field.getType());
+                    }
+                }
+            }
+            size = (bytes + 7) & ~7L;
+            m_sizes.put(cls, size);
+        }
+        return size;
+    }
+
+    /**
+     * Returns the fields of a node class, and its superclasses,
+     * that hold references.
+     */
+    private List<Field> references(Class<?> cls) {
+        List<Field> fields = m_references.get(cls);
+        if (fields == null) {
+            fields = new ArrayList<Field>();
+            for (Class<?> c = cls; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) &&
+                            !field.getType().isPrimitive())
+                    {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            m_references.put(cls, fields);
+        }
+        return fields;
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns true if an object the tree refers to belongs to it:
+     * if it's another node, or a String.
+     */
+    private static boolean isCounted(Object object) {
+        return object instanceof String ||
+                (!object.getClass().isEnum() &&
+                 object.getClass().getName().endsWith("Node"));
+    }
+
+    private static int fieldBytes(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_BYTES;
+    }
+
+}
@@ -0,0 +1,156 @@
+import java.util.Arrays;
+
+
+/**
+ * A sequence of tokens stored in parallel primitive arrays rather
+ * than as TokenDescriptor objects.
+ *
+ * Each token is its code, the range of the source code it was read
+ * from, and a payload: an identifier's symbol, or the bits of a
+ * numeric constant's value. A sequence may end in a syntax error,
+ * which is reported when a reader reaches it, just as it would
+ * have been had the source been read one token at a time.
+ */
+public class PackedTokens {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final TokenCode[] CODES = TokenCode.values();
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private byte[] m_codes;
+    private int[] m_starts;
+    private int[] m_ends;
+    private long[] m_payloads;
+    private int m_size;
+
+    private DCSyntaxErrorException m_error;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs an empty sequence.
+     *
+     * @param capacity The number of tokens expected
+     */
+    public PackedTokens(int capacity) {
+        capacity = Math.max(capacity, 16);
+        m_codes = new byte[capacity];
+        m_starts = new int[capacity];
+        m_ends = new int[capacity];
+        m_payloads = new long[capacity];
+        m_size = 0;
+    }
+
+    /**
+     * Returns the number of tokens in the sequence.
+     */
+    public int size() {
+        return m_size;
+    }
+
+    /**
+     * Returns the code of a token.
+     */
+    public TokenCode code(int i) {
+        return CODES[m_codes[i]];
+    }
+
+    /**
+     * Returns the offset of a token in the source code.
+     */
+    public int start(int i) {
+        return m_starts[i];
+    }
+
+    /**
+     * Returns the offset following a token in the source code.
+     */
+    public int end(int i) {
+        return m_ends[i];
+    }
+
+    /**
+     * Returns the symbol of an identifier token.
+     */
+    public int symbol(int i) {
+        return (int) m_payloads[i];
+    }
+
+    /**
+     * Returns the value of a numeric constant token.
+     */
+    public double value(int i) {
+        return Double.longBitsToDouble(m_payloads[i]);
+    }
+
+    /**
+     * Accessor for the syntax error that ends the sequence, or null
+     * if the tokens run to the end of the source.
+     */
+    public DCSyntaxErrorException error() {
+        return m_error;
+    }
+
+    /**
+     * Appends a token.
+     */
+    public void add(TokenDescriptor token) {
+        long payload = (token.getCode() == TokenCode.T_CONST) ?
+                Double.doubleToRawLongBits(token.getValue()) :
+                token.getSymbol();
+        add(token.getCode(), token.getStart(), token.getEnd(), payload);
+    }
+
+    /**
+     * Appends the tokens of another sequence, and its error, with
+     * their symbols translated by 'symbols'.
+     *
+     * @param tokens The tokens to append
+     * @param symbols Maps the symbols in 'tokens' to the symbols
+     *                to store
+     */
+    public void addAll(PackedTokens tokens, int[] symbols) {
+        for (int i = 0; i < tokens.m_size; i++) {
+            long payload = tokens.m_payloads[i];
+            if (tokens.code(i) == TokenCode.T_ID) {
+                payload = symbols[(int) payload];
+            }
+            add(tokens.code(i), tokens.m_starts[i], tokens.m_ends[i],
+                    payload);
+        }
+        m_error = tokens.m_error;
+    }
+
+    /**
+     * Ends the sequence with a syntax error.
+     */
+    public void setError(DCSyntaxErrorException error) {
+        m_error = error;
+    }
+
+    private void add(TokenCode code, int start, int end, long payload) {
+        if (m_size == m_codes.length) {
+            int capacity = m_size * 2;
+            m_codes = Arrays.copyOf(m_codes, capacity);
+            m_starts = Arrays.copyOf(m_starts, capacity);
+            m_ends = Arrays.copyOf(m_ends, capacity);
+            m_payloads = Arrays.copyOf(m_payloads, capacity);
+        }
+        m_codes[m_size] = (byte) code.ordinal();
+        m_starts[m_size] = start;
+        m_ends[m_size] = end;
+        m_payloads[m_size] = payload;
+        m_size++;
+    }
+
+}
@@ -0,0 +1,155 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+
+/**
+ * Reads the tokens of a large source code buffer on several
+ * threads.
+ *
+ * Descartes has no comments or string literals, and no token spans
+ * a newline, so the source can be cut into chunks just after any
+ * newline and each chunk read on its own. Each chunk is read by
+ * its own TokenReader, with its own IDTable, into PackedTokens; the
+ * results are then joined in order, interning each chunk's
+ * identifiers in the order the chunk first saw them, so every
+ * identifier gets the symbol it would have got had the whole
+ * source been read by one reader.
+ *
+ * Tokens record absolute offsets into the shared buffer, so their
+ * lines and columns need no correcting when the chunks are joined.
+ * A chunk stops at its first syntax error, and the joined tokens
+ * stop at the first chunk that has one.
+ */
+public class ParallelLexer {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * The tokens read from one chunk, and the identifiers they
+     * refer to.
+     */
+    private static class Chunk {
+        final PackedTokens tokens;
+        final IDTable ids;
+
+        Chunk(PackedTokens tokens, IDTable ids) {
+            this.tokens = tokens;
+            this.ids = ids;
+        }
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+
+    // Rough source bytes per token, for sizing token arrays.
+    private static final int BYTES_PER_TOKEN = 4;
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Reads the tokens in a range of a source code buffer.
+     *
+     * @param fileName The name of the source file, for error
+     *                 messages
+     * @param source The source code buffer
+     * @param start The offset to start reading at
+     * @param end The offset of the end of the source code
+     * @param idTable The table to intern identifiers in
+     * @param pool The pool to read the chunks on
+     *
+     * @return The tokens read
+     */
+    public static PackedTokens lex(final String fileName,
+                                   final byte[] source,
+                                   int start, int end,
+                                   IDTable idTable, ForkJoinPool pool)
+            throws IOException
+    {
+        // Aim for a few chunks per thread so that uneven chunks
+        // even out.
+        int chunkSize = Math.max(MIN_CHUNK_SIZE,
+                (end - start) / (pool.getParallelism() * 4));
+
+        List<Callable<Chunk>> tasks = new ArrayList<Callable<Chunk>>();
+        int chunkStart = start;
+        while (chunkStart < end) {
+            final int from = chunkStart;
+            final int to = chunkEnd(source,
+                    (int) Math.min((long) chunkStart + chunkSize, end), end);
+            tasks.add(new Callable<Chunk>() {
+                @Override
+                public Chunk call() throws IOException {
+                    IDTable chunkIDs = new IDTable();
+                    TokenReader reader = new TokenReader(fileName,
+                            source, from, to, chunkIDs);
+                    return new Chunk(reader.readAll(), chunkIDs);
+                }
+            });
+            chunkStart = to;
+        }
+
+        PackedTokens tokens =
+                new PackedTokens((end - start) / BYTES_PER_TOKEN);
+        for (Future<Chunk> future : pool.invokeAll(tasks)) {
+            Chunk chunk = join(future);
+
+            int[] symbols = new int[chunk.ids.size()];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = idTable.intern(chunk.ids.name(i));
+            }
+            tokens.addAll(chunk.tokens, symbols);
+
+            // Nothing after an error can be reached.
+            if (tokens.error() != null) {
+                break;
+            }
+        }
+
+        return tokens;
+    }
+
+    /**
+     * Returns the offset just after the first newline at or after
+     * 'pos', or 'end' if there isn't one.
+     */
+    private static int chunkEnd(byte[] source, int pos, int end) {
+        while (pos < end) {
+            if (source[pos++] == '\n') {
+                return pos;
+            }
+        }
+        return end;
+    }
+
+    private static Chunk join(Future<Chunk> future)
+            throws IOException
+    {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
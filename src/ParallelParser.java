@@ -0,0 +1,251 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Parses the top-level statements of a program on several threads.
+ *
+ * Once a source's tokens have all been read, in parallel or not,
+ * a scan over them that tracks LOOP/REPEAT and IF/FI nesting finds
+ * the semicolons that separate top-level statements and the period
+ * that ends the program. Runs of top-level
+ * statements are then parsed on their own by StmtNode.parseStmt(),
+ * each through a TokenReader limited to its run's tokens, and the
+ * statements are joined into the same statement list that
+ * ProgNode.parseProg() would have built.
+ *
+ * A statement is parsed the same way wherever its parse starts,
+ * so if every run parses into statements that each end exactly at
+ * the next separator, the result is the sequential parse. If
+ * anything else happens - the nesting doesn't balance, there is
+ * no period, or a run has a syntax error - the whole program is
+ * parsed sequentially instead, so the error reported is the first
+ * one in source order, exactly as it would be otherwise.
+ */
+public class ParallelParser {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // Runs are no shorter than this many tokens, so the pool's
+    // overhead stays small next to the parsing.
+    private static final int MIN_RUN_TOKENS = 1 << 16;
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Parses a program, in parallel if all of its tokens have been
+     * read and the pool has more than one thread, and sequentially
+     * otherwise.
+     *
+     * @param tokenReader The TokenReader from which source code
+     *                    tokens will be read
+     * @param pool The pool to parse on
+     *
+     * @return The constructed ProgNode that was parsed from the
+     *         source code
+     *
+     * @see TokenReader#readAllTokens()
+     */
+    public static ProgNode parseProg(TokenReader tokenReader,
+                                     ForkJoinPool pool)
+            throws IOException, DCSyntaxErrorException
+    {
+        // With one thread there's nothing to gain.
+        PackedTokens tokens = (pool.getParallelism() > 1) ?
+                tokenReader.packedTokens() : null;
+        int[] separators = (tokens == null) ?
+                null : separators(tokens, tokenReader.packedTokenIndex());
+        StmtNode[] stmts = (separators == null) ?
+                null : parseStmts(tokenReader, separators, pool);
+
+        if (stmts == null) {
+            return ProgNode.parseProg(tokenReader);
+        }
+
+        // Leave the reader just past the period, as if it had read
+        // the program itself.
+        tokenReader.seekPackedToken(separators[separators.length - 1] + 1);
+
+        //
+        // GR 0 - 3.
+        //
+        //      prog : stmt-list PERIOD
+        //      stmt-list : stmt stmt-tail
+        //      stmt-tail : SEMICOLON stmt stmt-tail
+        //      stmt-tail :
+        //
+
+        StmtTailNode stmtTail = new StmtTailNode(null, null);
+        for (int i = stmts.length - 1; i > 0; i--) {
+            stmtTail = new StmtTailNode(stmts[i], stmtTail);
+        }
+        StmtListNode stmtList = new StmtListNode(stmts[0], stmtTail);
+        return new ProgNode(stmtList, tokenReader.lineIndex());
+    }
+
+    /**
+     * Returns the indexes of the top-level semicolons from 'start'
+     * on, followed by that of the period that ends the program, or
+     * null if the nesting doesn't balance or there is no period.
+     */
+    private static int[] separators(PackedTokens tokens, int start) {
+        int[] separators = new int[1024];
+        int count = 0;
+        int depth = 0;
+
+        for (int i = start; i < tokens.size(); i++) {
+            switch (tokens.code(i)) {
+            case T_IF:
+            case T_LOOP:
+                depth++;
+                break;
+            case T_FI:
+            case T_REPEAT:
+                if (--depth < 0) {
+                    return null;
+                }
+                break;
+            case T_SEMICOLON:
+            case T_PERIOD:
+                if (depth > 0) {
+                    break;
+                }
+                if (count == separators.length) {
+                    separators = Arrays.copyOf(separators, count * 2);
+                }
+                separators[count++] = i;
+                if (tokens.code(i) == TokenCode.T_PERIOD) {
+                    return Arrays.copyOf(separators, count);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Parses the statements between the separators in runs on the
+     * pool, and returns them in order, or null if any run fails to
+     * parse into statements that end at the separators.
+     */
+    private static StmtNode[] parseStmts(final TokenReader tokenReader,
+                                         final int[] separators,
+                                         ForkJoinPool pool)
+            throws IOException
+    {
+        final StmtNode[] stmts = new StmtNode[separators.length];
+        final AtomicBoolean failed = new AtomicBoolean(false);
+
+        // Aim for a few runs per thread so that uneven runs even
+        // out.
+        int tokenCount = separators[separators.length - 1] -
+                tokenReader.packedTokenIndex();
+        int runTokens = Math.max(MIN_RUN_TOKENS,
+                tokenCount / (pool.getParallelism() * 4));
+
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        int first = 0;
+        while (first < separators.length) {
+            // The run ends at the first separator past its size.
+            int from = (first == 0) ?
+                    tokenReader.packedTokenIndex() : separators[first - 1] + 1;
+            int last = first;
+            while (last < separators.length - 1 &&
+                    separators[last] - from < runTokens) {
+                last++;
+            }
+
+            final int runFirst = first;
+            final int runLast = last;
+            final TokenReader runReader = new TokenReader(tokenReader,
+                    from, separators[last] + 1);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    if (!parseRun(runReader, separators, runFirst, runLast,
+                            stmts, failed)) {
+                        failed.set(true);
+                    }
+                    return null;
+                }
+            });
+            first = last + 1;
+        }
+
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            join(future);
+        }
+        return failed.get() ? null : stmts;
+    }
+
+    /**
+     * Parses the statements that end at separators[first] through
+     * separators[last] into stmts, and returns false if they don't
+     * parse, or another run has already failed.
+     */
+    private static boolean parseRun(TokenReader runReader,
+                                    int[] separators, int first, int last,
+                                    StmtNode[] stmts, AtomicBoolean failed)
+            throws IOException
+    {
+        PackedTokens tokens = runReader.packedTokens();
+        try {
+            for (int i = first; i <= last; i++) {
+                if (failed.get()) {
+                    return false;
+                }
+
+                stmts[i] = StmtNode.parseStmt(runReader);
+
+                // The statement must end at its separator.
+                TokenDescriptor token;
+                do {
+                    token = runReader.getToken();
+                } while (token.getCode() == TokenCode.T_SPACE);
+                if (token.getStart() != tokens.start(separators[i])) {
+                    return false;
+                }
+            }
+        } catch (DCSyntaxErrorException e) {
+            return false;
+        } catch (StackOverflowError e) {
+            // A pool thread's stack may be smaller than the one the
+            // program would otherwise be parsed on.
+            return false;
+        }
+        return true;
+    }
+
+    private static void join(Future<Void> future)
+            throws IOException
+    {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+}
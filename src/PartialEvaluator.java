@@ -0,0 +1,801 @@
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+
+
+/**
+ * Specializes a parsed Descartes program against a partial binding
+ * of its READ inputs and produces the residual program as
+ * Descartes 2 source code.
+ *
+ * Every computation that doesn't depend on a free (unbound) input
+ * is performed ahead of time: constant expressions are folded,
+ * IF statements with known conditions are replaced by the branch
+ * that would run, and loops whose control flow is fully known are
+ * unrolled away entirely. Only the statements that depend on the
+ * free inputs remain in the residual program.
+ *
+ * A bound variable supplies its value to every READ of that
+ * variable; such READs (and their prompts) disappear from the
+ * residual program. Running the residual program produces the
+ * same PRINT output, the same runtime errors and the same final
+ * symbol table as running the original program with the bound
+ * values typed in.
+ */
+public class PartialEvaluator {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * The statically known part of the program state at some point
+     * of the program.
+     */
+    private static class Env {
+
+        // Variables whose values are known ahead of time.
+        HashMap<String, Double> known = new HashMap<String, Double>();
+
+        // Known variables whose value has already been assigned in
+        // the residual program.
+        HashSet<String> materialized = new HashSet<String>();
+
+        // Variables that are certainly defined at this point (known
+        // or not), so reading them cannot fail.
+        HashSet<String> defined = new HashSet<String>();
+
+        Env copy() {
+            Env env = new Env();
+            env.known.putAll(known);
+            env.materialized.addAll(materialized);
+            env.defined.addAll(defined);
+            return env;
+        }
+    }
+
+    /**
+     * A loop that encloses the statement being specialized. A
+     * residual loop appears in the residual program; any other
+     * loop is being unrolled.
+     */
+    private static class LoopCtx {
+        final String id;
+        final int dynLevel;
+        final boolean residual;
+
+        LoopCtx(String id, int dynLevel, boolean residual) {
+            this.id = id;
+            this.dynLevel = dynLevel;
+            this.residual = residual;
+        }
+    }
+
+    /**
+     * The result of specializing an expression: either a known
+     * value or residual source text.
+     */
+    private static class Val {
+        final boolean known;
+        final double value;
+        final String text;
+        final boolean mayFail;
+
+        Val(double value) {
+            this.known = true;
+            this.value = value;
+            this.text = literal(value);
+            this.mayFail = false;
+        }
+
+        Val(String text, boolean mayFail) {
+            this.known = false;
+            this.value = 0.0;
+            this.text = text;
+            this.mayFail = mayFail;
+        }
+    }
+
+    /**
+     * Thrown when a loop that is being unrolled turns out to
+     * depend on the free inputs (or to run for too long); the loop
+     * is then specialized as a residual loop instead.
+     */
+    private static class UnrollAbort extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final LoopCtx target;
+
+        UnrollAbort(LoopCtx target) {
+            this.target = target;
+        }
+
+        public Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // Marks a statement after which control certainly leaves the
+    // current statement list through a BREAK in the residual
+    // program.
+    private static final LoopCtx RESIDUAL_BREAK =
+            new LoopCtx(null, 0, true);
+
+    // A loop is no longer unrolled after this many iterations, and
+    // no unrolled loop may emit more residual statements than
+    // this.
+    private static final int MAX_UNROLL_ITERATIONS = 100000;
+    private static final int MAX_UNROLL_STATEMENTS = 10000;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private Map<String, Double> m_bindings;
+    private Env m_env;
+    private Stack<LoopCtx> m_loops;
+
+    // Number of times a variable is pinned: a pinned variable is
+    // assigned inside an enclosing residual loop and is never
+    // treated as known.
+    private HashMap<String, Integer> m_pinned;
+
+    // Nesting depth of residual control flow (residual loop bodies
+    // and IF branches with unknown conditions).
+    private int m_dynLevel;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a partial evaluator for the given READ input
+     * bindings.
+     *
+     * @param bindings Maps the names of bound input variables to
+     *                 the values every READ of them yields
+     */
+    public PartialEvaluator(Map<String, Double> bindings) {
+        m_bindings = bindings;
+    }
+
+    /**
+     * Specializes a program against this evaluator's bindings and
+     * returns the residual program's source code.
+     *
+     * @param progNode The program to specialize
+     *
+     * @return The source code of the residual program
+     */
+    public String specialize(ProgNode progNode) {
+        m_env = new Env();
+        m_loops = new Stack<LoopCtx>();
+        m_pinned = new HashMap<String, Integer>();
+        m_dynLevel = 0;
+
+        List<String> out = new ArrayList<String>();
+        specStmtList(progNode.stmtList(), out);
+
+        // The residual program must leave the same symbol table
+        // behind, so assign everything that's still only known
+        // statically.
+        materializeAll(out);
+
+        return join(out) + "\n.\n";
+    }
+
+    /**
+     * Specializes each statement of a statement list until control
+     * leaves the list.
+     *
+     * @return null if control falls through the end of the list,
+     *         otherwise the loop that is being broken
+     */
+    private LoopCtx specStmtList(StmtListNode stmtList, List<String> out) {
+        LoopCtx flow = specStmt(stmtList.stmt(), out);
+
+        StmtTailNode tail = stmtList.stmtTail();
+        while (flow == null && tail.stmt() != null) {
+            flow = specStmt(tail.stmt(), out);
+            tail = tail.stmtTail();
+        }
+
+        return flow;
+    }
+
+    private LoopCtx specStmt(StmtNode stmt, List<String> out) {
+        if (stmt instanceof AssignStmtNode) {
+            specAssign((AssignStmtNode) stmt, out);
+        } else if (stmt instanceof ReadStmtNode) {
+            ReadStmtNode read = (ReadStmtNode) stmt;
+            specRead(read.id(), read.idListTail(), out);
+        } else if (stmt instanceof PrintStmtNode) {
+            PrintStmtNode print = (PrintStmtNode) stmt;
+            specPrint(print.id(), print.idListTail(), out);
+        } else if (stmt instanceof IfStmtNode) {
+            return specIf((IfStmtNode) stmt, out);
+        } else if (stmt instanceof LoopStmtNode) {
+            return specLoop((LoopStmtNode) stmt, out);
+        } else if (stmt instanceof BreakStmtNode) {
+            return specBreak((BreakStmtNode) stmt, out);
+        }
+
+        // Empty statements leave nothing behind.
+        return null;
+    }
+
+    private void specAssign(AssignStmtNode assign, List<String> out) {
+        String id = assign.id();
+        Val val = specExpr(assign.expr());
+
+        // A runtime error would dump the symbol table, so it must
+        // be complete before the statement runs.
+        if (val.mayFail) {
+            materializeAll(out);
+        }
+
+        if (val.known && !isPinned(id)) {
+            Double old = m_env.known.put(id, val.value);
+            if (old == null || !sameValue(old, val.value)) {
+                m_env.materialized.remove(id);
+            }
+        } else {
+            out.add(id + " := " + val.text);
+            m_env.known.remove(id);
+            m_env.materialized.remove(id);
+        }
+        m_env.defined.add(id);
+    }
+
+    private void specRead(String id, IDListTailNode tail, List<String> out) {
+        StringBuilder free = new StringBuilder();
+
+        while (id != null) {
+            Double bound = m_bindings.get(id);
+            if (bound == null) {
+                // A free input; the residual program reads it.
+                free.append(free.length() == 0 ? "READ " : ", ");
+                free.append(id);
+                m_env.known.remove(id);
+                m_env.materialized.remove(id);
+            } else if (isPinned(id)) {
+                out.add(id + " := " + literal(bound));
+            } else {
+                m_env.known.put(id, bound);
+                m_env.materialized.remove(id);
+            }
+            m_env.defined.add(id);
+
+            id = tail.id();
+            tail = tail.idListTail();
+        }
+
+        if (free.length() > 0) {
+            out.add(free.toString());
+        }
+    }
+
+    private void specPrint(String id, IDListTailNode tail, List<String> out) {
+        StringBuilder print = new StringBuilder("PRINT ");
+        boolean mayFail = false;
+
+        // Known variables must hold their values before they can
+        // be printed.
+        while (id != null) {
+            if (m_env.known.containsKey(id)) {
+                materialize(id, out);
+            } else if (!m_env.defined.contains(id)) {
+                mayFail = true;
+            }
+            print.append(id);
+
+            id = tail.id();
+            tail = tail.idListTail();
+            if (id != null) {
+                print.append(", ");
+            }
+        }
+
+        if (mayFail) {
+            materializeAll(out);
+        }
+        out.add(print.toString());
+    }
+
+    private LoopCtx specIf(IfStmtNode ifStmt, List<String> out) {
+        Val cond = specExpr(ifStmt.expr());
+        StmtListNode elseList = ifStmt.elsePart().stmtList();
+
+        // A known condition selects its branch ahead of time.
+        if (cond.known) {
+            if (cond.value != 0.0) {
+                return specStmtList(ifStmt.stmtList(), out);
+            }
+            return elseList == null ? null : specStmtList(elseList, out);
+        }
+
+        if (cond.mayFail) {
+            materializeAll(out);
+        }
+
+        // Specialize both branches from the same state.
+        Env before = m_env;
+        List<String> thenOut = new ArrayList<String>();
+        List<String> elseOut = new ArrayList<String>();
+        LoopCtx thenFlow;
+        LoopCtx elseFlow = null;
+        Env thenEnv;
+        Env elseEnv;
+
+        ++m_dynLevel;
+        try {
+            m_env = before.copy();
+            thenFlow = specStmtList(ifStmt.stmtList(), thenOut);
+            thenEnv = m_env;
+
+            m_env = before.copy();
+            if (elseList != null) {
+                elseFlow = specStmtList(elseList, elseOut);
+            }
+            elseEnv = m_env;
+        } finally {
+            --m_dynLevel;
+        }
+
+        // Only branches that fall through reach the code after the
+        // IF statement.
+        LoopCtx flow = null;
+        if (thenFlow != null && elseFlow != null) {
+            m_env = before;
+            flow = RESIDUAL_BREAK;
+        } else if (thenFlow != null) {
+            m_env = elseEnv;
+        } else if (elseFlow != null) {
+            m_env = thenEnv;
+        } else {
+            m_env = merge(thenEnv, thenOut, elseEnv, elseOut);
+        }
+
+        StringBuilder text = new StringBuilder();
+        text.append("IF ").append(cond.text).append(" THEN\n");
+        text.append(indent(join(thenOut)));
+        if (!elseOut.isEmpty()) {
+            text.append("\nELSE\n").append(indent(join(elseOut)));
+        }
+        text.append("\nFI");
+        out.add(text.toString());
+
+        return flow;
+    }
+
+    /**
+     * Merges the states at the end of two IF branches. Variables
+     * that are known differently on the two paths are assigned at
+     * the end of the branches and become unknown.
+     */
+    private Env merge(Env a, List<String> aOut, Env b, List<String> bOut) {
+        Env env = new Env();
+
+        HashSet<String> ids = new HashSet<String>(a.known.keySet());
+        ids.addAll(b.known.keySet());
+        for (String id : ids) {
+            Double aVal = a.known.get(id);
+            Double bVal = b.known.get(id);
+
+            if (aVal != null && bVal != null && sameValue(aVal, bVal)) {
+                env.known.put(id, aVal);
+                if (a.materialized.contains(id) &&
+                        b.materialized.contains(id)) {
+                    env.materialized.add(id);
+                }
+            } else {
+                if (aVal != null && !a.materialized.contains(id)) {
+                    aOut.add(id + " := " + literal(aVal));
+                }
+                if (bVal != null && !b.materialized.contains(id)) {
+                    bOut.add(id + " := " + literal(bVal));
+                }
+            }
+        }
+
+        env.defined.addAll(a.defined);
+        env.defined.retainAll(b.defined);
+
+        return env;
+    }
+
+    private LoopCtx specLoop(LoopStmtNode loop, List<String> out) {
+        //
+        // First try to unroll the loop: as long as its control
+        // flow only depends on known values, its iterations are
+        // specialized one after the other.
+        //
+
+        LoopCtx ctx = new LoopCtx(loop.id(), m_dynLevel, false);
+        Env saved = m_env.copy();
+        List<String> unrolled = new ArrayList<String>();
+
+        m_loops.push(ctx);
+        try {
+            for (int i = 0; i < MAX_UNROLL_ITERATIONS; i++) {
+                LoopCtx flow = specStmtList(loop.stmtList(), unrolled);
+                if (unrolled.size() > MAX_UNROLL_STATEMENTS) {
+                    break;
+                }
+
+                if (flow != null) {
+                    out.addAll(unrolled);
+
+                    // A BREAK of this loop continues after it; any
+                    // other BREAK keeps propagating outwards.
+                    return flow == ctx ? null : flow;
+                }
+            }
+        } catch (UnrollAbort e) {
+            if (e.target != ctx) {
+                throw e;
+            }
+        } finally {
+            m_loops.pop();
+        }
+
+        // Unrolling failed; specialize the loop body once as a
+        // residual loop.
+        m_env = saved;
+        return residualizeLoop(loop, out);
+    }
+
+    private LoopCtx residualizeLoop(LoopStmtNode loop, List<String> out) {
+        // Every known variable is assigned before the loop, so the
+        // state is complete at every iteration and after every
+        // BREAK. Variables assigned in the body become unknown.
+        materializeAll(out);
+        Set<String> assigned = new HashSet<String>();
+        collectAssigned(loop.stmtList(), assigned);
+        for (String id : assigned) {
+            m_env.known.remove(id);
+            m_env.materialized.remove(id);
+        }
+        Env entry = m_env.copy();
+
+        LoopCtx ctx = new LoopCtx(loop.id(), m_dynLevel, true);
+        List<String> body = new ArrayList<String>();
+
+        m_loops.push(ctx);
+        ++m_dynLevel;
+        pin(assigned, 1);
+        try {
+            specStmtList(loop.stmtList(), body);
+        } finally {
+            pin(assigned, -1);
+            --m_dynLevel;
+            m_loops.pop();
+        }
+
+        // Variables that are only assigned in the body may be
+        // undefined if the loop breaks before assigning them.
+        m_env = entry;
+
+        out.add("LOOP " + loop.id() + ":\n" + indent(join(body)) +
+                "\nREPEAT");
+        return null;
+    }
+
+    private LoopCtx specBreak(BreakStmtNode breakStmt, List<String> out) {
+        String id = breakStmt.idOption().id();
+
+        // Find the loop this BREAK leaves.
+        LoopCtx target = null;
+        for (int i = m_loops.size() - 1; i >= 0 && target == null; i--) {
+            if (id == null || m_loops.get(i).id.equals(id)) {
+                target = m_loops.get(i);
+            }
+        }
+
+        if (target == null) {
+            // No such loop; leave the BREAK for the runtime to
+            // complain about. The error dumps the symbol table, so
+            // it must be complete first.
+            materializeAll(out);
+            out.add(id == null ? "BREAK" : "BREAK " + id);
+            return RESIDUAL_BREAK;
+        }
+
+        if (target.residual) {
+            out.add("BREAK " + target.id);
+        } else if (m_dynLevel > target.dynLevel) {
+            // A BREAK under an unknown condition can't leave an
+            // unrolled loop.
+            throw new UnrollAbort(target);
+        }
+
+        return target;
+    }
+
+    /**
+     * Assigns the known value of a variable in the residual program
+     * unless it has already been assigned.
+     */
+    private void materialize(String id, List<String> out) {
+        if (!m_env.materialized.contains(id)) {
+            out.add(id + " := " + literal(m_env.known.get(id)));
+            m_env.materialized.add(id);
+        }
+    }
+
+    private void materializeAll(List<String> out) {
+        // Assign in alphabetical order so the output is stable.
+        ArrayList<String> ids = new ArrayList<String>(m_env.known.keySet());
+        java.util.Collections.sort(ids);
+        for (String id : ids) {
+            materialize(id, out);
+        }
+    }
+
+    private boolean isPinned(String id) {
+        return m_pinned.containsKey(id);
+    }
+
+    private void pin(Set<String> ids, int delta) {
+        for (String id : ids) {
+            Integer count = m_pinned.get(id);
+            int newCount = (count == null ? 0 : count) + delta;
+            if (newCount == 0) {
+                m_pinned.remove(id);
+            } else {
+                m_pinned.put(id, newCount);
+            }
+        }
+    }
+
+
+    //=============//
+    // Expressions //
+    //=============//
+
+    //
+    // Each method mirrors the getVal() method of the corresponding
+    // node, including its right-to-left grouping of tails. Residual
+    // text is fully parenthesized so the residual program groups
+    // exactly the same way.
+    //
+
+    private Val specExpr(ExprNode expr) {
+        Val val = specBoolTerm(expr.boolTerm());
+        return specBoolTermTail(val, expr.boolTermTail());
+    }
+
+    private Val specBoolTermTail(Val assoc, BoolTermTailNode tail) {
+        if (tail.boolTerm() == null) {
+            return assoc;
+        }
+        Val val = specBoolTerm(tail.boolTerm());
+        val = specBoolTermTail(val, tail.boolTermTail());
+        return binary(assoc, "OR", val);
+    }
+
+    private Val specBoolTerm(BoolTermNode term) {
+        Val val = specBoolFactor(term.boolFactor());
+        return specBoolFactorTail(val, term.boolFactorTail());
+    }
+
+    private Val specBoolFactorTail(Val assoc, BoolFactorTailNode tail) {
+        if (tail.boolFactor() == null) {
+            return assoc;
+        }
+        Val val = specBoolFactor(tail.boolFactor());
+        val = specBoolFactorTail(val, tail.boolFactorTail());
+        return binary(assoc, "AND", val);
+    }
+
+    private Val specBoolFactor(BoolFactorNode factor) {
+        Val val = specArithExpr(factor.arithExpr());
+        RelationOptionNode relation = factor.relationOption();
+        if (relation.oper() == null) {
+            return val;
+        }
+
+        String oper;
+        switch (relation.oper()) {
+            case LESS_THAN:     oper = "<"; break;
+            case LESS_EQUAL:    oper = "<="; break;
+            case EQUAL_TO:      oper = "="; break;
+            case GREATER_EQUAL: oper = ">="; break;
+            case GREATER_THAN:  oper = ">"; break;
+            default:            oper = "<>"; break;
+        }
+        return binary(val, oper, specArithExpr(relation.arithExpr()));
+    }
+
+    private Val specArithExpr(ArithExprNode arithExpr) {
+        Val val = specTerm(arithExpr.term());
+        return specTermTail(val, arithExpr.termTail());
+    }
+
+    private Val specTermTail(Val assoc, TermTailNode tail) {
+        if (tail.term() == null) {
+            return assoc;
+        }
+        Val val = specTerm(tail.term());
+        val = specTermTail(val, tail.termTail());
+        return binary(assoc,
+                tail.oper() == TermTailNode.Operator.ADD ? "+" : "-", val);
+    }
+
+    private Val specTerm(TermNode term) {
+        Val val = specFactor(term.factor());
+        return specFactorTail(val, term.factorTail());
+    }
+
+    private Val specFactorTail(Val assoc, FactorTailNode tail) {
+        if (tail.factor() == null) {
+            return assoc;
+        }
+        Val val = specFactor(tail.factor());
+        val = specFactorTail(val, tail.factorTail());
+        return binary(assoc,
+                tail.oper() == FactorTailNode.Operator.MULTIPLY ? "*" : "/",
+                val);
+    }
+
+    private Val specFactor(FactorNode factor) {
+        if (factor.atom() != null) {
+            AtomNode atom = factor.atom();
+            if (atom.id() == null) {
+                return new Val(atom.constVal());
+            }
+            Double known = m_env.known.get(atom.id());
+            if (known != null) {
+                return new Val(known);
+            }
+            return new Val(atom.id(), !m_env.defined.contains(atom.id()));
+        } else if (factor.negFactor() != null) {
+            Val val = specFactor(factor.negFactor());
+            if (val.known) {
+                return new Val(-val.value);
+            }
+            return new Val("(-" + val.text + ")", val.mayFail);
+        } else {
+            return specExpr(factor.parenExpr());
+        }
+    }
+
+    /**
+     * Applies a binary operator, folding it if both operands are
+     * known and the result can be written as a numeric literal.
+     */
+    private static Val binary(Val a, String oper, Val b) {
+        boolean divide = oper.equals("/");
+
+        if (a.known && b.known && !(divide && b.value == 0.0)) {
+            double x = a.value;
+            double y = b.value;
+            double result;
+
+            if (oper.equals("OR")) {
+                result = (x != 0.0 || y != 0.0) ? 1 : 0;
+            } else if (oper.equals("AND")) {
+                result = (x != 0.0 && y != 0.0) ? 1 : 0;
+            } else if (oper.equals("<")) {
+                result = x < y ? 1 : 0;
+            } else if (oper.equals("<=")) {
+                result = x <= y ? 1 : 0;
+            } else if (oper.equals("=")) {
+                result = x == y ? 1 : 0;
+            } else if (oper.equals(">=")) {
+                result = x >= y ? 1 : 0;
+            } else if (oper.equals(">")) {
+                result = x > y ? 1 : 0;
+            } else if (oper.equals("<>")) {
+                result = x != y ? 1 : 0;
+            } else if (oper.equals("+")) {
+                result = x + y;
+            } else if (oper.equals("-")) {
+                result = x - y;
+            } else if (oper.equals("*")) {
+                result = x * y;
+            } else {
+                result = x / y;
+            }
+
+            if (!Double.isInfinite(result) && !Double.isNaN(result)) {
+                return new Val(result);
+            }
+        }
+
+        boolean mayFail = a.mayFail || b.mayFail ||
+                (divide && !(b.known && b.value != 0.0));
+        return new Val("(" + a.text + " " + oper + " " + b.text + ")",
+                mayFail);
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Writes a value as a Descartes numeric literal, which has no
+     * exponent and no sign of its own.
+     */
+    private static String literal(double value) {
+        if (value < 0.0 || (value == 0.0 && 1.0 / value < 0.0)) {
+            return "(-" + literal(-value) + ")";
+        }
+        return new BigDecimal(Double.toString(value)).toPlainString();
+    }
+
+    private static boolean sameValue(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    /**
+     * Collects the variables assigned or read anywhere in a
+     * statement list.
+     */
+    private static void collectAssigned(StmtListNode stmtList,
+                                        Set<String> ids)
+    {
+        collectAssigned(stmtList.stmt(), ids);
+        for (StmtTailNode tail = stmtList.stmtTail();
+             tail.stmt() != null;
+             tail = tail.stmtTail())
+        {
+            collectAssigned(tail.stmt(), ids);
+        }
+    }
+
+    private static void collectAssigned(StmtNode stmt, Set<String> ids) {
+        if (stmt instanceof AssignStmtNode) {
+            ids.add(((AssignStmtNode) stmt).id());
+        } else if (stmt instanceof ReadStmtNode) {
+            ReadStmtNode read = (ReadStmtNode) stmt;
+            ids.add(read.id());
+            for (IDListTailNode tail = read.idListTail();
+                 tail.id() != null;
+                 tail = tail.idListTail())
+            {
+                ids.add(tail.id());
+            }
+        } else if (stmt instanceof IfStmtNode) {
+            IfStmtNode ifStmt = (IfStmtNode) stmt;
+            collectAssigned(ifStmt.stmtList(), ids);
+            if (ifStmt.elsePart().stmtList() != null) {
+                collectAssigned(ifStmt.elsePart().stmtList(), ids);
+            }
+        } else if (stmt instanceof LoopStmtNode) {
+            collectAssigned(((LoopStmtNode) stmt).stmtList(), ids);
+        }
+    }
+
+    private static String join(List<String> stmts) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < stmts.size(); i++) {
+            if (i > 0) {
+                text.append(";\n");
+            }
+            text.append(stmts.get(i));
+        }
+        return text.toString();
+    }
+
+    private static String indent(String text) {
+        if (text.isEmpty()) {
+            return text;
+        }
+        return "    " + text.replace("\n", "\n    ");
+    }
+
+}
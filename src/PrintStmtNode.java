@@ -22,8 +22,9 @@ public class PrintStmtNode extends StmtNode{
     //Member Variables//
     //================//
 
-    private String m_id;
-    private IDListTailNode m_idListTail;
+    private final String m_id;
+    private final int m_symbol;
+    private final IDListTailNode m_idListTail;
 
 
     //========//
@@ -36,10 +37,16 @@ public class PrintStmtNode extends StmtNode{
      *
      * @param id A String identifying a variable in the program
      *           symbol table
+     * @param symbol The interned symbol of 'id'
      * @param idListTail An IDListTailNode instance
+     * @param start The offset in the source code where the
+     *              statement starts
      */
-    public PrintStmtNode (String id, IDListTailNode idListTail){
+    public PrintStmtNode (String id, int symbol,
+                          IDListTailNode idListTail, int start){
+        super(start);
         m_id = id;
+        m_symbol = symbol;
         m_idListTail = idListTail;
     }
 
@@ -51,10 +58,31 @@ public class PrintStmtNode extends StmtNode{
     public void execute(ProgState progState)
             throws DCRuntimeErrorException
     {
-        progState.printVar(m_id);
+        progState.printVar(m_symbol);
         m_idListTail.print(progState);
     }
 
+    /**
+     * Accessor for the first variable ID.
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the symbol of the first variable.
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Accessor for the id-list-tail.
+     */
+    public IDListTailNode idListTail() {
+        return m_idListTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -122,11 +150,14 @@ public class PrintStmtNode extends StmtNode{
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
+     * @param start The offset in the source code where the
+     *              statement starts
      *
      * @return The constructed PrintStmtNode that was parsed from
      *         the source code
      */
-    public static PrintStmtNode parsePrintStmt(TokenReader tokenReader)
+    public static PrintStmtNode parsePrintStmt(TokenReader tokenReader,
+                                               int start)
             throws IOException, DCSyntaxErrorException
     {
         //
@@ -138,6 +169,7 @@ public class PrintStmtNode extends StmtNode{
 
         TokenDescriptor token;
         String id;
+        int symbol;
 
 
         // Eat up spaces.
@@ -159,13 +191,14 @@ public class PrintStmtNode extends StmtNode{
                     "Expected identifier after 'PRINT'.");
         }
         id = token.getText();
+        symbol = token.getSymbol();
 
         // Read the id-list-tail.
         IDListTailNode idListTail =
                 IDListTailNode.parseIDListTail(tokenReader);
 
 
-        return new PrintStmtNode(id, idListTail);
+        return new PrintStmtNode(id, symbol, idListTail, start);
     }
 
 }
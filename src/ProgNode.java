@@ -19,7 +19,8 @@ public class ProgNode {
     // Member Variables //
     //==================//
 
-    private StmtListNode m_stmtList;
+    private final StmtListNode m_stmtList;
+    private final LineIndex m_lineIndex;
 
 
     //=========//
@@ -34,7 +35,21 @@ public class ProgNode {
      *                 program
      */
     public ProgNode(StmtListNode stmtList) {
+        this(stmtList, null);
+    }
+
+    /**
+     * Constructs a new program node with the given statement list
+     * and the index of the source code it was parsed from.
+     *
+     * @param stmtList The statement list constituting this
+     *                 program
+     * @param lineIndex Maps the source offsets recorded in the
+     *                  parse tree to lines and columns
+     */
+    public ProgNode(StmtListNode stmtList, LineIndex lineIndex) {
         m_stmtList = stmtList;
+        m_lineIndex = lineIndex;
     }
 
     /**
@@ -49,6 +64,22 @@ public class ProgNode {
         m_stmtList.execute(progState);
     }
 
+    /**
+     * Accessor for the statement list constituting the program.
+     */
+    public StmtListNode stmtList() {
+        return m_stmtList;
+    }
+
+    /**
+     * Accessor for the index that maps source offsets in the
+     * parse tree to lines and columns, or null if there isn't
+     * one.
+     */
+    public LineIndex lineIndex() {
+        return m_lineIndex;
+    }
+
 
     //================//
     // Static Methods //
@@ -94,7 +125,7 @@ public class ProgNode {
         }
 
 
-        return new ProgNode(stmtList);
+        return new ProgNode(stmtList, tokenReader.lineIndex());
     }
 
 }
@@ -1,17 +1,25 @@
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
 import java.util.Scanner;
-import java.util.Stack;
-import java.util.TreeSet;
 
 
 /**
  * Maintains a Descartes program state while it's executing.
  *
- * This includes the program's symbol table mapping variable
- * identifiers to values, a stack of currently-active loop
- * identifiers, and (if not null) a break name that causes the
- * named loop's statement list to halt execution and exit the
- * loop.
+ * This includes the program's symbol table mapping variables to
+ * values, a stack of currently-active loop identifiers, and (if
+ * not IDTable.NONE) a break ID that causes the identified loop's
+ * statement list to halt execution and exit the loop.
+ *
+ * Variables and loops are identified by their IDTable symbols.
+ *
+ * Everything a program changes as it runs is kept here, including
+ * where its I/O goes, and none of it in the parse tree; so one
+ * parsed program can be executed by many threads at once, each
+ * with a ProgState of its own.
  */
 public class ProgState {
 
@@ -19,9 +27,19 @@ public class ProgState {
     // Member Variables //
     //==================//
 
-    private Stack<String> m_loopIDStack;
-    private HashMap<String, Double> m_symTab;
-    private String m_breakName;
+    private int[] m_loopIDStack;
+    private int m_loopDepth;
+    private SymbolTable m_symTab;
+    private int m_breakID;
+
+    // Where READ reads from, or null for standard input, and where
+    // the program's output goes.
+    private InputStream m_in;
+    private PrintStream m_out;
+
+    // Splits the input into values, created by the first READ; it
+    // buffers ahead, so one must serve every READ of the run.
+    private Scanner m_input;
 
 
     //=========//
@@ -30,80 +48,183 @@ public class ProgState {
 
     /**
      * Initializes a new program state with an empty symbol table,
-     * loop ID stack and null break name.
+     * loop ID stack and no break ID.
+     *
+     * @param idTable The table of identifiers that the program's
+     *                symbols were interned in
+     */
+    public ProgState(IDTable idTable) {
+        this(idTable, null, System.out);
+    }
+
+    /**
+     * Initializes a new program state, as above, whose I/O goes
+     * through the given streams rather than the console.
+     *
+     * @param idTable The table of identifiers that the program's
+     *                symbols were interned in
+     * @param in The stream READ reads from, or null to read
+     *           standard input
+     * @param out The stream PRINT and the symbol table dump write
+     *            to
+     */
+    public ProgState(IDTable idTable, InputStream in, PrintStream out) {
+        m_loopIDStack = new int[16];
+        m_loopDepth = 0;
+        m_symTab = new SymbolTable(idTable);
+        m_breakID = IDTable.NONE;
+        m_in = in;
+        m_out = out;
+        m_input = null;
+    }
+
+    /**
+     * Returns the state to how it was constructed, with every
+     * variable undefined, so that it can be used for another run.
+     */
+    public void reset() {
+        m_loopDepth = 0;
+        m_symTab.clear();
+        m_breakID = IDTable.NONE;
+    }
+
+    /**
+     * Pushes a loop ID onto the loop ID stack.
+     */
+    public void pushLoopID(int id) {
+        if (m_loopDepth == m_loopIDStack.length) {
+            m_loopIDStack = Arrays.copyOf(m_loopIDStack, m_loopDepth * 2);
+        }
+        m_loopIDStack[m_loopDepth++] = id;
+    }
+
+    /**
+     * Pops the loop ID stack and returns the popped ID.
+     *
+     * @throws DCRuntimeErrorException If the stack is empty, i.e.
+     *                                 the program breaks out of a
+     *                                 loop it isn't in
+     */
+    public int popLoopID() throws DCRuntimeErrorException {
+        if (m_loopDepth == 0) {
+            throw new DCRuntimeErrorException(
+                    "BREAK with no enclosing loop to leave.");
+        }
+        return m_loopIDStack[--m_loopDepth];
+    }
+
+    /**
+     * Returns the loop ID at the top of the loop ID stack, or
+     * IDTable.NONE if the stack is empty.
      */
-    public ProgState() {
-        m_loopIDStack = new Stack<String>();
-        m_symTab = new HashMap<String, Double>();
-        m_breakName = null;
+    public int topLoopID() {
+        return (m_loopDepth == 0) ?
+                IDTable.NONE : m_loopIDStack[m_loopDepth - 1];
     }
 
     /**
-     * Accessor for the loop ID stack.
+     * Called by every executor each time around a loop, so that a
+     * subclass can stop a run that has gone on too long by throwing.
+     * It does nothing here.
+     *
+     * @throws DCRuntimeErrorException To stop the run
      */
-    public Stack<String> loopIDStack() {
-        return m_loopIDStack;
+    public void poll()
+            throws DCRuntimeErrorException
+    {
     }
 
     /**
      * Accessor for the symbol table.
      */
-    public HashMap<String, Double> symTab() {
+    public SymbolTable symTab() {
         return m_symTab;
     }
 
     /**
-     * Accessor for the current break name.
+     * Accessor for the current break ID.
      */
-    public String breakName() {
-        return m_breakName;
+    public int breakID() {
+        return m_breakID;
     }
 
     /**
-     * Sets the current break name. Setting this to non-null will
-     * break the named loop.
+     * Sets the current break ID. Setting this to anything but
+     * IDTable.NONE will break the identified loop.
      *
-     * @param bName The ID naming a currently active loop
+     * @param id The ID of a currently active loop
      */
-    public void setBreakName(String bName) {
-        m_breakName = bName;
+    public void setBreakID(int id) {
+        m_breakID = id;
     }
 
     /**
      * Reads a value from the console and stores it in the
      * identified variable in the symbol table.
      *
-     * @param id The name of the variable to store the read value
-     *           in
+     * @param symbol The variable to store the read value in
+     *
+     * @throws DCRuntimeErrorException If there's no value to read,
+     *                                 or it isn't a number
      */
-    public void readVar(String id) {
+    public void readVar(int symbol)
+            throws DCRuntimeErrorException
+    {
         // Read the value from the user.
-        System.out.print("Enter value for " + id + ": ");
-        Scanner input = new Scanner(System.in);
-        double num = input.nextDouble();
+        m_out.print("Enter value for " +
+                m_symTab.idTable().name(symbol) + ": ");
+        if (m_input == null) {
+            m_input = new Scanner((m_in != null) ? m_in : System.in);
+        }
+        double num;
+        try {
+            num = m_input.nextDouble();
+        } catch (InputMismatchException e) {
+            throw new DCRuntimeErrorException("Invalid value for" +
+                    " variable " + m_symTab.idTable().name(symbol) + ": " +
+                    m_input.next());
+        } catch (NoSuchElementException e) {
+            throw new DCRuntimeErrorException(
+                    "No input left to read into variable: " +
+                    m_symTab.idTable().name(symbol)
+            );
+        }
 
         // Assign the user's value to the ID.
-        m_symTab.put(id, num);
+        m_symTab.set(symbol, num);
     }
 
     /**
      * Prints the value of a variable in the symbol table on the
      * console.
      *
-     * @param id The name of the variable to print the value of
+     * @param symbol The variable to print the value of
      */
-    public void printVar(String id)
+    public void printVar(int symbol)
             throws DCRuntimeErrorException
     {
+        String id = m_symTab.idTable().name(symbol);
+
         // Make sure the variable exists in the symbol table.
-        if (!m_symTab.containsKey(id)) {
+        if (!m_symTab.isDefined(symbol)) {
             throw new DCRuntimeErrorException(
                     "Unrecognized variable name: " + id
             );
         }
 
         // Print the value on the console.
-        System.out.println("Value of " + id + ": " + m_symTab.get(id));
+        printValue(id, m_symTab.get(symbol));
+    }
+
+    /**
+     * Prints a variable's value on the console, in the same format
+     * as printVar().
+     *
+     * @param id The name of the variable
+     * @param value The value of the variable
+     */
+    public void printValue(String id, double value) {
+        m_out.println("Value of " + id + ": " + value);
     }
 
     /**
@@ -111,13 +232,11 @@ public class ProgState {
      * be examined.
      */
     public void dumpSymTab() {
-        System.out.println("Symbol Table:");
+        m_out.println("Symbol Table:");
 
-        // Alphabetize the symbol names.
-        TreeSet<String> keys = new TreeSet<String>();
-        keys.addAll(m_symTab.keySet());
-        for (String key : keys) {
-            System.out.println(key + " = " + m_symTab.get(key));
+        // The symbol table lists the names alphabetically.
+        for (String key : m_symTab.names()) {
+            m_out.println(key + " = " + m_symTab.get(key));
         }
 
     }
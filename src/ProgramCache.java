@@ -0,0 +1,254 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * A directory of compiled programs, so that a program run again
+ * needn't be read and parsed again.
+ *
+ * Each program's Bytecode is stored in a file named after its key:
+ * a SHA-256 hash of its source code and Bytecode.VERSION, so a
+ * program is recompiled whenever either changes. A stored program
+ * is memory-mapped to be read, by Bytecode.load().
+ *
+ * Any number of processes can share a directory. A program is
+ * written to a temporary file that is then renamed into place
+ * atomically, so a reader sees either the whole file or none. A
+ * file found to be unreadable is treated as missing. Storing a
+ * program also evicts the files that haven't been used for
+ * longer than the maximum age and then, least recently used first,
+ * as many more as it takes to bring the directory under its
+ * maximum size; each use of a program refreshes its modification
+ * time. A file another process deletes first is simply skipped.
+ *
+ * The limits are set by the system properties
+ * descartes.cache.maxBytes (default 256 MB) and
+ * descartes.cache.maxAgeDays (default 30).
+ */
+public class ProgramCache {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    private static final long MAX_BYTES =
+            Long.getLong("descartes.cache.maxBytes", 256L << 20);
+
+    private static final long MAX_AGE_MILLIS =
+            Long.getLong("descartes.cache.maxAgeDays", 30L) * 86400000L;
+
+    // Temporary files older than this were left by a process that
+    // died while writing.
+    private static final long MAX_TEMP_AGE_MILLIS = 3600000L;
+
+    private static final String SUFFIX = ".dcb";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private Path m_dir;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a cache in a directory, creating it if need be.
+     *
+     * @param dir The directory
+     */
+    public ProgramCache(Path dir)
+            throws IOException
+    {
+        m_dir = dir;
+        Files.createDirectories(dir);
+    }
+
+    /**
+     * Returns the program stored under a key, or null if there
+     * isn't one.
+     *
+     * @param key The program's key
+     *
+     * @see #key(byte[])
+     */
+    public Bytecode load(String key) {
+        Path path = m_dir.resolve(key + SUFFIX);
+        Bytecode bytecode;
+        try {
+            bytecode = Bytecode.load(path);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            // Written by another version, or damaged.
+            delete(path);
+            return null;
+        }
+
+        // Mark the program as recently used; if another process
+        // has just evicted it, it will merely be stored again.
+        try {
+            Files.setLastModifiedTime(path,
+                    FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Ignore.
+        }
+        return bytecode;
+    }
+
+    /**
+     * Stores a program under a key, replacing any stored before,
+     * and evicts old programs.
+     *
+     * @param key The program's key
+     * @param bytecode The program
+     */
+    public void store(String key, Bytecode bytecode)
+            throws IOException
+    {
+        Path temp = Files.createTempFile(m_dir, key, TEMP_SUFFIX);
+        try {
+            try (OutputStream out = new BufferedOutputStream(
+                    Files.newOutputStream(temp)))
+            {
+                bytecode.write(out);
+            }
+            Files.move(temp, m_dir.resolve(key + SUFFIX),
+                    StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            delete(temp);
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the programs that haven't been used for longer than
+     * the maximum age, then the least recently used until the rest
+     * fit in the maximum size.
+     */
+    public void evict()
+            throws IOException
+    {
+        long now = System.currentTimeMillis();
+        List<Path> paths = new ArrayList<Path>();
+        final List<Long> times = new ArrayList<Long>();
+        List<Long> sizes = new ArrayList<Long>();
+        long total = 0;
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(m_dir)) {
+            for (Path path : entries) {
+                String name = path.getFileName().toString();
+                BasicFileAttributes attrs;
+                try {
+                    attrs = Files.readAttributes(path,
+                            BasicFileAttributes.class);
+                } catch (NoSuchFileException e) {
+                    continue;
+                }
+                long age = now - attrs.lastModifiedTime().toMillis();
+
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    if (age > MAX_TEMP_AGE_MILLIS) {
+                        delete(path);
+                    }
+                } else if (name.endsWith(SUFFIX)) {
+                    if (age > MAX_AGE_MILLIS) {
+                        delete(path);
+                    } else {
+                        paths.add(path);
+                        times.add(attrs.lastModifiedTime().toMillis());
+                        sizes.add(attrs.size());
+                        total += attrs.size();
+                    }
+                }
+            }
+        }
+
+        if (total <= MAX_BYTES) {
+            return;
+        }
+
+        // Least recently used first.
+        List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < paths.size(); i++) {
+            order.add(i);
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(times.get(a), times.get(b));
+            }
+        });
+        for (int i : order) {
+            if (total <= MAX_BYTES) {
+                break;
+            }
+            delete(paths.get(i));
+            total -= sizes.get(i);
+        }
+    }
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Returns the key to store a program under.
+     *
+     * @param source The program's source code
+     *
+     * @return A hash of the source code and Bytecode.VERSION, in
+     *         hexadecimal
+     */
+    public static String key(byte[] source) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(("Descartes bytecode " + Bytecode.VERSION + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        digest.update(source);
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.toString();
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Another process may be using or deleting it; the
+            // next eviction will try again.
+        }
+    }
+
+}
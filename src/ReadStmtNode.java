@@ -21,8 +21,9 @@ public class ReadStmtNode extends StmtNode {
     // Member Variables //
     //==================//
 
-    private String m_id;
-    private IDListTailNode m_idListTail;
+    private final String m_id;
+    private final int m_symbol;
+    private final IDListTailNode m_idListTail;
 
 
     //=========//
@@ -36,12 +37,18 @@ public class ReadStmtNode extends StmtNode {
      *
      * @param id The first variable identifier that will be read
      *           from the user
+     * @param symbol The interned symbol of 'id'
      * @param idListTail A list of zero or more additional
      *                   variable identifiers that will be read
      *                   after 'id'
+     * @param start The offset in the source code where the
+     *              statement starts
      */
-    public ReadStmtNode(String id, IDListTailNode idListTail) {
+    public ReadStmtNode(String id, int symbol,
+                        IDListTailNode idListTail, int start) {
+        super(start);
         m_id = id;
+        m_symbol = symbol;
         m_idListTail = idListTail;
     }
 
@@ -55,11 +62,34 @@ public class ReadStmtNode extends StmtNode {
      *
      * @param progState The current program state
      */
-    public void execute(ProgState progState) {
-        progState.readVar(m_id);
+    public void execute(ProgState progState)
+            throws DCRuntimeErrorException
+    {
+        progState.readVar(m_symbol);
         m_idListTail.read(progState);
     }
 
+    /**
+     * Accessor for the first variable ID.
+     */
+    public String id() {
+        return m_id;
+    }
+
+    /**
+     * Accessor for the symbol of the first variable.
+     */
+    public int symbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Accessor for the id-list-tail.
+     */
+    public IDListTailNode idListTail() {
+        return m_idListTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -127,11 +157,14 @@ public class ReadStmtNode extends StmtNode {
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
+     * @param start The offset in the source code where the
+     *              statement starts
      *
      * @return The constructed ReadStmtNode that was parsed from
      *         the source code
      */
-    public static ReadStmtNode parseReadStmt(TokenReader tokenReader)
+    public static ReadStmtNode parseReadStmt(TokenReader tokenReader,
+                                             int start)
             throws IOException, DCSyntaxErrorException
     {
         //
@@ -142,6 +175,7 @@ public class ReadStmtNode extends StmtNode {
 
         TokenDescriptor token;
         String id;
+        int symbol;
 
         // Eat up spaces.
         do {
@@ -162,13 +196,14 @@ public class ReadStmtNode extends StmtNode {
                     "Expected identifier after 'READ'.");
         }
         id = token.getText();
+        symbol = token.getSymbol();
 
         // Read the id-list-tail.
         IDListTailNode idListTail =
                 IDListTailNode.parseIDListTail(tokenReader);
 
 
-        return new ReadStmtNode(id, idListTail);
+        return new ReadStmtNode(id, symbol, idListTail, start);
     }
 
 }
@@ -44,8 +44,8 @@ public class RelationOptionNode {
     // Member Variables //
     //==================//
 
-    private Operator m_oper;
-    private ArithExprNode m_arithExpr;
+    private final Operator m_oper;
+    private final ArithExprNode m_arithExpr;
 
 
     //=========//
@@ -110,6 +110,21 @@ public class RelationOptionNode {
         return relationOptionVal;
     }
 
+    /**
+     * Accessor for the comparison operator (null if the option is
+     * empty).
+     */
+    public Operator oper() {
+        return m_oper;
+    }
+
+    /**
+     * Accessor for the right-hand arithmetic expression.
+     */
+    public ArithExprNode arithExpr() {
+        return m_arithExpr;
+    }
+
 
     //================//
     // Static Methods //
@@ -181,7 +196,7 @@ public class RelationOptionNode {
         }
 
 
-        return relationOption;
+        return tokenReader.intern(relationOption);
     }
 
 }
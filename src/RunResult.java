@@ -0,0 +1,108 @@
+import java.util.Collections;
+import java.util.Map;
+
+
+/**
+ * The outcome of one run of a CompiledProgram: the final value of
+ * every variable the program assigned or read, and the runtime
+ * error that stopped it, if one did.
+ *
+ * @see CompiledProgram#run(double[], CompiledProgram.OutputSink)
+ */
+public class RunResult {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // The variables' values, by name in alphabetical order.
+    private final Map<String, Double> m_variables;
+
+    // The runtime error's message, or null if the program ran to
+    // completion.
+    private final String m_error;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs the result of a run.
+     *
+     * @param variables The variables' final values, by name
+     * @param error The message of the runtime error that stopped
+     *              the program, or null if it ran to completion
+     */
+    public RunResult(Map<String, Double> variables, String error) {
+        m_variables = Collections.unmodifiableMap(variables);
+        m_error = error;
+    }
+
+    /**
+     * Returns true if the program ran to completion, without a
+     * runtime error.
+     */
+    public boolean completed() {
+        return m_error == null;
+    }
+
+    /**
+     * Accessor for the message of the runtime error that stopped
+     * the program, or null if it ran to completion.
+     */
+    public String error() {
+        return m_error;
+    }
+
+    /**
+     * Accessor for the variables' final values, by name in
+     * alphabetical order. If the program stopped with an error,
+     * these are their values at that point.
+     */
+    public Map<String, Double> variables() {
+        return m_variables;
+    }
+
+    /**
+     * Returns true if the program gave a variable a value.
+     */
+    public boolean isDefined(String id) {
+        return m_variables.containsKey(id);
+    }
+
+    /**
+     * Returns a variable's final value.
+     *
+     * @param id The variable's name
+     *
+     * @throws IllegalArgumentException If the program never gave
+     *                                  the variable a value
+     */
+    public double get(String id) {
+        Double value = m_variables.get(id);
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "Unrecognized variable name: " + id);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the result as the interpreter would print it after a
+     * run: the error, if any, and the symbol table.
+     */
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        if (m_error != null) {
+            text.append(m_error).append('\n');
+        }
+        text.append("Symbol Table:\n");
+        for (Map.Entry<String, Double> variable : m_variables.entrySet()) {
+            text.append(variable.getKey()).append(" = ")
+                    .append(variable.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+}
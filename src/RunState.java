@@ -0,0 +1,95 @@
+/**
+ * The program state of a run of a CompiledProgram, whose I/O goes
+ * through the run's input values and output sink rather than the
+ * console.
+ *
+ * A RunState can be reset and used for run after run, so that a
+ * thread running many keeps one, and its symbol table's capacity,
+ * rather than allocating a new one each time.
+ *
+ * @see CompiledProgram#run(RunState, double[], CompiledProgram.OutputSink)
+ */
+public class RunState extends ProgState {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // The values READ reads, and how many have been read.
+    private double[] m_inputs;
+    private int m_inputCount;
+
+    // Receives the values PRINT prints, or null to discard them.
+    private CompiledProgram.OutputSink m_sink;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a state with no inputs and no sink.
+     *
+     * @param idTable The table of identifiers that the program's
+     *                symbols were interned in
+     */
+    public RunState(IDTable idTable) {
+        super(idTable, null, null);
+        m_inputs = new double[0];
+        m_inputCount = 0;
+        m_sink = null;
+    }
+
+    /**
+     * Returns the state to how it was constructed, as for
+     * ProgState.reset(), and gives it a run's I/O.
+     *
+     * @param inputs The values READ reads, in order, or null if
+     *               the program reads none
+     * @param sink Receives the values PRINT prints, or null to
+     *             discard them
+     */
+    public void reset(double[] inputs, CompiledProgram.OutputSink sink) {
+        reset();
+        m_inputs = (inputs != null) ? inputs : new double[0];
+        m_inputCount = 0;
+        m_sink = sink;
+    }
+
+    /**
+     * Stores the next input value in the identified variable.
+     *
+     * @throws DCRuntimeErrorException If every input value has been
+     *                                 read
+     */
+    @Override
+    public void readVar(int symbol)
+            throws DCRuntimeErrorException
+    {
+        if (m_inputCount == m_inputs.length) {
+            throw new DCRuntimeErrorException(
+                    "No input left to read into variable: " +
+                    symTab().idTable().name(symbol)
+            );
+        }
+        symTab().set(symbol, m_inputs[m_inputCount++]);
+    }
+
+    /**
+     * Hands a printed value to the sink, if there is one.
+     */
+    @Override
+    public void printValue(String id, double value) {
+        if (m_sink != null) {
+            m_sink.print(id, value);
+        }
+    }
+
+    /**
+     * Does nothing: a run's variables are returned, not dumped.
+     */
+    @Override
+    public void dumpSymTab() {
+    }
+
+}
@@ -22,8 +22,8 @@ public class StmtListNode {
     // Member Variables //
     //==================//
 
-    private StmtNode m_stmt;
-    private StmtTailNode m_stmtTail;
+    private final StmtNode m_stmt;
+    private final StmtTailNode m_stmtTail;
 
 
     //=========//
@@ -62,6 +62,20 @@ public class StmtListNode {
         m_stmtTail.execute(progState);
     }
 
+    /**
+     * Accessor for the first statement in the list.
+     */
+    public StmtNode stmt() {
+        return m_stmt;
+    }
+
+    /**
+     * Accessor for the statement tail.
+     */
+    public StmtTailNode stmtTail() {
+        return m_stmtTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -23,14 +23,34 @@ import java.io.IOException;
  */
 public class StmtNode {
 
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // The offset in the source code where the statement starts.
+    private final int m_start;
+
+
     //=========//
     // Methods //
     //=========//
 
     /**
      * Constructs an empty, blank statement node (GR 10).
+     *
+     * @param start The offset in the source code where the
+     *              statement starts
      */
-    public StmtNode() {
+    public StmtNode(int start) {
+        m_start = start;
+    }
+
+    /**
+     * Accessor for the offset in the source code where the
+     * statement starts; a LineIndex maps it to a line and column.
+     */
+    public int start() {
+        return m_start;
     }
 
     /**
@@ -77,6 +97,7 @@ public class StmtNode {
             throws IOException, DCSyntaxErrorException
     {
         StmtNode node;
+        int start = tokenReader.nextTokenStart();
 
 
         //
@@ -85,7 +106,7 @@ public class StmtNode {
         //      stmt : if-stmt
         //
         if (IfStmtNode.detectIfStmt(tokenReader)) {
-            node = IfStmtNode.parseIfStmt(tokenReader);
+            node = IfStmtNode.parseIfStmt(tokenReader, start);
         }
 
         //
@@ -94,7 +115,7 @@ public class StmtNode {
         //      stmt : loop-stmt
         //
         else if (LoopStmtNode.detectLoopStmt(tokenReader)) {
-            node = LoopStmtNode.parseLoopStmt(tokenReader);
+            node = LoopStmtNode.parseLoopStmt(tokenReader, start);
         }
 
         //
@@ -103,7 +124,7 @@ public class StmtNode {
         //      stmt : break-stmt
         //
         else if (BreakStmtNode.detectBreakStmt(tokenReader)) {
-            node = BreakStmtNode.parseBreakStmt(tokenReader);
+            node = BreakStmtNode.parseBreakStmt(tokenReader, start);
         }
 
         //
@@ -112,7 +133,7 @@ public class StmtNode {
         //      stmt : assign-stmt
         //
         else if (AssignStmtNode.detectAssignStmt(tokenReader)) {
-            node = AssignStmtNode.parseAssignStmt(tokenReader);
+            node = AssignStmtNode.parseAssignStmt(tokenReader, start);
         }
 
         //
@@ -121,7 +142,7 @@ public class StmtNode {
         //      stmt : read-stmt
         //
         else if (ReadStmtNode.detectReadStmt(tokenReader)) {
-            node = ReadStmtNode.parseReadStmt(tokenReader);
+            node = ReadStmtNode.parseReadStmt(tokenReader, start);
         }
 
         //
@@ -130,7 +151,7 @@ public class StmtNode {
         //      stmt : print-stmt
         //
         else if (PrintStmtNode.detectPrintStmt(tokenReader)) {
-            node = PrintStmtNode.parsePrintStmt(tokenReader);
+            node = PrintStmtNode.parsePrintStmt(tokenReader, start);
         }
 
         //
@@ -142,10 +163,9 @@ public class StmtNode {
         // If none of the above statement types were found, the
         // statement is empty.
         else {
-            node = new StmtNode();
+            node = new StmtNode(start);
         }
 
-
         return node;
     }
 
@@ -1,4 +1,6 @@
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 
@@ -28,8 +30,8 @@ public class StmtTailNode {
     // Member Variables //
     //==================//
 
-    private StmtNode m_stmt;
-    private StmtTailNode m_stmtTail;
+    private final StmtNode m_stmt;
+    private final StmtTailNode m_stmtTail;
 
 
     //=========//
@@ -59,22 +61,38 @@ public class StmtTailNode {
      * Executes the statement and subsequent statement tail in
      * this statement tail.
      *
+     * The chain of tails is as long as the statement list, so it's
+     * walked rather than recursed down.
+     *
      * @param progState The current program state
      */
     public void execute(ProgState progState)
             throws DCRuntimeErrorException
     {
-        if (m_stmt != null && progState.breakName() == null) {
-            // Execute child stmt.
-            m_stmt.execute(progState);
-
-            // Execute child stmt-tail unless the preceding
-            // statement was a "BREAK", in which case the break
-            // flag will be set.
-            m_stmtTail.execute(progState);
+        // Execute each tail's stmt in turn, stopping after a
+        // "BREAK", in which case the break flag will be set.
+        for (StmtTailNode tail = this; tail.m_stmt != null &&
+                progState.breakID() == IDTable.NONE; tail = tail.m_stmtTail)
+        {
+            tail.m_stmt.execute(progState);
         }
     }
 
+    /**
+     * Accessor for the statement (null if the tail is empty).
+     */
+    public StmtNode stmt() {
+        return m_stmt;
+    }
+
+    /**
+     * Accessor for the subsequent statement tail (null if the
+     * tail is empty).
+     */
+    public StmtTailNode stmtTail() {
+        return m_stmtTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -87,6 +105,8 @@ public class StmtTailNode {
      * Statement tails appear at the end of statement lists and at
      * the end of other (non-empty) statement tails. When this
      * method is called a statement tail is imminently expected.
+     * The tails that follow it are parsed in a loop, not by
+     * recursion, since there are as many as there are statements.
      *
      * @param tokenReader The TokenReader from which source code
      *                    tokens will be read
@@ -97,31 +117,31 @@ public class StmtTailNode {
     public static StmtTailNode parseStmtTail(TokenReader tokenReader)
             throws IOException, DCSyntaxErrorException
     {
+        List<StmtNode> stmts = new ArrayList<StmtNode>();
         Stack<TokenDescriptor> toReplace = new Stack<TokenDescriptor>();
-        StmtTailNode stmtTail;
         TokenDescriptor token;
 
-        // Eat leading spaces.
-        do {
-            token = tokenReader.getToken();
-            toReplace.push(token);
-        } while (token.getCode() == TokenCode.T_SPACE);
-
-
-        //
-        // GR 2.
-        //
-        //      stmt-tail : SEMICOLON stmt stmt-tail
-        //
-
-        // Look for semicolon.
-        if (token.getCode() == TokenCode.T_SEMICOLON) {
-            // After semicolon, get "stmt" and "stmt-tail".
-            StmtNode stmt = StmtNode.parseStmt(tokenReader);
-            StmtTailNode nextStmtTail =
-                    StmtTailNode.parseStmtTail(tokenReader);
-
-            stmtTail = new StmtTailNode(stmt, nextStmtTail);
+        while (true) {
+            // Eat leading spaces.
+            toReplace.clear();
+            do {
+                token = tokenReader.getToken();
+                toReplace.push(token);
+            } while (token.getCode() == TokenCode.T_SPACE);
+
+
+            //
+            // GR 2.
+            //
+            //      stmt-tail : SEMICOLON stmt stmt-tail
+            //
+
+            // Look for semicolon; after it, get "stmt", and go
+            // round again for "stmt-tail".
+            if (token.getCode() != TokenCode.T_SEMICOLON) {
+                break;
+            }
+            stmts.add(StmtNode.parseStmt(tokenReader));
         }
 
         //
@@ -131,12 +151,15 @@ public class StmtTailNode {
         //
 
         // If no semicolon, the statement tail is blank.
-        else {
-            // Unread all the tokens we just read.
-            while (!toReplace.isEmpty()) {
-                tokenReader.unread(toReplace.pop());
-            }
-            stmtTail = new StmtTailNode(null, null);
+        // Unread all the tokens we just read.
+        while (!toReplace.isEmpty()) {
+            tokenReader.unread(toReplace.pop());
+        }
+        StmtTailNode stmtTail = new StmtTailNode(null, null);
+
+        // Build the chain of tails from the last.
+        for (int i = stmts.size() - 1; i >= 0; i--) {
+            stmtTail = new StmtTailNode(stmts.get(i), stmtTail);
         }
 
 
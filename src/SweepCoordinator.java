@@ -0,0 +1,565 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Runs one program over a table of rows of READ inputs too large
+ * for one JVM, by splitting it into shards of rows and handing them
+ * to SweepWorker processes, and writes every row's report, in the
+ * order of the rows, to one output.
+ *
+ * Workers connect over TCP: the coordinator launches some on this
+ * machine, and any number more can connect from elsewhere. Each
+ * asks for a shard whenever it has finished its last one, so faster
+ * workers run more of them. Shards are read from the input only a
+ * few at a time ahead of the output, and a shard's reports are kept
+ * only until those before it have been written, so neither the
+ * coordinator's memory nor any worker's grows with the table.
+ *
+ * A shard whose worker is lost, by crashing or by its connection
+ * failing, goes back to the front of the queue for another; a local
+ * worker that exits before the sweep is over is launched again. A
+ * shard that's lost too many workers, or a local worker that keeps
+ * exiting, fails the sweep.
+ *
+ * @see SweepProtocol
+ */
+public class SweepCoordinator {
+
+    //=============//
+    // Local Types //
+    //=============//
+
+    /**
+     * A shard of rows, and the workers lost while running it.
+     */
+    private static class Shard {
+
+        private final int m_number;
+        private final long m_firstRow;
+        private final int m_rowCount;
+        private final String m_lines;
+        private int m_lostCount;
+
+        Shard(int number, long firstRow, List<String> lines) {
+            m_number = number;
+            m_firstRow = firstRow;
+            m_rowCount = lines.size();
+            m_lines = SweepProtocol.joinLines(lines);
+            m_lostCount = 0;
+        }
+
+    }
+
+
+    //===========//
+    // Constants //
+    //===========//
+
+    // The workers a shard may be lost with before the sweep fails.
+    private static final int MAX_LOST = 3;
+
+    // The times a local worker is launched again before the sweep
+    // fails.
+    private static final int MAX_RESTARTS = 5;
+
+    // The shards read ahead of the output, per connected worker.
+    private static final int SHARDS_AHEAD = 4;
+
+    // How long to wait, after the sweep, for local workers to exit.
+    private static final long EXIT_WAIT_MILLIS = 10000;
+
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    // The program.
+    private final String m_fileName;
+    private final byte[] m_source;
+    private final int m_optLevel;
+    private final boolean m_lanes;
+
+    // The rows in a shard.
+    private final int m_shardRows;
+
+    // Where the sweep reads rows and writes reports, and messages
+    // about workers.
+    private BufferedReader m_input;
+    private Writer m_output;
+    private PrintStream m_log;
+
+    // Shards to run again, the reports of shards run but not yet
+    // written, the shards read, the next shard to write, and the
+    // shards being run.
+    private final ArrayDeque<Shard> m_lost;
+    private final Map<Integer, String> m_reports;
+    private int m_shardCount;
+    private int m_nextShard;
+    private int m_runningCount;
+
+    private boolean m_inputDone;
+    private boolean m_complete;
+
+    // Why the sweep failed, or null.
+    private String m_failure;
+
+    private int m_workerCount;
+    private long m_rowCount;
+    private long m_errorCount;
+    private long m_fallbackCount;
+    private int m_restartCount;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a coordinator for a program.
+     *
+     * @param fileName The name of the program's source file, which
+     *                 workers report syntax errors against
+     * @param source The program's source code, which must already
+     *               be known to compile
+     * @param optLevel The optimization level workers compile it at
+     * @param lanes True if workers run rows on lane engines
+     * @param shardRows The rows in a shard
+     */
+    public SweepCoordinator(String fileName, byte[] source, int optLevel,
+                            boolean lanes, int shardRows) {
+        m_fileName = fileName;
+        m_source = source;
+        m_optLevel = optLevel;
+        m_lanes = lanes;
+        m_shardRows = shardRows;
+        m_lost = new ArrayDeque<Shard>();
+        m_reports = new HashMap<Integer, String>();
+        m_shardCount = 0;
+        m_nextShard = 0;
+        m_runningCount = 0;
+        m_inputDone = false;
+        m_complete = false;
+        m_failure = null;
+        m_workerCount = 0;
+        m_rowCount = 0;
+        m_errorCount = 0;
+        m_fallbackCount = 0;
+        m_restartCount = 0;
+    }
+
+    /**
+     * Runs the sweep: accepts workers' connections, launches the
+     * local workers, and returns when every row's report has been
+     * written.
+     *
+     * @param in Reads the rows of input values, as BatchRunner does
+     * @param out Receives the reports
+     * @param server Accepts workers' connections; it's closed when
+     *               the sweep is over
+     * @param localWorkers The workers to launch on this machine
+     * @param workerThreads The threads each local worker runs rows
+     *                      on
+     * @param log Receives a line for each local worker launched
+     *            again
+     *
+     * @throws IOException If the sweep failed, or reading or
+     *                     writing did
+     */
+    public void run(BufferedReader in, Writer out, final ServerSocket server,
+                    int localWorkers, final int workerThreads,
+                    PrintStream log)
+            throws IOException
+    {
+        m_input = in;
+        m_output = out;
+        m_log = log;
+
+        Thread acceptor = new Thread(new Runnable() {
+            public void run() {
+                accept(server);
+            }
+        }, "sweep-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        final List<Process> processes = new ArrayList<Process>();
+        Thread[] supervisors = new Thread[localWorkers];
+        for (int i = 0; i < localWorkers; i++) {
+            final int worker = i + 1;
+            supervisors[i] = new Thread(new Runnable() {
+                public void run() {
+                    supervise(worker, server.getLocalPort(), workerThreads,
+                            processes);
+                }
+            }, "sweep-worker-" + worker);
+            supervisors[i].setDaemon(true);
+            supervisors[i].start();
+        }
+
+        try {
+            synchronized (this) {
+                while (!m_complete && m_failure == null) {
+                    wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail("Interrupted");
+        } finally {
+            server.close();
+        }
+
+        // Workers exit once told there are no more shards; after a
+        // failure, they're not waited for.
+        boolean failed;
+        synchronized (this) {
+            failed = (m_failure != null);
+        }
+        try {
+            long deadline = System.currentTimeMillis() + EXIT_WAIT_MILLIS;
+            for (Thread supervisor : supervisors) {
+                long wait = deadline - System.currentTimeMillis();
+                if (!failed && wait > 0) {
+                    supervisor.join(wait);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (processes) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+
+        synchronized (this) {
+            if (m_failure != null) {
+                throw new IOException(m_failure);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Accessor for the number of rows run.
+     */
+    public synchronized long rowCount() {
+        return m_rowCount;
+    }
+
+    /**
+     * Accessor for the number of shards the rows were split into.
+     */
+    public synchronized int shardCount() {
+        return m_shardCount;
+    }
+
+    /**
+     * Accessor for the number of rows that an error stopped.
+     */
+    public synchronized long errorCount() {
+        return m_errorCount;
+    }
+
+    /**
+     * Accessor for the number of rows that the workers' lane engines
+     * dropped and that were run again one at a time.
+     */
+    public synchronized long fallbackCount() {
+        return m_fallbackCount;
+    }
+
+    /**
+     * Accessor for the number of times a local worker was launched
+     * again.
+     */
+    public synchronized int restartCount() {
+        return m_restartCount;
+    }
+
+    /**
+     * Accepts workers' connections, serving each on a thread of its
+     * own, until the server is closed.
+     */
+    private void accept(ServerSocket server) {
+        for (;;) {
+            final Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                return;
+            }
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    serve(socket);
+                }
+            }, "sweep-connection");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Serves a worker's connection: sends it the program, then
+     * shards, until there are no more or the worker is lost.
+     */
+    private void serve(Socket socket) {
+        boolean connected = false;
+        Shard shard = null;
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(),
+                                             1 << 16));
+
+            SweepProtocol.readHeader(in);
+            SweepProtocol.writeHeader(out);
+            SweepProtocol.writeText(out, m_fileName);
+            out.writeInt(m_optLevel);
+            out.writeBoolean(m_lanes);
+            SweepProtocol.writeBytes(out, m_source);
+            out.flush();
+            connected = true;
+            synchronized (this) {
+                m_workerCount++;
+                notifyAll();
+            }
+
+            while ((shard = take()) != null) {
+                out.writeByte(SweepProtocol.SHARD);
+                out.writeInt(shard.m_number);
+                out.writeLong(shard.m_firstRow);
+                out.writeInt(shard.m_rowCount);
+                SweepProtocol.writeText(out, shard.m_lines);
+                out.flush();
+
+                if (in.readByte() != SweepProtocol.RESULT ||
+                        in.readInt() != shard.m_number)
+                {
+                    throw new IOException("Invalid sweep message");
+                }
+                long errorCount = in.readLong();
+                long fallbackCount = in.readLong();
+                String reports = SweepProtocol.readText(in);
+                complete(shard, errorCount, fallbackCount, reports);
+                shard = null;
+            }
+            out.writeByte(SweepProtocol.DONE);
+            out.flush();
+        } catch (IOException e) {
+            // The worker is lost.
+        } finally {
+            if (shard != null) {
+                lost(shard);
+            }
+            if (connected) {
+                synchronized (this) {
+                    m_workerCount--;
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // It's closed either way.
+            }
+        }
+    }
+
+    /**
+     * Launches a local worker, and launches it again whenever it
+     * exits before the sweep is over.
+     *
+     * @param worker The worker's number, from 1
+     * @param port The port the coordinator listens on
+     * @param threads The threads the worker runs rows on
+     * @param processes The local workers' processes, to which the
+     *                  worker's are added
+     */
+    private void supervise(int worker, int port, int threads,
+                           List<Process> processes) {
+        String java = Paths.get(System.getProperty("java.home"), "bin",
+                "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+                System.getProperty("java.class.path"), "Descartes", "worker",
+                "--threads", Integer.toString(threads),
+                "127.0.0.1:" + port);
+        builder.inheritIO();
+
+        for (int restarts = 0; ; restarts++) {
+            int status;
+            try {
+                Process process = builder.start();
+                synchronized (processes) {
+                    processes.add(process);
+                }
+                status = process.waitFor();
+                synchronized (processes) {
+                    processes.remove(process);
+                }
+            } catch (IOException e) {
+                fail("Couldn't launch worker " + worker + ": " +
+                        e.getMessage());
+                return;
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            synchronized (this) {
+                if (m_complete || m_failure != null) {
+                    return;
+                } else if (restarts == MAX_RESTARTS) {
+                    fail("Worker " + worker + " exited with status " +
+                            status + " " + (MAX_RESTARTS + 1) + " times");
+                    return;
+                }
+                m_restartCount++;
+            }
+            m_log.println("Worker " + worker + " exited with status " +
+                    status + "; launching it again.");
+        }
+    }
+
+    /**
+     * Returns the next shard to run: a lost one, or else the next
+     * one read, as long as the output isn't too far behind; or null
+     * once the sweep is over.
+     */
+    private synchronized Shard take()
+            throws InterruptedIOException
+    {
+        for (;;) {
+            if (m_complete || m_failure != null) {
+                return null;
+            } else if (!m_lost.isEmpty()) {
+                m_runningCount++;
+                return m_lost.poll();
+            } else if (!m_inputDone && m_shardCount - m_nextShard <
+                    SHARDS_AHEAD * Math.max(m_workerCount, 1))
+            {
+                Shard shard = readShard();
+                if (shard != null) {
+                    m_runningCount++;
+                    return shard;
+                }
+                checkComplete();
+                continue;
+            }
+
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * Reads the next shard's rows, skipping blank lines and lines
+     * starting with '#', and returns the shard, or null at the end
+     * of the input.
+     */
+    private Shard readShard() {
+        List<String> lines = new ArrayList<String>(m_shardRows);
+        try {
+            String line;
+            while (lines.size() < m_shardRows &&
+                    (line = m_input.readLine()) != null) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    lines.add(trimmed);
+                }
+            }
+        } catch (IOException e) {
+            fail("Couldn't read the input: " + e.getMessage());
+            return null;
+        }
+        if (lines.size() < m_shardRows) {
+            m_inputDone = true;
+        }
+        if (lines.isEmpty()) {
+            return null;
+        }
+
+        Shard shard = new Shard(m_shardCount++, m_rowCount, lines);
+        m_rowCount += lines.size();
+        return shard;
+    }
+
+    /**
+     * Takes a shard's reports, and writes those of every shard whose
+     * turn it now is.
+     */
+    private synchronized void complete(Shard shard, long errorCount,
+                                       long fallbackCount, String reports) {
+        m_runningCount--;
+        if (m_failure != null) {
+            return;
+        }
+        m_errorCount += errorCount;
+        m_fallbackCount += fallbackCount;
+        m_reports.put(shard.m_number, reports);
+        try {
+            String next;
+            while ((next = m_reports.remove(m_nextShard)) != null) {
+                m_output.write(next);
+                m_nextShard++;
+            }
+        } catch (IOException e) {
+            fail("Couldn't write the output: " + e.getMessage());
+            return;
+        }
+        checkComplete();
+        notifyAll();
+    }
+
+    /**
+     * Puts a shard whose worker was lost back at the front of the
+     * queue, or fails the sweep if it's been lost too often.
+     */
+    private synchronized void lost(Shard shard) {
+        m_runningCount--;
+        if (++shard.m_lostCount == MAX_LOST) {
+            fail("Lost " + MAX_LOST + " workers running rows " +
+                    (shard.m_firstRow + 1) + " to " +
+                    (shard.m_firstRow + shard.m_rowCount));
+            return;
+        }
+        m_lost.addFirst(shard);
+        notifyAll();
+    }
+
+    private synchronized void checkComplete() {
+        if (m_inputDone && m_lost.isEmpty() && m_runningCount == 0 &&
+                m_nextShard == m_shardCount) {
+            m_complete = true;
+            notifyAll();
+        }
+    }
+
+    private synchronized void fail(String failure) {
+        if (m_failure == null) {
+            m_failure = failure;
+        }
+        notifyAll();
+    }
+
+}
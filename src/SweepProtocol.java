@@ -0,0 +1,166 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * The messages between a SweepCoordinator and its SweepWorkers, over
+ * a TCP connection that the worker opens, whether from the same
+ * machine or another.
+ *
+ * Messages are written with DataOutputStream, big-endian, and text
+ * is sent as a length and that many Latin-1 bytes. A connection
+ * goes:
+ *
+ * <pre>
+ *     worker:      MAGIC, VERSION
+ *     coordinator: MAGIC, VERSION, the source file's name, the
+ *                  optimization level, whether to run on lanes,
+ *                  and the program's source code
+ *     then, until the coordinator sends DONE:
+ *     coordinator: SHARD, the shard's number, its first row's index,
+ *                  its row count, and its rows' lines, each ended
+ *                  by '\n'
+ *     worker:      RESULT, the shard's number, the rows stopped by
+ *                  errors, the rows the lane engines dropped, and
+ *                  the rows' reports
+ * </pre>
+ *
+ * A worker that loses its connection exits; the coordinator gives a
+ * shard whose worker was lost to another.
+ */
+public class SweepProtocol {
+
+    //===========//
+    // Constants //
+    //===========//
+
+    /** Begins both sides' first message. */
+    public static final int MAGIC = 0x44435357;  // "DCSW"
+
+    /**
+     * The version of the messages, which both sides must agree on.
+     */
+    public static final int VERSION = 1;
+
+    /** A shard of rows to run. */
+    public static final byte SHARD = 1;
+    /** No more shards: the worker exits. */
+    public static final byte DONE = 2;
+    /** The reports of a shard's rows. */
+    public static final byte RESULT = 3;
+
+    // The longest text either side accepts, in bytes.
+    private static final int MAX_TEXT_BYTES = 1 << 30;
+
+
+    //================//
+    // Static Methods //
+    //================//
+
+    /**
+     * Writes a side's MAGIC and VERSION.
+     */
+    public static void writeHeader(DataOutputStream out)
+            throws IOException
+    {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+    }
+
+    /**
+     * Reads the other side's MAGIC and VERSION.
+     *
+     * @throws IOException If they aren't this side's
+     */
+    public static void readHeader(DataInputStream in)
+            throws IOException
+    {
+        int magic = in.readInt();
+        int version = in.readInt();
+        if (magic != MAGIC) {
+            throw new IOException("Not a sweep connection");
+        } else if (version != VERSION) {
+            throw new IOException("Unsupported sweep protocol version: " +
+                    version);
+        }
+    }
+
+    /**
+     * Writes text as its length and its Latin-1 bytes.
+     */
+    public static void writeText(DataOutputStream out, String text)
+            throws IOException
+    {
+        writeBytes(out, text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Writes bytes as their length and themselves.
+     */
+    public static void writeBytes(DataOutputStream out, byte[] bytes)
+            throws IOException
+    {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads text written by writeText().
+     */
+    public static String readText(DataInputStream in)
+            throws IOException
+    {
+        return new String(readBytes(in), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads bytes written by writeBytes().
+     *
+     * @throws IOException If the length is negative or too long
+     */
+    public static byte[] readBytes(DataInputStream in)
+            throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_TEXT_BYTES) {
+            throw new IOException("Invalid sweep message length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns lines joined into one text, each ended by '\n'.
+     */
+    public static String joinLines(List<String> lines) {
+        int length = 0;
+        for (String line : lines) {
+            length += line.length() + 1;
+        }
+        StringBuilder text = new StringBuilder(length);
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        return text.toString();
+    }
+
+    /**
+     * Splits text joined by joinLines() back into its lines.
+     */
+    public static String[] splitLines(String text) {
+        List<String> lines = new ArrayList<String>();
+        int start = 0;
+        int end;
+        while ((end = text.indexOf('\n', start)) >= 0) {
+            lines.add(text.substring(start, end));
+            start = end + 1;
+        }
+        return lines.toArray(new String[0]);
+    }
+
+}
@@ -0,0 +1,137 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Runs shards of a sweep's rows for a SweepCoordinator, which may be
+ * on this machine or another: connects to it, compiles the program
+ * it sends, and runs each shard it's given on a BatchRunner, until
+ * it's told there are no more.
+ *
+ * @see SweepProtocol
+ */
+public class SweepWorker {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private final Socket m_socket;
+    private final DataInputStream m_in;
+    private final DataOutputStream m_out;
+
+    // The threads that run each shard's rows.
+    private final int m_threads;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Connects a worker to its coordinator.
+     *
+     * @param host The coordinator's host
+     * @param port The port it listens on
+     * @param threads The threads to run each shard's rows on
+     */
+    public SweepWorker(String host, int port, int threads)
+            throws IOException
+    {
+        m_socket = new Socket(host, port);
+        m_socket.setTcpNoDelay(true);
+        m_in = new DataInputStream(new BufferedInputStream(
+                m_socket.getInputStream(), 1 << 16));
+        m_out = new DataOutputStream(new BufferedOutputStream(
+                m_socket.getOutputStream(), 1 << 16));
+        m_threads = threads;
+    }
+
+    /**
+     * Runs shards until the coordinator has no more, then closes
+     * the connection.
+     *
+     * @return The number of shards run
+     *
+     * @throws IOException If the connection fails, or the
+     *                     coordinator doesn't follow the protocol
+     * @throws DCSyntaxErrorException If the program has a syntax
+     *                                error
+     */
+    public int run()
+            throws IOException, DCSyntaxErrorException
+    {
+        ForkJoinPool pool = null;
+        try {
+            SweepProtocol.writeHeader(m_out);
+            m_out.flush();
+
+            SweepProtocol.readHeader(m_in);
+            String fileName = SweepProtocol.readText(m_in);
+            int optLevel = m_in.readInt();
+            boolean lanes = m_in.readBoolean();
+            byte[] source = SweepProtocol.readBytes(m_in);
+            if (optLevel < 0 || optLevel > 2) {
+                throw new IOException("Invalid optimization level: " +
+                        optLevel);
+            }
+
+            CompiledProgram program = Descartes.compile(fileName, source,
+                    optLevel);
+            CompactTree laneTree = null;
+            if (lanes) {
+                laneTree = CompactTreeBuilder.build(new TokenReader(fileName,
+                        source, 0, source.length, new IDTable()));
+            }
+            pool = new ForkJoinPool(m_threads);
+            BatchRunner runner = new BatchRunner(program, laneTree,
+                    LaneEngine.LANES, pool);
+
+            int shardCount = 0;
+            for (;;) {
+                byte type = m_in.readByte();
+                if (type == SweepProtocol.DONE) {
+                    return shardCount;
+                } else if (type != SweepProtocol.SHARD) {
+                    throw new IOException("Invalid sweep message: " + type);
+                }
+                int shard = m_in.readInt();
+                long firstRow = m_in.readLong();
+                int rowCount = m_in.readInt();
+                String[] lines = SweepProtocol.splitLines(
+                        SweepProtocol.readText(m_in));
+                if (lines.length != rowCount) {
+                    throw new IOException("Shard " + shard + " has " +
+                            lines.length + " rows, not " + rowCount);
+                }
+
+                long errorCount = runner.errorCount();
+                long fallbackCount = runner.fallbackCount();
+                String[] reports = runner.run(lines, firstRow);
+                StringBuilder text = new StringBuilder();
+                for (String report : reports) {
+                    text.append(report);
+                }
+
+                m_out.writeByte(SweepProtocol.RESULT);
+                m_out.writeInt(shard);
+                m_out.writeLong(runner.errorCount() - errorCount);
+                m_out.writeLong(runner.fallbackCount() - fallbackCount);
+                SweepProtocol.writeText(m_out, text.toString());
+                m_out.flush();
+                shardCount++;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            m_socket.close();
+        }
+    }
+
+}
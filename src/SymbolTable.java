@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+
+/**
+ * Maps variables to their values.
+ *
+ * Variables are identified by their IDTable symbols, which index
+ * the table's arrays directly: reads and writes do no hashing and
+ * assignments don't box their values. The arrays grow as needed,
+ * so the table can be created before the program is parsed.
+ *
+ * A variable that was never assigned is undefined and isn't
+ * listed by names().
+ */
+public class SymbolTable {
+
+    //==================//
+    // Member Variables //
+    //==================//
+
+    private IDTable m_idTable;
+    private double[] m_values;
+    private boolean[] m_defined;
+
+
+    //=========//
+    // Methods //
+    //=========//
+
+    /**
+     * Constructs a new, empty symbol table.
+     *
+     * @param idTable The table of identifiers whose symbols name
+     *                the variables
+     */
+    public SymbolTable(IDTable idTable) {
+        m_idTable = idTable;
+        m_values = new double[Math.max(idTable.size(), 16)];
+        m_defined = new boolean[m_values.length];
+    }
+
+    /**
+     * Accessor for the identifier table.
+     */
+    public IDTable idTable() {
+        return m_idTable;
+    }
+
+    /**
+     * Returns true if the variable has a value.
+     */
+    public boolean isDefined(int symbol) {
+        return symbol < m_defined.length && m_defined[symbol];
+    }
+
+    /**
+     * Returns the value of the variable, which must be defined.
+     */
+    public double get(int symbol) {
+        return m_values[symbol];
+    }
+
+    /**
+     * Sets the value of a variable.
+     */
+    public void set(int symbol, double value) {
+        if (symbol >= m_values.length) {
+            int capacity = Math.max(symbol + 1, m_values.length * 2);
+            m_values = Arrays.copyOf(m_values, capacity);
+            m_defined = Arrays.copyOf(m_defined, capacity);
+        }
+        m_values[symbol] = value;
+        m_defined[symbol] = true;
+    }
+
+    /**
+     * Undefines every variable, keeping the table's capacity.
+     */
+    public void clear() {
+        Arrays.fill(m_defined, false);
+    }
+
+    /**
+     * Returns true if the identified variable has a value.
+     */
+    public boolean containsKey(String id) {
+        int symbol = m_idTable.lookup(id);
+        return symbol != IDTable.NONE && isDefined(symbol);
+    }
+
+    /**
+     * Returns the value of the identified variable, which must be
+     * defined.
+     */
+    public double get(String id) {
+        return get(m_idTable.lookup(id));
+    }
+
+    /**
+     * Sets the value of the identified variable.
+     */
+    public void put(String id, double value) {
+        set(m_idTable.intern(id), value);
+    }
+
+    /**
+     * Returns the identifiers of the defined variables in
+     * alphabetical order.
+     */
+    public String[] names() {
+        String[] names = new String[m_defined.length];
+        int count = 0;
+        for (int i = 0; i < m_defined.length; i++) {
+            if (m_defined[i]) {
+                names[count++] = m_idTable.name(i);
+            }
+        }
+
+        names = Arrays.copyOf(names, count);
+        Arrays.sort(names);
+        return names;
+    }
+
+}
@@ -21,8 +21,8 @@ public class TermNode {
     // Member Variables //
     //==================//
 
-    private FactorNode m_factor;
-    private FactorTailNode m_factorTail;
+    private final FactorNode m_factor;
+    private final FactorTailNode m_factorTail;
 
 
     //=========//
@@ -61,6 +61,20 @@ public class TermNode {
         return factorVal;
     }
 
+    /**
+     * Accessor for the first factor.
+     */
+    public FactorNode factor() {
+        return m_factor;
+    }
+
+    /**
+     * Accessor for the factor tail.
+     */
+    public FactorTailNode factorTail() {
+        return m_factorTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -95,7 +109,7 @@ public class TermNode {
                 FactorTailNode.parseFactorTail(tokenReader);
 
 
-        return new TermNode(factor, factorTail);
+        return tokenReader.intern(new TermNode(factor, factorTail));
     }
 
 }
@@ -35,10 +35,10 @@ public class TermTailNode {
     // Member Variables //
     //==================//
 
-    private TermNode m_term;
-    private TermTailNode m_termTail;
+    private final TermNode m_term;
+    private final TermTailNode m_termTail;
 
-    public Operator m_oper;
+    private final Operator m_oper;
 
 
     //=========//
@@ -104,6 +104,27 @@ public class TermTailNode {
         return termVal;
     }
 
+    /**
+     * Accessor for the operator (null if the tail is empty).
+     */
+    public Operator oper() {
+        return m_oper;
+    }
+
+    /**
+     * Accessor for the term.
+     */
+    public TermNode term() {
+        return m_term;
+    }
+
+    /**
+     * Accessor for the subsequent term tail.
+     */
+    public TermTailNode termTail() {
+        return m_termTail;
+    }
+
 
     //================//
     // Static Methods //
@@ -175,7 +196,7 @@ public class TermTailNode {
         }
 
 
-        return termTail;
+        return tokenReader.intern(termTail);
     }
 
 }
@@ -1,3 +1,6 @@
+import java.nio.charset.StandardCharsets;
+
+
 /**
  * Encapsulates a token that's read from a Descartes source code
  * file.
@@ -12,6 +15,15 @@ public class TokenDescriptor {
 
     private String m_text;
     private TokenCode m_code;
+    private int m_symbol;
+    private double m_value;
+
+    // Where the token appears in the source code. The text of a
+    // numeric constant is only extracted from m_source when it's
+    // asked for.
+    private byte[] m_source;
+    private int m_start;
+    private int m_end;
 
 
     /**
@@ -22,15 +34,65 @@ public class TokenDescriptor {
      * @param code One of the token values from the enum TokenCode
      */
     public TokenDescriptor(String text, TokenCode code) {
+        this(text, code, IDTable.NONE);
+    }
+
+    /**
+     * Constructs a new TokenDescriptor for an identifier token.
+     *
+     * @param text The literal text that constitutes the token
+     * @param code One of the token values from the enum TokenCode
+     * @param symbol The identifier's symbol in the reader's
+     *               IDTable
+     */
+    public TokenDescriptor(String text, TokenCode code, int symbol) {
+        this(text, code, symbol, 0, 0);
+    }
+
+    /**
+     * Constructs a new TokenDescriptor for a token read from the
+     * specified range of the source code.
+     *
+     * @param text The literal text that constitutes the token
+     * @param code One of the token values from the enum TokenCode
+     * @param symbol The identifier's symbol in the reader's
+     *               IDTable, or IDTable.NONE
+     * @param start The offset of the token in the source code
+     * @param end The offset following the token
+     */
+    public TokenDescriptor(String text, TokenCode code, int symbol,
+                           int start, int end) {
         m_text = text;
         m_code = code;
+        m_symbol = symbol;
+        m_start = start;
+        m_end = end;
+    }
+
+    /**
+     * Constructs a new TokenDescriptor for a numeric constant.
+     *
+     * @param source The source code buffer the constant was read
+     *               from
+     * @param start The offset of the constant in the buffer
+     * @param end The offset following the constant
+     * @param value The value of the constant
+     */
+    public TokenDescriptor(byte[] source, int start, int end,
+                           double value) {
+        m_code = TokenCode.T_CONST;
+        m_symbol = IDTable.NONE;
+        m_value = value;
+        m_source = source;
+        m_start = start;
+        m_end = end;
     }
 
     /**
      * Prints the token/code pair on the console.
      */
     public void print() {
-        System.out.println(m_text + "\t(ID: " + m_code + ")");
+        System.out.println(getText() + "\t(ID: " + m_code + ")");
     }
 
     /**
@@ -38,6 +100,10 @@ public class TokenDescriptor {
      * code.
      */
     public String getText() {
+        if (m_text == null) {
+            m_text = new String(m_source, m_start, m_end - m_start,
+                    StandardCharsets.ISO_8859_1);
+        }
         return m_text;
     }
 
@@ -49,4 +115,33 @@ public class TokenDescriptor {
         return m_code;
     }
 
+    /**
+     * Returns the interned symbol of an identifier token, or
+     * IDTable.NONE if this isn't one.
+     */
+    public int getSymbol() {
+        return m_symbol;
+    }
+
+    /**
+     * Returns the value of a numeric constant token.
+     */
+    public double getValue() {
+        return m_value;
+    }
+
+    /**
+     * Returns the offset of the token in the source code.
+     */
+    public int getStart() {
+        return m_start;
+    }
+
+    /**
+     * Returns the offset following the token in the source code.
+     */
+    public int getEnd() {
+        return m_end;
+    }
+
 }
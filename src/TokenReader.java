@@ -11,7 +11,9 @@
 
 
 import java.io.*;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This class is used to tokenize Descartes 2 source code for the
@@ -22,33 +24,81 @@ import java.util.HashMap;
  */
 public class TokenReader {
 
+    //===========//
+    // Constants //
+    //===========//
+
+    // Marks the ASCII characters that appear in operators. This
+    // and the recognizers in the Static Methods section replace
+    // per-reader keyword and operator dictionaries: they're
+    // shared by all readers and never allocate.
+    private static final boolean[] PUNCT_CHARS = new boolean[128];
+
+    // The text of each single-character operator token, indexed
+    // by the character.
+    private static final String[] PUNCT_TEXT = new String[128];
+
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    // Sources at least this long are read in parallel by
+    // readInParallel().
+    private static final int PARALLEL_THRESHOLD = Integer.getInteger(
+            "descartes.lexer.parallelThreshold", 4 << 20);
+
+    static {
+        for (char ch : ".*()/+-<>=:;,".toCharArray()) {
+            PUNCT_CHARS[ch] = true;
+            PUNCT_TEXT[ch] = String.valueOf(ch).intern();
+        }
+    }
+
+
     //==================//
     // Member Variables //
     //==================//
 
-    // A dictionary that associates keyword string literals
-    // (like "IF", "THEN", "ELSE") with their corresponding
-    // token codes.
-    private HashMap<String, TokenCode> m_keywords;
-
-    // A similar dictionary that stores the full text of
-    // operators.
-    private HashMap<String, TokenCode> m_operators;
-
-    // A PushbackInputStream is used for reading input. This
-    // allows a token to be read and examined, and then replaced
-    // in the input stream until the proper token-reading method
-    // can be called.
-    private PushbackInputStream m_inStream;
+    // The source code is read into a buffer as it's needed, in
+    // whatever amounts the stream has ready, so a program can be
+    // tokenized while it's still arriving through a pipe or a
+    // socket. m_buf[m_pos] is the next character to read, and
+    // m_end is the end of what's been read so far. Nothing is
+    // discarded, which allows a token to be read and examined,
+    // and then "unread" by moving m_pos back to its start, until
+    // the proper token-reading method can be called.
+    private InputStream m_stream;
+    private byte[] m_buf;
+    private int m_pos;
+    private int m_end;
+    private boolean m_eof;
 
     // Store the name of the input file locally. This is used for
     // intelligent syntax error reporting.
     private String m_fileName;
 
-    // Keeps track of the line number in the source code file
-    // being read. This is used for intelligent syntax error
-    // reporting.
-    private int m_lineNum;
+    // The offset of the token being read, or last read, which is
+    // where syntax errors are reported. Line and column numbers
+    // are only worked out from it, by m_lineIndex, when an error
+    // is actually reported.
+    private int m_tokenStart;
+    private LineIndex m_lineIndex;
+
+    // Interns the identifiers read, so that each is hashed once
+    // here and referred to by symbol from then on.
+    private IDTable m_idTable;
+
+    // If the source has been read in parallel, getToken() returns
+    // these tokens in turn instead of reading them; m_pos is kept
+    // at the end of the last one returned. A reader made to
+    // read a range of another's tokens stops at m_tokenLimit.
+    private PackedTokens m_tokens;
+    private int m_tokenIndex;
+    private int m_tokenLimit;
+
+    // True if LOOP, IF and ELSE bodies are to be parsed lazily.
+    private boolean m_lazyBodies;
+
+    // Hash-conses the expression nodes parsed, if not null.
+    private ExprInterner m_exprInterner;
 
 
     /**
@@ -58,59 +108,90 @@ public class TokenReader {
      * @param stream The stream to read source code from
      */
     public TokenReader(String fileName, InputStream stream) {
-        // Create a PushbackInputStream to read code from. This
-        // allows characters to be "unread" back to the stream for
-        // later use.
-        m_inStream = new PushbackInputStream(stream, 30);
-
-        // Keyword dictionary.
-        m_keywords = new HashMap<String, TokenCode>();
-        m_keywords.put("IF", TokenCode.T_IF);
-        m_keywords.put("THEN", TokenCode.T_THEN);
-        m_keywords.put("ELSE", TokenCode.T_ELSE);
-        m_keywords.put("FI", TokenCode.T_FI);
-        m_keywords.put("LOOP", TokenCode.T_LOOP);
-        m_keywords.put("BREAK", TokenCode.T_BREAK);
-        m_keywords.put("READ", TokenCode.T_READ);
-        m_keywords.put("REPEAT", TokenCode.T_REPEAT);
-        m_keywords.put("PRINT", TokenCode.T_PRINT);
-        m_keywords.put("AND", TokenCode.T_AND);
-        m_keywords.put("OR", TokenCode.T_OR);
-
-        // Operator dictionary.
-        m_operators = new HashMap<String, TokenCode>();
-        m_operators.put(")", TokenCode.T_CLOSE_PAREN);
-        m_operators.put("(", TokenCode.T_OPEN_PAREN);
-        m_operators.put("/", TokenCode.T_DIVIDE);
-        m_operators.put("*", TokenCode.T_MULTIPLY);
-        m_operators.put("-", TokenCode.T_SUBTRACT);
-        m_operators.put("+", TokenCode.T_ADD);
-        m_operators.put("<>", TokenCode.T_NOT_EQUAL);
-        m_operators.put(":", TokenCode.T_COLON);
-        m_operators.put(">", TokenCode.T_GREATER_THAN);
-        m_operators.put(">=", TokenCode.T_GREATER_OR_EQUAL);
-        m_operators.put("=", TokenCode.T_EQUAL);
-        m_operators.put("<=", TokenCode.T_LESS_OR_EQUAL);
-        m_operators.put("<", TokenCode.T_LESS_THAN);
-        m_operators.put(":=", TokenCode.T_BECOMES);
-        m_operators.put(";", TokenCode.T_SEMICOLON);
-        m_operators.put(".", TokenCode.T_PERIOD);
-        m_operators.put(",", TokenCode.T_COMMA);
+        this(fileName, stream, new IDTable());
+    }
+
+    /**
+     * Construct a new TokenReader instance, with source code being read from
+     * the specified stream and identifiers interned in the specified table.
+     *
+     * @param stream The stream to read source code from
+     * @param idTable The table to intern identifiers in
+     */
+    public TokenReader(String fileName, InputStream stream, IDTable idTable) {
+        // The stream is read when the first token is.
+        m_stream = stream;
+        m_buf = new byte[INITIAL_BUFFER_SIZE];
+        m_pos = 0;
+        m_end = 0;
+        m_eof = false;
 
         // Save the input file name for syntax error reporting.
         m_fileName = fileName;
 
-        // Start reading on line 1.
-        m_lineNum = 1;
+        m_idTable = idTable;
+    }
+
+    /**
+     * Construct a new TokenReader instance that reads source code from a
+     * range of a buffer. Its tokens' offsets are offsets in the buffer.
+     *
+     * @param fileName The name of the source file, for error messages
+     * @param source The buffer to read source code from
+     * @param start The offset to start reading at
+     * @param end The offset of the end of the source code
+     * @param idTable The table to intern identifiers in
+     */
+    public TokenReader(String fileName, byte[] source, int start, int end,
+                       IDTable idTable) {
+        m_stream = new ByteArrayInputStream(source, end, 0);
+        m_buf = source;
+        m_pos = start;
+        m_end = end;
+        m_eof = true;
+        m_fileName = fileName;
+        m_idTable = idTable;
+    }
+
+    /**
+     * Construct a new TokenReader instance that reads a range of the
+     * tokens that another reader has read in parallel. Reading past
+     * the range is a syntax error.
+     *
+     * The readers share their tokens and identifier table, neither
+     * of which is changed by reading, so they can be read on
+     * different threads.
+     *
+     * @param reader The reader whose tokens are to be read
+     * @param from The index of the first token to read
+     * @param to The index following the last token to read
+     *
+     * @see #packedTokens()
+     */
+    public TokenReader(TokenReader reader, int from, int to) {
+        assert (reader.m_tokens != null && from >= reader.m_tokenIndex);
+        m_stream = new ByteArrayInputStream(reader.m_buf, reader.m_end, 0);
+        m_buf = reader.m_buf;
+        m_pos = (from == reader.m_tokenIndex) ?
+                reader.m_pos : reader.m_tokens.end(from - 1);
+        m_end = reader.m_end;
+        m_eof = true;
+        m_fileName = reader.m_fileName;
+        m_idTable = reader.m_idTable;
+        m_tokens = reader.m_tokens;
+        m_tokenIndex = from;
+        m_tokenLimit = to;
+        m_lazyBodies = reader.m_lazyBodies;
+        m_exprInterner = reader.m_exprInterner;
     }
 
     //============================================================
     //
-    // The following methods read specific types of tokens
-    // and return them verbatim:
+    // The following methods read specific types of tokens:
     //
     //	readNumber()	- reads numeric literals, including real
-    //					  numbers (decimal only)
+    //					  numbers (decimal only), and returns
+    //					  their values
     //
     //	readAlpha()		- reads "alpha" tokens, like keywords and
     // 					  identifiers
@@ -125,35 +206,60 @@ public class TokenReader {
     //============================================================
 
     /**
-     * Read a numeric constant into a String and return it.
+     * Read a numeric constant and return its value.
+     *
+     * The digits are accumulated into a decimal significand and
+     * exponent as they're read, and DecimalConversion turns those
+     * into the correctly rounded double.
      *
-     * @return The String representation of a numeric literal token.
+     * @return The value of a numeric literal token.
      */
-    public String readNumber()
+    public double readNumber()
             throws IOException, DCSyntaxErrorException
     {
-        char ch;
-        StringBuilder token = new StringBuilder();
+        int ch;
+        int start = m_pos;
         boolean hasDecimalPoint = false;
 
-        // Ensure we're really reading a numeric literal.
-        ch = (char) m_inStream.read();
-        assert (Character.isDigit(ch));
-        token.append(ch);
+        // The literal's value is significand * 10^exponent. Only
+        // the first 19 significant digits fit in the significand;
+        // if any later digit isn't zero, the value is truncated.
+        long significand = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean truncated = false;
 
+        // Ensure we're really reading a numeric literal.
+        ch = read();
+        assert (isDigit(ch));
+        m_pos--;
 
         // The loop condition is "more characters available", but
         // it will explicitly break when finished reading the
         // number.
-        while (m_inStream.available() > 0) {
+        while (more()) {
             // Get next character
-            ch = (char) m_inStream.read();
+            ch = read();
 
             // Whether the character is a digit, a decimal point
             // or another type will determine how to proceed.
-            if (Character.isDigit(ch)) {
-                // Just append digits and keep going.
-                token.append(ch);
+            if (isDigit(ch)) {
+                // Accumulate digits and keep going; leading zeros
+                // aren't significant.
+                if (digits < 19) {
+                    if (digits > 0 || ch != '0') {
+                        significand = significand * 10 + (ch - '0');
+                        digits++;
+                    }
+                    if (hasDecimalPoint) {
+                        exponent--;
+                    }
+                } else {
+                    truncated |= (ch != '0');
+                    if (!hasDecimalPoint) {
+                        exponent++;
+                    }
+                }
             } else if (ch == '.') {
                 //
                 // This numeric literal has a decimal point.
@@ -167,14 +273,11 @@ public class TokenReader {
                             "Numeric literal already has decimal point."
                     );
                 }
-
-                // Append the decimal point to the token.
-                token.append(ch);
                 hasDecimalPoint = true;
 
                 // Can't end the stream right after a decimal
                 // point...
-                if (m_inStream.available() == 0) {
+                if (!more()) {
                     throw new DCSyntaxErrorException(
                             this,
                             "End of file reached; numeric literal expected " +
@@ -194,28 +297,29 @@ public class TokenReader {
                 //     as numbers."
                 //
 
-                // Get next character and verify that it's a
-                // digit.
-                ch = (char) m_inStream.read();
-                if (!Character.isDigit(ch)) {
+                // Peek at the next character and verify that it's
+                // a digit; the loop will read it.
+                if (!isDigit(peek())) {
                     throw new DCSyntaxErrorException(
                             this,
                             "Fractional part of numeric literal expected " +
                                     "following decimal point, but none found."
                     );
                 }
-
-                // Append first digit after decimal point
-                token.append(ch);
             } else {
                 // Not a digit; put it back and exit the loop.
-                m_inStream.unread(ch);
+                m_pos--;
                 break;
             }
         }
 
-        // Return the assembled numeric literal.
-        return token.toString();
+        // Convert the literal; the rare cases the fast paths can't
+        // decide are parsed from the source text.
+        double value = DecimalConversion.toDouble(significand, exponent);
+        if (truncated || Double.isNaN(value)) {
+            value = DecimalConversion.parse(m_buf, start, m_pos);
+        }
+        return value;
     }
 
     /**
@@ -226,33 +330,31 @@ public class TokenReader {
     public String readAlpha()
             throws IOException, DCSyntaxErrorException
     {
-        char ch;
-        StringBuilder token = new StringBuilder();
+        int ch;
+        int start = m_pos;
 
         // Ensure that we're really reading an alpha token.
-        ch = (char) m_inStream.read();
-        assert (Character.isAlphabetic(ch));
-        token.append(ch);
+        ch = read();
+        assert (isAlpha(ch));
 
         // The loop condition is "more characters available", but
         // it will explicitly break when finished reading the
-        // alpha token.
-        while (m_inStream.available() > 0) {
-            ch = (char) m_inStream.read();
-
-            if (!Character.isAlphabetic(ch) &&
-                    !Character.isDigit(ch)) {
-                // Not an alpha char.
-                // Put it back and exit the loop.
-                m_inStream.unread(ch);
-                break;
+        // alpha token. ASCII letters and digits are skipped in
+        // bulk; anything else is checked one character at a time.
+        while (more()) {
+            m_pos = ByteScanner.skipAlphanumerics(m_buf, m_pos, m_end);
+            if (m_pos < m_end) {
+                if (!isAlpha(peek())) {
+                    // Not an alpha char; exit the loop.
+                    break;
+                }
+                m_pos++;
             }
-
-            token.append(ch);
         }
 
-        // Return the assembled alpha token.
-        return token.toString();
+        // Return the alpha token's text.
+        return new String(m_buf, start, m_pos - start,
+                StandardCharsets.ISO_8859_1);
     }
 
     /**
@@ -261,24 +363,19 @@ public class TokenReader {
     public void readSpace()
             throws IOException
     {
-        char ch;
-        boolean eof = false;
+        int ch;
 
-        ch = (char) m_inStream.read();
+        ch = read();
         assert (ch == ' ' || ch == '\t');
 
-        do {
-            if (m_inStream.available() == 0) {
-                eof = true;
+        // Skip spaces in bulk until one of them is followed by
+        // something else, or the input ends.
+        while (more()) {
+            m_pos = ByteScanner.skipBlanks(m_buf, m_pos, m_end);
+            if (m_pos < m_end) {
                 break;
             }
-
-            ch = (char) m_inStream.read();
-        } while (ch == ' ' || ch == '\t');
-
-        // Only unread() the character if we're NOT at eof
-        if (!eof)
-            m_inStream.unread(ch);
+        }
     }
 
     /**
@@ -292,14 +389,21 @@ public class TokenReader {
     {
         String tokenText;
         TokenCode tokenCode;
+        int symbol = IDTable.NONE;
+        int start;
         char ch;
 
+        if (m_tokens != null) {
+            return nextPackedToken();
+        }
+
         // In a correct Descartes program, getToken() will not be
         // called at EOF - getToken() will not be called after the
         // end-of-program period is read. If getToken() is called
         // at the end of a file, it means no period was found (or
         // something terrible has happened).
         if (atEnd()) {
+            m_tokenStart = m_pos;
             throw new DCSyntaxErrorException(
                     this,
                     "Unexpected end of file while reading token.\n" +
@@ -309,43 +413,47 @@ public class TokenReader {
         }
 
         // Get a character from the input.
-        ch = (char) m_inStream.read();
+        start = m_pos;
+        m_tokenStart = start;
+        ch = (char) read();
 
         // The genre and/or value of character read will determine
         // how to proceed.
-        if (Character.isDigit(ch)) {
+        if (isDigit(ch)) {
             //
             // Numeric constant
             //
 
             // Put the character back so readNumber() can acquire
             // it.
-            m_inStream.unread(ch);
+            m_pos--;
 
-            // Read the numeric literal.
-            tokenText = readNumber();
-            tokenCode = TokenCode.T_CONST;
-        } else if (Character.isAlphabetic(ch)) {
+            // Read the numeric literal; its text is only extracted
+            // from the buffer if it's asked for.
+            double value = readNumber();
+            return new TokenDescriptor(m_buf, start, m_pos, value);
+        } else if (isAlpha(ch)) {
             //
             // Alpha tokens; could be a keyword or an identifier.
             //
 
             // Put the character back so readAlpha() can acquire
             // it.
-            m_inStream.unread(ch);
+            m_pos--;
 
             // Read all consecutive alpha characters.
             tokenText = readAlpha();
 
-            // If the token appears in the keyword dictionary, the
-            // token is clearly a keyword; otherwise it is an
-            // identifier.
-            if (m_keywords.containsKey(tokenText)) {
-                // Keyword; lookup token ID.
-                tokenCode = m_keywords.get(tokenText);
-            } else {
-                // Identifier; token ID is 28.
+            // If the token is a keyword, look up its token ID;
+            // otherwise it is an identifier.
+            tokenCode = keywordCode(tokenText);
+            if (tokenCode == null) {
+                // Identifier; token ID is 28. Intern it, and use
+                // the interned text so that all occurrences share
+                // one String.
                 tokenCode = TokenCode.T_ID;
+                symbol = m_idTable.intern(tokenText);
+                tokenText = m_idTable.name(symbol);
             }
         } else if (ch == ' ' || ch == '\t') {
             //
@@ -353,7 +461,7 @@ public class TokenReader {
             //
 
             // Put back the space so readSpace() can acquire it.
-            m_inStream.unread(ch);
+            m_pos--;
 
             // Eat all of the space characters - they are
             // collapsed into one token.
@@ -378,9 +486,6 @@ public class TokenReader {
             //
 
             tokenCode = TokenCode.T_SPACE;
-
-            // Increment line number counter.
-            ++m_lineNum;
         } else if (ch == '\r') {
             // Ignore DOS carriage return characters (mumble
             // grumble).
@@ -393,41 +498,34 @@ public class TokenReader {
             // different tokens, not simply one long one.
             //
 
-            StringBuilder token = new StringBuilder();
-            token.append(ch);
+            char first = ch;
+            tokenCode = operatorCode(first);
 
             // If the following char is also a punct char, see if
             // the two characters together form an operator.
-            ch = (char) m_inStream.read();
-            if (isPunct(ch)) {
-                token.append(ch);
-                if (!m_operators.containsKey(token.toString())) {
-                    // The two characters combined are not an
-                    // operator; remove the second char and put it
-                    // back in the input stream.
-                    token.deleteCharAt(1);
-                    m_inStream.unread(ch);
-                }
+            int next = peek();
+            TokenCode pairCode =
+                    isPunct(next) ? operatorCode(first, (char) next) : null;
+            if (pairCode != null) {
+                m_pos++;
+                tokenCode = pairCode;
+                tokenText = operatorText(pairCode);
             } else {
-                // The next character isn't a punct char; put it
-                // back in the input stream.
-                m_inStream.unread(ch);
+                // The two characters combined are not an operator;
+                // leave the second char in the input stream.
+                tokenText = PUNCT_TEXT[first];
             }
-            tokenText = token.toString();
 
-            // Right now this can only happen if an isolated colon
-            // (:) is found in the input. It could happen more
-            // often if we used a proper isPunct() method.
-            if (!m_operators.containsKey(tokenText)) {
+            // Right now this can't happen, since every punct char
+            // is an operator on its own. It could happen if we
+            // used a proper isPunct() method.
+            if (tokenCode == null) {
                 throw new DCSyntaxErrorException(
                         this,
                         "Unrecognized punctuation token: " +
                                 "\"" + tokenText + "\""
                 );
             }
-
-            // Look up operator tokenCode.
-            tokenCode = m_operators.get(tokenText);
         } else {
             //
             // Unrecognized character type.
@@ -441,7 +539,8 @@ public class TokenReader {
             );
         }
 
-        return new TokenDescriptor(tokenText, tokenCode);
+        return new TokenDescriptor(tokenText, tokenCode, symbol,
+                start, m_pos);
     }
 
     /**
@@ -456,19 +555,294 @@ public class TokenReader {
     public void unread(TokenDescriptor descrip)
             throws IOException
     {
-        // unread() each char in the token (backwards, so that it
-        // reads forward the next time getToken() is called).
-        for (int i = descrip.getText().length() - 1; i >= 0; i--) {
-            char ch = descrip.getText().charAt(i);
-            m_inStream.unread(ch);
-
-            // Keep line counter up-to-date.
-            if (ch == '\n') {
-                --m_lineNum;
+        // Move back to the start of the token; tokens must be
+        // unread in the reverse of the order they were read.
+        assert (descrip.getStart() <= m_pos);
+        m_pos = descrip.getStart();
+        m_tokenStart = m_pos;
+
+        if (m_tokens != null) {
+            while (m_tokenIndex > 0 &&
+                    m_tokens.start(m_tokenIndex - 1) >= m_pos)
+            {
+                m_tokenIndex--;
             }
         }
     }
 
+    /**
+     * Reads all of the remaining tokens.
+     *
+     * If a syntax error is found, the tokens before it are returned
+     * along with the error, rather than the error being thrown.
+     *
+     * @return The tokens read
+     */
+    public PackedTokens readAll()
+            throws IOException
+    {
+        PackedTokens tokens = new PackedTokens(0);
+        try {
+            while (!atEnd()) {
+                tokens.add(getToken());
+            }
+        } catch (DCSyntaxErrorException e) {
+            tokens.setError(e);
+        }
+        return tokens;
+    }
+
+    /**
+     * Reads the rest of the source code and, if it's long enough to
+     * be worth it and there's more than one processor, reads its
+     * tokens in parallel on the common ForkJoinPool. getToken() then returns the tokens already
+     * read, and reports syntax errors exactly where it would have
+     * otherwise.
+     *
+     * @see ParallelLexer
+     */
+    public void readInParallel()
+            throws IOException
+    {
+        while (fill()) {
+            // Keep reading until the end of the input.
+        }
+        // With one processor there's nothing to gain, and the tokens
+        // would be created twice.
+        if (m_tokens == null && m_end - m_pos >= PARALLEL_THRESHOLD &&
+                Runtime.getRuntime().availableProcessors() > 1)
+        {
+            m_tokens = ParallelLexer.lex(m_fileName, m_buf, m_pos, m_end,
+                    m_idTable, ForkJoinPool.commonPool());
+            m_tokenIndex = 0;
+            m_tokenLimit = m_tokens.size();
+        }
+    }
+
+    /**
+     * Reads all of the rest of the source code's tokens, in
+     * parallel if readInParallel() would, and sequentially if not.
+     * getToken() then returns the tokens already read, and reports
+     * syntax errors exactly where it would have otherwise.
+     */
+    public void readAllTokens()
+            throws IOException
+    {
+        readInParallel();
+        if (m_tokens == null) {
+            int pos = m_pos;
+            PackedTokens tokens = readAll();
+            m_pos = pos;
+            m_tokens = tokens;
+            m_tokenIndex = 0;
+            m_tokenLimit = m_tokens.size();
+        }
+    }
+
+    /**
+     * Sets whether LOOP, IF and ELSE bodies are parsed lazily, which
+     * needs all of the tokens to have been read.
+     *
+     * @see LazyStmtListNode
+     * @see #readAllTokens()
+     */
+    public void setLazyBodies(boolean lazyBodies) {
+        assert (!lazyBodies || m_tokens != null);
+        m_lazyBodies = lazyBodies;
+    }
+
+    /**
+     * Accessor for whether LOOP, IF and ELSE bodies are parsed
+     * lazily.
+     */
+    public boolean lazyBodies() {
+        return m_lazyBodies;
+    }
+
+    /**
+     * Sets the table that expression nodes are interned in as
+     * they're parsed, or null to intern none.
+     *
+     * @see #intern(Object)
+     */
+    public void setExprInterner(ExprInterner exprInterner) {
+        m_exprInterner = exprInterner;
+    }
+
+    /**
+     * Accessor for the table that expression nodes are interned
+     * in, or null if they aren't.
+     */
+    public ExprInterner exprInterner() {
+        return m_exprInterner;
+    }
+
+    /**
+     * Returns the shared node identical to a node just parsed, if
+     * expression nodes are being interned, or the node itself.
+     *
+     * @param node A node whose children have been interned
+     */
+    public <T> T intern(T node) {
+        return (m_exprInterner == null) ? node : m_exprInterner.intern(node);
+    }
+
+    /**
+     * Accessor for the tokens read in parallel, or null if the
+     * source hasn't been.
+     *
+     * @see #readInParallel()
+     */
+    public PackedTokens packedTokens() {
+        return m_tokens;
+    }
+
+    /**
+     * Accessor for the index of the next of the tokens read in
+     * parallel that getToken() will return.
+     */
+    public int packedTokenIndex() {
+        return m_tokenIndex;
+    }
+
+    /**
+     * Skips ahead to one of the tokens read in parallel, as though
+     * all of the tokens before it had been read.
+     *
+     * @param index The index of the next token to return
+     */
+    public void seekPackedToken(int index) {
+        assert (index >= m_tokenIndex && index <= m_tokenLimit);
+        if (index > m_tokenIndex) {
+            m_tokenIndex = index;
+            m_tokenStart = m_tokens.start(index - 1);
+            m_pos = m_tokens.end(index - 1);
+        }
+    }
+
+    /**
+     * Returns the next of the tokens read in parallel.
+     */
+    private TokenDescriptor nextPackedToken()
+            throws DCSyntaxErrorException
+    {
+        int i = m_tokenIndex;
+        if (i == m_tokenLimit && i < m_tokens.size()) {
+            m_tokenStart = m_tokens.start(i);
+            throw new DCSyntaxErrorException(
+                    this,
+                    "Unexpected end of token range.");
+        }
+        if (i == m_tokens.size()) {
+            DCSyntaxErrorException error = m_tokens.error();
+            if (error != null) {
+                throw error;
+            }
+
+            // The tokens run out at the end of the source code, bar
+            // any carriage returns; getToken() would skip those and
+            // then find itself at the end of the file.
+            m_tokenStart = m_end;
+            throw new DCSyntaxErrorException(
+                    this,
+                    "Unexpected end of file while reading token.\n" +
+                            "(did you forget a period at the end of your " +
+                            "program?)"
+            );
+        }
+
+        TokenCode code = m_tokens.code(i);
+        int start = m_tokens.start(i);
+        int end = m_tokens.end(i);
+        m_tokenIndex++;
+        m_tokenStart = start;
+        m_pos = end;
+
+        if (code == TokenCode.T_CONST) {
+            return new TokenDescriptor(m_buf, start, end, m_tokens.value(i));
+        }
+
+        String text;
+        int symbol = IDTable.NONE;
+        if (code == TokenCode.T_ID) {
+            symbol = m_tokens.symbol(i);
+            text = m_idTable.name(symbol);
+        } else if (code == TokenCode.T_SPACE) {
+            text = (m_buf[start] == '\n') ? "\n" : " ";
+        } else if (isPunct(m_buf[start] & 0xFF)) {
+            text = (end - start == 2) ?
+                    operatorText(code) : PUNCT_TEXT[m_buf[start]];
+        } else {
+            text = new String(m_buf, start, end - start,
+                    StandardCharsets.ISO_8859_1);
+        }
+        return new TokenDescriptor(text, code, symbol, start, end);
+    }
+
+    /**
+     * Returns the next character without consuming it, or -1 at
+     * the end of the input.
+     */
+    private int peek()
+            throws IOException
+    {
+        return more() ? (m_buf[m_pos] & 0xFF) : -1;
+    }
+
+    /**
+     * Consumes and returns the next character, or returns -1 at
+     * the end of the input.
+     */
+    private int read()
+            throws IOException
+    {
+        return more() ? (m_buf[m_pos++] & 0xFF) : -1;
+    }
+
+    /**
+     * Returns true if there are more characters to read, reading
+     * more of the source code into the buffer if needed.
+     */
+    private boolean more()
+            throws IOException
+    {
+        return m_pos < m_end || fill();
+    }
+
+    /**
+     * Reads more of the source code into the buffer, growing it
+     * if it's full.
+     *
+     * This blocks until at least one byte arrives, but no longer:
+     * the end of the input is only reported when the stream
+     * reports it, never because nothing is ready yet.
+     *
+     * @return true if any bytes were read, false at the end of
+     *         the input
+     */
+    private boolean fill()
+            throws IOException
+    {
+        while (!m_eof) {
+            if (m_end == m_buf.length) {
+                // Tokens already read may refer to the old buffer;
+                // it's copied rather than changed, so they stay
+                // valid.
+                m_buf = Arrays.copyOf(m_buf, m_buf.length * 2);
+            }
+
+            int count = m_stream.read(m_buf, m_end, m_buf.length - m_end);
+            if (count < 0) {
+                m_eof = true;
+            } else if (count > 0) {
+                m_end += count;
+                m_lineIndex = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns true if there are no more tokens to read from the input stream.
      *
@@ -478,7 +852,7 @@ public class TokenReader {
     public boolean atEnd()
             throws IOException
     {
-        return (m_inStream.available() == 0);
+        return !more();
     }
 
     /**
@@ -494,13 +868,97 @@ public class TokenReader {
     }
 
     /**
-     * Returns the current line number in the source code file. This is useful
-     * for reporting syntax errors.
+     * Returns the offset of the next token in the source code,
+     * skipping any spaces before it without consuming them.
+     *
+     * This is useful for recording where a parse tree node
+     * starts.
+     *
+     * @return The offset of the next non-space character
+     */
+    public int nextTokenStart()
+            throws IOException
+    {
+        int pos = m_pos;
+        while (pos < m_end || fill()) {
+            byte ch = m_buf[pos];
+            if (ch != ' ' && ch != '\t' && ch != '\n' && ch != '\r') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the offset in the source code of the token being
+     * read, or most recently read. This is useful for reporting
+     * syntax errors.
+     *
+     * @return The offset of the current token
+     */
+    public int tokenStart() {
+        return m_tokenStart;
+    }
+
+    /**
+     * Returns the line number of the current token in the source
+     * code file. This is useful for reporting syntax errors.
      *
      * @return The line number currently being read in the source code file
      */
     public int lineNum() {
-        return m_lineNum;
+        return lineIndex().line(m_tokenStart);
+    }
+
+    /**
+     * Returns the column number of the current token in the
+     * source code file. This is useful for reporting syntax
+     * errors.
+     *
+     * @return The column number currently being read in the source code file
+     */
+    public int columnNum() {
+        return lineIndex().column(m_tokenStart);
+    }
+
+    /**
+     * Returns the index that maps offsets in the source code read
+     * so far to line and column numbers.
+     *
+     * @return The source code's line index
+     */
+    public LineIndex lineIndex() {
+        if (m_lineIndex == null) {
+            m_lineIndex = new LineIndex(m_buf, m_end);
+        }
+        return m_lineIndex;
+    }
+
+    /**
+     * Returns a stream of the input that follows the tokens read
+     * so far: whatever has been buffered but not yet read,
+     * followed by the rest of the underlying stream.
+     *
+     * This is how a program streamed through standard input
+     * hands the data after its final period on to READ
+     * statements.
+     *
+     * @return The unread remainder of the input
+     */
+    public InputStream remainingInput() {
+        return new SequenceInputStream(
+                new ByteArrayInputStream(m_buf, m_pos, m_end - m_pos),
+                m_stream);
+    }
+
+    /**
+     * Returns the table that identifiers are interned in.
+     *
+     * @return The identifier table
+     */
+    public IDTable idTable() {
+        return m_idTable;
     }
 
 
@@ -508,6 +966,25 @@ public class TokenReader {
     // Static Methods //
     //================//
 
+    /**
+     * Returns true if the character is a decimal digit.
+     */
+    private static boolean isDigit(int ch) {
+        return ch >= '0' && ch <= '9';
+    }
+
+    /**
+     * Returns true if the character is alphabetic. Characters
+     * are read as Latin-1, so beyond ASCII this defers to
+     * Character.isAlphabetic().
+     */
+    private static boolean isAlpha(int ch) {
+        if (ch < 128) {
+            return (ch >= 'A' && ch <= 'Z') || (ch >= 'a' && ch <= 'z');
+        }
+        return Character.isAlphabetic(ch);
+    }
+
     /**
      * Java's Character class inexplicably has no isPunct() method, so this one
      * will suffice.
@@ -520,8 +997,106 @@ public class TokenReader {
      * character, <pre>false</pre> otherwise
      */
     public static boolean isPunct(int ch) {
-        String pChars = ".*()/+-<>=.:;,";
-        return pChars.contains(Character.toString((char) ch));
+        ch = (char) ch;
+        return ch < PUNCT_CHARS.length && PUNCT_CHARS[ch];
+    }
+
+    /**
+     * Returns the token code of a keyword, or null if the text
+     * isn't a keyword.
+     *
+     * No two keywords share both their first character and their
+     * length, so those two select the only keyword the text could
+     * be, and a single comparison settles it.
+     *
+     * @param text The text of an alpha token
+     *
+     * @return The keyword's token code, or null
+     */
+    public static TokenCode keywordCode(String text) {
+        String keyword;
+        TokenCode code;
+
+        switch (text.charAt(0)) {
+            case 'A': keyword = "AND";   code = TokenCode.T_AND;   break;
+            case 'B': keyword = "BREAK"; code = TokenCode.T_BREAK; break;
+            case 'E': keyword = "ELSE";  code = TokenCode.T_ELSE;  break;
+            case 'F': keyword = "FI";    code = TokenCode.T_FI;    break;
+            case 'I': keyword = "IF";    code = TokenCode.T_IF;    break;
+            case 'L': keyword = "LOOP";  code = TokenCode.T_LOOP;  break;
+            case 'O': keyword = "OR";    code = TokenCode.T_OR;    break;
+            case 'P': keyword = "PRINT"; code = TokenCode.T_PRINT; break;
+            case 'T': keyword = "THEN";  code = TokenCode.T_THEN;  break;
+            case 'R':
+                if (text.length() == 4) {
+                    keyword = "READ";
+                    code = TokenCode.T_READ;
+                } else {
+                    keyword = "REPEAT";
+                    code = TokenCode.T_REPEAT;
+                }
+                break;
+            default:
+                return null;
+        }
+
+        return text.equals(keyword) ? code : null;
+    }
+
+    /**
+     * Returns the token code of a single-character operator, or
+     * null if the character isn't one.
+     */
+    public static TokenCode operatorCode(char ch) {
+        switch (ch) {
+            case ')': return TokenCode.T_CLOSE_PAREN;
+            case '(': return TokenCode.T_OPEN_PAREN;
+            case '/': return TokenCode.T_DIVIDE;
+            case '*': return TokenCode.T_MULTIPLY;
+            case '-': return TokenCode.T_SUBTRACT;
+            case '+': return TokenCode.T_ADD;
+            case ':': return TokenCode.T_COLON;
+            case '>': return TokenCode.T_GREATER_THAN;
+            case '=': return TokenCode.T_EQUAL;
+            case '<': return TokenCode.T_LESS_THAN;
+            case ';': return TokenCode.T_SEMICOLON;
+            case '.': return TokenCode.T_PERIOD;
+            case ',': return TokenCode.T_COMMA;
+            default:  return null;
+        }
+    }
+
+    /**
+     * Returns the token code of a two-character operator, or null
+     * if the characters don't form one.
+     */
+    public static TokenCode operatorCode(char first, char second) {
+        if (second == '=') {
+            switch (first) {
+                case ':': return TokenCode.T_BECOMES;
+                case '<': return TokenCode.T_LESS_OR_EQUAL;
+                case '>': return TokenCode.T_GREATER_OR_EQUAL;
+                default:  return null;
+            }
+        }
+        if (first == '<' && second == '>') {
+            return TokenCode.T_NOT_EQUAL;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the text of a two-character operator token.
+     */
+    private static String operatorText(TokenCode code) {
+        switch (code) {
+            case T_BECOMES:          return ":=";
+            case T_LESS_OR_EQUAL:    return "<=";
+            case T_GREATER_OR_EQUAL: return ">=";
+            case T_NOT_EQUAL:        return "<>";
+            default:
+                throw new IllegalArgumentException(code.toString());
+        }
     }
 
 }
\ No newline at end of file
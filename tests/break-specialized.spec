@@ -0,0 +1 @@
+N=4
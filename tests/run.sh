@@ -0,0 +1,47 @@
+#!/bin/sh
+# Runs every test program that has expected output, NAME.out, on
+# each engine, with NAME.in as its standard input if there is one,
+# and every one that has rows of batch input, NAME.rows, through
+# "batch" on each engine, against NAME.batch; and every one that has
+# READ bindings, NAME.spec, specialized against them and run against
+# NAME.residual; and reports the runs whose output differs. The
+# compiled classes must be on the CLASSPATH.
+cd "$(dirname "$0")"
+status=0
+for expected in *.out; do
+    name=${expected%.out}
+    input=/dev/null
+    if [ -f "$name.in" ]; then
+        input=$name.in
+    fi
+    for engine in "" -O1 -O2 --ll1 --bytecode --compact --lazy; do
+        if ! java Descartes $engine "$name.dc" < "$input" 2>&1 |
+                cmp -s - "$expected"; then
+            echo "FAILED: $name ${engine:-(tree)}"
+            status=1
+        fi
+    done
+done
+for rows in *.rows; do
+    name=${rows%.rows}
+    for engine in "" -O1 -O2 --lanes "-O2 --lanes"; do
+        if ! java Descartes batch $engine "$name.dc" "$rows" 2>/dev/null |
+                cmp -s - "$name.batch"; then
+            echo "FAILED: $name batch ${engine:-(tree)}"
+            status=1
+        fi
+    done
+done
+residual=${TMPDIR:-/tmp}/residual$$.dc
+for spec in *.spec; do
+    name=${spec%.spec}
+    if ! java Descartes --specialize "$(cat "$spec")" "$name.dc" \
+            > "$residual" ||
+            ! java Descartes "$residual" < /dev/null 2>&1 |
+            cmp -s - "$name.residual"; then
+        echo "FAILED: $name specialized"
+        status=1
+    fi
+done
+rm -f "$residual"
+exit $status